@@ -0,0 +1,202 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.property.ExtraProps;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+
+/**
+ * {@link Feature} whose properties are stored in the fixed slots defined by its {@link GenericFeatureType}.
+ * <p>
+ * Used for feature types where every property occurs at most once (see
+ * {@link GenericFeatureType#getPropertySlotCount()}). Lookups by name are resolved via the slot table of the type and
+ * don't allocate. The property lists returned by this class are unmodifiable, use {@link #setProperties(List)} or
+ * {@link #setPropertyValue(QName, int, TypedObjectNode)} for changes.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class CompactFeature extends AbstractFeature {
+
+    private final GenericFeatureType ft;
+
+    private Property[] slots;
+
+    // lazily built views, reset on modification
+    private List<Property> props;
+
+    private List<Property> geometryProps;
+
+    private List<Property>[] slotProps;
+
+    /**
+     * Creates a new {@link CompactFeature} instance.
+     * 
+     * @param ft
+     *            feature type, must not be <code>null</code> and must have fixed slots
+     * @param fid
+     *            feature id or <code>null</code> if the feature is anonymous (discouraged for most use cases)
+     * @param slots
+     *            properties indexed by slot (see {@link GenericFeatureType#toSlots(List)}), must not be
+     *            <code>null</code>
+     * @param extraProps
+     *            extra properties, may be <code>null</code>
+     */
+    public CompactFeature( GenericFeatureType ft, String fid, Property[] slots, ExtraProps extraProps ) {
+        super( fid, ft, extraProps );
+        this.ft = ft;
+        this.slots = slots;
+    }
+
+    @Override
+    public List<Property> getProperties() {
+        if ( props == null ) {
+            int num = 0;
+            for ( Property prop : slots ) {
+                if ( prop != null ) {
+                    num++;
+                }
+            }
+            Property[] present = slots;
+            if ( num != slots.length ) {
+                present = new Property[num];
+                num = 0;
+                for ( Property prop : slots ) {
+                    if ( prop != null ) {
+                        present[num++] = prop;
+                    }
+                }
+            }
+            props = Collections.unmodifiableList( Arrays.asList( present ) );
+        }
+        return props;
+    }
+
+    @Override
+    public void setProperties( List<Property> props )
+                            throws IllegalArgumentException {
+        Property[] newSlots = ft.toSlots( props );
+        if ( newSlots == null ) {
+            String msg = "Cannot set properties of feature '" + getName()
+                         + "': properties must be declared, unique and in declaration order.";
+            throw new IllegalArgumentException( msg );
+        }
+        slots = newSlots;
+        reset();
+    }
+
+    @Override
+    public void setPropertyValue( QName propName, int occurrence, TypedObjectNode value ) {
+        int slot = ft.getPropertySlot( propName );
+        if ( slot == -1 || occurrence != 0 || slots[slot] == null ) {
+            // like GenericFeature, only existing occurrences are changed
+            return;
+        }
+        PropertyType pt = ft.getPropertyDeclaration( propName );
+        if ( value == null ) {
+            // null means remove
+            if ( pt.getMinOccurs() > 0 ) {
+                String msg = "Cannot remove property '" + propName + "' from feature '" + getName()
+                             + ": property must be present at least " + pt.getMinOccurs() + " time(s).";
+                throw new IllegalArgumentException( msg );
+            }
+            slots[slot] = null;
+        } else {
+            slots[slot] = new GenericProperty( pt, propName, value );
+        }
+        reset();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Property> getProperties( QName propName ) {
+        int slot = ft.getPropertySlot( propName );
+        if ( slot == -1 || slots[slot] == null ) {
+            return Collections.emptyList();
+        }
+        if ( slotProps == null ) {
+            slotProps = new List[slots.length];
+        }
+        List<Property> namedProps = slotProps[slot];
+        if ( namedProps == null ) {
+            namedProps = Collections.singletonList( slots[slot] );
+            slotProps[slot] = namedProps;
+        }
+        return namedProps;
+    }
+
+    @Override
+    public List<Property> getGeometryProperties() {
+        if ( geometryProps == null ) {
+            List<Property> geoProps = new ArrayList<Property>( 1 );
+            for ( Property property : slots ) {
+                if ( property != null && property.getValue() instanceof Geometry
+                     && !( property.getValue() instanceof Envelope ) ) {
+                    geoProps.add( property );
+                }
+            }
+            geometryProps = Collections.unmodifiableList( geoProps );
+        }
+        return geometryProps;
+    }
+
+    private void reset() {
+        props = null;
+        geometryProps = null;
+        slotProps = null;
+    }
+}
@@ -132,6 +132,10 @@ public interface Feature extends GMLObject {
 
     /**
      * Sets the value of a specific occurrence of a property with a given name (or removes the property).
+     * <p>
+     * Only existing occurrences are changed, if the feature has no such occurrence, nothing happens. Use
+     * {@link #setProperties(List)} to add properties.
+     * </p>
      * 
      * @param propName
      *            property name
@@ -0,0 +1,499 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - IDgis bv -
+ and
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ 
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+ 
+ IDgis bv
+ Boomkamp 16
+ 7461 AX Rijssen
+ The Netherlands
+ http://idgis.nl/
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.deegree.gml.GMLVersion.GML_32;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.ObjectPropertyType;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLOutputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLStreamWriter;
+import org.deegree.gml.GMLVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FeatureInputStream} that returns the features of another {@link FeatureInputStream} in sorted order.
+ * <p>
+ * If a maximum number of features is given (and it is small enough), only the first features of the sorted sequence
+ * are kept in a bounded heap, so memory consumption does not depend on the size of the source. Otherwise, an external
+ * merge sort is performed: whenever <code>deegree.feature.sort.maxInMemory</code> features (default: 50000) have been
+ * buffered, they are sorted and spilled to a temporary file (as compressed GML), and the sorted runs are merged lazily
+ * during iteration. If features cannot be spilled, the remaining features are sorted in memory. This is the case if
+ * they are not based on a single application schema, or if their types declare feature or object properties: a
+ * spilled feature is read back on its own, so references to other objects could not be resolved anymore.
+ * </p>
+ * <p>
+ * Sorting is stable, i.e. features that compare equal are returned in source order. The source stream is consumed
+ * completely on the first call to {@link #iterator()}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SortingFeatureInputStream implements FeatureInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger( SortingFeatureInputStream.class );
+
+    private static final int MAX_IN_MEMORY = Integer.getInteger( "deegree.feature.sort.maxInMemory", 50000 );
+
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlOutputFactory.setProperty( IS_REPAIRING_NAMESPACES, Boolean.TRUE );
+    }
+
+    private final FeatureInputStream source;
+
+    private final Comparator<Feature> comparator;
+
+    private final int maxFeatures;
+
+    private final int maxInMemory;
+
+    private final List<SpilledRun> runs = new ArrayList<SpilledRun>();
+
+    private Iterator<Feature> sorted;
+
+    private boolean sourceClosed;
+
+    /**
+     * Creates a new {@link SortingFeatureInputStream}.
+     * 
+     * @param source
+     *            stream to be sorted, must not be <code>null</code>
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @param maxFeatures
+     *            maximum number of features to return, -1 (or any value less than one) for unlimited
+     */
+    public SortingFeatureInputStream( FeatureInputStream source, SortProperty[] sortCrits, int maxFeatures ) {
+        this( source, Features.getComparator( sortCrits ), maxFeatures, MAX_IN_MEMORY );
+    }
+
+    SortingFeatureInputStream( FeatureInputStream source, Comparator<Feature> comparator, int maxFeatures,
+                               int maxInMemory ) {
+        this.source = source;
+        this.comparator = comparator;
+        this.maxFeatures = maxFeatures;
+        this.maxInMemory = Math.max( 1, maxInMemory );
+    }
+
+    @Override
+    public void close() {
+        closeSource();
+        for ( SpilledRun run : runs ) {
+            run.close();
+        }
+        runs.clear();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        if ( sorted == null ) {
+            if ( maxFeatures > 0 && maxFeatures <= maxInMemory ) {
+                sorted = sortTopK();
+            } else {
+                sorted = sortExternal();
+            }
+        }
+        return sorted;
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private void closeSource() {
+        if ( !sourceClosed ) {
+            sourceClosed = true;
+            source.close();
+        }
+    }
+
+    private Iterator<Feature> sortTopK() {
+        // max-heap: the head is the feature that would be dropped first
+        Comparator<Entry> order = Collections.reverseOrder( new EntryComparator( comparator ) );
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>( maxFeatures + 1, order );
+        long seq = 0;
+        try {
+            for ( Feature f : source ) {
+                heap.add( new Entry( f, seq++, 0 ) );
+                if ( heap.size() > maxFeatures ) {
+                    heap.poll();
+                }
+            }
+        } finally {
+            closeSource();
+        }
+        List<Entry> entries = new ArrayList<Entry>( heap );
+        Collections.sort( entries, new EntryComparator( comparator ) );
+        List<Feature> features = new ArrayList<Feature>( entries.size() );
+        for ( Entry entry : entries ) {
+            features.add( entry.feature );
+        }
+        LOG.debug( "Kept {} of {} features for sorted output.", features.size(), seq );
+        return features.iterator();
+    }
+
+    private Iterator<Feature> sortExternal() {
+        List<Feature> buffer = new ArrayList<Feature>();
+        AppSchema schema = null;
+        Set<FeatureType> spillableTypes = new HashSet<FeatureType>();
+        boolean spill = true;
+        try {
+            for ( Feature f : source ) {
+                if ( spill && !spillableTypes.contains( f.getType() ) ) {
+                    AppSchema featureSchema = f.getType() == null ? null : f.getType().getSchema();
+                    if ( featureSchema == null || ( schema != null && schema != featureSchema ) ) {
+                        LOG.debug( "Features are not based on a single application schema, sorting in memory." );
+                        spill = false;
+                    } else if ( !isSelfContained( f.getType() ) ) {
+                        LOG.debug( "Features of type {} may reference other objects, sorting in memory.",
+                                   f.getType().getName() );
+                        spill = false;
+                    } else {
+                        spillableTypes.add( f.getType() );
+                    }
+                    schema = featureSchema;
+                }
+                buffer.add( f );
+                if ( spill && buffer.size() >= maxInMemory ) {
+                    Collections.sort( buffer, comparator );
+                    try {
+                        runs.add( new SpilledRun( buffer, schema ) );
+                        buffer.clear();
+                    } catch ( Exception e ) {
+                        LOG.warn( "Unable to spill sorted features to disk, sorting in memory: {}", e.getMessage() );
+                        LOG.trace( "Stack trace:", e );
+                        spill = false;
+                    }
+                }
+            }
+        } catch ( RuntimeException e ) {
+            close();
+            throw e;
+        } finally {
+            closeSource();
+        }
+        Collections.sort( buffer, comparator );
+        if ( runs.isEmpty() ) {
+            if ( maxFeatures > 0 && buffer.size() > maxFeatures ) {
+                return buffer.subList( 0, maxFeatures ).iterator();
+            }
+            return buffer.iterator();
+        }
+        LOG.debug( "Merging {} spilled runs and {} features from memory.", runs.size(), buffer.size() );
+        List<Iterator<Feature>> iters = new ArrayList<Iterator<Feature>>( runs.size() + 1 );
+        for ( SpilledRun run : runs ) {
+            iters.add( run.iterator() );
+        }
+        iters.add( buffer.iterator() );
+        return new MergeIterator( iters, comparator, maxFeatures );
+    }
+
+    /**
+     * Returns whether features of the given type can be written and read back on their own, i.e. whether the type
+     * declares no feature or object properties (apart from geometries).
+     */
+    private static boolean isSelfContained( FeatureType ft ) {
+        for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+            if ( pt instanceof ObjectPropertyType && !( pt instanceof GeometryPropertyType ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Entry {
+
+        final Feature feature;
+
+        final long seq;
+
+        final int run;
+
+        Entry( Feature feature, long seq, int run ) {
+            this.feature = feature;
+            this.seq = seq;
+            this.run = run;
+        }
+    }
+
+    /**
+     * Orders entries by feature, breaking ties by sequence number (so sorting is stable).
+     */
+    private static class EntryComparator implements Comparator<Entry> {
+
+        private final Comparator<Feature> comparator;
+
+        EntryComparator( Comparator<Feature> comparator ) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare( Entry e1, Entry e2 ) {
+            int order = comparator.compare( e1.feature, e2.feature );
+            if ( order == 0 ) {
+                order = e1.seq < e2.seq ? -1 : ( e1.seq == e2.seq ? 0 : 1 );
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Lazily merges sorted runs. Runs are in source order, so using the run index as sequence number keeps the merge
+     * stable.
+     */
+    private static class MergeIterator implements Iterator<Feature> {
+
+        private final List<Iterator<Feature>> iters;
+
+        private final PriorityQueue<Entry> heads;
+
+        private final int maxFeatures;
+
+        private int returned;
+
+        MergeIterator( List<Iterator<Feature>> iters, Comparator<Feature> comparator, int maxFeatures ) {
+            this.iters = iters;
+            this.maxFeatures = maxFeatures;
+            heads = new PriorityQueue<Entry>( iters.size(), new EntryComparator( comparator ) );
+            for ( int i = 0; i < iters.size(); i++ ) {
+                advance( i );
+            }
+        }
+
+        private void advance( int run ) {
+            Iterator<Feature> iter = iters.get( run );
+            if ( iter.hasNext() ) {
+                heads.add( new Entry( iter.next(), run, run ) );
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty() && ( maxFeatures <= 0 || returned < maxFeatures );
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            Entry head = heads.poll();
+            advance( head.run );
+            returned++;
+            return head.feature;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sorted chunk of features that has been written to a temporary file.
+     */
+    private static class SpilledRun {
+
+        private final File file;
+
+        private final AppSchema schema;
+
+        private final GMLVersion version;
+
+        private final int size;
+
+        private DataInputStream in;
+
+        SpilledRun( List<Feature> features, AppSchema schema )
+                                throws Exception {
+            this.schema = schema;
+            this.version = schema.getGMLSchema() != null ? schema.getGMLSchema().getVersion() : GML_32;
+            this.size = features.size();
+            file = File.createTempFile( "deegree-sort", ".gml.gz" );
+            DataOutputStream out = null;
+            try {
+                OutputStream os = new BufferedOutputStream( new FileOutputStream( file ) );
+                out = new DataOutputStream( new GZIPOutputStream( os ) );
+                Map<String, String> bindings = schema.getNamespaceBindings();
+                for ( Feature f : features ) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    XMLStreamWriter xmlWriter = xmlOutputFactory.createXMLStreamWriter( bos, "UTF-8" );
+                    GMLStreamWriter gmlWriter = GMLOutputFactory.createGMLStreamWriter( version, xmlWriter );
+                    if ( bindings != null ) {
+                        gmlWriter.setNamespaceBindings( new HashMap<String, String>( bindings ) );
+                    }
+                    gmlWriter.setExportExtraProps( true );
+                    gmlWriter.write( f );
+                    gmlWriter.close();
+                    byte[] bytes = bos.toByteArray();
+                    out.writeInt( bytes.length );
+                    out.write( bytes );
+                }
+                out.close();
+                out = null;
+            } catch ( Exception e ) {
+                closeQuietly( out );
+                file.delete();
+                throw e;
+            }
+            LOG.debug( "Spilled {} sorted features to '{}'.", size, file );
+        }
+
+        Iterator<Feature> iterator() {
+            try {
+                InputStream is = new BufferedInputStream( new FileInputStream( file ) );
+                in = new DataInputStream( new GZIPInputStream( is ) );
+            } catch ( IOException e ) {
+                throw new RuntimeException( "Unable to read sorted features from '" + file + "': " + e.getMessage(),
+                                            e );
+            }
+            return new Iterator<Feature>() {
+
+                private int read;
+
+                @Override
+                public boolean hasNext() {
+                    return read < size;
+                }
+
+                @Override
+                public Feature next() {
+                    if ( !hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    read++;
+                    return readFeature();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private Feature readFeature() {
+            try {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully( bytes );
+                XMLStreamReader xmlStream = xmlInputFactory.createXMLStreamReader( new ByteArrayInputStream( bytes ),
+                                                                                   "UTF-8" );
+                GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( version, xmlStream );
+                gmlReader.setApplicationSchema( schema );
+                return gmlReader.readFeature();
+            } catch ( Exception e ) {
+                throw new RuntimeException( "Unable to read sorted features from '" + file + "': " + e.getMessage(),
+                                            e );
+            }
+        }
+
+        void close() {
+            closeQuietly( in );
+            if ( !file.delete() ) {
+                LOG.debug( "Could not delete temporary file '{}'.", file );
+            }
+        }
+    }
+}
@@ -37,13 +37,16 @@ package org.deegree.feature.types;
 
 import static org.deegree.commons.tom.gml.GMLObjectCategory.FEATURE;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 
 import org.deegree.commons.tom.gml.GenericGMLObjectType;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.CompactFeature;
 import org.deegree.feature.Feature;
 import org.deegree.feature.GenericFeature;
 import org.deegree.feature.property.ExtraProps;
@@ -61,8 +64,73 @@ public class GenericFeatureType extends GenericGMLObjectType implements FeatureT
 
     private AppSchema schema;
 
+    // property name -> slot index, null if a property may occur more than once
+    private final Map<QName, Integer> propNameToSlot;
+
     public GenericFeatureType( QName name, List<PropertyType> propDecls, boolean isAbstract ) {
         super( FEATURE, name, propDecls, isAbstract );
+        propNameToSlot = buildSlots( propDecls );
+    }
+
+    private static Map<QName, Integer> buildSlots( List<PropertyType> propDecls ) {
+        Map<QName, Integer> slots = new HashMap<QName, Integer>( propDecls.size() * 2 );
+        for ( PropertyType pt : propDecls ) {
+            if ( pt.getMaxOccurs() != 1 || slots.containsKey( pt.getName() ) ) {
+                return null;
+            }
+            slots.put( pt.getName(), slots.size() );
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the number of fixed property slots of this feature type.
+     * 
+     * @return number of slots, or <code>-1</code> if the type has properties that may occur more than once (i.e. it
+     *         cannot be represented by a {@link CompactFeature})
+     */
+    public int getPropertySlotCount() {
+        return propNameToSlot == null ? -1 : propNameToSlot.size();
+    }
+
+    /**
+     * Returns the fixed slot of the specified property.
+     * 
+     * @param propName
+     *            name of the property, must not be <code>null</code>
+     * @return slot index, or <code>-1</code> if the property is not declared or the type has no fixed slots
+     */
+    public int getPropertySlot( QName propName ) {
+        if ( propNameToSlot == null ) {
+            return -1;
+        }
+        Integer slot = propNameToSlot.get( propName );
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Arranges the given properties by their slots.
+     * 
+     * @param props
+     *            properties, must not be <code>null</code>
+     * @return properties indexed by slot, or <code>null</code> if the properties cannot be represented that way
+     *         (undeclared or repeated property, or properties not in declaration order)
+     */
+    public Property[] toSlots( List<Property> props ) {
+        if ( propNameToSlot == null ) {
+            return null;
+        }
+        Property[] slots = new Property[propNameToSlot.size()];
+        int last = -1;
+        for ( Property prop : props ) {
+            int slot = getPropertySlot( prop.getName() );
+            if ( slot <= last ) {
+                return null;
+            }
+            slots[slot] = prop;
+            last = slot;
+        }
+        return slots;
     }
 
     @Override
@@ -77,6 +145,10 @@ public class GenericFeatureType extends GenericGMLObjectType implements FeatureT
 
     @Override
     public Feature newFeature( String fid, List<Property> props, ExtraProps extraProps ) {
+        Property[] slots = toSlots( props );
+        if ( slots != null ) {
+            return new CompactFeature( this, fid, slots, extraProps );
+        }
         return new GenericFeature( this, fid, props, extraProps );
     }
 
@@ -0,0 +1,303 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.commons.xml.XPathUtils;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.xpath.node.AttributeNode;
+import org.deegree.feature.xpath.node.ElementNode;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.PropertyNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.expression.ValueReference;
+import org.jaxen.Context;
+import org.jaxen.ContextSupport;
+import org.jaxen.JaxenException;
+import org.jaxen.SimpleFunctionContext;
+import org.jaxen.XPathFunctionContext;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.Step;
+import org.jaxen.saxpath.Axis;
+
+/**
+ * Evaluation-ready form of a {@link ValueReference}.
+ * <p>
+ * Holds the parsed Jaxen expression together with the namespace bindings it was compiled for, so it can be evaluated
+ * against any number of context objects without reparsing. Relative paths that consist of child steps only (optionally
+ * followed by an attribute step) and don't use predicates or wildcards are additionally evaluated by walking the
+ * object graph directly, without Jaxen.
+ * </p>
+ * 
+ * @see TypedObjectNodeXPathEvaluator
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CompiledValueReference {
+
+    private static final String WFS_200_NS = "http://www.opengis.net/wfs/2.0";
+
+    private static final SimpleFunctionContext FUNCTIONS = new XPathFunctionContext();
+
+    static {
+        FUNCTIONS.registerFunction( WFS_200_NS, "valueOf", new ValueOf() );
+        FUNCTIONS.registerFunction( null, "valueOf", new ValueOf() );
+    }
+
+    private static final GMLObjectNavigator NAVIGATOR = new GMLObjectNavigator( null );
+
+    private final String text;
+
+    private final Expr expr;
+
+    private final NamespaceBindings nsContext;
+
+    // prefix -> namespace (null if unbound), for the prefixes used in the expression (steps and predicates)
+    private final Map<String, String> usedBindings = new HashMap<String, String>();
+
+    // null, if the expression is not a simple path
+    private final QName[] steps;
+
+    private final boolean lastStepIsAttribute;
+
+    CompiledValueReference( ValueReference ref ) {
+        this.text = ref.getAsText();
+        this.expr = ref.getAsXPath();
+        this.nsContext = ref.getNsContext();
+        if ( expr != null ) {
+            for ( String prefix : XPathUtils.extractPrefixes( expr ) ) {
+                usedBindings.put( prefix, translate( nsContext, prefix ) );
+            }
+        }
+        List<NameStep> nameSteps = getSimplePathSteps( expr );
+        QName[] names = null;
+        if ( nameSteps != null ) {
+            names = new QName[nameSteps.size()];
+            for ( int i = 0; names != null && i < names.length; i++ ) {
+                names[i] = getName( nameSteps.get( i ) );
+                if ( names[i] == null ) {
+                    // unbound prefix, leave error reporting to Jaxen
+                    names = null;
+                }
+            }
+        }
+        steps = names;
+        lastStepIsAttribute = steps != null && nameSteps.get( steps.length - 1 ).getAxis() == Axis.ATTRIBUTE;
+    }
+
+    private static List<NameStep> getSimplePathSteps( Expr expr ) {
+        if ( !( expr instanceof LocationPath ) || ( (LocationPath) expr ).isAbsolute() ) {
+            return null;
+        }
+        List<?> pathSteps = ( (LocationPath) expr ).getSteps();
+        if ( pathSteps.isEmpty() ) {
+            return null;
+        }
+        List<NameStep> nameSteps = new ArrayList<NameStep>( pathSteps.size() );
+        for ( int i = 0; i < pathSteps.size(); i++ ) {
+            Step step = (Step) pathSteps.get( i );
+            if ( !( step instanceof NameStep ) || !step.getPredicates().isEmpty() ) {
+                return null;
+            }
+            NameStep nameStep = (NameStep) step;
+            if ( "*".equals( nameStep.getLocalName() ) ) {
+                return null;
+            }
+            boolean last = i == pathSteps.size() - 1;
+            if ( nameStep.getAxis() != Axis.CHILD && !( last && nameStep.getAxis() == Axis.ATTRIBUTE ) ) {
+                return null;
+            }
+            nameSteps.add( nameStep );
+        }
+        return nameSteps;
+    }
+
+    private QName getName( NameStep step ) {
+        String prefix = step.getPrefix();
+        if ( prefix == null || prefix.isEmpty() ) {
+            return new QName( step.getLocalName() );
+        }
+        String ns = usedBindings.get( prefix );
+        if ( ns == null ) {
+            return null;
+        }
+        return new QName( ns, step.getLocalName(), prefix );
+    }
+
+    private static String translate( NamespaceBindings nsContext, String prefix ) {
+        return nsContext == null ? null : nsContext.translateNamespacePrefixToUri( prefix );
+    }
+
+    /**
+     * Returns whether this compiled expression is a valid representation of the given {@link ValueReference}, i.e. if
+     * the expression text and the bindings for the used namespace prefixes are identical.
+     * 
+     * @param ref
+     *            value reference, must not be <code>null</code>
+     * @return <code>true</code>, if the compiled expression may be used to evaluate the value reference
+     */
+    boolean isCompiledFrom( ValueReference ref ) {
+        if ( !text.equals( ref.getAsText() ) ) {
+            return false;
+        }
+        NamespaceBindings refBindings = ref.getNsContext();
+        for ( Entry<String, String> binding : usedBindings.entrySet() ) {
+            String ns = translate( refBindings, binding.getKey() );
+            if ( ns == null ? binding.getValue() != null : !ns.equals( binding.getValue() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the expression on the given feature by navigating the object graph directly.
+     * 
+     * @param feature
+     *            context feature, must not be <code>null</code>
+     * @return the selected values, or <code>null</code> if the expression is not a simple path (evaluation must be
+     *         done using {@link #selectNodes(Object, GMLObject)})
+     */
+    TypedObjectNode[] evalDirect( Feature feature ) {
+        if ( steps == null ) {
+            return null;
+        }
+        List<XPathNode<?>> nodes = new ArrayList<XPathNode<?>>( 1 );
+        nodes.add( new GMLObjectNode<GMLObject, GMLObject>( null, feature ) );
+        for ( int i = 0; i < steps.length && !nodes.isEmpty(); i++ ) {
+            boolean attribute = lastStepIsAttribute && i == steps.length - 1;
+            nodes = attribute ? selectAttributes( nodes, steps[i] ) : selectChildren( nodes, steps[i] );
+        }
+        TypedObjectNode[] values = new TypedObjectNode[nodes.size()];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = nodes.get( i ).getValue();
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<XPathNode<?>> selectChildren( List<XPathNode<?>> nodes, QName name ) {
+        List<XPathNode<?>> selected = new ArrayList<XPathNode<?>>();
+        for ( XPathNode<?> node : nodes ) {
+            if ( node instanceof GMLObjectNode<?, ?> && node.getValue() instanceof Feature
+                 && !( node.getValue() instanceof FeatureCollection ) ) {
+                // avoid building nodes for all properties of the feature
+                GMLObjectNode<Feature, ?> featureNode = (GMLObjectNode<Feature, ?>) node;
+                for ( Property prop : featureNode.getValue().getProperties( name ) ) {
+                    selected.add( new PropertyNode( featureNode, prop ) );
+                }
+            } else {
+                Iterator<?> children = NAVIGATOR.getChildAxisIterator( node );
+                while ( children.hasNext() ) {
+                    Object child = children.next();
+                    if ( child instanceof ElementNode<?> ) {
+                        ElementNode<?> element = (ElementNode<?>) child;
+                        if ( matches( name, element.getNamespaceUri(), element.getLocalName() ) ) {
+                            selected.add( element );
+                        }
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static List<XPathNode<?>> selectAttributes( List<XPathNode<?>> nodes, QName name ) {
+        List<XPathNode<?>> selected = new ArrayList<XPathNode<?>>();
+        for ( XPathNode<?> node : nodes ) {
+            Iterator<AttributeNode<? extends TypedObjectNode>> attributes = NAVIGATOR.getAttributeAxisIterator( node );
+            while ( attributes.hasNext() ) {
+                AttributeNode<?> attribute = attributes.next();
+                if ( matches( name, attribute.getNamespaceUri(), attribute.getLocalName() ) ) {
+                    selected.add( attribute );
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static boolean matches( QName name, String ns, String localName ) {
+        if ( !name.getLocalPart().equals( localName ) ) {
+            return false;
+        }
+        return name.getNamespaceURI().equals( ns == null ? "" : ns );
+    }
+
+    /**
+     * Evaluates the expression using Jaxen.
+     * 
+     * @param contextNode
+     *            context node, must not be <code>null</code>
+     * @param root
+     *            root of the navigation hierarchy (needed for absolute paths), can be <code>null</code>
+     * @return selected nodes, never <code>null</code>
+     * @throws JaxenException
+     */
+    List<?> selectNodes( Object contextNode, GMLObject root )
+                            throws JaxenException {
+        if ( expr == null ) {
+            // not a valid expression, let Jaxen report the problem
+            return new GMLObjectXPath( text, root ).selectNodes( contextNode );
+        }
+        ContextSupport support = new ContextSupport( nsContext, FUNCTIONS, null, new GMLObjectNavigator( root ) );
+        Context context = new Context( support );
+        context.setNodeSet( Collections.singletonList( contextNode ) );
+        Object result = expr.evaluate( context );
+        if ( result instanceof List<?> ) {
+            return (List<?>) result;
+        }
+        return Collections.singletonList( result );
+    }
+}
@@ -37,6 +37,7 @@ package org.deegree.feature.xpath;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
@@ -54,12 +55,16 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.jaxen.JaxenException;
-import org.jaxen.XPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * {@link XPathEvaluator} implementation for {@link TypedObjectNode} graphs.
+ * <p>
+ * Compiled expressions are cached (per {@link ValueReference} and namespace bindings), so an expression is only parsed
+ * once, no matter how many objects it is evaluated on. Simple child paths (e.g.
+ * <code>app:address/app:Address/app:city</code>) on features are evaluated without Jaxen.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -70,6 +75,10 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
 
     private static Logger LOG = LoggerFactory.getLogger( TypedObjectNodeXPathEvaluator.class );
 
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+
+    private static final Map<ValueReference, CompiledValueReference> COMPILED = new ConcurrentHashMap<ValueReference, CompiledValueReference>();
+
     private Map<String, QName> bindings;
 
     public TypedObjectNodeXPathEvaluator() {
@@ -116,87 +125,71 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
             return props.toArray( propArray );
         }
 
-        TypedObjectNode[] resultValues = null;
+        CompiledValueReference compiled = getCompiled( propName );
+        if ( context instanceof Feature ) {
+            TypedObjectNode[] resultValues = compiled.evalDirect( (Feature) context );
+            if ( resultValues != null ) {
+                return resultValues;
+            }
+        }
+
         try {
             synchronized ( context ) {
-                XPath xpath = new GMLObjectXPath( propName.getAsText(), context );
-                xpath.setNamespaceContext( propName.getNsContext() );
-                List<?> selectedNodes;
-                selectedNodes = xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, context ) );
-                resultValues = new TypedObjectNode[selectedNodes.size()];
-                int i = 0;
-                for ( Object node : selectedNodes ) {
-                    if ( node instanceof XPathNode<?> ) {
-                        resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                    } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                        resultValues[i++] = new PrimitiveValue( node );
-                    } else {
-                        throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                    + node.getClass().getName() + "' (=" + node
-                                                    + ") during XPath-evaluation." );
-                    }
-                }
+                return toTypedObjectNodes( compiled.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null,
+                                                                                                         context ),
+                                                                 context ) );
             }
         } catch ( JaxenException e ) {
             e.printStackTrace();
             throw new FilterEvaluationException( e.getMessage() );
         }
-        return resultValues;
     }
 
     public TypedObjectNode[] eval( ElementNode element, ValueReference propName )
                             throws FilterEvaluationException {
-
-        TypedObjectNode[] resultValues = null;
         try {
-            XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
-            xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new XMLElementNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
+            return toTypedObjectNodes( getCompiled( propName ).selectNodes( new XMLElementNode( null, element ), null ) );
         } catch ( JaxenException e ) {
             throw new FilterEvaluationException( e.getMessage() );
         }
-        return resultValues;
     }
 
     public TypedObjectNode[] eval( Property element, ValueReference propName )
                             throws FilterEvaluationException {
-
-        TypedObjectNode[] resultValues = null;
         try {
-            XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
-            xpath.setNamespaceContext( propName.getNsContext() );
-            List<?> selectedNodes;
-            selectedNodes = xpath.selectNodes( new PropertyNode( null, element ) );
-            resultValues = new TypedObjectNode[selectedNodes.size()];
-            int i = 0;
-            for ( Object node : selectedNodes ) {
-                if ( node instanceof XPathNode<?> ) {
-                    resultValues[i++] = ( (XPathNode<?>) node ).getValue();
-                } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
-                    resultValues[i++] = new PrimitiveValue( node );
-                } else {
-                    throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
-                                                + node.getClass().getName() + "' (=" + node
-                                                + ") during XPath-evaluation." );
-                }
-            }
+            return toTypedObjectNodes( getCompiled( propName ).selectNodes( new PropertyNode( null, element ), null ) );
         } catch ( JaxenException e ) {
             throw new FilterEvaluationException( e.getMessage() );
         }
+    }
+
+    private static CompiledValueReference getCompiled( ValueReference propName ) {
+        CompiledValueReference compiled = COMPILED.get( propName );
+        if ( compiled == null || !compiled.isCompiledFrom( propName ) ) {
+            compiled = new CompiledValueReference( propName );
+            if ( COMPILED.size() >= MAX_CACHED_EXPRESSIONS ) {
+                LOG.debug( "Cache of compiled XPath expressions is full, clearing it." );
+                COMPILED.clear();
+            }
+            COMPILED.put( propName, compiled );
+        }
+        return compiled;
+    }
+
+    private static TypedObjectNode[] toTypedObjectNodes( List<?> selectedNodes ) {
+        TypedObjectNode[] resultValues = new TypedObjectNode[selectedNodes.size()];
+        int i = 0;
+        for ( Object node : selectedNodes ) {
+            if ( node instanceof XPathNode<?> ) {
+                resultValues[i++] = ( (XPathNode<?>) node ).getValue();
+            } else if ( node instanceof String || node instanceof Double || node instanceof Boolean ) {
+                resultValues[i++] = new PrimitiveValue( node );
+            } else {
+                throw new RuntimeException( "Internal error. Encountered unexpected value of type '"
+                                            + node.getClass().getName() + "' (=" + node
+                                            + ") during XPath-evaluation." );
+            }
+        }
         return resultValues;
     }
 
@@ -65,7 +65,7 @@ public class Disjoint extends SpatialOperator {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
-                return geom.isDisjoint( transformedLiteral );
+                return !literalIntersects( transformedLiteral, geom );
             }
         }
         return false;
@@ -35,8 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -47,8 +47,11 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.Operator;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +67,7 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    private final Map<String, Geometry> srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
 
     protected final Expression propName;
 
@@ -210,5 +213,65 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Determines whether the given geometry literal intersects the given parameter geometry.
+     * <p>
+     * The literal is evaluated in its prepared (indexed) form, if possible. As the literal (and its transformed
+     * versions) are kept for the lifetime of the operator, the index structures are built only once and reused for
+     * every object the operator is evaluated on.
+     * </p>
+     * 
+     * @param literal
+     *            geometry literal, compatible with the parameter geometry, must not be <code>null</code>
+     * @param param
+     *            parameter geometry, must not be <code>null</code>
+     * @return <code>true</code>, if the geometries intersect, <code>false</code> otherwise
+     */
+    protected boolean literalIntersects( Geometry literal, Geometry param ) {
+        AbstractDefaultGeometry preparable = getPreparableLiteral( literal );
+        com.vividsolutions.jts.geom.Geometry jtsParam = getJTSGeometry( param );
+        if ( preparable != null && jtsParam != null ) {
+            return preparable.getPreparedJTSGeometry().intersects( jtsParam );
+        }
+        return literal.intersects( param );
+    }
+
+    /**
+     * Determines whether the given geometry literal contains the given parameter geometry. Uses the prepared form of
+     * the literal, if possible (see {@link #literalIntersects(Geometry, Geometry)}).
+     * 
+     * @param literal
+     *            geometry literal, compatible with the parameter geometry, must not be <code>null</code>
+     * @param param
+     *            parameter geometry, must not be <code>null</code>
+     * @return <code>true</code>, if the literal contains the parameter geometry, <code>false</code> otherwise
+     */
+    protected boolean literalContains( Geometry literal, Geometry param ) {
+        AbstractDefaultGeometry preparable = getPreparableLiteral( literal );
+        com.vividsolutions.jts.geom.Geometry jtsParam = getJTSGeometry( param );
+        if ( preparable != null && jtsParam != null ) {
+            return preparable.getPreparedJTSGeometry().contains( jtsParam );
+        }
+        return param.isWithin( literal );
+    }
+
+    private static AbstractDefaultGeometry getPreparableLiteral( Geometry literal ) {
+        // envelopes have their own (cheaper) predicate implementations
+        if ( literal instanceof AbstractDefaultGeometry && !( literal instanceof Envelope ) ) {
+            return (AbstractDefaultGeometry) literal;
+        }
+        return null;
+    }
+
+    private static com.vividsolutions.jts.geom.Geometry getJTSGeometry( Geometry geom ) {
+        if ( geom instanceof GeometryReference<?> ) {
+            geom = ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        if ( geom instanceof AbstractDefaultGeometry ) {
+            return ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+        }
+        return null;
+    }
+
     public abstract Object[] getParams();
 }
@@ -64,7 +64,7 @@ public class Within extends SpatialOperator {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
-                return geom.isWithin( transformedLiteral );
+                return literalContains( transformedLiteral, geom );
             }
         }
         return false;
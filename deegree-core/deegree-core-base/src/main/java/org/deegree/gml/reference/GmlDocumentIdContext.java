@@ -38,10 +38,14 @@ package org.deegree.gml.reference;
 import static org.deegree.gml.GMLInputFactory.createGMLStreamReader;
 
 import java.net.URL;
+import static java.util.Collections.newSetFromMap;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.deegree.commons.tom.ReferenceResolvingException;
 import org.deegree.commons.tom.gml.GMLObject;
@@ -77,9 +81,11 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
 
     private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
 
-    private final List<GMLReference<?>> refs = new ArrayList<GMLReference<?>>();
+    // references don't override equals, so this is an insertion ordered identity set
+    private final Set<GMLReference<?>> refs = newSetFromMap( new LinkedHashMap<GMLReference<?>, Boolean>() );
 
-    private final List<GMLReference<?>> localRefs = new ArrayList<GMLReference<?>>();
+    // local references, by id of the referenced object
+    private final Map<String, List<GMLReference<?>>> idToLocalRefs = new LinkedHashMap<String, List<GMLReference<?>>>();
 
     private AppSchema schema;
 
@@ -125,6 +131,12 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
     public void addReference( GMLReference<?> ref ) {
         refs.add( ref );
         if ( ref.getURI().startsWith( "#" ) ) {
+            String id = ref.getURI().substring( 1 );
+            List<GMLReference<?>> localRefs = idToLocalRefs.get( id );
+            if ( localRefs == null ) {
+                localRefs = new ArrayList<GMLReference<?>>( 1 );
+                idToLocalRefs.put( id, localRefs );
+            }
             localRefs.add( ref );
         }
     }
@@ -155,7 +167,7 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
      * @return all gml references that have been added before, may be empty, but never <code>null</code>
      */
     public List<GMLReference<?>> getReferences() {
-        return refs;
+        return new ArrayList<GMLReference<?>>( refs );
     }
 
     @Override
@@ -202,8 +214,14 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
     public void resolveLocalRefs()
                             throws ReferenceResolvingException {
 
+        for ( Map.Entry<String, List<GMLReference<?>>> entry : idToLocalRefs.entrySet() ) {
+            resolve( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    private void resolve( String id, List<GMLReference<?>> localRefs )
+                            throws ReferenceResolvingException {
         for ( GMLReference<?> ref : localRefs ) {
-            String id = ref.getURI().substring( 1 );
             LOG.debug( "Resolving reference to object '" + id + "'" );
             if ( ref.getReferencedObject() == null ) {
                 String msg = "Cannot resolve reference to object with id '" + id
@@ -212,4 +230,28 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
             }
         }
     }
+
+    /**
+     * Resolves the local references to the objects with the given ids and removes these objects and references from
+     * the context, so they can be garbage collected once the caller is done with them. Used for processing large
+     * documents in chunks.
+     * 
+     * @param ids
+     *            ids of the objects to be released, must not be <code>null</code>
+     * @throws ReferenceResolvingException
+     *             if a reference to one of the objects cannot be resolved
+     */
+    public void releaseObjects( Set<String> ids )
+                            throws ReferenceResolvingException {
+        for ( String id : ids ) {
+            List<GMLReference<?>> localRefs = idToLocalRefs.remove( id );
+            if ( localRefs != null ) {
+                resolve( id, localRefs );
+                for ( GMLReference<?> ref : localRefs ) {
+                    refs.remove( ref );
+                }
+            }
+        }
+        idToObject.keySet().removeAll( ids );
+    }
 }
@@ -0,0 +1,189 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature;
+
+import static java.lang.System.currentTimeMillis;
+import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POINT;
+import static org.deegree.feature.types.property.ValueRepresentation.INLINE;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * Compares memory footprint and property evaluation throughput of {@link CompactFeature} and {@link GenericFeature}
+ * for 200.000 features of a simple feature type with ten properties.
+ * <p>
+ * Only executed if the system property <code>deegree.performance-tests</code> is set to <code>true</code>.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class CompactFeaturePerformanceTest {
+
+    private static final Logger LOG = getLogger( CompactFeaturePerformanceTest.class );
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final int NUM_FEATURES = 200000;
+
+    private static final int NUM_SIMPLE_PROPS = 9;
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private GenericFeatureType ft;
+
+    private List<PropertyType> pts;
+
+    private ValueReference[] paths;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue( Boolean.getBoolean( "deegree.performance-tests" ) );
+
+        pts = new ArrayList<PropertyType>();
+        paths = new ValueReference[NUM_SIMPLE_PROPS];
+        for ( int i = 0; i < NUM_SIMPLE_PROPS; i++ ) {
+            QName name = new QName( APP_NS, "prop" + i );
+            pts.add( new SimplePropertyType( name, 0, 1, i % 2 == 0 ? STRING : DOUBLE, null, null ) );
+            paths[i] = new ValueReference( name );
+        }
+        pts.add( new GeometryPropertyType( new QName( APP_NS, "position" ), 1, 1, null, null, POINT, DIM_2, INLINE ) );
+        ft = new GenericFeatureType( new QName( APP_NS, "Simple" ), pts, false );
+    }
+
+    @Test
+    public void testFootprintAndEvaluation()
+                            throws Exception {
+        // warm up both code paths
+        evaluate( createFeatures( false ) );
+        evaluate( createFeatures( true ) );
+
+        long genericBytes = measureFootprint( false );
+        long compactBytes = measureFootprint( true );
+        LOG.info( "Heap used by {} GenericFeatures: {} bytes", NUM_FEATURES, genericBytes );
+        LOG.info( "Heap used by {} CompactFeatures: {} bytes", NUM_FEATURES, compactBytes );
+
+        for ( boolean compact : new boolean[] { false, true } ) {
+            List<Feature> features = createFeatures( compact );
+            long time = currentTimeMillis();
+            int count = 0;
+            for ( int run = 0; run < 10; run++ ) {
+                count += evaluate( features );
+            }
+            time = currentTimeMillis() - time;
+            assertEquals( 10 * NUM_FEATURES * NUM_SIMPLE_PROPS, count );
+            String type = compact ? "CompactFeatures" : "GenericFeatures";
+            LOG.info( "Evaluating {} property names on {}: {} ms", new Object[] { count, type, time } );
+        }
+    }
+
+    private long measureFootprint( boolean compact ) {
+        long before = usedMemory();
+        List<Feature> features = createFeatures( compact );
+        long after = usedMemory();
+        assertEquals( NUM_FEATURES, features.size() );
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for ( int i = 0; i < 3; i++ ) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private List<Feature> createFeatures( boolean compact ) {
+        List<Feature> features = new ArrayList<Feature>( NUM_FEATURES );
+        for ( int i = 0; i < NUM_FEATURES; i++ ) {
+            List<Property> props = new ArrayList<Property>( pts.size() );
+            for ( int j = 0; j < NUM_SIMPLE_PROPS; j++ ) {
+                SimplePropertyType pt = (SimplePropertyType) pts.get( j );
+                Object value = j % 2 == 0 ? "value " + ( i % 100 ) : Double.valueOf( i * j );
+                props.add( new SimpleProperty( pt, new PrimitiveValue( value ) ) );
+            }
+            props.add( new GenericProperty( pts.get( NUM_SIMPLE_PROPS ),
+                                            geomFac.createPoint( null, i % 1000, i / 1000, null ) ) );
+            String fid = "SIMPLE_" + i;
+            features.add( compact ? ft.newFeature( fid, props, null ) : new GenericFeature( ft, fid, props, null ) );
+        }
+        return features;
+    }
+
+    private int evaluate( List<Feature> features )
+                            throws Exception {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        int count = 0;
+        for ( Feature f : features ) {
+            for ( ValueReference path : paths ) {
+                TypedObjectNode[] values = evaluator.eval( f, path );
+                count += values.length;
+            }
+        }
+        return count;
+    }
+}
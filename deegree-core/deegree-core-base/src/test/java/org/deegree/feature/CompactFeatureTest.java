@@ -0,0 +1,241 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POINT;
+import static org.deegree.feature.types.property.ValueRepresentation.INLINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactFeature} and the slot table of {@link GenericFeatureType}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class CompactFeatureTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private final QName name = new QName( APP_NS, "name" );
+
+    private final QName population = new QName( APP_NS, "population" );
+
+    private final QName position = new QName( APP_NS, "position" );
+
+    private SimplePropertyType namePt;
+
+    private SimplePropertyType populationPt;
+
+    private GeometryPropertyType positionPt;
+
+    private GenericFeatureType ft;
+
+    @Before
+    public void setUp() {
+        namePt = new SimplePropertyType( name, 1, 1, STRING, null, null );
+        populationPt = new SimplePropertyType( population, 0, 1, INTEGER, null, null );
+        positionPt = new GeometryPropertyType( position, 1, 1, null, null, POINT, DIM_2, INLINE );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( namePt );
+        pts.add( populationPt );
+        pts.add( positionPt );
+        ft = new GenericFeatureType( new QName( APP_NS, "City" ), pts, false );
+    }
+
+    private Feature[] createCompactAndGenericFeature() {
+        Feature compact = ft.newFeature( "CITY_1", createProperties(), null );
+        assertTrue( compact instanceof CompactFeature );
+        return new Feature[] { compact, new GenericFeature( ft, "CITY_1", createProperties(), null ) };
+    }
+
+    private List<Property> createProperties() {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( namePt, "Bonn" ) );
+        props.add( new GenericProperty( positionPt, new GeometryFactory().createPoint( null, 7.1, 50.7, null ) ) );
+        return props;
+    }
+
+    @Test
+    public void testNewFeatureIsCompact() {
+        List<Property> props = createProperties();
+        Feature f = ft.newFeature( "CITY_1", props, null );
+        assertTrue( f instanceof CompactFeature );
+        assertEquals( props, f.getProperties() );
+        assertSame( props.get( 0 ), f.getProperties( name ).get( 0 ) );
+        assertEquals( 0, f.getProperties( population ).size() );
+        assertEquals( 0, f.getProperties( new QName( APP_NS, "undeclared" ) ).size() );
+        assertEquals( 1, f.getGeometryProperties().size() );
+        assertSame( props.get( 1 ), f.getGeometryProperties().get( 0 ) );
+    }
+
+    @Test
+    public void testNewFeatureFallsBackToGeneric() {
+        List<Property> props = createProperties();
+        props.add( new SimpleProperty( new SimplePropertyType( new QName( APP_NS, "undeclared" ), 0, 1, STRING, null,
+                                                               null ), "Bonn" ) );
+        assertTrue( ft.newFeature( "CITY_1", props, null ) instanceof GenericFeature );
+
+        props = createProperties();
+        props.add( new SimpleProperty( namePt, "Bad Godesberg" ) );
+        assertTrue( ft.newFeature( "CITY_1", props, null ) instanceof GenericFeature );
+    }
+
+    @Test
+    public void testNewFeatureOutOfOrderKeepsOrder() {
+        List<Property> props = createProperties();
+        props.add( props.remove( 0 ) );
+        Feature f = ft.newFeature( "CITY_1", props, null );
+        assertTrue( f instanceof GenericFeature );
+        assertEquals( props, f.getProperties() );
+    }
+
+    @Test
+    public void testSetPropertyValue() {
+        for ( Feature f : createCompactAndGenericFeature() ) {
+            f.setPropertyValue( name, 0, new PrimitiveValue( "Beuel" ) );
+            assertEquals( 2, f.getProperties().size() );
+            assertEquals( name, f.getProperties().get( 0 ).getName() );
+            assertEquals( "Beuel", f.getProperties( name ).get( 0 ).getValue().toString() );
+        }
+    }
+
+    @Test
+    public void testSetPropertyValueOfAbsentProperty() {
+        for ( Feature f : createCompactAndGenericFeature() ) {
+            f.setPropertyValue( population, 0, new PrimitiveValue( "300000" ) );
+            assertEquals( 2, f.getProperties().size() );
+            assertEquals( 0, f.getProperties( population ).size() );
+        }
+    }
+
+    @Test
+    public void testSetPropertyValueOfUndeclaredProperty() {
+        for ( Feature f : createCompactAndGenericFeature() ) {
+            f.setPropertyValue( new QName( APP_NS, "undeclared" ), 0, new PrimitiveValue( "Bonn" ) );
+            assertEquals( createProperties().size(), f.getProperties().size() );
+        }
+    }
+
+    @Test
+    public void testSetPropertyValueOfSecondOccurrence() {
+        for ( Feature f : createCompactAndGenericFeature() ) {
+            f.setPropertyValue( name, 1, new PrimitiveValue( "Bad Godesberg" ) );
+            assertEquals( 1, f.getProperties( name ).size() );
+            assertEquals( "Bonn", f.getProperties( name ).get( 0 ).getValue().toString() );
+        }
+    }
+
+    @Test
+    public void testRemovePropertyValue() {
+        List<Property> props = createProperties();
+        props.add( 1, new SimpleProperty( populationPt, "300000" ) );
+        Feature compact = ft.newFeature( "CITY_1", props, null );
+        assertTrue( compact instanceof CompactFeature );
+        for ( Feature f : new Feature[] { compact, new GenericFeature( ft, "CITY_1", props, null ) } ) {
+            f.setPropertyValue( population, 0, null );
+            assertEquals( 2, f.getProperties().size() );
+            assertEquals( 0, f.getProperties( population ).size() );
+        }
+    }
+
+    @Test
+    public void testRemoveMandatoryProperty() {
+        for ( Feature f : createCompactAndGenericFeature() ) {
+            try {
+                f.setPropertyValue( name, 0, null );
+                fail( "Removing a mandatory property must fail for " + f.getClass().getSimpleName() );
+            } catch ( IllegalArgumentException e ) {
+                assertEquals( 1, f.getProperties( name ).size() );
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetPropertiesOutOfOrder() {
+        Feature f = ft.newFeature( "CITY_1", createProperties(), null );
+        List<Property> props = createProperties();
+        props.add( props.remove( 0 ) );
+        f.setProperties( props );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetPropertiesRepeated() {
+        Feature f = ft.newFeature( "CITY_1", createProperties(), null );
+        List<Property> props = createProperties();
+        props.add( new SimpleProperty( namePt, "Bad Godesberg" ) );
+        f.setProperties( props );
+    }
+
+    @Test
+    public void testRepeatableTypeHasNoSlots() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( name, 0, -1, STRING, null, null ) );
+        GenericFeatureType repeatable = new GenericFeatureType( new QName( APP_NS, "Repeatable" ), pts, false );
+        assertEquals( -1, repeatable.getPropertySlotCount() );
+        assertEquals( -1, repeatable.getPropertySlot( name ) );
+        assertEquals( 3, ft.getPropertySlotCount() );
+        assertEquals( 2, ft.getPropertySlot( position ) );
+    }
+}
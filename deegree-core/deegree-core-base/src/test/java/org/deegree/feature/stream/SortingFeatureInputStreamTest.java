@@ -0,0 +1,273 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2014 by:
+ 
+ IDgis bv 
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+ 
+ IDgis bv
+ Boomkamp 16
+ 7461 AX Rijssen
+ The Netherlands
+ http://idgis.nl/
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.schema.GMLAppSchemaReader;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SortingFeatureInputStream}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class SortingFeatureInputStreamTest {
+
+    // features are named <key>-<suffix>, only the key is compared
+    private static final Comparator<Feature> BY_KEY = new Comparator<Feature>() {
+        @Override
+        public int compare( Feature f1, Feature f2 ) {
+            return f1.getId().charAt( 0 ) - f2.getId().charAt( 0 );
+        }
+    };
+
+    private static final String[] IDS = { "5-a", "3-a", "9-a", "1-a", "3-b", "7-a", "1-b" };
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final QName NAME = new QName( APP_NS, "name" );
+
+    private static final Comparator<Feature> BY_NAME = new Comparator<Feature>() {
+        @Override
+        public int compare( Feature f1, Feature f2 ) {
+            return getName( f1 ).compareTo( getName( f2 ) );
+        }
+    };
+
+    private static AppSchema schema;
+
+    private static FeatureCollection philosophers;
+
+    @BeforeClass
+    public static void readPhilosophers()
+                            throws Exception {
+        URL schemaURL = SortingFeatureInputStreamTest.class.getResource( "../../gml/misc/schema/Philosopher.xsd" );
+        schema = new GMLAppSchemaReader( GML_31, null, schemaURL.toString() ).extractAppSchema();
+        URL docURL = SortingFeatureInputStreamTest.class.getResource( "../../gml/misc/feature/"
+                                                                      + "Philosopher_FeatureCollection.xml" );
+        GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( GML_31, docURL );
+        gmlReader.setApplicationSchema( schema );
+        philosophers = (FeatureCollection) gmlReader.readFeature();
+        gmlReader.getIdContext().resolveLocalRefs();
+    }
+
+    @Test
+    public void testTopK() {
+        FeatureInputStream source = createSource( IDS );
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( source, BY_KEY, 4, 100 );
+        assertEquals( Arrays.asList( "1-a", "1-b", "3-a", "3-b" ), getIds( sorted ) );
+        verify( source, times( 1 ) ).close();
+    }
+
+    @Test
+    public void testTopKMoreThanAvailable() {
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( createSource( IDS ), BY_KEY, 20, 100 );
+        assertEquals( Arrays.asList( "1-a", "1-b", "3-a", "3-b", "5-a", "7-a", "9-a" ), getIds( sorted ) );
+    }
+
+    @Test
+    public void testUnlimited() {
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( createSource( IDS ), BY_KEY, -1, 100 );
+        assertEquals( Arrays.asList( "1-a", "1-b", "3-a", "3-b", "5-a", "7-a", "9-a" ), getIds( sorted ) );
+    }
+
+    @Test
+    public void testLimitAboveMaxInMemory() {
+        // features without application schema cannot be spilled, so they are sorted in memory
+        FeatureInputStream source = createSource( IDS );
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( source, BY_KEY, 5, 2 );
+        assertEquals( Arrays.asList( "1-a", "1-b", "3-a", "3-b", "5-a" ), getIds( sorted ) );
+        verify( source, times( 1 ) ).close();
+    }
+
+    @Test
+    public void testCount() {
+        FeatureInputStream source = createSource( IDS );
+        assertEquals( 3, new SortingFeatureInputStream( source, BY_KEY, 3, 100 ).count() );
+        verify( source, times( 1 ) ).close();
+    }
+
+    @Test
+    public void testSpilledRuns() {
+        // 22 countries named A to D (in source order B, C, D, A, B, ...), spilled in runs of three
+        FeatureType ft = schema.getFeatureType( new QName( APP_NS, "Country" ) );
+        List<Feature> countries = new ArrayList<Feature>();
+        for ( int i = 0; i < 22; i++ ) {
+            List<Property> props = new ArrayList<Property>();
+            String name = String.valueOf( (char) ( 'A' + ( i + 1 ) % 4 ) );
+            props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( NAME ), name ) );
+            props.add( new GenericProperty( ft.getPropertyDeclaration( new QName( APP_NS, "geom" ) ),
+                                            new GeometryFactory().createPoint( null, i, i, null ) ) );
+            countries.add( ft.newFeature( "COUNTRY_" + i, props, null ) );
+        }
+        int tempFiles = countTempFiles();
+
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( createSource( countries ), BY_NAME, 15, 3 );
+        List<Feature> features = new ArrayList<Feature>();
+        for ( Feature f : sorted ) {
+            if ( features.isEmpty() ) {
+                assertEquals( tempFiles + 7, countTempFiles() );
+            }
+            features.add( f );
+        }
+        sorted.close();
+
+        assertEquals( tempFiles, countTempFiles() );
+        assertEquals( 15, features.size() );
+        for ( int i = 0; i < features.size(); i++ ) {
+            Feature f = features.get( i );
+            assertEquals( ft, f.getType() );
+            assertNotNull( f.getProperties( new QName( APP_NS, "geom" ) ).get( 0 ).getValue() );
+            if ( i > 0 ) {
+                Feature previous = features.get( i - 1 );
+                int order = getName( previous ).compareTo( getName( f ) );
+                assertTrue( order <= 0 );
+                if ( order == 0 ) {
+                    // stable: equal features are returned in source order
+                    assertTrue( getIndex( previous ) < getIndex( f ) );
+                }
+            }
+        }
+        // 5 countries are named A and 6 are named B, so the last one is the fourth C
+        assertEquals( "C", getName( features.get( 14 ) ) );
+        assertEquals( 13, getIndex( features.get( 14 ) ) );
+    }
+
+    @Test
+    public void testReferencingFeaturesAreNotSpilled() {
+        // philosophers reference other features, spilling them would lose the references
+        List<Feature> source = new ArrayList<Feature>( philosophers );
+        int tempFiles = countTempFiles();
+
+        SortingFeatureInputStream sorted = new SortingFeatureInputStream( createSource( source ), BY_NAME, -1, 2 );
+        List<Feature> features = new ArrayList<Feature>();
+        for ( Feature f : sorted ) {
+            assertEquals( tempFiles, countTempFiles() );
+            features.add( f );
+        }
+        sorted.close();
+
+        List<Feature> expected = new ArrayList<Feature>( source );
+        Collections.sort( expected, BY_NAME );
+        assertEquals( expected.size(), features.size() );
+        for ( int i = 0; i < features.size(); i++ ) {
+            assertSame( expected.get( i ), features.get( i ) );
+        }
+    }
+
+    private static String getName( Feature f ) {
+        return f.getProperties( NAME ).get( 0 ).getValue().toString();
+    }
+
+    private static int getIndex( Feature f ) {
+        return Integer.parseInt( f.getId().substring( "COUNTRY_".length() ) );
+    }
+
+    private static int countTempFiles() {
+        File dir = new File( System.getProperty( "java.io.tmpdir" ) );
+        String[] names = dir.list( new FilenameFilter() {
+            @Override
+            public boolean accept( File dir, String name ) {
+                return name.startsWith( "deegree-sort" );
+            }
+        } );
+        return names == null ? 0 : names.length;
+    }
+
+    private static FeatureInputStream createSource( List<Feature> features ) {
+        return new MemoryFeatureInputStream( new GenericFeatureCollection( null, features ) );
+    }
+
+    private static FeatureInputStream createSource( String... ids ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( String id : ids ) {
+            Feature feature = mock( Feature.class );
+            when( feature.getId() ).thenReturn( id );
+            features.add( feature );
+        }
+        FeatureInputStream source = mock( FeatureInputStream.class );
+        when( source.iterator() ).thenReturn( features.iterator() );
+        return source;
+    }
+
+    private static List<String> getIds( FeatureInputStream fis ) {
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : fis ) {
+            ids.add( f.getId() );
+        }
+        fis.close();
+        return ids;
+    }
+}
@@ -0,0 +1,247 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POINT;
+import static org.deegree.feature.types.property.ValueRepresentation.INLINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.PropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.GeometryFactory;
+import org.jaxen.XPath;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link TypedObjectNodeXPathEvaluator} (compiled expressions and direct navigation of simple paths)
+ * selects the same values as evaluating the expression with Jaxen.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class TypedObjectNodeXPathEvaluatorTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final String GML_NS = "http://www.opengis.net/gml";
+
+    private Feature person;
+
+    private NamespaceBindings nsContext;
+
+    @Before
+    public void setUp() {
+        QName cityName = new QName( APP_NS, "city", "app" );
+        QName nameName = new QName( APP_NS, "name", "app" );
+        QName positionName = new QName( APP_NS, "position", "app" );
+        QName addressName = new QName( APP_NS, "address", "app" );
+        SimplePropertyType cityPt = new SimplePropertyType( cityName, 1, 1, STRING, null, null );
+        SimplePropertyType namePt = new SimplePropertyType( nameName, 0, -1, STRING, null, null );
+        GeometryPropertyType positionPt = new GeometryPropertyType( positionName, 1, 1, null, null, POINT, DIM_2,
+                                                                    INLINE );
+        FeatureType addressFt = new GenericFeatureType( new QName( APP_NS, "Address", "app" ),
+                                                        Collections.<PropertyType> singletonList( positionPt ), false );
+        FeaturePropertyType addressPt = new FeaturePropertyType( addressName, 1, 1, null, null, addressFt.getName(),
+                                                                 INLINE );
+        List<PropertyType> personPts = new ArrayList<PropertyType>();
+        personPts.add( namePt );
+        personPts.add( cityPt );
+        personPts.add( addressPt );
+        FeatureType personFt = new GenericFeatureType( new QName( APP_NS, "Person", "app" ), personPts, false );
+
+        GeometryFactory geomFac = new GeometryFactory();
+        Property position = new GenericProperty( positionPt, geomFac.createPoint( null, 1, 2, null ) );
+        List<Property> addressProps = Collections.singletonList( position );
+        Feature address = new GenericFeature( addressFt, "ADDRESS_1", addressProps, null );
+        List<Property> personProps = new ArrayList<Property>();
+        personProps.add( new SimpleProperty( namePt, "Jean" ) );
+        personProps.add( new SimpleProperty( namePt, "Jacques" ) );
+        personProps.add( new SimpleProperty( cityPt, "Geneva" ) );
+        personProps.add( new GenericProperty( addressPt, address ) );
+        person = new GenericFeature( personFt, "PERSON_1", personProps, null );
+
+        nsContext = new NamespaceBindings();
+        nsContext.addNamespace( "app", APP_NS );
+        nsContext.addNamespace( "gml", GML_NS );
+    }
+
+    @Test
+    public void testSimplePaths()
+                            throws Exception {
+        assertSameAsJaxen( "app:city", 1 );
+        assertSameAsJaxen( "app:name", 2 );
+        assertSameAsJaxen( "app:address", 1 );
+        assertSameAsJaxen( "app:address/app:Address", 1 );
+        assertSameAsJaxen( "app:address/app:Address/app:position", 1 );
+        assertSameAsJaxen( "app:address/app:Address/@gml:id", 1 );
+        assertSameAsJaxen( "app:missing", 0 );
+        assertSameAsJaxen( "app:address/app:missing/app:position", 0 );
+    }
+
+    @Test
+    public void testComplexPaths()
+                            throws Exception {
+        assertSameAsJaxen( "app:name[2]", 1 );
+        assertSameAsJaxen( "app:address/*/app:position", 1 );
+        assertSameAsJaxen( "*", 4 );
+    }
+
+    @Test
+    public void testRepeatedEvaluation()
+                            throws Exception {
+        ValueReference ref = new ValueReference( "app:address/app:Address/app:position", nsContext );
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        TypedObjectNode[] first = evaluator.eval( person, ref );
+        TypedObjectNode[] second = evaluator.eval( person, ref );
+        assertEquals( 1, second.length );
+        assertSame( first[0], second[0] );
+    }
+
+    @Test
+    public void testSameTextOtherBindings()
+                            throws Exception {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        NamespaceBindings other = new NamespaceBindings();
+        other.addNamespace( "app", "http://www.example.org/other" );
+        String path = "app:address/app:Address";
+        assertEquals( 1, evaluator.eval( person, new ValueReference( path, nsContext ) ).length );
+        assertEquals( 0, evaluator.eval( person, new ValueReference( path, other ) ).length );
+        assertEquals( 1, evaluator.eval( person, new ValueReference( path, nsContext ) ).length );
+    }
+
+    @Test
+    public void testUnboundThenBoundPrefix()
+                            throws Exception {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        String path = "app:address/app:Address[app:position]";
+        try {
+            evaluator.eval( person, new ValueReference( path, new NamespaceBindings() ) );
+            fail( "Expected FilterEvaluationException for unbound prefix." );
+        } catch ( FilterEvaluationException e ) {
+            // expected
+        }
+        assertEquals( 1, evaluator.eval( person, new ValueReference( path, nsContext ) ).length );
+    }
+
+    @Test
+    public void testPrefixOnlyUsedInPredicate()
+                            throws Exception {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        NamespaceBindings pos = new NamespaceBindings();
+        pos.addNamespace( "app", APP_NS );
+        pos.addNamespace( "pos", APP_NS );
+        NamespaceBindings otherPos = new NamespaceBindings();
+        otherPos.addNamespace( "app", APP_NS );
+        otherPos.addNamespace( "pos", "http://www.example.org/other" );
+        String path = "app:address/*[pos:position]";
+        assertEquals( 1, evaluator.eval( person, new ValueReference( path, pos ) ).length );
+        assertEquals( 0, evaluator.eval( person, new ValueReference( path, otherPos ) ).length );
+        assertEquals( 1, evaluator.eval( person, new ValueReference( path, pos ) ).length );
+    }
+
+    @Test
+    public void testCompiledFromIgnoresUnusedBindings() {
+        String path = "app:address/app:Address";
+        CompiledValueReference compiled = new CompiledValueReference( new ValueReference( path, nsContext ) );
+
+        ValueReference extra = new ValueReference( path, nsContext );
+        extra.getNsContext().addNamespace( "other", "http://www.example.org/other" );
+        assertTrue( compiled.isCompiledFrom( extra ) );
+
+        assertFalse( compiled.isCompiledFrom( new ValueReference( path, new NamespaceBindings() ) ) );
+        CompiledValueReference unbound = new CompiledValueReference( new ValueReference( path,
+                                                                                         new NamespaceBindings() ) );
+        assertFalse( unbound.isCompiledFrom( new ValueReference( path, nsContext ) ) );
+        assertTrue( unbound.isCompiledFrom( new ValueReference( path, new NamespaceBindings() ) ) );
+    }
+
+    private void assertSameAsJaxen( String path, int expectedLength )
+                            throws Exception {
+        ValueReference ref = new ValueReference( path, nsContext );
+        TypedObjectNode[] actual = new TypedObjectNodeXPathEvaluator().eval( person, ref );
+
+        XPath xpath = new GMLObjectXPath( path, person );
+        xpath.setNamespaceContext( nsContext );
+        List<?> expected = xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, person ) );
+
+        assertEquals( path, expectedLength, actual.length );
+        assertEquals( path, expected.size(), actual.length );
+        for ( int i = 0; i < actual.length; i++ ) {
+            TypedObjectNode value = ( (XPathNode<?>) expected.get( i ) ).getValue();
+            if ( value instanceof Property || value instanceof Feature ) {
+                assertSame( path, value, actual[i] );
+            } else {
+                assertEquals( path, value.toString(), actual[i].toString() );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTReader;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the evaluation of {@link SpatialOperator}s that use prepared geometry literals.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author: schneider $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class SpatialOperatorEvaluationTest {
+
+    private static final XPathEvaluator<Geometry> GEOMETRY_EVALUATOR = new XPathEvaluator<Geometry>() {
+        @Override
+        public TypedObjectNode[] eval( Geometry context, ValueReference valueRef ) {
+            return new TypedObjectNode[] { context };
+        }
+
+        @Override
+        public String getId( Geometry context ) {
+            return context.getId();
+        }
+    };
+
+    private final ValueReference propName = new ValueReference( new QName( "geom" ) );
+
+    private Geometry literal;
+
+    private Geometry inside;
+
+    private Geometry crossing;
+
+    private Geometry outside;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        WKTReader reader = new WKTReader( null );
+        // u-shaped polygon, so envelope checks alone are not sufficient
+        literal = reader.read( "POLYGON((0 0,10 0,10 10,7 10,7 3,3 3,3 10,0 10,0 0))" );
+        inside = reader.read( "POINT(1 5)" );
+        crossing = reader.read( "LINESTRING(1 5,5 5)" );
+        outside = reader.read( "POINT(5 5)" );
+    }
+
+    @Test
+    public void testIntersects()
+                            throws FilterEvaluationException {
+        Intersects op = new Intersects( propName, literal );
+        assertTrue( op.evaluate( inside, GEOMETRY_EVALUATOR ) );
+        assertTrue( op.evaluate( crossing, GEOMETRY_EVALUATOR ) );
+        assertFalse( op.evaluate( outside, GEOMETRY_EVALUATOR ) );
+        // evaluate again, now using the already prepared literal
+        assertTrue( op.evaluate( inside, GEOMETRY_EVALUATOR ) );
+        assertFalse( op.evaluate( outside, GEOMETRY_EVALUATOR ) );
+    }
+
+    @Test
+    public void testWithin()
+                            throws FilterEvaluationException {
+        Within op = new Within( propName, literal );
+        assertTrue( op.evaluate( inside, GEOMETRY_EVALUATOR ) );
+        assertFalse( op.evaluate( crossing, GEOMETRY_EVALUATOR ) );
+        assertFalse( op.evaluate( outside, GEOMETRY_EVALUATOR ) );
+    }
+
+    @Test
+    public void testDisjoint()
+                            throws FilterEvaluationException {
+        Disjoint op = new Disjoint( propName, literal );
+        assertFalse( op.evaluate( inside, GEOMETRY_EVALUATOR ) );
+        assertFalse( op.evaluate( crossing, GEOMETRY_EVALUATOR ) );
+        assertTrue( op.evaluate( outside, GEOMETRY_EVALUATOR ) );
+    }
+
+}
@@ -0,0 +1,596 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.utils.Pair;
+import org.slf4j.Logger;
+
+/**
+ * <code>PackedRTree</code> is a static, bulk loaded r-tree which keeps all of its nodes in flat primitive buffers.
+ * 
+ * <p>
+ * Items are sorted along a hilbert curve by the center of their envelopes and packed into leaves of
+ * <code>nodeSize</code> entries, the parent levels are built bottom up in the same way. Every node (leaf entries
+ * included) consists of four floats (minx, miny, maxx, maxy) and a single int, which is the payload for leaf entries
+ * and the position of the first child for inner nodes. There are no objects per entry, so a tree needs roughly 20 bytes
+ * per item.
+ * </p>
+ * <p>
+ * The tree can be written to a file using {@link #write(File)} and {@link #map(File)} will memory map such a file and
+ * query it directly, without reading or deserializing anything. Such trees only return int payloads, so they are
+ * typically used for record positions or numbers.
+ * </p>
+ * <p>
+ * Items without envelope (<code>null</code> in {@link #insertBulk(List)} or NaN coordinates in
+ * {@link #create(float[], int[], int)}) are matched by every query, like in the other index implementations.
+ * </p>
+ * <p>
+ * The tree does not support inserting or removing single items, use {@link #insertBulk(List)} to rebuild it instead.
+ * Querying is thread safe.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ * @param <T>
+ *            the type of objects the tree will hold
+ */
+public class PackedRTree<T> extends SpatialIndex<T> {
+
+    private static final Logger LOG = getLogger( PackedRTree.class );
+
+    /** The default number of entries per node. */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    private static final int MAGIC = 0x64525431;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 8;
+
+    private static final int HILBERT_MAX = 0xFFFF;
+
+    private final int nodeSize;
+
+    private int numItems;
+
+    private int numNodes;
+
+    // end positions (exclusive) of the levels, leaves first
+    private int[] levelBounds = new int[0];
+
+    private FloatBuffer boxes;
+
+    private IntBuffer payloads;
+
+    // null if the payloads are returned as is
+    private List<T> objects;
+
+    private boolean extraFlag;
+
+    /**
+     * Creates an empty tree with the default node size.
+     */
+    public PackedRTree() {
+        this( DEFAULT_NODE_SIZE );
+    }
+
+    /**
+     * Creates an empty tree.
+     * 
+     * @param nodeSize
+     *            the number of entries per node, must be at least 2
+     */
+    public PackedRTree( int nodeSize ) {
+        if ( nodeSize < 2 ) {
+            throw new IllegalArgumentException( "The node size must be at least 2, but was " + nodeSize + "." );
+        }
+        this.nodeSize = nodeSize;
+    }
+
+    /**
+     * Builds a tree which returns the given int payloads.
+     * 
+     * @param envelopes
+     *            the envelopes of all items, four floats (minx, miny, maxx, maxy) per item
+     * @param payloads
+     *            one payload per item
+     * @param nodeSize
+     *            the number of entries per node
+     * @return the new tree, never <code>null</code>
+     */
+    public static PackedRTree<Integer> create( float[] envelopes, int[] payloads, int nodeSize ) {
+        if ( envelopes.length != payloads.length * 4 ) {
+            throw new IllegalArgumentException( "Expected " + payloads.length * 4 + " envelope values, but got "
+                                                + envelopes.length + "." );
+        }
+        PackedRTree<Integer> tree = new PackedRTree<Integer>( nodeSize );
+        tree.build( envelopes, payloads );
+        return tree;
+    }
+
+    /**
+     * Memory maps a tree previously written with {@link #write(File)}. The mapping stays valid after the file has been
+     * replaced or deleted, so files should be replaced by renaming instead of being overwritten.
+     * 
+     * @param file
+     *            the index file
+     * @return the mapped tree, never <code>null</code>
+     * @throws IOException
+     *             if the file could not be read or is not a packed r-tree
+     */
+    public static PackedRTree<Integer> map( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if ( size < HEADER_INTS * 4 || size > Integer.MAX_VALUE ) {
+                throw new IOException( "The file " + file + " is not a packed r-tree index." );
+            }
+            ByteBuffer buffer = channel.map( READ_ONLY, 0, size );
+            buffer.order( ByteOrder.BIG_ENDIAN );
+            if ( buffer.getInt() != MAGIC ) {
+                throw new IOException( "The file " + file + " is not a packed r-tree index." );
+            }
+            int version = buffer.getInt();
+            if ( version != VERSION ) {
+                throw new IOException( "The packed r-tree index " + file + " has the unsupported version " + version
+                                       + "." );
+            }
+            PackedRTree<Integer> tree = new PackedRTree<Integer>( buffer.getInt() );
+            tree.numItems = buffer.getInt();
+            tree.numNodes = buffer.getInt();
+            int numLevels = buffer.getInt();
+            tree.extraFlag = buffer.getInt() != 0;
+            buffer.getInt();
+            long expected = 4l * ( HEADER_INTS + numLevels + tree.numNodes * 5l );
+            if ( tree.numItems < 0 || tree.numNodes < tree.numItems || numLevels < 0 || expected != size ) {
+                throw new IOException( "The packed r-tree index " + file + " is corrupt." );
+            }
+            tree.levelBounds = new int[numLevels];
+            for ( int i = 0; i < numLevels; ++i ) {
+                tree.levelBounds[i] = buffer.getInt();
+            }
+            tree.boxes = buffer.slice().asFloatBuffer();
+            buffer.position( buffer.position() + tree.numNodes * 16 );
+            tree.payloads = buffer.slice().asIntBuffer();
+            LOG.debug( "Mapped packed r-tree with {} items from {}.", tree.numItems, file );
+            return tree;
+        } finally {
+            // the mapping stays valid after closing the file
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes this tree to the given file, in a format which can be mapped using {@link #map(File)}. For trees filled
+     * with {@link #insertBulk(List)} the stored payloads are the positions of the objects in the original list.
+     * 
+     * @param file
+     *            the file to write to, will be overwritten
+     * @throws IOException
+     */
+    public void write( File file )
+                            throws IOException {
+        int size = 4 * ( HEADER_INTS + levelBounds.length + numNodes * 5 );
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        buffer.order( ByteOrder.BIG_ENDIAN );
+        buffer.putInt( MAGIC );
+        buffer.putInt( VERSION );
+        buffer.putInt( nodeSize );
+        buffer.putInt( numItems );
+        buffer.putInt( numNodes );
+        buffer.putInt( levelBounds.length );
+        buffer.putInt( extraFlag ? 1 : 0 );
+        buffer.putInt( 0 );
+        for ( int bound : levelBounds ) {
+            buffer.putInt( bound );
+        }
+        for ( int i = 0; i < numNodes * 4; ++i ) {
+            buffer.putFloat( boxes.get( i ) );
+        }
+        for ( int i = 0; i < numNodes; ++i ) {
+            buffer.putInt( payloads.get( i ) );
+        }
+        buffer.flip();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            FileChannel channel = out.getChannel();
+            while ( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of items in the tree
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * @return extra flag stored along with the tree (used for hacking around buggy shp files)
+     */
+    public boolean getExtraFlag() {
+        return extraFlag;
+    }
+
+    /**
+     * @param extraFlag
+     *            extra flag to be stored along with the tree
+     */
+    public void setExtraFlag( boolean extraFlag ) {
+        this.extraFlag = extraFlag;
+    }
+
+    @Override
+    public List<T> query( float[] envelope ) {
+        int[] found = queryPayloads( envelope );
+        List<T> result = new ArrayList<T>( found.length );
+        for ( int payload : found ) {
+            result.add( resolve( payload ) );
+        }
+        return result;
+    }
+
+    /**
+     * Queries the tree without resolving any objects.
+     * 
+     * @param envelope
+     *            to intersect, may be <code>null</code> to select all items
+     * @return the payloads of all items intersecting the envelope, in no particular order. For trees filled with
+     *         {@link #insertBulk(List)} these are the positions of the objects in the original list.
+     */
+    public int[] queryPayloads( float[] envelope ) {
+        if ( numItems == 0 ) {
+            return new int[0];
+        }
+        float minx = Float.NEGATIVE_INFINITY, miny = Float.NEGATIVE_INFINITY;
+        float maxx = Float.POSITIVE_INFINITY, maxy = Float.POSITIVE_INFINITY;
+        if ( envelope != null ) {
+            minx = envelope[0];
+            miny = envelope[1];
+            maxx = envelope[2];
+            maxy = envelope[3];
+        }
+        int[] result = new int[16];
+        int numResults = 0;
+        int[] stack = new int[16];
+        int stackSize = 0;
+
+        // the root is always the last node and the only one on its level
+        int nodeIndex = numNodes - 1;
+        while ( true ) {
+            int end = Math.min( nodeIndex + nodeSize, upperBound( nodeIndex ) );
+            boolean leaf = nodeIndex < numItems;
+            for ( int pos = nodeIndex; pos < end; ++pos ) {
+                int offset = pos * 4;
+                if ( maxx < boxes.get( offset ) || maxy < boxes.get( offset + 1 ) || minx > boxes.get( offset + 2 )
+                     || miny > boxes.get( offset + 3 ) ) {
+                    continue;
+                }
+                int value = payloads.get( pos );
+                if ( leaf ) {
+                    if ( numResults == result.length ) {
+                        result = Arrays.copyOf( result, numResults * 2 );
+                    }
+                    result[numResults++] = value;
+                } else {
+                    if ( stackSize == stack.length ) {
+                        stack = Arrays.copyOf( stack, stackSize * 2 );
+                    }
+                    stack[stackSize++] = value;
+                }
+            }
+            if ( stackSize == 0 ) {
+                break;
+            }
+            nodeIndex = stack[--stackSize];
+        }
+        return Arrays.copyOf( result, numResults );
+    }
+
+    @Override
+    public void insertBulk( List<Pair<float[], T>> listOfObjects ) {
+        int size = listOfObjects.size();
+        float[] envelopes = new float[size * 4];
+        int[] indices = new int[size];
+        List<T> objects = new ArrayList<T>( size );
+        int i = 0;
+        for ( Pair<float[], T> p : listOfObjects ) {
+            float[] env = p.first;
+            if ( env == null ) {
+                Arrays.fill( envelopes, i * 4, i * 4 + 4, Float.NaN );
+            } else {
+                envelopes[i * 4] = env[0];
+                envelopes[i * 4 + 1] = env[1];
+                envelopes[i * 4 + 2] = env[2];
+                envelopes[i * 4 + 3] = env[3];
+            }
+            indices[i] = i;
+            objects.add( p.second );
+            ++i;
+        }
+        build( envelopes, indices );
+        this.objects = objects;
+    }
+
+    @Override
+    public void clear() {
+        numItems = 0;
+        numNodes = 0;
+        levelBounds = new int[0];
+        boxes = null;
+        payloads = null;
+        objects = null;
+    }
+
+    /**
+     * Not supported, the tree can only be bulk loaded.
+     * 
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public boolean insert( float[] envelope, T object ) {
+        throw new UnsupportedOperationException( "The packed r-tree does not support inserting single objects." );
+    }
+
+    /**
+     * Not supported, the tree can only be bulk loaded.
+     * 
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public boolean remove( T object ) {
+        throw new UnsupportedOperationException( "The packed r-tree does not support removing objects." );
+    }
+
+    @SuppressWarnings("unchecked")
+    private T resolve( int payload ) {
+        if ( objects == null ) {
+            return (T) Integer.valueOf( payload );
+        }
+        return objects.get( payload );
+    }
+
+    private int upperBound( int nodeIndex ) {
+        for ( int bound : levelBounds ) {
+            if ( bound > nodeIndex ) {
+                return bound;
+            }
+        }
+        return numNodes;
+    }
+
+    private void build( float[] envelopes, int[] values ) {
+        clear();
+        int n = values.length;
+        if ( n == 0 ) {
+            return;
+        }
+
+        // count the nodes of all levels
+        List<Integer> bounds = new ArrayList<Integer>();
+        int levelSize = n;
+        int total = n;
+        bounds.add( total );
+        while ( levelSize > 1 ) {
+            levelSize = ( levelSize + nodeSize - 1 ) / nodeSize;
+            total += levelSize;
+            bounds.add( total );
+        }
+
+        float[] nodeBoxes = new float[total * 4];
+        int[] nodePayloads = new int[total];
+
+        // items without envelope must match everything
+        float minx = Float.POSITIVE_INFINITY, miny = Float.POSITIVE_INFINITY;
+        float maxx = Float.NEGATIVE_INFINITY, maxy = Float.NEGATIVE_INFINITY;
+        for ( int i = 0; i < n; ++i ) {
+            int o = i * 4;
+            if ( isNull( envelopes, o ) ) {
+                continue;
+            }
+            minx = Math.min( minx, envelopes[o] );
+            miny = Math.min( miny, envelopes[o + 1] );
+            maxx = Math.max( maxx, envelopes[o + 2] );
+            maxy = Math.max( maxy, envelopes[o + 3] );
+        }
+        double width = maxx > minx ? maxx - minx : 1;
+        double height = maxy > miny ? maxy - miny : 1;
+
+        // sort the items by hilbert value, keeping the item index in the lower bits
+        long[] keys = new long[n];
+        for ( int i = 0; i < n; ++i ) {
+            int o = i * 4;
+            long h = 0;
+            if ( !isNull( envelopes, o ) ) {
+                double cx = ( envelopes[o] + envelopes[o + 2] ) / 2.0;
+                double cy = ( envelopes[o + 1] + envelopes[o + 3] ) / 2.0;
+                int x = (int) ( HILBERT_MAX * ( cx - minx ) / width );
+                int y = (int) ( HILBERT_MAX * ( cy - miny ) / height );
+                h = hilbert( x, y ) & 0xFFFFFFFFl;
+            }
+            keys[i] = ( h << 32 ) | i;
+        }
+        Arrays.sort( keys );
+
+        for ( int pos = 0; pos < n; ++pos ) {
+            int i = (int) keys[pos];
+            int o = i * 4;
+            int p = pos * 4;
+            if ( isNull( envelopes, o ) ) {
+                nodeBoxes[p] = Float.NEGATIVE_INFINITY;
+                nodeBoxes[p + 1] = Float.NEGATIVE_INFINITY;
+                nodeBoxes[p + 2] = Float.POSITIVE_INFINITY;
+                nodeBoxes[p + 3] = Float.POSITIVE_INFINITY;
+            } else {
+                System.arraycopy( envelopes, o, nodeBoxes, p, 4 );
+            }
+            nodePayloads[pos] = values[i];
+        }
+
+        // build the parent levels, each parent covers up to nodeSize consecutive nodes of the level below
+        int pos = 0;
+        int parent = n;
+        for ( int level = 0; level < bounds.size() - 1; ++level ) {
+            int end = bounds.get( level );
+            while ( pos < end ) {
+                int first = pos;
+                float nminx = Float.POSITIVE_INFINITY, nminy = Float.POSITIVE_INFINITY;
+                float nmaxx = Float.NEGATIVE_INFINITY, nmaxy = Float.NEGATIVE_INFINITY;
+                for ( int j = 0; j < nodeSize && pos < end; ++j, ++pos ) {
+                    int o = pos * 4;
+                    nminx = Math.min( nminx, nodeBoxes[o] );
+                    nminy = Math.min( nminy, nodeBoxes[o + 1] );
+                    nmaxx = Math.max( nmaxx, nodeBoxes[o + 2] );
+                    nmaxy = Math.max( nmaxy, nodeBoxes[o + 3] );
+                }
+                int o = parent * 4;
+                nodeBoxes[o] = nminx;
+                nodeBoxes[o + 1] = nminy;
+                nodeBoxes[o + 2] = nmaxx;
+                nodeBoxes[o + 3] = nmaxy;
+                nodePayloads[parent++] = first;
+            }
+        }
+
+        numItems = n;
+        numNodes = total;
+        levelBounds = new int[bounds.size()];
+        for ( int i = 0; i < levelBounds.length; ++i ) {
+            levelBounds[i] = bounds.get( i );
+        }
+        boxes = FloatBuffer.wrap( nodeBoxes );
+        payloads = IntBuffer.wrap( nodePayloads );
+    }
+
+    private static boolean isNull( float[] envelopes, int offset ) {
+        return Float.isNaN( envelopes[offset] ) || Float.isNaN( envelopes[offset + 1] )
+               || Float.isNaN( envelopes[offset + 2] ) || Float.isNaN( envelopes[offset + 3] );
+    }
+
+    /**
+     * Calculates the position of a point on a hilbert curve of order 16, see 'Fast Hilbert curve generation, sorting,
+     * and range queries' (http://threadlocalmutex.com/?p=126).
+     * 
+     * @param x
+     *            between 0 and 0xFFFF
+     * @param y
+     *            between 0 and 0xFFFF
+     * @return the (unsigned) position on the curve
+     */
+    static int hilbert( int x, int y ) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ ( x | y );
+        int d = x & ( y ^ 0xFFFF );
+
+        int A = a | ( b >>> 1 );
+        int B = ( a >>> 1 ) ^ a;
+        int C = ( ( c >>> 1 ) ^ ( b & ( d >>> 1 ) ) ) ^ c;
+        int D = ( ( a & ( c >>> 1 ) ) ^ ( d >>> 1 ) ) ^ d;
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ( ( a & ( a >>> 2 ) ) ^ ( b & ( b >>> 2 ) ) );
+        B = ( ( a & ( b >>> 2 ) ) ^ ( b & ( ( a ^ b ) >>> 2 ) ) );
+        C ^= ( ( a & ( c >>> 2 ) ) ^ ( b & ( d >>> 2 ) ) );
+        D ^= ( ( b & ( c >>> 2 ) ) ^ ( ( a ^ b ) & ( d >>> 2 ) ) );
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ( ( a & ( a >>> 4 ) ) ^ ( b & ( b >>> 4 ) ) );
+        B = ( ( a & ( b >>> 4 ) ) ^ ( b & ( ( a ^ b ) >>> 4 ) ) );
+        C ^= ( ( a & ( c >>> 4 ) ) ^ ( b & ( d >>> 4 ) ) );
+        D ^= ( ( b & ( c >>> 4 ) ) ^ ( ( a ^ b ) & ( d >>> 4 ) ) );
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        C ^= ( ( a & ( c >>> 8 ) ) ^ ( b & ( d >>> 8 ) ) );
+        D ^= ( ( b & ( c >>> 8 ) ) ^ ( ( a ^ b ) & ( d >>> 8 ) ) );
+
+        a = C ^ ( C >>> 1 );
+        b = D ^ ( D >>> 1 );
+
+        int i0 = x ^ y;
+        int i1 = b | ( 0xFFFF ^ ( i0 | a ) );
+
+        return ( interleave( i1 ) << 1 ) | interleave( i0 );
+    }
+
+    private static int interleave( int v ) {
+        v = ( v | ( v << 8 ) ) & 0x00FF00FF;
+        v = ( v | ( v << 4 ) ) & 0x0F0F0F0F;
+        v = ( v | ( v << 2 ) ) & 0x33333333;
+        return ( v | ( v << 1 ) ) & 0x55555555;
+    }
+
+}
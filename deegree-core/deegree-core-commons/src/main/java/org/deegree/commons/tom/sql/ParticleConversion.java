@@ -59,6 +59,13 @@ public class ParticleConversion<T extends TypedObjectNode> {
         this.particle = particle;
     }
 
+    /**
+     * @return the particle to be converted, can be <code>null</code>
+     */
+    public T getParticle() {
+        return particle;
+    }
+
     public void setParticle( PreparedStatement stmt, int paramIndex )
                             throws SQLException {
         converter.setParticle( stmt, particle, paramIndex );
@@ -154,6 +154,9 @@ public class XPathUtils {
         if ( step instanceof NameStep ) {
             extractPrefix( ( (NameStep) step ).getPrefix(), prefixes );
         }
+        for ( Object pred : step.getPredicates() ) {
+            extractPrefixes( (Predicate) pred, prefixes );
+        }
     }
 
     private static void extractPrefixes( Predicate pred, Set<String> prefixes ) {
@@ -0,0 +1,174 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.deegree.commons.utils.Pair;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link PackedRTree}.
+ * 
+ * @since 3.4
+ */
+public class PackedRTreeTest {
+
+    @Test
+    public void testEmptyTree() {
+        PackedRTree<String> tree = new PackedRTree<String>();
+        tree.insertBulk( new ArrayList<Pair<float[], String>>() );
+        assertEquals( 0, tree.size() );
+        assertTrue( tree.query( new float[] { 0, 0, 1, 1 } ).isEmpty() );
+    }
+
+    @Test
+    public void testQueryMatchesLinearScan() {
+        Random rnd = new Random( 42 );
+        for ( int n : new int[] { 1, 15, 16, 17, 256, 257, 3000 } ) {
+            List<Pair<float[], String>> items = createItems( rnd, n );
+            PackedRTree<String> tree = new PackedRTree<String>();
+            tree.insertBulk( items );
+            assertEquals( n, tree.size() );
+            for ( int i = 0; i < 100; ++i ) {
+                float[] box = createBox( rnd, 100 );
+                List<String> result = tree.query( box );
+                Set<String> expected = scan( items, box );
+                assertEquals( expected.size(), result.size() );
+                assertEquals( expected, new HashSet<String>( result ) );
+            }
+        }
+    }
+
+    @Test
+    public void testNullEnvelopeMatchesEverything() {
+        List<Pair<float[], String>> items = new ArrayList<Pair<float[], String>>();
+        items.add( new Pair<float[], String>( new float[] { 0, 0, 1, 1 }, "a" ) );
+        items.add( new Pair<float[], String>( null, "b" ) );
+        PackedRTree<String> tree = new PackedRTree<String>();
+        tree.insertBulk( items );
+        assertEquals( 1, tree.query( new float[] { 10, 10, 11, 11 } ).size() );
+        assertEquals( 2, tree.query( new float[] { 0.5f, 0.5f, 11, 11 } ).size() );
+        assertEquals( 2, tree.query( null ).size() );
+    }
+
+    @Test
+    public void testWriteAndMap()
+                            throws IOException {
+        Random rnd = new Random( 7 );
+        int n = 1000;
+        float[] envelopes = new float[n * 4];
+        int[] payloads = new int[n];
+        List<Pair<float[], String>> items = createItems( rnd, n );
+        for ( int i = 0; i < n; ++i ) {
+            System.arraycopy( items.get( i ).first, 0, envelopes, i * 4, 4 );
+            payloads[i] = i;
+        }
+        PackedRTree<Integer> tree = PackedRTree.create( envelopes, payloads, 8 );
+        tree.setExtraFlag( true );
+        File file = File.createTempFile( "packedrtree", ".rti" );
+        file.deleteOnExit();
+        tree.write( file );
+
+        PackedRTree<Integer> mapped = PackedRTree.map( file );
+        assertEquals( n, mapped.size() );
+        assertTrue( mapped.getExtraFlag() );
+        for ( int i = 0; i < 100; ++i ) {
+            float[] box = createBox( rnd, 100 );
+            Set<String> expected = scan( items, box );
+            List<Integer> result = mapped.query( box );
+            assertEquals( expected.size(), result.size() );
+            for ( Integer idx : result ) {
+                assertTrue( expected.contains( items.get( idx ).second ) );
+            }
+            assertEquals( new HashSet<Integer>( tree.query( box ) ), new HashSet<Integer>( result ) );
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMapRejectsOtherFiles()
+                            throws IOException {
+        File file = File.createTempFile( "packedrtree", ".rti" );
+        file.deleteOnExit();
+        new RTree<Long>( new float[] { 0, 0, 1, 1 }, 4 ).writeTreeToDisk( file.getPath() );
+        PackedRTree.map( file );
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInsertUnsupported() {
+        new PackedRTree<String>().insert( new float[] { 0, 0, 1, 1 }, "a" );
+    }
+
+    private static List<Pair<float[], String>> createItems( Random rnd, int n ) {
+        List<Pair<float[], String>> items = new ArrayList<Pair<float[], String>>( n );
+        for ( int i = 0; i < n; ++i ) {
+            items.add( new Pair<float[], String>( createBox( rnd, 20 ), "item" + i ) );
+        }
+        return items;
+    }
+
+    private static float[] createBox( Random rnd, float maxSize ) {
+        float x = rnd.nextFloat() * 1000;
+        float y = rnd.nextFloat() * 1000;
+        return new float[] { x, y, x + rnd.nextFloat() * maxSize, y + rnd.nextFloat() * maxSize };
+    }
+
+    private static Set<String> scan( List<Pair<float[], String>> items, float[] box ) {
+        Set<String> result = new HashSet<String>();
+        for ( Pair<float[], String> item : items ) {
+            float[] env = item.first;
+            if ( env == null || !( env[0] > box[2] || env[1] > box[3] || env[2] < box[0] || env[3] < box[1] ) ) {
+                result.add( item.second );
+            }
+        }
+        return result;
+    }
+
+}
@@ -39,8 +39,8 @@ package org.deegree.cs.persistence;
 import static org.deegree.cs.coordinatesystems.CRS.CRSType.COMPOUND;
 import static org.deegree.cs.coordinatesystems.CRS.CRSType.PROJECTED;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.cs.CRSCodeType;
@@ -81,9 +81,10 @@ public abstract class AbstractCRSStore implements CRSStore {
 
     private static Logger LOG = LoggerFactory.getLogger( AbstractCRSStore.class );
 
-    private Map<CRSCodeType, CRSResource> cachedIdentifiables = new HashMap<CRSCodeType, CRSResource>();
+    // concurrent maps, so lookups don't need to synchronize (additions still do)
+    private Map<CRSCodeType, CRSResource> cachedIdentifiables = new ConcurrentHashMap<CRSCodeType, CRSResource>();
 
-    private Map<CRSCodeType, CRSResource> cachedCRSXY = new HashMap<CRSCodeType, CRSResource>();
+    private Map<CRSCodeType, CRSResource> cachedCRSXY = new ConcurrentHashMap<CRSCodeType, CRSResource>();
 
     private DSTransform prefTransformType = DSTransform.HELMERT;
 
@@ -191,8 +192,8 @@ public abstract class AbstractCRSStore implements CRSStore {
         if ( LOG.isDebugEnabled() ) {
             LOG.debug( cachedIdentifiables.keySet().toString() );
         }
-        if ( cache.containsKey( id ) ) {
-            CRSResource r = cache.get( id );
+        CRSResource r = cache.get( id );
+        if ( r != null ) {
             LOG.debug( "Found CRSIdentifiable: " + r.getCodeAndName() + " from given id: " + id );
             if ( !( r instanceof ICRS ) ) {
                 LOG.error( "Found CRSIdentifiable: " + r.getCodeAndName()
@@ -44,12 +44,13 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
@@ -91,12 +92,27 @@ public class CRSManager implements Initializable, Destroyable {
 
     private static Map<String, CRSStoreProvider> nsToProvider = null;
 
-    private static Map<String, CRSStore> idToCRSStore = Collections.synchronizedMap( new HashMap<String, CRSStore>() );
+    private static Map<String, CRSStore> idToCRSStore = new ConcurrentHashMap<String, CRSStore>();
 
     // store ids in order of requesting, workspace stores should overwrite the default store!
-    private static List<String> storeIds = Collections.synchronizedList( new LinkedList<String>() );
+    private static List<String> storeIds = new CopyOnWriteArrayList<String>();
 
-    private static Map<String, TransformationFactory> idToTransF = new HashMap<String, TransformationFactory>();
+    private static Map<String, TransformationFactory> idToTransF = new ConcurrentHashMap<String, TransformationFactory>();
+
+    // the caches are cleared when they grow beyond this size or the stores change
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    private static final Map<LookupKey, ICRS> lookupCache = new ConcurrentHashMap<LookupKey, ICRS>();
+
+    private static final Map<TransformationKey, CachedTransformation> transformationCache = new ConcurrentHashMap<TransformationKey, CachedTransformation>();
+
+    private static final AtomicLong lookupHits = new AtomicLong();
+
+    private static final AtomicLong lookupMisses = new AtomicLong();
+
+    private static final AtomicLong transformationHits = new AtomicLong();
+
+    private static final AtomicLong transformationMisses = new AtomicLong();
 
     private Workspace workspace;
 
@@ -138,6 +154,7 @@ public class CRSManager implements Initializable, Destroyable {
         idToCRSStore.clear();
         idToTransF.clear();
         storeIds.clear();
+        clearCaches();
         defaultInitialized = false;
         new CRSManager().initDefault();
     }
@@ -282,9 +299,15 @@ public class CRSManager implements Initializable, Destroyable {
                 storeIds.add( id );
             }
             crss.init();
+            clearCaches();
         }
     }
 
+    private static void clearCaches() {
+        lookupCache.clear();
+        transformationCache.clear();
+    }
+
     /**
      * Returns all active {@link CRSStore}s.
      * 
@@ -304,6 +327,9 @@ public class CRSManager implements Initializable, Destroyable {
      *         has been created or <code>null</code> if the default one could also not be created.
      */
     public static CRSStore get( String id ) {
+        if ( id == null ) {
+            return null;
+        }
         return idToCRSStore.get( id );
     }
 
@@ -416,7 +442,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String name )
+    public static ICRS lookup( String name )
                             throws UnknownCRSException {
         return lookup( name, false );
     }
@@ -436,7 +462,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String name, boolean forceXY )
+    public static ICRS lookup( String name, boolean forceXY )
                             throws UnknownCRSException {
         return lookup( null, name, forceXY );
     }
@@ -452,7 +478,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( CRSCodeType codeType )
+    public static ICRS lookup( CRSCodeType codeType )
                             throws UnknownCRSException {
         return lookup( null, codeType );
     }
@@ -471,7 +497,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeId, String name )
+    public static ICRS lookup( String storeId, String name )
                             throws UnknownCRSException {
         return lookup( storeId, name, false );
     }
@@ -493,7 +519,24 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeIdName, String name, boolean forceXY )
+    public static ICRS lookup( String storeIdName, String name, boolean forceXY )
+                            throws UnknownCRSException {
+        LookupKey key = new LookupKey( storeIdName, name, forceXY );
+        ICRS crs = lookupCache.get( key );
+        if ( crs != null ) {
+            lookupHits.incrementAndGet();
+            return crs;
+        }
+        lookupMisses.incrementAndGet();
+        crs = lookupUncached( storeIdName, name, forceXY );
+        if ( lookupCache.size() >= MAX_CACHE_SIZE ) {
+            lookupCache.clear();
+        }
+        lookupCache.put( key, crs );
+        return crs;
+    }
+
+    private static ICRS lookupUncached( String storeIdName, String name, boolean forceXY )
                             throws UnknownCRSException {
         CRSStore crsStore = get( storeIdName );
         if ( crsStore != null ) {
@@ -527,7 +570,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeId, CRSCodeType crsCodeType )
+    public static ICRS lookup( String storeId, CRSCodeType crsCodeType )
                             throws UnknownCRSException {
         CRSStore crsStore = get( storeId );
         if ( crsStore != null ) {
@@ -643,6 +686,7 @@ public class CRSManager implements Initializable, Destroyable {
             for ( TransformationFactory tf : idToTransF.values() ) {
                 return tf;
             }
+            return null;
         }
         return idToTransF.get( storeId );
     }
@@ -657,8 +701,8 @@ public class CRSManager implements Initializable, Destroyable {
      *            of the {@link Transformation}
      * @return the identified {@link Transformation} or <code>null<code> if no such transformation is found.
      */
-    public synchronized static Transformation getTransformation( String storeId, String id ) {
-        CRSStore crsStore = idToCRSStore.get( storeId );
+    public static Transformation getTransformation( String storeId, String id ) {
+        CRSStore crsStore = get( storeId );
         if ( crsStore == null ) {
             for ( String sId : storeIds ) {
                 CRSStore store = idToCRSStore.get( sId );
@@ -689,7 +733,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
                             throws IllegalArgumentException, TransformationException {
         return getTransformation( storeId, sourceCRS, targetCRS, null );
     }
@@ -697,7 +741,8 @@ public class CRSManager implements Initializable, Destroyable {
     /**
      * Retrieve a {@link Transformation} (chain) which transforms coordinates from the given source into the given
      * target crs. If no such {@link Transformation} could be found or the implementation does not support inverse
-     * lookup of transformations <code>null<code> will be returned.
+     * lookup of transformations <code>null<code> will be returned. Chains created without transformations to be used
+     * are cached, so the returned instances are shared and must not be modified (e.g. inverted).
      * 
      * @param storeId
      *            identifier of the store, looking for the {@link Transformation}, may be <code>null</code> if in all
@@ -713,8 +758,30 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
-                                                                 List<Transformation> transformationsToBeUsed )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                    List<Transformation> transformationsToBeUsed )
+                            throws IllegalArgumentException, TransformationException {
+        if ( sourceCRS == null || targetCRS == null
+             || ( transformationsToBeUsed != null && !transformationsToBeUsed.isEmpty() ) ) {
+            return createTransformation( storeId, sourceCRS, targetCRS, transformationsToBeUsed );
+        }
+        TransformationKey key = new TransformationKey( storeId, sourceCRS, targetCRS );
+        CachedTransformation cached = transformationCache.get( key );
+        if ( cached != null ) {
+            transformationHits.incrementAndGet();
+            return cached.transformation;
+        }
+        transformationMisses.incrementAndGet();
+        Transformation transformation = createTransformation( storeId, sourceCRS, targetCRS, null );
+        if ( transformationCache.size() >= MAX_CACHE_SIZE ) {
+            transformationCache.clear();
+        }
+        transformationCache.put( key, new CachedTransformation( transformation ) );
+        return transformation;
+    }
+
+    private static Transformation createTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                        List<Transformation> transformationsToBeUsed )
                             throws IllegalArgumentException, TransformationException {
         if ( storeId != null ) {
             TransformationFactory fac = getTransformationFactory( storeId );
@@ -741,7 +808,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws IllegalArgumentException
      *             if crsStore is null
      */
-    private synchronized static Transformation getTransformation( CRSStore crsStore, String id ) {
+    private static Transformation getTransformation( CRSStore crsStore, String id ) {
         if ( crsStore == null ) {
             throw new IllegalArgumentException( Messages.get( "CRSManager.STORE_NULL" ) );
         }
@@ -763,7 +830,116 @@ public class CRSManager implements Initializable, Destroyable {
             storeIds.remove( id );
             idToCRSStore.remove( id );
             idToTransF.remove( id );
+            clearCaches();
         }
     }
 
+    /**
+     * @return number of {@link #lookup(String, String, boolean)} calls answered from the cache
+     */
+    public static long getLookupCacheHits() {
+        return lookupHits.get();
+    }
+
+    /**
+     * @return number of {@link #lookup(String, String, boolean)} calls that had to query the {@link CRSStore}s
+     */
+    public static long getLookupCacheMisses() {
+        return lookupMisses.get();
+    }
+
+    /**
+     * @return number of transformation chains returned from the cache
+     */
+    public static long getTransformationCacheHits() {
+        return transformationHits.get();
+    }
+
+    /**
+     * @return number of transformation chains that had to be created by a {@link TransformationFactory}
+     */
+    public static long getTransformationCacheMisses() {
+        return transformationMisses.get();
+    }
+
+    private static class LookupKey {
+
+        private final String storeId;
+
+        private final String name;
+
+        private final boolean forceXY;
+
+        LookupKey( String storeId, String name, boolean forceXY ) {
+            this.storeId = storeId;
+            this.name = name;
+            this.forceXY = forceXY;
+        }
+
+        @Override
+        public boolean equals( java.lang.Object obj ) {
+            if ( !( obj instanceof LookupKey ) ) {
+                return false;
+            }
+            LookupKey that = (LookupKey) obj;
+            return forceXY == that.forceXY && equal( storeId, that.storeId ) && equal( name, that.name );
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = name == null ? 0 : name.hashCode();
+            hash = 31 * hash + ( storeId == null ? 0 : storeId.hashCode() );
+            return forceXY ? ~hash : hash;
+        }
+    }
+
+    private static class TransformationKey {
+
+        private final String storeId;
+
+        private final ICRS sourceCRS;
+
+        private final ICRS targetCRS;
+
+        private final int hash;
+
+        TransformationKey( String storeId, ICRS sourceCRS, ICRS targetCRS ) {
+            this.storeId = storeId;
+            this.sourceCRS = sourceCRS;
+            this.targetCRS = targetCRS;
+            int hash = sourceCRS.hashCode();
+            hash = 31 * hash + targetCRS.hashCode();
+            this.hash = 31 * hash + ( storeId == null ? 0 : storeId.hashCode() );
+        }
+
+        @Override
+        public boolean equals( java.lang.Object obj ) {
+            if ( !( obj instanceof TransformationKey ) ) {
+                return false;
+            }
+            TransformationKey that = (TransformationKey) obj;
+            return hash == that.hash && equal( storeId, that.storeId ) && sourceCRS.equals( that.sourceCRS )
+                   && targetCRS.equals( that.targetCRS );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class CachedTransformation {
+
+        // null for identity
+        private final Transformation transformation;
+
+        CachedTransformation( Transformation transformation ) {
+            this.transformation = transformation;
+        }
+    }
+
+    private static boolean equal( java.lang.Object o1, java.lang.Object o2 ) {
+        return o1 == null ? o2 == null : o1.equals( o2 );
+    }
+
 }
@@ -0,0 +1,147 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.transformations.Transformation;
+import org.junit.Test;
+
+/**
+ * Tests the lookup and transformation chain caches of the {@link CRSManager}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class CRSManagerCacheTest {
+
+    private static final String[] CODES = { "EPSG:4326", "EPSG:25832", "EPSG:31467", "EPSG:4314", "EPSG:3857" };
+
+    @Test
+    public void testLookupIsCached()
+                            throws UnknownCRSException {
+        ICRS crs = CRSManager.lookup( "EPSG:25832" );
+        long hits = CRSManager.getLookupCacheHits();
+        assertSame( crs, CRSManager.lookup( "EPSG:25832" ) );
+        assertEquals( hits + 1, CRSManager.getLookupCacheHits() );
+    }
+
+    @Test
+    public void testForceXYIsCachedSeparately()
+                            throws UnknownCRSException {
+        ICRS crs = CRSManager.lookup( "EPSG:4326", false );
+        ICRS xy = CRSManager.lookup( "EPSG:4326", true );
+        assertSame( crs, CRSManager.lookup( "EPSG:4326", false ) );
+        assertSame( xy, CRSManager.lookup( "EPSG:4326", true ) );
+    }
+
+    @Test
+    public void testTransformationIsCached()
+                            throws UnknownCRSException, TransformationException {
+        ICRS source = CRSManager.lookup( "EPSG:4326" );
+        ICRS target = CRSManager.lookup( "EPSG:25832" );
+        Transformation t = CRSManager.getTransformation( null, source, target );
+        assertNotNull( t );
+        long hits = CRSManager.getTransformationCacheHits();
+        long misses = CRSManager.getTransformationCacheMisses();
+        assertSame( t, CRSManager.getTransformation( null, source, target ) );
+        assertSame( t, CRSManager.getTransformation( null, CRSManager.getCRSRef( "EPSG:4326" ), target ) );
+        assertEquals( hits + 2, CRSManager.getTransformationCacheHits() );
+        assertEquals( misses, CRSManager.getTransformationCacheMisses() );
+    }
+
+    @Test
+    public void testConcurrentAccessYieldsSerialResults()
+                            throws Exception {
+        final List<ICRS> crs = new ArrayList<ICRS>();
+        for ( String code : CODES ) {
+            crs.add( CRSManager.lookup( code ) );
+        }
+        final List<Transformation> transformations = new ArrayList<Transformation>();
+        for ( ICRS source : crs ) {
+            for ( ICRS target : crs ) {
+                transformations.add( CRSManager.getTransformation( null, source, target ) );
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( 8 );
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for ( int i = 0; i < 8; ++i ) {
+                futures.add( pool.submit( new Callable<Void>() {
+                    @Override
+                    public Void call()
+                                            throws Exception {
+                        for ( int n = 0; n < 1000; ++n ) {
+                            int i = n % CODES.length;
+                            int j = ( n / CODES.length ) % CODES.length;
+                            assertEquals( crs.get( i ), CRSManager.lookup( CODES[i] ) );
+                            Transformation t = CRSManager.getTransformation( null, crs.get( i ), crs.get( j ) );
+                            assertEquals( transformations.get( i * CODES.length + j ), t );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> f : futures ) {
+                // rethrows assertion errors of the worker threads
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
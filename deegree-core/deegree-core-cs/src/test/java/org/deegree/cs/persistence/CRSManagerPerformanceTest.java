@@ -0,0 +1,157 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.persistence;
+
+import static java.lang.System.currentTimeMillis;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * Measures the throughput of concurrent {@link CRSManager} lookups and transformation chain retrievals.
+ * <p>
+ * Only executed if the system property <code>deegree.performance-tests</code> is set to <code>true</code>.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class CRSManagerPerformanceTest {
+
+    private static final Logger LOG = getLogger( CRSManagerPerformanceTest.class );
+
+    private static final String[] CODES = { "EPSG:4326", "EPSG:25832", "EPSG:31467", "EPSG:4314", "EPSG:3857",
+                                           "urn:ogc:def:crs:EPSG::4326" };
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 100000;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue( Boolean.getBoolean( "deegree.performance-tests" ) );
+    }
+
+    @Test
+    public void testLookupThroughput()
+                            throws Exception {
+        long ops = run( new Callable<Long>() {
+            @Override
+            public Long call()
+                                    throws Exception {
+                long n = 0;
+                for ( int i = 0; i < ITERATIONS; ++i ) {
+                    CRSManager.lookup( CODES[i % CODES.length] );
+                    ++n;
+                }
+                return n;
+            }
+        }, "lookup" );
+        assertEquals( THREADS * ITERATIONS, ops );
+    }
+
+    @Test
+    public void testTransformationThroughput()
+                            throws Exception {
+        final ICRS[] crs = new ICRS[CODES.length];
+        for ( int i = 0; i < CODES.length; ++i ) {
+            crs[i] = CRSManager.lookup( CODES[i] );
+        }
+        long ops = run( new Callable<Long>() {
+            @Override
+            public Long call()
+                                    throws Exception {
+                long n = 0;
+                for ( int i = 0; i < ITERATIONS; ++i ) {
+                    ICRS source = crs[i % crs.length];
+                    ICRS target = crs[( i / crs.length ) % crs.length];
+                    CRSManager.getTransformation( null, source, target );
+                    ++n;
+                }
+                return n;
+            }
+        }, "transformation" );
+        assertEquals( THREADS * ITERATIONS, ops );
+    }
+
+    private long run( Callable<Long> task, String name )
+                            throws Exception {
+        // warm up
+        task.call();
+        ExecutorService pool = Executors.newFixedThreadPool( THREADS );
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            long start = currentTimeMillis();
+            for ( int i = 0; i < THREADS; ++i ) {
+                futures.add( pool.submit( task ) );
+            }
+            long ops = 0;
+            for ( Future<Long> f : futures ) {
+                ops += f.get();
+            }
+            long millis = Math.max( 1, currentTimeMillis() - start );
+            LOG.info( "{}: {} threads, {} ops in {} ms ({} ops/s)", new Object[] { name, THREADS, ops, millis,
+                                                                                ops * 1000 / millis } );
+            LOG.info( "lookup cache hits/misses: {}/{}, transformation cache hits/misses: {}/{}",
+                      new Object[] { CRSManager.getLookupCacheHits(), CRSManager.getLookupCacheMisses(),
+                                    CRSManager.getTransformationCacheHits(),
+                                    CRSManager.getTransformationCacheMisses() } );
+            return ops;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -35,21 +35,43 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Geometry;
-import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
 
-import com.vividsolutions.jts.io.InputStreamInStream;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Besides plain OGC WKB, the PostGIS EWKB flavour (Z/M/SRID flags in the type word) and the ISO type codes for Z, M
+ * and ZM geometries are understood. Coordinates are decoded directly into {@link PackedPoints}, M values are skipped
+ * and an embedded SRID is ignored (the returned geometries use the given {@link ICRS}). Empty geometries are returned
+ * as <code>null</code>.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,20 +80,228 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class WKBReader {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    static final int WKB_POINT = 1;
 
+    static final int WKB_LINESTRING = 2;
+
+    static final int WKB_POLYGON = 3;
+
+    static final int WKB_MULTIPOINT = 4;
+
+    static final int WKB_MULTILINESTRING = 5;
+
+    static final int WKB_MULTIPOLYGON = 6;
+
+    static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    static final int EWKB_Z_FLAG = 0x80000000;
+
+    static final int EWKB_M_FLAG = 0x40000000;
+
+    static final int EWKB_SRID_FLAG = 0x20000000;
+
+    /**
+     * Decodes the given WKB/EWKB.
+     * 
+     * @param wkb
+     *            encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws ParseException
+     *             if the WKB is malformed
+     */
     public static Geometry read( byte[] wkb, ICRS crs )
                             throws ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe        
-        return defaultGeom.createFromJTS( new com.vividsolutions.jts.io.WKBReader().read( wkb ), crs );
+        return read( ByteBuffer.wrap( wkb ), crs );
     }
 
+    /**
+     * Decodes WKB/EWKB from the given stream. The stream is consumed completely.
+     * 
+     * @param is
+     *            stream to read from, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws IOException
+     * @throws ParseException
+     *             if the WKB is malformed
+     */
     public static Geometry read( InputStream is, ICRS crs )
                             throws IOException, ParseException {
-        // com.vividsolutions.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS(
-                                          new com.vividsolutions.jts.io.WKBReader().read( new InputStreamInStream( is ) ),
-                                          crs );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ( ( read = is.read( chunk ) ) != -1 ) {
+            bos.write( chunk, 0, read );
+        }
+        return read( bos.toByteArray(), crs );
+    }
+
+    /**
+     * Decodes a WKB/EWKB geometry starting at the current position of the given buffer. On success, the position of
+     * the buffer is advanced to the first byte after the geometry, so a buffer holding several consecutive geometries
+     * (or a slice of a larger buffer) can be read without copying. The byte order of the buffer is not modified.
+     * 
+     * @param wkb
+     *            buffer to read from, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, can be <code>null</code>
+     * @return decoded geometry, or <code>null</code> if the encoded geometry is empty
+     * @throws ParseException
+     *             if the WKB is malformed
+     */
+    public static Geometry read( ByteBuffer wkb, ICRS crs )
+                            throws ParseException {
+        ByteBuffer buffer = wkb.duplicate();
+        Geometry geom;
+        try {
+            geom = readGeometry( buffer, crs, -1 );
+        } catch ( BufferUnderflowException e ) {
+            throw new ParseException( "Unexpected end of WKB data." );
+        }
+        wkb.position( buffer.position() );
+        return geom;
+    }
+
+    private static Geometry readGeometry( ByteBuffer buffer, ICRS crs, int expectedType )
+                            throws ParseException {
+
+        byte byteOrder = buffer.get();
+        if ( byteOrder == 0 ) {
+            buffer.order( ByteOrder.BIG_ENDIAN );
+        } else if ( byteOrder == 1 ) {
+            buffer.order( ByteOrder.LITTLE_ENDIAN );
+        } else {
+            throw new ParseException( "Invalid WKB byte order flag: " + byteOrder );
+        }
+
+        int typeInt = buffer.getInt();
+        boolean hasZ = ( typeInt & EWKB_Z_FLAG ) != 0;
+        boolean hasM = ( typeInt & EWKB_M_FLAG ) != 0;
+        if ( ( typeInt & EWKB_SRID_FLAG ) != 0 ) {
+            // SRID is ignored, the crs is provided by the caller
+            buffer.getInt();
+        }
+        int isoType = typeInt & 0x0fffffff;
+        int type = isoType % 1000;
+        int isoDimension = isoType / 1000;
+        hasZ |= isoDimension == 1 || isoDimension == 3;
+        hasM |= isoDimension == 2 || isoDimension == 3;
+
+        if ( expectedType != -1 && type != expectedType ) {
+            throw new ParseException( "Invalid WKB: expected member of type " + expectedType + ", found type " + type
+                                      + "." );
+        }
+
+        int inputDim = 2 + ( hasZ ? 1 : 0 ) + ( hasM ? 1 : 0 );
+        int outputDim = hasZ ? 3 : 2;
+
+        switch ( type ) {
+        case WKB_POINT:
+            return readPoint( buffer, crs, inputDim, outputDim );
+        case WKB_LINESTRING: {
+            PackedPoints points = readPoints( buffer, crs, inputDim, outputDim );
+            return points.size() == 0 ? null : new DefaultLineString( null, crs, null, points );
+        }
+        case WKB_POLYGON:
+            return readPolygon( buffer, crs, inputDim, outputDim );
+        case WKB_MULTIPOINT: {
+            List<Point> members = readMembers( buffer, crs, WKB_POINT );
+            return members.isEmpty() ? null : new DefaultMultiPoint( null, crs, null, members );
+        }
+        case WKB_MULTILINESTRING: {
+            List<LineString> members = readMembers( buffer, crs, WKB_LINESTRING );
+            return members.isEmpty() ? null : new DefaultMultiLineString( null, crs, null, members );
+        }
+        case WKB_MULTIPOLYGON: {
+            List<Polygon> members = readMembers( buffer, crs, WKB_POLYGON );
+            return members.isEmpty() ? null : new DefaultMultiPolygon( null, crs, null, members );
+        }
+        case WKB_GEOMETRYCOLLECTION: {
+            List<Geometry> members = readMembers( buffer, crs, -1 );
+            return members.isEmpty() ? null : new DefaultMultiGeometry<Geometry>( null, crs, null, members );
+        }
+        default:
+            throw new ParseException( "Unsupported WKB geometry type: " + type );
+        }
+    }
+
+    private static Point readPoint( ByteBuffer buffer, ICRS crs, int inputDim, int outputDim ) {
+        double[] coords = new double[outputDim];
+        for ( int d = 0; d < inputDim; d++ ) {
+            double ordinate = buffer.getDouble();
+            if ( d < outputDim ) {
+                coords[d] = ordinate;
+            }
+        }
+        if ( Double.isNaN( coords[0] ) && Double.isNaN( coords[1] ) ) {
+            // empty point
+            return null;
+        }
+        return new DefaultPoint( null, crs, null, coords );
+    }
+
+    private static Polygon readPolygon( ByteBuffer buffer, ICRS crs, int inputDim, int outputDim )
+                            throws ParseException {
+        int numRings = readCount( buffer, 4 );
+        if ( numRings == 0 ) {
+            return null;
+        }
+        Ring exterior = new DefaultLinearRing( null, crs, null, readPoints( buffer, crs, inputDim, outputDim ) );
+        List<Ring> interiors = new ArrayList<Ring>( numRings - 1 );
+        for ( int i = 1; i < numRings; i++ ) {
+            interiors.add( new DefaultLinearRing( null, crs, null, readPoints( buffer, crs, inputDim, outputDim ) ) );
+        }
+        return new DefaultPolygon( null, crs, null, exterior, interiors );
+    }
+
+    private static PackedPoints readPoints( ByteBuffer buffer, ICRS crs, int inputDim, int outputDim )
+                            throws ParseException {
+        int numPoints = readCount( buffer, inputDim * 8 );
+        double[] coords = new double[numPoints * outputDim];
+        if ( inputDim == outputDim ) {
+            buffer.asDoubleBuffer().get( coords );
+            buffer.position( buffer.position() + coords.length * 8 );
+        } else {
+            int i = 0;
+            for ( int p = 0; p < numPoints; p++ ) {
+                for ( int d = 0; d < inputDim; d++ ) {
+                    double ordinate = buffer.getDouble();
+                    if ( d < outputDim ) {
+                        coords[i++] = ordinate;
+                    }
+                }
+            }
+        }
+        return new PackedPoints( crs, coords, outputDim );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Geometry> List<T> readMembers( ByteBuffer buffer, ICRS crs, int memberType )
+                            throws ParseException {
+        // smallest possible member: byte order + type + empty count
+        int numMembers = readCount( buffer, 9 );
+        List<T> members = new ArrayList<T>( numMembers );
+        for ( int i = 0; i < numMembers; i++ ) {
+            // each member carries its own byte order flag
+            ByteOrder order = buffer.order();
+            Geometry member = readGeometry( buffer, crs, memberType );
+            buffer.order( order );
+            if ( member != null ) {
+                members.add( (T) member );
+            }
+        }
+        return members;
+    }
+
+    private static int readCount( ByteBuffer buffer, int minBytesPerElement )
+                            throws ParseException {
+        int count = buffer.getInt();
+        if ( count < 0 || (long) count * minBytesPerElement > buffer.remaining() ) {
+            throw new ParseException( "Invalid WKB: element count " + count + " exceeds the available data." );
+        }
+        return count;
     }
-}
\ No newline at end of file
+}
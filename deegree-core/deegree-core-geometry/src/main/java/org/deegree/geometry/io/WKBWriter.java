@@ -35,21 +35,48 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import static org.deegree.geometry.io.WKBReader.EWKB_Z_FLAG;
+import static org.deegree.geometry.io.WKBReader.WKB_GEOMETRYCOLLECTION;
+import static org.deegree.geometry.io.WKBReader.WKB_LINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTILINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOINT;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOLYGON;
+import static org.deegree.geometry.io.WKBReader.WKB_POINT;
+import static org.deegree.geometry.io.WKBReader.WKB_POLYGON;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Curve.CurveType;
+import org.deegree.geometry.primitive.GeometricPrimitive;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Ring.RingType;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.Surface.SurfaceType;
 import org.deegree.geometry.refs.GeometryReference;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
-import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.points.PackedPoints;
 
-import com.vividsolutions.jts.io.OutputStreamOutStream;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
  * Writes {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Points, line strings, linear rings, polygons with linear rings and aggregates of these are encoded directly from
+ * their control points (big endian, Z flag in EWKB style for 3D geometries, as the JTS encoder does). The size of the
+ * encoding is computed upfront, so every geometry is written into a single array without intermediate coordinate
+ * objects. All other geometries (e.g. non-linear curves) are still linearized and encoded via JTS.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,24 +85,178 @@ import com.vividsolutions.jts.io.ParseException;
  */
 public class WKBWriter {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
-
     public static byte[] write( Geometry geom )
                             throws ParseException {
-        if ( geom instanceof GeometryReference ) {
-            geom = ( (GeometryReference<Geometry>) geom ).getReferencedObject();
+        geom = unwrap( geom );
+        int dim = Math.min( 3, Math.max( 2, geom.getCoordinateDimension() ) );
+        if ( !isEncodable( geom ) ) {
+            // com.vividsolutions.jts.io.WKBWriter is not thread safe
+            com.vividsolutions.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+            return new com.vividsolutions.jts.io.WKBWriter( dim ).write( jtsGeom );
         }
-        // com.vividsolutions.jts.io.WKBWriter is not thread safe
-        int dim = geom.getCoordinateDimension();
-        return new com.vividsolutions.jts.io.WKBWriter(dim).write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+        byte[] wkb = new byte[getLength( geom, dim )];
+        ByteBuffer buffer = ByteBuffer.wrap( wkb );
+        writeGeometry( buffer, geom, dim );
+        return wkb;
     }
 
     public static void write( Geometry geom, OutputStream os )
                             throws IOException, ParseException {
-        // com.vividsolutions.jts.io.WKBWriter is not thread safe
-        //TODO: test for dimentionality here aswell?
-        new com.vividsolutions.jts.io.WKBWriter().write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry(),
-                                                         new OutputStreamOutStream( os ) );
+        os.write( write( geom ) );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Geometry unwrap( Geometry geom ) {
+        if ( geom instanceof GeometryReference ) {
+            return ( (GeometryReference<Geometry>) geom ).getReferencedObject();
+        }
+        return geom;
+    }
+
+    private static boolean isEncodable( Geometry geom ) {
+        switch ( geom.getGeometryType() ) {
+        case PRIMITIVE_GEOMETRY:
+            return getPrimitiveTypeCode( (GeometricPrimitive) geom ) != -1;
+        case MULTI_GEOMETRY:
+            if ( getMultiTypeCode( (MultiGeometry<?>) geom ) == -1 ) {
+                return false;
+            }
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                if ( !isEncodable( unwrap( member ) ) ) {
+                    return false;
+                }
+            }
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static int getPrimitiveTypeCode( GeometricPrimitive geom ) {
+        switch ( geom.getPrimitiveType() ) {
+        case Point:
+            return WKB_POINT;
+        case Curve:
+            return isLinear( (Curve) geom ) ? WKB_LINESTRING : -1;
+        case Surface:
+            if ( ( (Surface) geom ).getSurfaceType() != SurfaceType.Polygon ) {
+                return -1;
+            }
+            Polygon polygon = (Polygon) geom;
+            if ( !isLinear( polygon.getExteriorRing() ) ) {
+                return -1;
+            }
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                if ( !isLinear( interior ) ) {
+                    return -1;
+                }
+            }
+            return WKB_POLYGON;
+        default:
+            return -1;
+        }
+    }
+
+    private static boolean isLinear( Curve curve ) {
+        if ( curve.getCurveType() == CurveType.LineString ) {
+            return true;
+        }
+        return curve.getCurveType() == CurveType.Ring && ( (Ring) curve ).getRingType() == RingType.LinearRing;
+    }
+
+    private static int getMultiTypeCode( MultiGeometry<?> geom ) {
+        switch ( geom.getMultiGeometryType() ) {
+        case MULTI_POINT:
+            return WKB_MULTIPOINT;
+        case MULTI_CURVE:
+        case MULTI_LINE_STRING:
+            return WKB_MULTILINESTRING;
+        case MULTI_SURFACE:
+        case MULTI_POLYGON:
+            return WKB_MULTIPOLYGON;
+        case MULTI_GEOMETRY:
+            return WKB_GEOMETRYCOLLECTION;
+        default:
+            return -1;
+        }
+    }
+
+    private static int getLength( Geometry geom, int dim ) {
+        // byte order + type
+        int length = 5;
+        if ( geom.getGeometryType() == Geometry.GeometryType.MULTI_GEOMETRY ) {
+            length += 4;
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                length += getLength( unwrap( member ), dim );
+            }
+            return length;
+        }
+        switch ( getPrimitiveTypeCode( (GeometricPrimitive) geom ) ) {
+        case WKB_POINT:
+            return length + 8 * dim;
+        case WKB_LINESTRING:
+            return length + 4 + ( (Curve) geom ).getControlPoints().size() * 8 * dim;
+        default:
+            Polygon polygon = (Polygon) geom;
+            length += 8 + polygon.getExteriorRing().getControlPoints().size() * 8 * dim;
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                length += 4 + interior.getControlPoints().size() * 8 * dim;
+            }
+            return length;
+        }
+    }
+
+    private static void writeGeometry( ByteBuffer buffer, Geometry geom, int dim ) {
+        int typeFlag = dim == 3 ? EWKB_Z_FLAG : 0;
+        // big endian
+        buffer.put( (byte) 0 );
+        if ( geom.getGeometryType() == Geometry.GeometryType.MULTI_GEOMETRY ) {
+            MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+            buffer.putInt( getMultiTypeCode( multi ) | typeFlag );
+            buffer.putInt( multi.size() );
+            for ( Geometry member : multi ) {
+                writeGeometry( buffer, unwrap( member ), dim );
+            }
+            return;
+        }
+        int type = getPrimitiveTypeCode( (GeometricPrimitive) geom );
+        buffer.putInt( type | typeFlag );
+        switch ( type ) {
+        case WKB_POINT:
+            writeCoordinates( buffer, (Point) geom, dim );
+            break;
+        case WKB_LINESTRING:
+            writePoints( buffer, ( (Curve) geom ).getControlPoints(), dim );
+            break;
+        default:
+            Polygon polygon = (Polygon) geom;
+            buffer.putInt( 1 + polygon.getInteriorRings().size() );
+            writePoints( buffer, polygon.getExteriorRing().getControlPoints(), dim );
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                writePoints( buffer, interior.getControlPoints(), dim );
+            }
+        }
+    }
+
+    private static void writePoints( ByteBuffer buffer, Points points, int dim ) {
+        buffer.putInt( points.size() );
+        if ( points instanceof PackedPoints && points.getDimension() == dim ) {
+            // bulk copy of the packed ordinates
+            double[] coords = points.getAsArray();
+            DoubleBuffer doubles = buffer.asDoubleBuffer();
+            doubles.put( coords );
+            buffer.position( buffer.position() + coords.length * 8 );
+        } else {
+            for ( Point point : points ) {
+                writeCoordinates( buffer, point, dim );
+            }
+        }
+    }
+
+    private static void writeCoordinates( ByteBuffer buffer, Point point, int dim ) {
+        int pointDim = point.getCoordinateDimension();
+        for ( int d = 0; d < dim; d++ ) {
+            buffer.putDouble( d < pointDim ? point.get( d ) : Double.NaN );
+        }
     }
-}
\ No newline at end of file
+}
@@ -72,6 +72,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 
 /**
  * Abstract base class for the default {@link Geometry} implementation.
@@ -113,6 +115,9 @@ public abstract class AbstractDefaultGeometry implements Geometry {
     // contains an equivalent (or best-fit) JTS geometry object
     protected com.vividsolutions.jts.geom.Geometry jtsGeometry;
 
+    // lazily built, indexed version of the JTS geometry
+    private PreparedGeometry preparedJtsGeometry;
+
     protected Envelope env;
 
     /**
@@ -300,6 +305,20 @@ public abstract class AbstractDefaultGeometry implements Geometry {
         return jtsGeometry;
     }
 
+    /**
+     * Returns a prepared version of the JTS geometry. Prepared geometries keep index structures (segment and
+     * point-in-polygon indexes) that speed up repeated predicate evaluation against the same geometry, e.g. when it is
+     * the literal of a spatial filter that is evaluated for many features.
+     * 
+     * @return prepared JTS geometry, never <code>null</code>
+     */
+    public PreparedGeometry getPreparedJTSGeometry() {
+        if ( preparedJtsGeometry == null ) {
+            preparedJtsGeometry = PreparedGeometryFactory.prepare( getJTSGeometry() );
+        }
+        return preparedJtsGeometry;
+    }
+
     protected com.vividsolutions.jts.geom.Geometry buildJTSGeometry() {
         throw new UnsupportedOperationException( "#buildJTSGeometry() is not implemented for "
                                                  + this.getClass().getName() );
@@ -151,7 +151,7 @@ public class PackedPoints implements Points {
 
     @Override
     public Envelope expandEnvelope( Envelope env ) {
-        for ( int i = 0; i < coordinates.length; i += 2 ) {
+        for ( int i = 0; i < coordinates.length; i += dimension ) {
             env.expandToInclude( coordinates[i], coordinates[i + 1] );
         }
         return env;
@@ -179,17 +179,20 @@ public class PackedPoints implements Points {
 
     @Override
     public double getOrdinate( int index, int ordinateIndex ) {
-        return get( index ).get( ordinateIndex );
+        if ( ordinateIndex >= dimension ) {
+            return Double.NaN;
+        }
+        return coordinates[index * dimension + ordinateIndex];
     }
 
     @Override
     public double getX( int index ) {
-        return get( index ).get0();
+        return coordinates[index * dimension];
     }
 
     @Override
     public double getY( int index ) {
-        return get( index ).get1();
+        return coordinates[index * dimension + 1];
     }
 
     @Override
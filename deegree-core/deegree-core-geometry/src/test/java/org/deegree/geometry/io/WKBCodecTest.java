@@ -0,0 +1,156 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.junit.Test;
+
+/**
+ * Tests for {@link WKBReader} and {@link WKBWriter}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class WKBCodecTest {
+
+    private static final String[] WKT = { "POINT (1 2)", "LINESTRING (1 2, 3 4, 5 6)",
+                                         "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 2))",
+                                         "MULTIPOINT ((1 2), (3 4))", "MULTILINESTRING ((1 2, 3 4), (5 6, 7 8))",
+                                         "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+                                         "GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (1 2, 3 4))" };
+
+    @Test
+    public void testEncodingMatchesJTS()
+                            throws Exception {
+        for ( String wkt : WKT ) {
+            Geometry geom = new WKTReader( null ).read( wkt );
+            com.vividsolutions.jts.geom.Geometry jtsGeom = ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+            byte[] expected = new com.vividsolutions.jts.io.WKBWriter( 2 ).write( jtsGeom );
+            assertArrayEquals( wkt, expected, WKBWriter.write( geom ) );
+        }
+    }
+
+    @Test
+    public void testRoundtrip()
+                            throws Exception {
+        for ( String wkt : WKT ) {
+            Geometry geom = new WKTReader( null ).read( wkt );
+            Geometry decoded = WKBReader.read( WKBWriter.write( geom ), null );
+            assertEquals( WKTWriter.write( geom ), WKTWriter.write( decoded ) );
+        }
+    }
+
+    @Test
+    public void testRoundtrip3D()
+                            throws Exception {
+        LineString ls = (LineString) new WKTReader( null ).read( "LINESTRING (1 2 3, 4 5 6)" );
+        LineString decoded = (LineString) WKBReader.read( WKBWriter.write( ls ), null );
+        assertEquals( 3, decoded.getCoordinateDimension() );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, decoded.getControlPoints().getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testReadLittleEndianEWKBWithSRIDAndM()
+                            throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate( 1 + 4 + 4 + 32 ).order( ByteOrder.LITTLE_ENDIAN );
+        buffer.put( (byte) 1 );
+        buffer.putInt( 0x20000000 | 0x40000000 | 0x80000000 | 1 );
+        buffer.putInt( 4326 );
+        buffer.putDouble( 7 ).putDouble( 8 ).putDouble( 9 ).putDouble( 10 );
+        Point p = (Point) WKBReader.read( buffer.array(), null );
+        assertArrayEquals( new double[] { 7, 8, 9 }, p.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testReadISOZ()
+                            throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate( 1 + 4 + 24 );
+        buffer.put( (byte) 0 );
+        buffer.putInt( 1001 );
+        buffer.putDouble( 1 ).putDouble( 2 ).putDouble( 3 );
+        Point p = (Point) WKBReader.read( buffer.array(), null );
+        assertArrayEquals( new double[] { 1, 2, 3 }, p.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testReadConsecutiveFromBuffer()
+                            throws Exception {
+        byte[] first = WKBWriter.write( new WKTReader( null ).read( WKT[2] ) );
+        byte[] second = WKBWriter.write( new WKTReader( null ).read( WKT[5] ) );
+        ByteBuffer buffer = ByteBuffer.allocate( first.length + second.length + 3 );
+        buffer.put( first ).put( second ).put( new byte[3] );
+        buffer.flip();
+        assertTrue( WKBReader.read( buffer, null ) instanceof Polygon );
+        assertTrue( WKBReader.read( buffer, null ) instanceof MultiPolygon );
+        assertEquals( 3, buffer.remaining() );
+    }
+
+    @Test
+    public void testReadEmpty()
+                            throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate( 9 );
+        buffer.put( (byte) 0 ).putInt( 7 ).putInt( 0 );
+        assertNull( WKBReader.read( buffer.array(), null ) );
+    }
+
+    @Test(expected = com.vividsolutions.jts.io.ParseException.class)
+    public void testReadTruncated()
+                            throws Exception {
+        byte[] wkb = WKBWriter.write( new WKTReader( null ).read( WKT[1] ) );
+        byte[] truncated = new byte[wkb.length - 4];
+        System.arraycopy( wkb, 0, truncated, 0, truncated.length );
+        WKBReader.read( truncated, null );
+    }
+}
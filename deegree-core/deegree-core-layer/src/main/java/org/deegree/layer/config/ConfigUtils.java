@@ -53,6 +53,7 @@ import org.deegree.layer.persistence.base.jaxb.StyleRefType.Style.LegendGraphic;
 import org.deegree.layer.persistence.base.jaxb.StyleRefType.Style.LegendStyle;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptions.Antialias;
+import org.deegree.rendering.r2d.context.MapOptions.Generalization;
 import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
 import org.deegree.rendering.r2d.context.MapOptions.Quality;
 import org.deegree.style.persistence.StyleStore;
@@ -243,7 +244,13 @@ public final class ConfigUtils {
         } else if ( cfg.getFeatureInfoRadius() != null ) {
             rad = Math.max( 0, cfg.getFeatureInfoRadius() );
         }
-        return new MapOptions( quali, interpol, alias, maxFeats, rad );
+        MapOptions options = new MapOptions( quali, interpol, alias, maxFeats, rad );
+        try {
+            options.setGeneralization( Generalization.valueOf( cfg.getGeneralization() ) );
+        } catch ( Throwable e ) {
+            // ignore
+        }
+        return options;
     }
 
     public static Map<String, Dimension<?>> parseDimensions( String layerName, List<DimensionType> dimensions ) {
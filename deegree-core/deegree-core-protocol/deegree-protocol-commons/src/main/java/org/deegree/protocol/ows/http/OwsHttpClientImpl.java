@@ -50,6 +50,7 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpConnectionParams;
@@ -59,6 +60,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Default implementation of {@link OwsHttpClient}.
+ * <p>
+ * Connections are leased from the shared {@link OwsHttpConnectionPool} and kept alive for subsequent requests.
+ * </p>
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -144,7 +148,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
             DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
             LOG.debug( "Performing GET request: " + query );
             HttpResponse httpResponse = httpClient.execute( httpGet );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), sb.toString() );
+            response = new OwsHttpResponseImpl( httpResponse, httpGet, sb.toString() );
         } catch ( Throwable e ) {
             e.printStackTrace();
             String msg = "Error performing GET request on '" + query + "': " + e.getMessage();
@@ -167,7 +171,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
             entity.setContentType( contentType );
             httpPost.setEntity( entity );
             HttpResponse httpResponse = httpClient.execute( httpPost );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), endPoint.toString() );
+            response = new OwsHttpResponseImpl( httpResponse, httpPost, endPoint.toString() );
         } catch ( Throwable e ) {
             String msg = "Error performing POST request on '" + endPoint + "': " + e.getMessage();
             throw new IOException( msg );
@@ -176,7 +180,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
     }
 
     private DefaultHttpClient getInitializedHttpClient( URL url ) {
-        DefaultHttpClient client = new DefaultHttpClient();
+        DefaultHttpClient client = OwsHttpConnectionPool.createHttpClient();
         setTimeouts( client );
         setProxies( url, client );
         setCredentials( url, client );
@@ -192,6 +196,8 @@ public class OwsHttpClientImpl implements OwsHttpClient {
     private void setTimeouts( DefaultHttpClient client ) {
         HttpConnectionParams.setConnectionTimeout( client.getParams(), connectionTimeoutMillis );
         HttpConnectionParams.setSoTimeout( client.getParams(), readTimeoutMillis );
+        // don't wait forever if the pool is exhausted
+        HttpClientParams.setConnectionManagerTimeout( client.getParams(), connectionTimeoutMillis );
     }
 
     private void setCredentials( URL url, DefaultHttpClient client ) {
@@ -0,0 +1,251 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.protocol.ows.http;
+
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+
+/**
+ * Shared, pooled HTTP transport used by {@link OwsHttpClientImpl}.
+ * <p>
+ * All remote OWS requests lease their connections from a single pool, so connections to the same endpoint (route) are
+ * kept alive and reused instead of being re-established for every request. The pool is configured using the
+ * following system properties:
+ * <ul>
+ * <li><code>deegree.http.maxConnectionsPerHost</code>: maximum number of connections per endpoint (default: 20)</li>
+ * <li><code>deegree.http.maxConnectionsTotal</code>: maximum number of connections in total (default: 200)</li>
+ * <li><code>deegree.http.idleTimeout</code>: seconds after which idle connections are evicted (default: 30)</li>
+ * <li><code>deegree.http.keepAlive</code>: maximum seconds a connection is kept alive (default: 60)</li>
+ * <li><code>deegree.http.gzip</code>: request and transparently decode gzip/deflate responses (default: false)</li>
+ * </ul>
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class OwsHttpConnectionPool {
+
+    private static final Logger LOG = getLogger( OwsHttpConnectionPool.class );
+
+    private static final int MAX_PER_HOST = getInteger( "deegree.http.maxConnectionsPerHost", 20 );
+
+    private static final int MAX_TOTAL = getInteger( "deegree.http.maxConnectionsTotal", 200 );
+
+    private static final int IDLE_TIMEOUT_SECS = getInteger( "deegree.http.idleTimeout", 30 );
+
+    private static final int KEEP_ALIVE_SECS = getInteger( "deegree.http.keepAlive", 60 );
+
+    private static final boolean GZIP = getBoolean( "deegree.http.gzip" );
+
+    private static RecordingConnectionManager connManager;
+
+    private static IdleConnectionEvictor evictor;
+
+    private OwsHttpConnectionPool() {
+        // only static access
+    }
+
+    /**
+     * Creates a new http client that leases its connections from the shared pool.
+     * <p>
+     * The returned client may be customized (timeouts, proxies, credentials), but its connection manager must not be
+     * shut down.
+     * </p>
+     * 
+     * @return a new http client, never <code>null</code>
+     */
+    static DefaultHttpClient createHttpClient() {
+        DefaultHttpClient client = new DefaultHttpClient( getConnectionManager() );
+        client.setKeepAliveStrategy( new BoundedKeepAliveStrategy( KEEP_ALIVE_SECS * 1000L ) );
+        if ( GZIP ) {
+            client.addRequestInterceptor( new RequestAcceptEncoding() );
+            client.addResponseInterceptor( new ResponseContentEncoding() );
+        }
+        return client;
+    }
+
+    private static synchronized ClientConnectionManager getConnectionManager() {
+        if ( connManager == null ) {
+            LOG.debug( "Initializing shared http connection pool (max per host: " + MAX_PER_HOST + ", max total: "
+                       + MAX_TOTAL + ")." );
+            connManager = new RecordingConnectionManager( SchemeRegistryFactory.createDefault() );
+            connManager.setDefaultMaxPerRoute( MAX_PER_HOST );
+            connManager.setMaxTotal( MAX_TOTAL );
+            evictor = new IdleConnectionEvictor( connManager );
+            evictor.start();
+        }
+        return connManager;
+    }
+
+    /**
+     * Returns the statistics of the shared pool, one entry per endpoint that has been connected to.
+     * 
+     * @return pool statistics, never <code>null</code>, empty if no remote request has been performed yet
+     */
+    public static synchronized List<OwsHttpPoolStats> getStats() {
+        List<OwsHttpPoolStats> stats = new ArrayList<OwsHttpPoolStats>();
+        if ( connManager == null ) {
+            return stats;
+        }
+        for ( HttpRoute route : connManager.routes ) {
+            String endpoint = route.getTargetHost().toURI();
+            if ( route.getProxyHost() != null ) {
+                endpoint += " (via " + route.getProxyHost().toURI() + ")";
+            }
+            stats.add( new OwsHttpPoolStats( endpoint, connManager.getStats( route ) ) );
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of the shared pool, summed up over all endpoints.
+     * 
+     * @return total pool statistics, can be <code>null</code> (if no remote request has been performed yet)
+     */
+    public static synchronized OwsHttpPoolStats getTotalStats() {
+        if ( connManager == null ) {
+            return null;
+        }
+        return new OwsHttpPoolStats( "Total", connManager.getTotalStats() );
+    }
+
+    /**
+     * Closes all pooled connections and stops the eviction thread. The pool is re-initialized on the next request.
+     */
+    public static synchronized void shutdown() {
+        if ( evictor != null ) {
+            evictor.interrupt();
+            evictor = null;
+        }
+        if ( connManager != null ) {
+            connManager.shutdown();
+            connManager = null;
+        }
+    }
+
+    private static class RecordingConnectionManager extends PoolingClientConnectionManager {
+
+        private final Set<HttpRoute> routes = Collections.newSetFromMap( new ConcurrentHashMap<HttpRoute, Boolean>() );
+
+        RecordingConnectionManager( SchemeRegistry schemeRegistry ) {
+            super( schemeRegistry );
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection( HttpRoute route, Object state ) {
+            routes.add( route );
+            return super.requestConnection( route, state );
+        }
+    }
+
+    private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+
+        private final long maxMillis;
+
+        BoundedKeepAliveStrategy( long maxMillis ) {
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
+            long millis = serverStrategy.getKeepAliveDuration( response, context );
+            if ( millis <= 0 || millis > maxMillis ) {
+                return maxMillis;
+            }
+            return millis;
+        }
+    }
+
+    private static class IdleConnectionEvictor extends Thread {
+
+        private final ClientConnectionManager connManager;
+
+        IdleConnectionEvictor( ClientConnectionManager connManager ) {
+            super( "deegree-http-evictor" );
+            this.connManager = connManager;
+            setDaemon( true );
+        }
+
+        @Override
+        public void run() {
+            long sleepMillis = Math.max( 1, Math.min( IDLE_TIMEOUT_SECS, 5 ) ) * 1000L;
+            try {
+                while ( !isInterrupted() ) {
+                    sleep( sleepMillis );
+                    connManager.closeExpiredConnections();
+                    connManager.closeIdleConnections( IDLE_TIMEOUT_SECS, SECONDS );
+                }
+            } catch ( InterruptedException e ) {
+                // shutdown
+            }
+        }
+    }
+
+}
@@ -52,7 +52,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.slf4j.Logger;
@@ -74,7 +74,7 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     private final HttpResponse httpResponse;
 
-    private final ClientConnectionManager connManager;
+    private final HttpUriRequest request;
 
     private final String url;
 
@@ -84,15 +84,16 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
      * Creates a new {@link OwsHttpResponseImpl} instance.
      * 
      * @param httpResponse
-     * @param httpClient
+     * @param request
+     *            request that produced the response, used to abort the connection if it cannot be released
      * @param url
      * @throws IllegalStateException
      * @throws IOException
      */
-    OwsHttpResponseImpl( HttpResponse httpResponse, ClientConnectionManager connManager, String url )
+    OwsHttpResponseImpl( HttpResponse httpResponse, HttpUriRequest request, String url )
                             throws IllegalStateException, IOException {
         this.httpResponse = httpResponse;
-        this.connManager = connManager;
+        this.request = request;
         this.url = url;
         HttpEntity entity = httpResponse.getEntity();
         if ( entity == null ) {
@@ -154,6 +155,7 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     private void throwHttpStatusException( StatusLine statusLine )
                             throws OWSExceptionReport {
+        close();
         OWSException exception = new OWSException( "Request failed with HTTP status " + statusLine.getStatusCode()
                                                    + ": " + statusLine.getReasonPhrase(), NO_APPLICABLE_CODE );
         throw new OWSExceptionReport( Collections.singletonList( exception ), null, null );
@@ -176,6 +178,12 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     @Override
     public void close() {
-        connManager.shutdown();
+        // closing the content stream hands the connection back to the pool
+        try {
+            is.close();
+        } catch ( IOException e ) {
+            LOG.debug( "Could not release connection for '" + url + "', aborting: " + e.getMessage() );
+            request.abort();
+        }
     }
 }
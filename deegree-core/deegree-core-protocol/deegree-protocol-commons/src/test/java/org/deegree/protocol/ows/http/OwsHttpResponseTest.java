@@ -50,7 +50,7 @@ import javax.xml.stream.XMLStreamReader;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.h2.util.IOUtils;
 import org.junit.Before;
@@ -90,12 +90,12 @@ public class OwsHttpResponseTest {
 
     private OwsHttpResponse scenario4;
 
-    private ClientConnectionManager connManager;
+    private HttpUriRequest request;
 
     @Before
     public void setup()
                             throws Exception {
-        connManager = mock( ClientConnectionManager.class );
+        request = mock( HttpUriRequest.class );
         scenario1 = createScenario1();
         scenario2 = createScenario2();
         scenario3 = createScenario3();
@@ -239,37 +239,53 @@ public class OwsHttpResponseTest {
     @Test
     public void testClose()
                             throws IOException {
-        Mockito.verify( connManager, times( 0 ) ).shutdown();
-        scenario1.close();
-        Mockito.verify( connManager, times( 1 ) ).shutdown();
+        InputStream payload = mock( InputStream.class );
+        OwsHttpResponse response = new OwsHttpResponseImpl( mockHttpResponse( payload, 200 ), request, "" );
+        Mockito.verify( payload, times( 0 ) ).close();
+        response.close();
+        Mockito.verify( payload, times( 1 ) ).close();
+        Mockito.verify( request, times( 0 ) ).abort();
+    }
+
+    /**
+     * Test method for {@link org.deegree.protocol.ows.http.OwsHttpResponse#close()}.
+     */
+    @Test
+    public void testCloseAbortsIfConnectionCannotBeReleased()
+                            throws IOException {
+        InputStream payload = mock( InputStream.class );
+        Mockito.doThrow( new IOException() ).when( payload ).close();
+        OwsHttpResponse response = new OwsHttpResponseImpl( mockHttpResponse( payload, 200 ), request, "" );
+        response.close();
+        Mockito.verify( request, times( 1 ) ).abort();
     }
 
     private OwsHttpResponse createScenario1()
                             throws Exception {
         InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO1_RESPONSE );
         HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario2()
                             throws Exception {
         InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO2_RESPONSE );
         HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario3()
                             throws Exception {
         InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO3_RESPONSE );
         HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario4()
                             throws Exception {
         InputStream payload = new ByteArrayInputStream( new byte[0] );
         HttpResponse httpResponse = mockHttpResponse( payload, 500 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private HttpResponse mockHttpResponse( InputStream payload, int status )
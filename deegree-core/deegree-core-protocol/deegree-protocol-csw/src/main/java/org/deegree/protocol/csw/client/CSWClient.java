@@ -224,7 +224,16 @@ public class CSWClient extends AbstractOWSClient<CSWCapabilitiesAdapter> {
             throw new RuntimeException( "Error creating XML request: " + getRecords, t );
         }
         OwsHttpResponse response = httpClient.doPost( endPoint, "text/xml", request, null );
-        return new GetRecordsResponse( response );
+        boolean success = false;
+        try {
+            GetRecordsResponse result = new GetRecordsResponse( response );
+            success = true;
+            return result;
+        } finally {
+            if ( !success ) {
+                response.close();
+            }
+        }
 
     }
 
@@ -246,11 +255,15 @@ public class CSWClient extends AbstractOWSClient<CSWCapabilitiesAdapter> {
         Map<String, String> params = getGetRecordByIdKvpParams( fileIdentifier, schema );
 
         OwsHttpResponse response = httpClient.doGet( endPoint, params, null );
-
-        XMLStreamReader xmlStream = response.getAsXMLStream();
-        XMLStreamUtils.skipStartDocument( xmlStream );
-        moveToNextStartElement( xmlStream );
-        return MetadataRecordFactory.create( xmlStream );
+        try {
+            XMLStreamReader xmlStream = response.getAsXMLStream();
+            XMLStreamUtils.skipStartDocument( xmlStream );
+            moveToNextStartElement( xmlStream );
+            // the record is copied into memory, so the connection can be released afterwards
+            return MetadataRecordFactory.create( xmlStream );
+        } finally {
+            response.close();
+        }
     }
 
     private Map<String, String> getGetRecordByIdKvpParams( String fileIdentifier, String schema ) {
@@ -292,7 +305,16 @@ public class CSWClient extends AbstractOWSClient<CSWCapabilitiesAdapter> {
             throw new RuntimeException( "Error insering " + records.size() + " records", t );
         }
         OwsHttpResponse response = httpClient.doPost( endPoint, "text/xml", request, null );
-        return new TransactionResponse( response );
+        boolean success = false;
+        try {
+            TransactionResponse result = new TransactionResponse( response );
+            success = true;
+            return result;
+        } finally {
+            if ( !success ) {
+                response.close();
+            }
+        }
     }
 
     public boolean update( String fileIdentifier, OMElement record ) {
@@ -278,10 +278,11 @@ public class WFSClient extends AbstractOWSClient<WFSCapabilitiesAdapter> {
             kvp.put( "filter", bos.toString( "UTF-8" ) );
         }
 
+        // fetch the schema first, the response must not be left open if that fails
+        AppSchema appSchema = getAppSchema();
+        GMLVersion gmlVersion = appSchema.getGMLSchema().getVersion();
         OwsHttpResponse response = httpClient.doGet( endPoint, kvp, null );
-
-        GMLVersion gmlVersion = getAppSchema().getGMLSchema().getVersion();
-        return new GetFeatureResponse<Feature>( response, getAppSchema(), gmlVersion );
+        return new GetFeatureResponse<Feature>( response, appSchema, gmlVersion );
     }
 
     /**
@@ -309,10 +310,10 @@ public class WFSClient extends AbstractOWSClient<WFSCapabilitiesAdapter> {
             throw new RuntimeException( "Error creating XML request: " + request );
         }
 
+        AppSchema appSchema = getAppSchema();
+        GMLVersion gmlVersion = appSchema.getGMLSchema().getVersion();
         OwsHttpResponse response = httpClient.doPost( endPoint, "text/xml", requestSink, null );
-
-        GMLVersion gmlVersion = getAppSchema().getGMLSchema().getVersion();
-        return new GetFeatureResponse<Feature>( response, getAppSchema(), gmlVersion );
+        return new GetFeatureResponse<Feature>( response, appSchema, gmlVersion );
     }
 
     public GMLObject getGMLObject( GetGmlObject request ) {
@@ -43,14 +43,35 @@ package org.deegree.rendering.r2d;
 
 import static org.deegree.commons.utils.math.MathUtils.isZero;
 import static org.deegree.rendering.r2d.OrientationFixer.fixOrientation;
+import static org.deegree.rendering.r2d.RectangleClipper.INSIDE;
+import static org.deegree.rendering.r2d.RectangleClipper.OUTSIDE;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometries;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiCurve;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiLineString;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.multi.MultiSurface;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.primitive.segments.CurveSegment.CurveSegmentType;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
 import org.deegree.geometry.standard.DefaultEnvelope;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
 import org.deegree.style.styling.LineStyling;
 import org.deegree.style.styling.PolygonStyling;
@@ -58,6 +79,11 @@ import org.deegree.style.styling.components.Stroke;
 
 /**
  * Responsible for clipping geometries to the area of the viewport.
+ * <p>
+ * Points, linear curves, polygons with linear rings and aggregates of these are clipped directly on their coordinate
+ * sequences (see {@link RectangleClipper}), which preserves ring orientation. Other geometries are clipped using a JTS
+ * intersection.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -66,10 +92,17 @@ import org.deegree.style.styling.components.Stroke;
  */
 class GeometryClipper {
 
+    private static final GeometryFactory fac = new GeometryFactory();
+
     private final Polygon clippingArea;
 
+    private final RectangleClipper rectangleClipper;
+
     GeometryClipper( final Envelope viewPort, final int width ) {
         this.clippingArea = calculateClippingArea( viewPort, width );
+        Envelope env = clippingArea.getEnvelope();
+        this.rectangleClipper = new RectangleClipper( env.getMin().get0(), env.getMin().get1(), env.getMax().get0(),
+                                                      env.getMax().get1() );
     }
 
     private Polygon calculateClippingArea( final Envelope bbox, final int width ) {
@@ -92,6 +125,13 @@ class GeometryClipper {
      * @return the clipped geometry or the original geometry if the geometry lays completely in the drawing area.
      */
     Geometry clipGeometry( final Geometry geom ) {
+        if ( isLinear( geom ) ) {
+            return clipLinear( geom );
+        }
+        return clipWithJts( geom );
+    }
+
+    private Geometry clipWithJts( final Geometry geom ) {
         if ( clippingArea != null && !clippingArea.contains( geom ) ) {
             try {
                 Geometry clippedGeometry = clippingArea.getIntersection( geom );
@@ -116,6 +156,175 @@ class GeometryClipper {
         return geom;
     }
     
+    private boolean isLinear( final Geometry geom ) {
+        if ( geom instanceof Point ) {
+            return true;
+        }
+        if ( geom instanceof Curve ) {
+            return isLinear( (Curve) geom );
+        }
+        if ( geom instanceof Polygon ) {
+            Polygon polygon = (Polygon) geom;
+            if ( polygon.getExteriorRing() == null || !isLinear( polygon.getExteriorRing() ) ) {
+                return false;
+            }
+            if ( polygon.getInteriorRings() != null ) {
+                for ( Ring ring : polygon.getInteriorRings() ) {
+                    if ( !isLinear( ring ) ) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if ( geom instanceof MultiGeometry<?> ) {
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                if ( !isLinear( member ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isLinear( final Curve curve ) {
+        List<CurveSegment> segments = curve.getCurveSegments();
+        if ( segments == null || segments.isEmpty() ) {
+            return false;
+        }
+        for ( CurveSegment segment : segments ) {
+            if ( segment.getSegmentType() != CurveSegmentType.LINE_STRING_SEGMENT ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clips a geometry that passed {@link #isLinear(Geometry)}.
+     * 
+     * @return the clipped geometry, the original geometry if it lies completely inside, or <code>null</code>
+     */
+    private Geometry clipLinear( final Geometry geom ) {
+        if ( geom instanceof Point ) {
+            Point p = (Point) geom;
+            return rectangleClipper.contains( p.get0(), p.get1() ) ? geom : null;
+        }
+        if ( geom instanceof Curve ) {
+            return clipCurve( (Curve) geom );
+        }
+        if ( geom instanceof Polygon ) {
+            return clipPolygon( (Polygon) geom );
+        }
+        return clipMultiGeometry( (MultiGeometry<?>) geom );
+    }
+
+    private Geometry clipCurve( final Curve curve ) {
+        Points points = curve.getControlPoints();
+        int relation = rectangleClipper.relate( points );
+        if ( relation == INSIDE ) {
+            return curve;
+        }
+        if ( relation == OUTSIDE ) {
+            return null;
+        }
+        List<double[]> parts = rectangleClipper.clipLine( points );
+        if ( parts.isEmpty() ) {
+            return null;
+        }
+        ICRS crs = curve.getCoordinateSystem();
+        if ( parts.size() == 1 ) {
+            return fac.createLineString( null, crs, new PackedPoints( crs, parts.get( 0 ), 2 ) );
+        }
+        List<LineString> lineStrings = new ArrayList<LineString>( parts.size() );
+        for ( double[] part : parts ) {
+            lineStrings.add( fac.createLineString( null, crs, new PackedPoints( crs, part, 2 ) ) );
+        }
+        return fac.createMultiLineString( null, crs, lineStrings );
+    }
+
+    private Geometry clipPolygon( final Polygon polygon ) {
+        Ring exterior = polygon.getExteriorRing();
+        Points points = exterior.getControlPoints();
+        int relation = rectangleClipper.relate( points );
+        if ( relation == INSIDE ) {
+            return polygon;
+        }
+        if ( relation == OUTSIDE ) {
+            return null;
+        }
+        ICRS crs = polygon.getCoordinateSystem();
+        Ring clippedExterior = clipRing( points, crs );
+        if ( clippedExterior == null ) {
+            return null;
+        }
+        List<Ring> clippedInteriors = new ArrayList<Ring>();
+        if ( polygon.getInteriorRings() != null ) {
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                Points interiorPoints = interior.getControlPoints();
+                relation = rectangleClipper.relate( interiorPoints );
+                if ( relation == INSIDE ) {
+                    clippedInteriors.add( interior );
+                } else if ( relation != OUTSIDE ) {
+                    Ring clippedInterior = clipRing( interiorPoints, crs );
+                    if ( clippedInterior != null ) {
+                        clippedInteriors.add( clippedInterior );
+                    }
+                }
+            }
+        }
+        return fac.createPolygon( null, crs, clippedExterior, clippedInteriors );
+    }
+
+    private Ring clipRing( final Points points, final ICRS crs ) {
+        double[] coords = rectangleClipper.clipRing( points );
+        if ( coords == null ) {
+            return null;
+        }
+        return fac.createLinearRing( null, crs, new PackedPoints( crs, coords, 2 ) );
+    }
+
+    @SuppressWarnings("unchecked")
+    private Geometry clipMultiGeometry( final MultiGeometry<?> multi ) {
+        List<Geometry> members = new ArrayList<Geometry>( multi.size() );
+        boolean changed = false;
+        for ( Geometry member : multi ) {
+            Geometry clipped = clipLinear( member );
+            if ( clipped != member ) {
+                changed = true;
+            }
+            if ( clipped instanceof MultiGeometry<?> ) {
+                members.addAll( (MultiGeometry<?>) clipped );
+            } else if ( clipped != null ) {
+                members.add( clipped );
+            }
+        }
+        if ( !changed ) {
+            return multi;
+        }
+        if ( members.isEmpty() ) {
+            return null;
+        }
+        ICRS crs = multi.getCoordinateSystem();
+        if ( multi instanceof MultiPolygon ) {
+            return fac.createMultiPolygon( null, crs, (List<Polygon>) (List<?>) members );
+        }
+        if ( multi instanceof MultiSurface<?> ) {
+            return fac.createMultiSurface( null, crs, (List<Surface>) (List<?>) members );
+        }
+        if ( multi instanceof MultiPoint ) {
+            return fac.createMultiPoint( null, crs, (List<Point>) (List<?>) members );
+        }
+        if ( multi instanceof MultiLineString ) {
+            return fac.createMultiLineString( null, crs, (List<LineString>) (List<?>) members );
+        }
+        if ( multi instanceof MultiCurve<?> ) {
+            return fac.createMultiCurve( null, crs, (List<Curve>) (List<?>) members );
+        }
+        return fac.createMultiGeometry( null, crs, members );
+    }
+
     /**
      * Check if the passed Geometry is a Polygon (or the first Geometry of a Collection) and the exterior Ring has CW orientation  
      * 
@@ -0,0 +1,430 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.NONE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.primitive.segments.CurveSegment.CurveSegmentType;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.rendering.r2d.context.MapOptions.Generalization;
+
+/**
+ * Removes vertices from lines and polygons which would not be visible at the current resolution.
+ * <p>
+ * Vertices closer than the tolerance to the last kept vertex are always dropped. Depending on the
+ * {@link Generalization} mode, the result is then simplified using Douglas-Peucker (with the tolerance as maximum
+ * distance) or Visvalingam-Whyatt (with the squared tolerance as minimum effective area). Rings stay closed; rings
+ * which would degenerate are reduced to a minimal closed ring of four points, and interior rings whose extent is below
+ * the tolerance are dropped. Other geometries than linear curves and polygons with linear rings are returned
+ * unchanged.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class GeometryGeneralizer {
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    private final Generalization mode;
+
+    private final double tolerance;
+
+    /**
+     * @param mode
+     *            may be <code>null</code> (no generalization)
+     * @param tolerance
+     *            in world units
+     */
+    GeometryGeneralizer( Generalization mode, double tolerance ) {
+        this.mode = mode == null ? NONE : mode;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return true, if geometries are actually changed by this generalizer
+     */
+    boolean isEnabled() {
+        return mode != NONE && tolerance > 0;
+    }
+
+    /**
+     * @param geom
+     *            the geometry in world coordinates, must not be <code>null</code>
+     * @return the generalized geometry, or the original one if nothing could be removed or the geometry is not
+     *         supported
+     */
+    Geometry generalize( Geometry geom ) {
+        if ( !isEnabled() ) {
+            return geom;
+        }
+        if ( geom instanceof Curve && isLinear( (Curve) geom ) ) {
+            return generalizeCurve( (Curve) geom );
+        }
+        if ( geom instanceof Polygon ) {
+            return generalizePolygon( (Polygon) geom );
+        }
+        return geom;
+    }
+
+    private Geometry generalizeCurve( Curve curve ) {
+        Points points = curve.getControlPoints();
+        double[] coords = generalize( points, false );
+        if ( coords == null ) {
+            return curve;
+        }
+        ICRS crs = curve.getCoordinateSystem();
+        return fac.createLineString( null, crs, new PackedPoints( crs, coords, 2 ) );
+    }
+
+    private Geometry generalizePolygon( Polygon polygon ) {
+        Ring exterior = polygon.getExteriorRing();
+        if ( exterior == null || !isLinear( exterior ) ) {
+            return polygon;
+        }
+        List<Ring> interiors = polygon.getInteriorRings();
+        if ( interiors != null ) {
+            for ( Ring interior : interiors ) {
+                if ( !isLinear( interior ) ) {
+                    return polygon;
+                }
+            }
+        }
+        ICRS crs = polygon.getCoordinateSystem();
+        boolean changed = false;
+        Ring newExterior = generalizeRing( exterior, crs );
+        if ( newExterior != exterior ) {
+            changed = true;
+        }
+        List<Ring> newInteriors = new ArrayList<Ring>( interiors == null ? 0 : interiors.size() );
+        if ( interiors != null ) {
+            for ( Ring interior : interiors ) {
+                if ( isBelowTolerance( interior.getControlPoints() ) ) {
+                    // sub-pixel hole, not visible
+                    changed = true;
+                    continue;
+                }
+                Ring newInterior = generalizeRing( interior, crs );
+                if ( newInterior != interior ) {
+                    changed = true;
+                }
+                newInteriors.add( newInterior );
+            }
+        }
+        if ( !changed ) {
+            return polygon;
+        }
+        return fac.createPolygon( null, crs, newExterior, newInteriors );
+    }
+
+    private Ring generalizeRing( Ring ring, ICRS crs ) {
+        double[] coords = generalize( ring.getControlPoints(), true );
+        if ( coords == null ) {
+            return ring;
+        }
+        return fac.createLinearRing( null, crs, new PackedPoints( crs, coords, 2 ) );
+    }
+
+    private boolean isBelowTolerance( Points points ) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for ( int i = 0; i < points.size(); ++i ) {
+            double x = points.getX( i ), y = points.getY( i );
+            minX = Math.min( minX, x );
+            minY = Math.min( minY, y );
+            maxX = Math.max( maxX, x );
+            maxY = Math.max( maxY, y );
+        }
+        return maxX - minX <= tolerance && maxY - minY <= tolerance;
+    }
+
+    private static boolean isLinear( Curve curve ) {
+        List<CurveSegment> segments = curve.getCurveSegments();
+        if ( segments == null || segments.isEmpty() ) {
+            return false;
+        }
+        for ( CurveSegment segment : segments ) {
+            if ( segment.getSegmentType() != CurveSegmentType.LINE_STRING_SEGMENT ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param points
+     * @param ring
+     *            true, if the points form a closed ring
+     * @return the generalized coordinates as packed x,y array, or <code>null</code>, if no vertex was removed. Rings
+     *         which would degenerate are reduced to four points.
+     */
+    double[] generalize( Points points, boolean ring ) {
+        int minPoints = ring ? 4 : 2;
+        int size = points.size();
+        if ( size <= minPoints ) {
+            return null;
+        }
+        double[] coords = decimate( points );
+        switch ( mode ) {
+        case DOUGLASPEUCKER:
+            coords = douglasPeucker( coords );
+            break;
+        case VISVALINGAM:
+            coords = visvalingam( coords );
+            break;
+        default:
+            // decimation only
+        }
+        if ( coords.length / 2 < minPoints ) {
+            // degenerated (sub-pixel) ring, lines always keep their end points
+            return collapseRing( points );
+        }
+        if ( coords.length / 2 == size ) {
+            return null;
+        }
+        return coords;
+    }
+
+    /**
+     * Reduces a ring with more than four points to a closed ring made of the first vertex and two vertices in between.
+     */
+    private static double[] collapseRing( Points points ) {
+        int size = points.size();
+        int a = size / 3, b = 2 * size / 3;
+        return new double[] { points.getX( 0 ), points.getY( 0 ), points.getX( a ), points.getY( a ), points.getX( b ),
+                             points.getY( b ), points.getX( 0 ), points.getY( 0 ) };
+    }
+
+    /**
+     * Keeps the first and the last vertex, and every vertex that is farther than the tolerance from the last kept one.
+     */
+    double[] decimate( Points points ) {
+        int size = points.size();
+        double[] coords = new double[size * 2];
+        double tol2 = tolerance * tolerance;
+        double lastX = points.getX( 0 ), lastY = points.getY( 0 );
+        coords[0] = lastX;
+        coords[1] = lastY;
+        int length = 2;
+        for ( int i = 1; i < size - 1; ++i ) {
+            double x = points.getX( i ), y = points.getY( i );
+            double dx = x - lastX, dy = y - lastY;
+            if ( dx * dx + dy * dy > tol2 ) {
+                coords[length++] = x;
+                coords[length++] = y;
+                lastX = x;
+                lastY = y;
+            }
+        }
+        double x = points.getX( size - 1 ), y = points.getY( size - 1 );
+        double dx = x - lastX, dy = y - lastY;
+        if ( length > 2 && dx * dx + dy * dy <= tol2 ) {
+            // replace last kept vertex by the end point
+            length -= 2;
+        }
+        coords[length++] = x;
+        coords[length++] = y;
+        return trim( coords, length );
+    }
+
+    double[] douglasPeucker( double[] coords ) {
+        int size = coords.length / 2;
+        if ( size < 3 ) {
+            return coords;
+        }
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        double tol2 = tolerance * tolerance;
+        // explicit stack of index ranges instead of recursion
+        int[] stack = new int[size * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        int kept = 2;
+        while ( top > 0 ) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDist = -1;
+            int index = -1;
+            for ( int i = first + 1; i < last; ++i ) {
+                double dist = segmentDistance2( coords, i, first, last );
+                if ( dist > maxDist ) {
+                    maxDist = dist;
+                    index = i;
+                }
+            }
+            if ( index != -1 && maxDist > tol2 ) {
+                keep[index] = true;
+                ++kept;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+        double[] result = new double[kept * 2];
+        int length = 0;
+        for ( int i = 0; i < size; ++i ) {
+            if ( keep[i] ) {
+                result[length++] = coords[2 * i];
+                result[length++] = coords[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    double[] visvalingam( double[] coords ) {
+        final int size = coords.length / 2;
+        if ( size < 3 ) {
+            return coords;
+        }
+        final int[] prev = new int[size];
+        final int[] next = new int[size];
+        final double[] area = new double[size];
+        PriorityQueue<Vertex> queue = new PriorityQueue<Vertex>( size );
+        for ( int i = 0; i < size; ++i ) {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+        }
+        for ( int i = 1; i < size - 1; ++i ) {
+            area[i] = triangleArea( coords, i - 1, i, i + 1 );
+            queue.add( new Vertex( i, area[i] ) );
+        }
+        double minArea = tolerance * tolerance;
+        boolean[] removed = new boolean[size];
+        int remaining = size;
+        Vertex v;
+        while ( ( v = queue.poll() ) != null && v.area < minArea ) {
+            if ( removed[v.index] || v.area != area[v.index] ) {
+                // stale entry
+                continue;
+            }
+            removed[v.index] = true;
+            --remaining;
+            int p = prev[v.index], n = next[v.index];
+            next[p] = n;
+            prev[n] = p;
+            // the area of neighbours must not become smaller than the one of the removed vertex
+            if ( p > 0 ) {
+                area[p] = Math.max( v.area, triangleArea( coords, prev[p], p, n ) );
+                queue.add( new Vertex( p, area[p] ) );
+            }
+            if ( n < size - 1 ) {
+                area[n] = Math.max( v.area, triangleArea( coords, p, n, next[n] ) );
+                queue.add( new Vertex( n, area[n] ) );
+            }
+        }
+        double[] result = new double[remaining * 2];
+        int length = 0;
+        for ( int i = 0; i < size; ++i ) {
+            if ( !removed[i] ) {
+                result[length++] = coords[2 * i];
+                result[length++] = coords[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    private static double segmentDistance2( double[] coords, int i, int first, int last ) {
+        double x = coords[2 * i], y = coords[2 * i + 1];
+        double x0 = coords[2 * first], y0 = coords[2 * first + 1];
+        double x1 = coords[2 * last], y1 = coords[2 * last + 1];
+        double dx = x1 - x0, dy = y1 - y0;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : ( ( x - x0 ) * dx + ( y - y0 ) * dy ) / len2;
+        if ( t < 0 ) {
+            t = 0;
+        } else if ( t > 1 ) {
+            t = 1;
+        }
+        double px = x0 + t * dx - x, py = y0 + t * dy - y;
+        return px * px + py * py;
+    }
+
+    private static double triangleArea( double[] coords, int a, int b, int c ) {
+        double ax = coords[2 * a], ay = coords[2 * a + 1];
+        double bx = coords[2 * b], by = coords[2 * b + 1];
+        double cx = coords[2 * c], cy = coords[2 * c + 1];
+        return Math.abs( ( bx - ax ) * ( cy - ay ) - ( cx - ax ) * ( by - ay ) ) / 2;
+    }
+
+    private static double[] trim( double[] coords, int length ) {
+        if ( length == coords.length ) {
+            return coords;
+        }
+        double[] result = new double[length];
+        System.arraycopy( coords, 0, result, 0, length );
+        return result;
+    }
+
+    private static class Vertex implements Comparable<Vertex> {
+
+        final int index;
+
+        final double area;
+
+        Vertex( int index, double area ) {
+            this.index = index;
+            this.area = area;
+        }
+
+        @Override
+        public int compareTo( Vertex o ) {
+            return Double.compare( area, o.area );
+        }
+    }
+
+}
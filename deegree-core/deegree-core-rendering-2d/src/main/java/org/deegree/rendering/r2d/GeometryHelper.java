@@ -46,7 +46,6 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D.Double;
-import java.util.Iterator;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
@@ -58,7 +57,6 @@ import org.deegree.geometry.linearization.GeometryLinearizer;
 import org.deegree.geometry.linearization.NumPointsCriterion;
 import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Curve;
-import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Surface;
 import org.slf4j.Logger;
 
@@ -100,20 +98,16 @@ class GeometryHelper {
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
-        Iterator<Point> iter = points.iterator();
-        Point p = iter.next();
-        double x = p.get0(), y = p.get1();
+        // indexed access avoids creating a point object per vertex (for packed/JTS backed sequences)
+        int size = points.size();
+        double x = points.getX( 0 ), y = points.getY( 0 );
         line.moveTo( x, y );
-        while ( iter.hasNext() ) {
-            p = iter.next();
-            if ( iter.hasNext() ) {
-                line.lineTo( p.get0(), p.get1() );
+        for ( int i = 1; i < size; ++i ) {
+            double px = points.getX( i ), py = points.getY( i );
+            if ( i == size - 1 && close && isZero( x - px ) && isZero( y - py ) ) {
+                line.closePath();
             } else {
-                if ( close && isZero( x - p.get0() ) && isZero( y - p.get1() ) ) {
-                    line.closePath();
-                } else {
-                    line.lineTo( p.get0(), p.get1() );
-                }
+                line.lineTo( px, py );
             }
         }
 
@@ -50,7 +50,10 @@ import java.awt.Graphics2D;
 import java.awt.TexturePaint;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+import org.deegree.commons.utils.Pair;
 import org.deegree.style.styling.components.Fill;
 import org.deegree.style.styling.components.Graphic;
 import org.deegree.style.styling.components.UOM;
@@ -66,26 +69,41 @@ import org.deegree.style.utils.UomCalculator;
  */
 class Java2DFillRenderer {
 
+    static final int MAX_CACHED = 256;
+
     private UomCalculator uomCalculator;
 
     private Graphics2D graphics;
 
+    // stylings are shared between features, so the images of their graphics can be reused
+    private final Map<Graphic, Pair<UOM, BufferedImage>> graphicImages;
+
     Java2DFillRenderer( UomCalculator uomCalculator, Graphics2D graphics ) {
         this.uomCalculator = uomCalculator;
         this.graphics = graphics;
+        this.graphicImages = new IdentityHashMap<Graphic, Pair<UOM, BufferedImage>>();
     }
 
     void applyGraphicFill( Graphic graphic, UOM uom ) {
         BufferedImage img;
 
         if ( graphic.image == null ) {
-            int size = round( uomCalculator.considerUOM( graphic.size, uom ) );
-            img = new BufferedImage( size, size, TYPE_INT_ARGB );
-            Graphics2D g = img.createGraphics();
-            Java2DRenderer renderer = new Java2DRenderer( g );
-            renderMark( graphic.mark, graphic.size < 0 ? 6 : size, uom, renderer.rendererContext, 0, 0,
-                        graphic.rotation );
-            g.dispose();
+            Pair<UOM, BufferedImage> cached = graphicImages.get( graphic );
+            if ( cached != null && cached.first == uom ) {
+                img = cached.second;
+            } else {
+                int size = round( uomCalculator.considerUOM( graphic.size, uom ) );
+                img = new BufferedImage( size, size, TYPE_INT_ARGB );
+                Graphics2D g = img.createGraphics();
+                Java2DRenderer renderer = new Java2DRenderer( g );
+                renderMark( graphic.mark, graphic.size < 0 ? 6 : size, uom, renderer.rendererContext, 0, 0,
+                            graphic.rotation );
+                g.dispose();
+                if ( graphicImages.size() >= MAX_CACHED ) {
+                    graphicImages.clear();
+                }
+                graphicImages.put( graphic, new Pair<UOM, BufferedImage>( uom, img ) );
+            }
         } else {
             img = graphic.image;
         }
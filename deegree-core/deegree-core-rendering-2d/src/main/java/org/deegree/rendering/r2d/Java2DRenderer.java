@@ -56,6 +56,7 @@ import org.deegree.geometry.primitive.Curve;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Surface;
 import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.rendering.r2d.context.MapOptions.Generalization;
 import org.deegree.style.styling.LineStyling;
 import org.deegree.style.styling.PointStyling;
 import org.deegree.style.styling.PolygonStyling;
@@ -87,6 +88,8 @@ public class Java2DRenderer implements Renderer {
 
     public RendererContext rendererContext;
 
+    private GeometryGeneralizer generalizer = new GeometryGeneralizer( null, 0 );
+
     /**
      * @param graphics
      * @param width
@@ -139,6 +142,20 @@ public class Java2DRenderer implements Renderer {
         rendererContext = new RendererContext( pixelSize, res, graphics, this, bbox, width, worldToScreen );
     }
 
+    /**
+     * Sets the generalization to apply to lines and polygons before rendering them. The tolerance is half a pixel.
+     * 
+     * @param generalization
+     *            may be <code>null</code>, in which case no generalization is done
+     */
+    public void setGeneralization( Generalization generalization ) {
+        double pixel = 1 / Math.abs( worldToScreen.getScaleX() );
+        if ( Double.isInfinite( pixel ) || Double.isNaN( pixel ) ) {
+            pixel = 0;
+        }
+        generalizer = new GeometryGeneralizer( generalization, pixel / 2 );
+    }
+
     @Override
     public void render( final PointStyling styling, final Geometry geom ) {
         if ( geom == null ) {
@@ -185,6 +202,7 @@ public class Java2DRenderer implements Renderer {
         } else {
             renderGeometry = rendererContext.geomHelper.transform( geom );
         }
+        renderGeometry = generalizer.generalize( renderGeometry );
         if ( renderGeometry instanceof Curve ) {
             final Double line = rendererContext.geomHelper.fromCurve( (Curve) renderGeometry, false );
             rendererContext.strokeRenderer.applyStroke( styling.stroke, styling.uom, line, styling.perpendicularOffset,
@@ -222,6 +240,7 @@ public class Java2DRenderer implements Renderer {
         if ( renderGeometry instanceof Envelope ) {
             renderGeometry = envelopeToPolygon( (Envelope) renderGeometry );
         }
+        renderGeometry = generalizer.generalize( renderGeometry );
         if ( renderGeometry instanceof Surface ) {
             rendererContext.polygonRenderer.render( styling, (Surface) renderGeometry );
         }
@@ -56,9 +56,13 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+import org.deegree.commons.utils.Pair;
 import org.deegree.rendering.r2d.strokes.OffsetStroke;
 import org.deegree.rendering.r2d.strokes.ShapeStroke;
+import org.deegree.style.styling.components.Graphic;
 import org.deegree.style.styling.components.PerpendicularOffsetType;
 import org.deegree.style.styling.components.Stroke;
 import org.deegree.style.styling.components.UOM;
@@ -83,10 +87,14 @@ class Java2DStrokeRenderer {
 
     private Java2DFillRenderer fillRenderer;
 
+    // stylings are shared between features, so the shapes of their graphics can be reused
+    private final Map<Graphic, Pair<UOM, Shape>> graphicShapes;
+
     Java2DStrokeRenderer( Graphics2D graphics, UomCalculator uomCalculator, Java2DFillRenderer fillRenderer ) {
         this.graphics = graphics;
         this.uomCalculator = uomCalculator;
         this.fillRenderer = fillRenderer;
+        this.graphicShapes = new IdentityHashMap<Graphic, Pair<UOM, Shape>>();
     }
 
     void applyStroke( Stroke stroke, UOM uom, Shape object, double perpendicularOffset, PerpendicularOffsetType type ) {
@@ -113,8 +121,7 @@ class Java2DStrokeRenderer {
     private boolean applyGraphicStroke( Stroke stroke, UOM uom, Shape object, double perpendicularOffset,
                                         PerpendicularOffsetType type ) {
         if ( stroke.stroke.image == null && stroke.stroke.imageURL != null ) {
-            Shape shape = getShapeFromSvg( stroke.stroke.imageURL,
-                                           uomCalculator.considerUOM( stroke.stroke.size, uom ), stroke.stroke.rotation );
+            Shape shape = getGraphicShape( stroke.stroke, uom );
             graphics.setStroke( new ShapeStroke( shape, uomCalculator.considerUOM( stroke.strokeGap
                                                                                    + stroke.stroke.size, uom ),
                                                  stroke.positionPercentage, stroke.strokeInitialGap ) );
@@ -125,8 +132,7 @@ class Java2DStrokeRenderer {
                 transed = new OffsetStroke( poff, null, type ).createStrokedShape( transed );
             }
             double sz = stroke.stroke.size;
-            Shape shape = getShapeFromMark( stroke.stroke.mark, sz <= 0 ? 6 : uomCalculator.considerUOM( sz, uom ),
-                                            stroke.stroke.rotation );
+            Shape shape = getGraphicShape( stroke.stroke, uom );
             if ( sz <= 0 ) {
                 sz = 6;
             }
@@ -148,6 +154,27 @@ class Java2DStrokeRenderer {
         return false;
     }
 
+    private Shape getGraphicShape( Graphic graphic, UOM uom ) {
+        Pair<UOM, Shape> cached = graphicShapes.get( graphic );
+        if ( cached != null && cached.first == uom ) {
+            return cached.second;
+        }
+        Shape shape;
+        if ( graphic.image == null && graphic.imageURL != null ) {
+            double sz = uomCalculator.considerUOM( graphic.size, uom );
+            shape = getShapeFromSvg( graphic.imageURL, sz, graphic.rotation );
+        } else {
+            double sz = graphic.size;
+            shape = getShapeFromMark( graphic.mark, sz <= 0 ? 6 : uomCalculator.considerUOM( sz, uom ),
+                                      graphic.rotation );
+        }
+        if ( graphicShapes.size() >= Java2DFillRenderer.MAX_CACHED ) {
+            graphicShapes.clear();
+        }
+        graphicShapes.put( graphic, new Pair<UOM, Shape>( uom, shape ) );
+        return shape;
+    }
+
     private void applyNormalStroke( Stroke stroke, UOM uom, Shape object, double perpendicularOffset,
                                     PerpendicularOffsetType type ) {
         int linecap = getLinecap( stroke );
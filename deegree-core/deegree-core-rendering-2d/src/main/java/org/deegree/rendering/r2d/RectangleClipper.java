@@ -0,0 +1,344 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.geometry.points.Points;
+
+/**
+ * Clips coordinate sequences against an axis-aligned rectangle without building intermediate geometries.
+ * <p>
+ * Lines are clipped segment-wise using the Liang-Barsky algorithm, rings are clipped using the Sutherland-Hodgman
+ * algorithm. Results are returned as packed <code>x,y</code> coordinate arrays. Note that Sutherland-Hodgman may
+ * produce zero-width parts along the rectangle boundary when clipping concave rings, so the clipping rectangle should
+ * extend beyond the visible area.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class RectangleClipper {
+
+    /** Sequence lies completely inside the rectangle. */
+    static final int INSIDE = 0;
+
+    /** Sequence lies completely outside the rectangle. */
+    static final int OUTSIDE = 1;
+
+    /** Sequence may cross the rectangle boundary. */
+    static final int CROSSING = 2;
+
+    private static final double AREA_EPSILON = 1e-10;
+
+    private final double minX;
+
+    private final double minY;
+
+    private final double maxX;
+
+    private final double maxY;
+
+    RectangleClipper( double minX, double minY, double maxX, double maxY ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Determines the relation of the bounding box of the points to the rectangle.
+     * 
+     * @param points
+     *            must not be <code>null</code>
+     * @return one of {@link #INSIDE}, {@link #OUTSIDE} or {@link #CROSSING}
+     */
+    int relate( Points points ) {
+        int size = points.size();
+        if ( size == 0 ) {
+            return OUTSIDE;
+        }
+        double x0 = points.getX( 0 ), y0 = points.getY( 0 );
+        double x1 = x0, y1 = y0;
+        for ( int i = 1; i < size; ++i ) {
+            double x = points.getX( i );
+            double y = points.getY( i );
+            if ( x < x0 ) {
+                x0 = x;
+            } else if ( x > x1 ) {
+                x1 = x;
+            }
+            if ( y < y0 ) {
+                y0 = y;
+            } else if ( y > y1 ) {
+                y1 = y;
+            }
+        }
+        if ( x0 >= minX && x1 <= maxX && y0 >= minY && y1 <= maxY ) {
+            return INSIDE;
+        }
+        if ( x1 < minX || x0 > maxX || y1 < minY || y0 > maxY ) {
+            return OUTSIDE;
+        }
+        return CROSSING;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return true, if the point lies inside the rectangle or on its boundary
+     */
+    boolean contains( double x, double y ) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * Clips a line string.
+     * 
+     * @param points
+     *            the line string's control points, must not be <code>null</code>
+     * @return the visible parts as packed x,y arrays, each with at least two points, never <code>null</code>
+     */
+    List<double[]> clipLine( Points points ) {
+        List<double[]> parts = new ArrayList<double[]>( 2 );
+        int size = points.size();
+        if ( size < 2 ) {
+            return parts;
+        }
+        double[] t = new double[2];
+        CoordinateBuffer part = null;
+        double x0 = points.getX( 0 ), y0 = points.getY( 0 );
+        for ( int i = 1; i < size; ++i ) {
+            double x1 = points.getX( i ), y1 = points.getY( i );
+            double dx = x1 - x0, dy = y1 - y0;
+            t[0] = 0;
+            t[1] = 1;
+            if ( clipT( -dx, x0 - minX, t ) && clipT( dx, maxX - x0, t ) && clipT( -dy, y0 - minY, t )
+                 && clipT( dy, maxY - y0, t ) ) {
+                if ( part == null ) {
+                    part = new CoordinateBuffer( size - i + 1 );
+                    part.add( x0 + t[0] * dx, y0 + t[0] * dy );
+                }
+                if ( t[1] < 1 ) {
+                    part.add( x0 + t[1] * dx, y0 + t[1] * dy );
+                    parts.add( part.toArray() );
+                    part = null;
+                } else {
+                    part.add( x1, y1 );
+                }
+            } else if ( part != null ) {
+                parts.add( part.toArray() );
+                part = null;
+            }
+            x0 = x1;
+            y0 = y1;
+        }
+        if ( part != null ) {
+            parts.add( part.toArray() );
+        }
+        return parts;
+    }
+
+    private static boolean clipT( double p, double q, double[] t ) {
+        if ( p == 0 ) {
+            return q >= 0;
+        }
+        double r = q / p;
+        if ( p < 0 ) {
+            if ( r > t[1] ) {
+                return false;
+            }
+            if ( r > t[0] ) {
+                t[0] = r;
+            }
+        } else {
+            if ( r < t[0] ) {
+                return false;
+            }
+            if ( r < t[1] ) {
+                t[1] = r;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clips a (closed) ring. The orientation of the ring is preserved.
+     * 
+     * @param points
+     *            the ring's control points, must not be <code>null</code>
+     * @return the clipped ring as closed packed x,y array, or <code>null</code>, if nothing of the ring's area is left
+     */
+    double[] clipRing( Points points ) {
+        int size = points.size();
+        if ( size > 1 && points.getX( 0 ) == points.getX( size - 1 ) && points.getY( 0 ) == points.getY( size - 1 ) ) {
+            // ignore closing point
+            --size;
+        }
+        if ( size < 3 ) {
+            return null;
+        }
+        CoordinateBuffer in = new CoordinateBuffer( size + 4 );
+        for ( int i = 0; i < size; ++i ) {
+            in.add( points.getX( i ), points.getY( i ) );
+        }
+        CoordinateBuffer out = new CoordinateBuffer( size + 4 );
+        for ( int edge = 0; edge < 4 && in.size() > 0; ++edge ) {
+            clipEdge( in, out, edge );
+            CoordinateBuffer tmp = in;
+            in = out;
+            out = tmp;
+            out.clear();
+        }
+        if ( in.size() < 3 || Math.abs( in.area() ) <= AREA_EPSILON * ( maxX - minX ) * ( maxY - minY ) ) {
+            return null;
+        }
+        in.add( in.getX( 0 ), in.getY( 0 ) );
+        return in.toArray();
+    }
+
+    private void clipEdge( CoordinateBuffer in, CoordinateBuffer out, int edge ) {
+        int size = in.size();
+        double px = in.getX( size - 1 ), py = in.getY( size - 1 );
+        boolean prevInside = isInside( px, py, edge );
+        for ( int i = 0; i < size; ++i ) {
+            double x = in.getX( i ), y = in.getY( i );
+            boolean inside = isInside( x, y, edge );
+            if ( inside != prevInside ) {
+                addIntersection( px, py, x, y, edge, out );
+            }
+            if ( inside ) {
+                out.addDistinct( x, y );
+            }
+            px = x;
+            py = y;
+            prevInside = inside;
+        }
+    }
+
+    private boolean isInside( double x, double y, int edge ) {
+        switch ( edge ) {
+        case 0:
+            return x >= minX;
+        case 1:
+            return x <= maxX;
+        case 2:
+            return y >= minY;
+        default:
+            return y <= maxY;
+        }
+    }
+
+    private void addIntersection( double x0, double y0, double x1, double y1, int edge, CoordinateBuffer out ) {
+        if ( edge < 2 ) {
+            double x = edge == 0 ? minX : maxX;
+            out.addDistinct( x, y0 + ( x - x0 ) * ( y1 - y0 ) / ( x1 - x0 ) );
+        } else {
+            double y = edge == 2 ? minY : maxY;
+            out.addDistinct( x0 + ( y - y0 ) * ( x1 - x0 ) / ( y1 - y0 ), y );
+        }
+    }
+
+    /**
+     * Growable packed x,y coordinate array.
+     */
+    private static class CoordinateBuffer {
+
+        private double[] coords;
+
+        private int length;
+
+        CoordinateBuffer( int capacity ) {
+            coords = new double[Math.max( capacity, 2 ) * 2];
+        }
+
+        void add( double x, double y ) {
+            if ( length + 2 > coords.length ) {
+                double[] newCoords = new double[coords.length * 2];
+                System.arraycopy( coords, 0, newCoords, 0, length );
+                coords = newCoords;
+            }
+            coords[length++] = x;
+            coords[length++] = y;
+        }
+
+        void addDistinct( double x, double y ) {
+            if ( length == 0 || coords[length - 2] != x || coords[length - 1] != y ) {
+                add( x, y );
+            }
+        }
+
+        double getX( int i ) {
+            return coords[2 * i];
+        }
+
+        double getY( int i ) {
+            return coords[2 * i + 1];
+        }
+
+        int size() {
+            return length / 2;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        double area() {
+            int size = size();
+            double area = 0;
+            for ( int i = 0, j = size - 1; i < size; j = i++ ) {
+                area += getX( j ) * getY( i ) - getX( i ) * getY( j );
+            }
+            return area / 2;
+        }
+
+        double[] toArray() {
+            double[] result = new double[length];
+            System.arraycopy( coords, 0, result, 0, length );
+            return result;
+        }
+    }
+
+}
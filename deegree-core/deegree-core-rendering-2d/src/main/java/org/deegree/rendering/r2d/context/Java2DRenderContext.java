@@ -1,9 +1,12 @@
 package org.deegree.rendering.r2d.context;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Map;
 
 import org.deegree.rendering.r2d.Java2DLabelRenderer;
 import org.deegree.rendering.r2d.Java2DRasterRenderer;
@@ -11,9 +14,12 @@ import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.rendering.r2d.Java2DTextRenderer;
 import org.deegree.rendering.r2d.Java2DTileRenderer;
 import org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement;
+import org.slf4j.Logger;
 
 public abstract class Java2DRenderContext implements RenderContext {
     
+    private static final Logger LOG = getLogger( Java2DRenderContext.class );
+
     protected final Graphics2D graphics;
     
     protected final OutputStream outputStream;
@@ -28,6 +34,8 @@ public abstract class Java2DRenderContext implements RenderContext {
 
     protected final Java2DTileRenderer tileRenderer;
 
+    private final int labelIterations;
+
     public Java2DRenderContext( RenderingInfo info, Graphics2D graphics, OutputStream outputStream ) {        
         this.graphics = graphics;
         this.outputStream = outputStream;
@@ -38,6 +46,29 @@ public abstract class Java2DRenderContext implements RenderContext {
         labelRenderer = new Java2DLabelRenderer( renderer, textRenderer );
         rasterRenderer = new Java2DRasterRenderer( graphics );
         tileRenderer = new Java2DTileRenderer( graphics, info.getWidth(), info.getHeight(), info.getEnvelope() );
+        labelIterations = getLabelIterations( info );
+    }
+
+    /**
+     * Returns the number of label placement iterations requested by the LABEL_ITERATIONS parameter (or the default),
+     * limited to the maximum of the rendering info.
+     */
+    static int getLabelIterations( RenderingInfo info ) {
+        int iterations = AutoLabelPlacement.DEFAULT_MAX_ITERATIONS;
+        Map<String, String> params = info.getParameterMap();
+        String param = params == null ? null : params.get( "LABEL_ITERATIONS" );
+        if ( param != null ) {
+            try {
+                iterations = Math.max( 0, Integer.parseInt( param.trim() ) );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "The LABEL_ITERATIONS parameter could not be parsed." );
+            }
+        }
+        if ( iterations > info.getMaxLabelIterations() ) {
+            LOG.debug( "Limiting label placement to {} iterations.", info.getMaxLabelIterations() );
+            return Math.max( 0, info.getMaxLabelIterations() );
+        }
+        return iterations;
     }
     
     @Override
@@ -69,7 +100,7 @@ public abstract class Java2DRenderContext implements RenderContext {
     public void optimizeAndDrawLabels() {
         //Optimize Label Placement here, if pointplacement set to auto=true
         try{
-            new AutoLabelPlacement(labelRenderer.getLabels(), renderer );
+            new AutoLabelPlacement( labelRenderer.getLabels(), renderer, labelIterations );
         } catch ( Throwable e ) {
             e.printStackTrace();
         }
@@ -41,6 +41,14 @@ public class LazyImageRenderContext implements RenderContext {
         return renderContext;
     }
 
+    /**
+     * Creates the target image (using the requested format and background) right away, so images painted afterwards
+     * are drawn onto it instead of becoming the target image themselves.
+     */
+    public void initialize() {
+        getRenderContext();
+    }
+
     @Override
     public Renderer getVectorRenderer() {
         LOG.trace( "Obtaining vector renderer" );
@@ -52,6 +52,8 @@ public class MapOptions {
 
     private int featureInfoRadius;
 
+    private Generalization generalization;
+
     public MapOptions( Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
                        int featureInfoRadius ) {
         this.quality = quality;
@@ -136,6 +138,21 @@ public class MapOptions {
         this.featureInfoRadius = featureInfoRadius;
     }
 
+    /**
+     * @return the generalization to apply to lines and polygons before rendering, may be null (use default)
+     */
+    public Generalization getGeneralization() {
+        return generalization;
+    }
+
+    /**
+     * @param generalization
+     *            the generalization to set, may be null
+     */
+    public void setGeneralization( Generalization generalization ) {
+        this.generalization = generalization;
+    }
+
     /**
      * <code>Quality</code>
      * 
@@ -183,6 +200,23 @@ public class MapOptions {
         NONE
     }
 
+    /**
+     * Screen space generalization of lines and polygons. All modes drop vertices closer than half a pixel to the
+     * previously drawn one, <code>DOUGLASPEUCKER</code> and <code>VISVALINGAM</code> additionally simplify the result
+     * with a tolerance of half a pixel.
+     * 
+     * @author last edited by: $Author: stranger $
+     * 
+     * @version $Revision: $, $Date: $
+     */
+    public static enum Generalization {
+        /***/
+        NONE, /***/
+        DECIMATE, /***/
+        DOUGLASPEUCKER, /***/
+        VISVALINGAM
+    }
+
     public interface MapOptionsSetter<T> {
         void setOption( String layer, T value );
     }
@@ -42,6 +42,7 @@ import java.util.Map;
 
 import org.deegree.geometry.Envelope;
 import org.deegree.rendering.r2d.RenderHelper;
+import org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement;
 
 /**
  * 
@@ -69,6 +70,8 @@ public class RenderingInfo {
 
     private Map<String, String> parameters;
 
+    private int maxLabelIterations = AutoLabelPlacement.DEFAULT_ITERATION_LIMIT;
+
     public RenderingInfo( String format, int width, int height, boolean transparent, Color bgcolor, Envelope envelope,
                           double pixelSize, Map<String, String> parameters ) {
         this.format = format;
@@ -165,6 +168,21 @@ public class RenderingInfo {
         return parameters;
     }
 
+    /**
+     * @return the maximum number of label placement iterations a request may ask for (LABEL_ITERATIONS parameter)
+     */
+    public int getMaxLabelIterations() {
+        return maxLabelIterations;
+    }
+
+    /**
+     * @param maxLabelIterations
+     *            the maximum number of label placement iterations a request may ask for (LABEL_ITERATIONS parameter)
+     */
+    public void setMaxLabelIterations( int maxLabelIterations ) {
+        this.maxLabelIterations = maxLabelIterations;
+    }
+
     public double getScale() {
         return calcScaleWMS130( width, height, envelope, envelope.getCoordinateSystem(), pixelSize );
     }
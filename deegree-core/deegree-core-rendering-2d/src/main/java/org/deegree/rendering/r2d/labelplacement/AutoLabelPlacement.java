@@ -39,6 +39,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.deegree.rendering.r2d.Label;
@@ -66,10 +67,18 @@ public class AutoLabelPlacement {
     
     private static final Logger LOG = getLogger( AutoLabelPlacement.class );
 
+    /** Default maximum number of annealing iterations. */
+    public static final int DEFAULT_MAX_ITERATIONS = 2500;
+
+    /** Default upper limit for the number of annealing iterations that may be requested. */
+    public static final int DEFAULT_ITERATION_LIMIT = 25000;
+
     private ArrayList<PointLabelPositionOptions> labelPositionsList;
     
-    // collision matrix of PointLabelPositionOptions that may overlap
-    private boolean[][] collisionMatrix;
+    // indices of the PointLabelPositionOptions that may overlap, per label
+    private int[][] neighbours;
+
+    private final int maxIterations;
     
     float placementQuality = 0.0f;
     int intersectionQuality = 0;
@@ -82,20 +91,23 @@ public class AutoLabelPlacement {
      */
     public AutoLabelPlacement( List<Label> labelList, Renderer renderer )
                             throws Exception {
+        this( labelList, renderer, DEFAULT_MAX_ITERATIONS );
+    }
 
-        UomCalculator uomCalculator = ((Java2DRenderer)renderer).rendererContext.uomCalculator;
+    /**
+     * Finds optimized {@link Label} positions for all Labels in the List. Labels should have {@link TextStyling}.auto set to true
+     *
+     * @param labelList 
+     *          List of Labels to optimize
+     * @param maxIterations
+     *          the maximum number of annealing iterations
+     */
+    public AutoLabelPlacement( List<Label> labelList, Renderer renderer, int maxIterations )
+                            throws Exception {
+        this( createPositionOptions( labelList, ( (Java2DRenderer) renderer ).rendererContext.uomCalculator ),
+              maxIterations );
 
-        labelPositionsList = new ArrayList<PointLabelPositionOptions>(); 
-        for( Label l : labelList){
-            if(l.getStyling().auto)
-                labelPositionsList.add( new PointLabelPositionOptions(l,uomCalculator) );
-        }
-        
-        LOG.debug( "Added "+labelPositionsList.size() + " Labels of " + labelList.size() + " to auto placement" );
-    
         if( labelPositionsList.size() > 1 ){
-            buildCollisionMatrix();
-    
             // do the magic
             try {
                 anneal();
@@ -110,8 +122,41 @@ public class AutoLabelPlacement {
         }
     }
 
+    /**
+     * Prepares the placement of the given label positions (but doesn't optimize it).
+     */
+    AutoLabelPlacement( List<PointLabelPositionOptions> labelPositions, int maxIterations ) {
+        this.maxIterations = maxIterations;
+        labelPositionsList = new ArrayList<PointLabelPositionOptions>( labelPositions );
+        if ( labelPositionsList.size() > 1 ) {
+            buildNeighbours();
+        }
+    }
+
+    private static List<PointLabelPositionOptions> createPositionOptions( List<Label> labelList,
+                                                                          UomCalculator uomCalculator ) {
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( Label l : labelList ) {
+            if ( l.getStyling().auto ) {
+                options.add( new PointLabelPositionOptions( l, uomCalculator ) );
+            }
+        }
+        LOG.debug( "Added " + options.size() + " Labels of " + labelList.size() + " to auto placement" );
+        return options;
+    }
+
+    /**
+     * @return the indices of the potentially overlapping labels, per label
+     */
+    int[][] getNeighbours() {
+        return neighbours;
+    }
+
     /**
      * Performs "Simulated Annealing" on the array of {@link PointLabelPositionOptions}.
+     * <p>
+     * Stops early if the current thread is interrupted (request time-out), the interrupt status is kept.
+     * </p>
      */
     private void anneal() {
 
@@ -129,8 +174,12 @@ public class AutoLabelPlacement {
         LOG.debug( "Starting Annealing with value: " + currentQuality + ", trying to reach: " + ( n + 0.8 * 40 ));
         long now = System.currentTimeMillis();
 
-        while ( counter <= 2500 && currentQuality > ( n + 0.8 * 40 ) ) {
+        while ( counter < maxIterations && currentQuality > ( n + 0.8 * 40 ) ) {
 
+            if ( Thread.currentThread().isInterrupted() ) {
+                LOG.debug( "Label placement has been interrupted." );
+                break;
+            }
             counter++;
             if ( successCounter == 5 ) {
                 successCounter = 0;
@@ -178,24 +227,98 @@ public class AutoLabelPlacement {
     }
 
     /**
-     * Builds the collision matrix for all <code>PointLabelPositionOptions</code>.
+     * Finds the potentially overlapping <code>PointLabelPositionOptions</code> for every label. The labels are sorted
+     * into a uniform grid (cell size is about the average label extent), so only labels in nearby cells are tested.
      */
-    private void buildCollisionMatrix() {
+    private void buildNeighbours() {
         
         long now = System.currentTimeMillis();
-        collisionMatrix = new boolean[labelPositionsList.size()][labelPositionsList.size()];
+        int n = labelPositionsList.size();
         
-        for ( int i = 0; i < labelPositionsList.size(); i++ ) {
+        double[][] bounds = new double[n][];
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double sumWidth = 0, sumHeight = 0;
+        for ( int i = 0; i < n; i++ ) {
+            double[] b = labelPositionsList.get( i ).getTotalBounds();
+            bounds[i] = b;
+            minX = Math.min( minX, b[0] );
+            minY = Math.min( minY, b[1] );
+            maxX = Math.max( maxX, b[2] );
+            maxY = Math.max( maxY, b[3] );
+            sumWidth += b[2] - b[0];
+            sumHeight += b[3] - b[1];
+        }
+        
+        double cellSize = Math.max( 1, Math.max( sumWidth, sumHeight ) / n );
+        // limit the number of cells to a multiple of the number of labels
+        while ( ( ( maxX - minX ) / cellSize + 1 ) * ( ( maxY - minY ) / cellSize + 1 ) > 4.0 * n + 16 ) {
+            cellSize *= 2;
+        }
+        int cols = (int) ( ( maxX - minX ) / cellSize ) + 1;
+        int rows = (int) ( ( maxY - minY ) / cellSize ) + 1;
+        
+        // counting sort of the labels into the cells they cover
+        int[] cellStart = new int[cols * rows + 1];
+        int[][] cellRanges = new int[n][];
+        for ( int i = 0; i < n; i++ ) {
+            double[] b = bounds[i];
+            int[] range = new int[] { (int) ( ( b[0] - minX ) / cellSize ), (int) ( ( b[1] - minY ) / cellSize ),
+                                     (int) ( ( b[2] - minX ) / cellSize ), (int) ( ( b[3] - minY ) / cellSize ) };
+            cellRanges[i] = range;
+            for ( int y = range[1]; y <= range[3]; y++ ) {
+                for ( int x = range[0]; x <= range[2]; x++ ) {
+                    cellStart[y * cols + x + 1]++;
+                }
+            }
+        }
+        for ( int c = 0; c < cols * rows; c++ ) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellLabels = new int[cellStart[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for ( int i = 0; i < n; i++ ) {
+            int[] range = cellRanges[i];
+            for ( int y = range[1]; y <= range[3]; y++ ) {
+                for ( int x = range[0]; x <= range[2]; x++ ) {
+                    int c = y * cols + x;
+                    cellLabels[cellStart[c] + fill[c]++] = i;
+                }
+            }
+        }
+        
+        neighbours = new int[n][];
+        int[] lastTested = new int[n];
+        Arrays.fill( lastTested, -1 );
+        int[] buffer = new int[16];
+        long pairs = 0;
+        for ( int i = 0; i < n; i++ ) {
             PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                collisionMatrix[i][j] = choice1.intersectsAny( choice2 );
+            int[] range = cellRanges[i];
+            int count = 0;
+            for ( int y = range[1]; y <= range[3]; y++ ) {
+                for ( int x = range[0]; x <= range[2]; x++ ) {
+                    int c = y * cols + x;
+                    for ( int k = cellStart[c]; k < cellStart[c + 1]; k++ ) {
+                        int j = cellLabels[k];
+                        if ( j == i || lastTested[j] == i ) {
+                            continue;
+                        }
+                        lastTested[j] = i;
+                        if ( choice1.intersectsAny( labelPositionsList.get( j ) ) ) {
+                            if ( count == buffer.length ) {
+                                buffer = Arrays.copyOf( buffer, count * 2 );
+                            }
+                            buffer[count++] = j;
+                        }
+                    }
+                }
             }
-            
+            neighbours[i] = Arrays.copyOf( buffer, count );
+            pairs += count;
         }
         
-        LOG.debug( "Building of collision matrix took: " + ( System.currentTimeMillis() - now ) + " millis." );
+        LOG.debug( "Finding " + pairs / 2 + " potentially overlapping label pairs using a " + cols + "x" + rows
+                   + " grid took: " + ( System.currentTimeMillis() - now ) + " millis." );
     }
     
     /**
@@ -207,61 +330,40 @@ public class AutoLabelPlacement {
      * @param choice
      *          the index of the choice in the labelPositionsList
      */
-    private void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
+    void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
        
-        int changedLabelIntersectionQuality = 0;
-        
-        
-        //calculate, how much the (to bee) changedLabel does contribute to the intersectionQuality
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
+        int[] candidates = neighbours[choice];
         
         //subtract the qualities of the label which is going to be changed
-        intersectionQuality -= changedLabelIntersectionQuality;
+        intersectionQuality -= intersectionQuality( changedLabel, candidates );
         placementQuality -= changedLabel.getQuality();
 
-
         //select a new position randomly
         changedLabel.selectLabelPositionRandomly();
 
-        
-        //calculate, how much the changedLabel does contribute to the intersectionQuality
-        changedLabelIntersectionQuality = 0;
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
         //add the new qualities
-        intersectionQuality += changedLabelIntersectionQuality;
+        intersectionQuality += intersectionQuality( changedLabel, candidates );
         placementQuality += changedLabel.getQuality();
     }
     
+    /**
+     * Calculates how much a label contributes to the intersectionQuality with its current selection.
+     */
+    private int intersectionQuality( PointLabelPositionOptions label, int[] candidates ) {
+        int quality = 0;
+        for ( int i : candidates ) {
+            if ( label.intersectsSelection( labelPositionsList.get( i ) ) ) {
+                quality += 40;
+            }
+        }
+        return quality;
+    }
+    
     /**
      * Calculates the initial quality values for the currently selected combination of {@link Label}s.
      *
      */
-    private void objectiveFunction() {
+    void objectiveFunction() {
         
         placementQuality = 0.0f;
         intersectionQuality = 0;
@@ -271,12 +373,9 @@ public class AutoLabelPlacement {
             //placementQuality += choice1.getQuality() + 1.0f;
             placementQuality += choice1.getQuality();
             
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                if ( collisionMatrix[i][j] ) {
-                    PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                    if ( choice1.intersectsSelection( choice2 ) ) {
-                        intersectionQuality += 40;
-                    }
+            for ( int j : neighbours[i] ) {
+                if ( j > i && choice1.intersectsSelection( labelPositionsList.get( j ) ) ) {
+                    intersectionQuality += 40;
                 }
             }
         }
@@ -125,6 +125,19 @@ public class PointLabelPositionOptions {
         return totalMaxY;
     }
     
+    /**
+     * Returns the axis aligned bounding box of all possible positions (considering rotation).
+     * 
+     * @return minx, miny, maxx, maxy
+     */
+    double[] getTotalBounds() {
+        if ( label.getStyling().rotation != 0 ) {
+            com.vividsolutions.jts.geom.Envelope env = totalPolygon.getEnvelopeInternal();
+            return new double[] { env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY() };
+        }
+        return new double[] { totalMinX, totalMinY, totalMaxX, totalMaxY };
+    }
+    
     double getSelectedMinX() {
         return selMinX;
     }
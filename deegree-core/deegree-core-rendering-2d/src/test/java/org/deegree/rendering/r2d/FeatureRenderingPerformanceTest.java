@@ -0,0 +1,227 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.lang.System.currentTimeMillis;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POINT;
+import static org.deegree.feature.types.property.ValueRepresentation.INLINE;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.PropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.GMLObjectXPath;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.style.styling.PointStyling;
+import org.jaxen.XPath;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+/**
+ * Compares the XPath evaluation strategies of {@link TypedObjectNodeXPathEvaluator} (compiled expressions and direct
+ * navigation) with the former per-feature Jaxen parsing when rendering a stream of 100.000 features.
+ * <p>
+ * Only executed if the system property <code>deegree.performance-tests</code> is set to <code>true</code>.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class FeatureRenderingPerformanceTest {
+
+    private static final Logger LOG = getLogger( FeatureRenderingPerformanceTest.class );
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final int NUM_FEATURES = 100000;
+
+    private static final ICRS mapcs = CRSManager.getCRSRef( "CRS:1" );
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private List<Feature> features;
+
+    private ValueReference path;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue( Boolean.getBoolean( "deegree.performance-tests" ) );
+
+        QName cityName = new QName( APP_NS, "city", "app" );
+        QName positionName = new QName( APP_NS, "position", "app" );
+        QName addressName = new QName( APP_NS, "address", "app" );
+        SimplePropertyType cityPt = new SimplePropertyType( cityName, 1, 1, STRING, null, null );
+        GeometryPropertyType positionPt = new GeometryPropertyType( positionName, 1, 1, null, null, POINT, DIM_2,
+                                                                    INLINE );
+        FeatureType addressFt = new GenericFeatureType( new QName( APP_NS, "Address", "app" ),
+                                                        Collections.<PropertyType> singletonList( positionPt ), false );
+        FeaturePropertyType addressPt = new FeaturePropertyType( addressName, 1, 1, null, null, addressFt.getName(),
+                                                                 INLINE );
+        List<PropertyType> personPts = new ArrayList<PropertyType>();
+        personPts.add( cityPt );
+        personPts.add( addressPt );
+        FeatureType personFt = new GenericFeatureType( new QName( APP_NS, "Person", "app" ), personPts, false );
+
+        features = new ArrayList<Feature>( NUM_FEATURES );
+        for ( int i = 0; i < NUM_FEATURES; ++i ) {
+            Geometry position = geomFac.createPoint( null, new double[] { i % 1000, i / 100 }, mapcs );
+            List<Property> addressProps = Collections.<Property> singletonList( new GenericProperty( positionPt,
+                                                                                                     position ) );
+            Feature address = new GenericFeature( addressFt, "ADDRESS_" + i, addressProps, null );
+            List<Property> personProps = new ArrayList<Property>();
+            personProps.add( new SimpleProperty( cityPt, "City " + ( i % 50 ) ) );
+            personProps.add( new GenericProperty( addressPt, address ) );
+            features.add( new GenericFeature( personFt, "PERSON_" + i, personProps, null ) );
+        }
+
+        NamespaceBindings nsContext = new NamespaceBindings();
+        nsContext.addNamespace( "app", APP_NS );
+        path = new ValueReference( "app:address/app:Address/app:position", nsContext );
+    }
+
+    @Test
+    public void testRenderFeatureStream()
+                            throws Exception {
+        // warm up both code paths
+        renderUsingJaxen();
+        renderUsingEvaluator();
+
+        long time = currentTimeMillis();
+        int jaxenCount = renderUsingJaxen();
+        long jaxenTime = currentTimeMillis() - time;
+
+        time = currentTimeMillis();
+        int evaluatorCount = renderUsingEvaluator();
+        long evaluatorTime = currentTimeMillis() - time;
+
+        assertEquals( NUM_FEATURES, jaxenCount );
+        assertEquals( NUM_FEATURES, evaluatorCount );
+        LOG.info( "Rendering {} features, parsing the XPath per feature: {} ms", NUM_FEATURES, jaxenTime );
+        LOG.info( "Rendering {} features, using TypedObjectNodeXPathEvaluator: {} ms", NUM_FEATURES, evaluatorTime );
+    }
+
+    private int renderUsingJaxen()
+                            throws Exception {
+        BufferedImage img = new BufferedImage( 1000, 1000, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        Java2DRenderer r = createRenderer( img, g );
+        PointStyling styling = new PointStyling();
+        int cnt = 0;
+        for ( Feature f : features ) {
+            synchronized ( f ) {
+                XPath xpath = new GMLObjectXPath( path.getAsText(), f );
+                xpath.setNamespaceContext( path.getNsContext() );
+                for ( Object node : xpath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, f ) ) ) {
+                    cnt += render( r, styling, ( (XPathNode<?>) node ).getValue() );
+                }
+            }
+        }
+        g.dispose();
+        return cnt;
+    }
+
+    private int renderUsingEvaluator()
+                            throws Exception {
+        BufferedImage img = new BufferedImage( 1000, 1000, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        Java2DRenderer r = createRenderer( img, g );
+        PointStyling styling = new PointStyling();
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        int cnt = 0;
+        for ( Feature f : features ) {
+            for ( TypedObjectNode value : evaluator.eval( f, path ) ) {
+                cnt += render( r, styling, value );
+            }
+        }
+        g.dispose();
+        return cnt;
+    }
+
+    private Java2DRenderer createRenderer( BufferedImage img, Graphics2D g ) {
+        return new Java2DRenderer( g, img.getWidth(), img.getHeight(),
+                                   geomFac.createEnvelope( new double[] { 0, 0 }, new double[] { 1000, 1000 }, mapcs ) );
+    }
+
+    private static int render( Java2DRenderer r, PointStyling styling, TypedObjectNode value ) {
+        if ( value instanceof Property ) {
+            value = ( (Property) value ).getValue();
+        }
+        if ( value instanceof Geometry ) {
+            r.render( styling, (Geometry) value );
+            return 1;
+        }
+        return 0;
+    }
+
+}
@@ -40,15 +40,20 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.rendering.r2d;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.multi.MultiLineString;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Polygon;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
 import com.vividsolutions.jts.io.ParseException;
 
 /**
@@ -98,4 +103,40 @@ public class GeometryClipperTest {
         assertTrue( geometryDistinct.equals( clippedGeometry ) );
     }
 
+    @Test
+    public void clipLineStringLeavingAndReenteringViewport()
+                            throws ParseException {
+        final String wkt = "LINESTRING (0.5 0.5,0.5 3,0.8 3,0.8 0.5)";
+        final Geometry lineString = new WKTReader( null ).read( wkt );
+        final Geometry clippedGeometry = clipper.clipGeometry( lineString );
+        assertTrue( clippedGeometry instanceof MultiLineString );
+        final MultiLineString parts = (MultiLineString) clippedGeometry;
+        assertEquals( 2, parts.size() );
+        for ( final LineString part : parts ) {
+            assertEquals( 2, part.getControlPoints().size() );
+        }
+    }
+
+    @Test
+    public void clipLineStringContainedInViewport()
+                            throws ParseException {
+        final String wkt = "LINESTRING (0.1 0.1,0.5 0.5,0.9 0.1)";
+        final Geometry lineString = new WKTReader( null ).read( wkt );
+        assertTrue( lineString == clipper.clipGeometry( lineString ) );
+    }
+
+    @Test
+    public void clipPolygonPreservesOrientation()
+                            throws ParseException {
+        final String ccw = "POLYGON ((-1 -1,2 -1,2 2,-1 2,-1 -1))";
+        final String cw = "POLYGON ((-1 -1,-1 2,2 2,2 -1,-1 -1))";
+        assertTrue( isCCW( clipper.clipGeometry( new WKTReader( null ).read( ccw ) ) ) );
+        assertTrue( !isCCW( clipper.clipGeometry( new WKTReader( null ).read( cw ) ) ) );
+    }
+
+    private boolean isCCW( final Geometry polygon ) {
+        final Polygon p = (Polygon) polygon;
+        return CGAlgorithms.isCCW( p.getExteriorRing().getControlPoints().toCoordinateArray() );
+    }
+
 }
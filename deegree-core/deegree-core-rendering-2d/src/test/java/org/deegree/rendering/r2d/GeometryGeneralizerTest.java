@@ -0,0 +1,149 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.DECIMATE;
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.DOUGLASPEUCKER;
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.NONE;
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.VISVALINGAM;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Test cases for {@link GeometryGeneralizer}.
+ * 
+ * @since 3.4
+ */
+public class GeometryGeneralizerTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static Points points( double... coords ) {
+        return new PackedPoints( null, coords, 2 );
+    }
+
+    @Test
+    public void testDecimateKeepsEndPoints() {
+        GeometryGeneralizer generalizer = new GeometryGeneralizer( DECIMATE, 0.5 );
+        double[] coords = generalizer.generalize( points( 0, 0, 0.1, 0, 0.2, 0, 1, 0, 1.1, 0, 2, 0, 2.1, 0.1 ), false );
+        assertArrayEquals( new double[] { 0, 0, 1, 0, 2.1, 0.1 }, coords, DELTA );
+    }
+
+    @Test
+    public void testDouglasPeuckerRemovesFlatVertices() {
+        GeometryGeneralizer generalizer = new GeometryGeneralizer( DOUGLASPEUCKER, 0.5 );
+        double[] coords = generalizer.generalize( points( 0, 0, 1, 0.1, 2, 0, 3, 5, 4, 0, 0, 0 ), true );
+        assertArrayEquals( new double[] { 0, 0, 2, 0, 3, 5, 4, 0, 0, 0 }, coords, DELTA );
+    }
+
+    @Test
+    public void testVisvalingamRemovesSmallTriangles() {
+        GeometryGeneralizer generalizer = new GeometryGeneralizer( VISVALINGAM, 0.5 );
+        double[] coords = generalizer.generalize( points( 0, 0, 1, 0.1, 2, 0, 3, 5, 4, 0, 0, 0 ), true );
+        assertArrayEquals( new double[] { 0, 0, 2, 0, 3, 5, 4, 0, 0, 0 }, coords, DELTA );
+    }
+
+    @Test
+    public void testSubPixelRingIsCollapsed() {
+        GeometryGeneralizer generalizer = new GeometryGeneralizer( DOUGLASPEUCKER, 0.5 );
+        double[] coords = generalizer.generalize( points( 0, 0, 0.1, 0, 0.1, 0.05, 0.1, 0.1, 0, 0.1, 0, 0 ), true );
+        assertArrayEquals( new double[] { 0, 0, 0.1, 0.05, 0, 0.1, 0, 0 }, coords, DELTA );
+    }
+
+    @Test
+    public void testMinimalRingIsUntouched() {
+        GeometryGeneralizer generalizer = new GeometryGeneralizer( VISVALINGAM, 0.5 );
+        assertNull( generalizer.generalize( points( 0, 0, 0.1, 0, 0.1, 0.1, 0, 0 ), true ) );
+    }
+
+    @Test
+    public void testSubPixelHoleIsDropped()
+                            throws ParseException {
+        Geometry geom = new WKTReader( null ).read( "POLYGON ((0 0,10 0,10 10,0 10,0 0),"
+                                                    + "(2 2,2 2.2,2.1 2.2,2.2 2.2,2.2 2,2 2))" );
+        Polygon polygon = (Polygon) new GeometryGeneralizer( DECIMATE, 0.5 ).generalize( geom );
+        assertEquals( 5, polygon.getExteriorRing().getControlPoints().size() );
+        assertTrue( polygon.getInteriorRings().isEmpty() );
+    }
+
+    @Test
+    public void testSubPixelPolygonIsCollapsed()
+                            throws ParseException {
+        Geometry geom = new WKTReader( null ).read( "POLYGON ((0 0,0.1 0,0.2 0,0.2 0.1,0.2 0.2,0.1 0.2,0 0.2,0 0))" );
+        Polygon polygon = (Polygon) new GeometryGeneralizer( DECIMATE, 0.5 ).generalize( geom );
+        Points exterior = polygon.getExteriorRing().getControlPoints();
+        assertEquals( 4, exterior.size() );
+        assertEquals( 0, exterior.getX( 3 ), DELTA );
+        assertEquals( 0, exterior.getY( 3 ), DELTA );
+    }
+
+    @Test
+    public void testNoneLeavesGeometryUntouched()
+                            throws ParseException {
+        Geometry geom = new WKTReader( null ).read( "LINESTRING (0 0,0.1 0,0.2 0,5 5)" );
+        assertTrue( geom == new GeometryGeneralizer( NONE, 0.5 ).generalize( geom ) );
+    }
+
+    @Test
+    public void testPolygonRingsStayClosed()
+                            throws ParseException {
+        Geometry geom = new WKTReader( null ).read( "POLYGON ((0 0,10 0,10 0.1,10 10,0 10,0 0),"
+                                                    + "(2 2,2 4,2.1 4,4 4,4 2,2 2))" );
+        Polygon polygon = (Polygon) new GeometryGeneralizer( DECIMATE, 0.5 ).generalize( geom );
+        assertEquals( 5, polygon.getExteriorRing().getControlPoints().size() );
+        assertEquals( 5, polygon.getInteriorRings().get( 0 ).getControlPoints().size() );
+        Points exterior = polygon.getExteriorRing().getControlPoints();
+        assertEquals( exterior.getX( 0 ), exterior.getX( 4 ), DELTA );
+        assertEquals( exterior.getY( 0 ), exterior.getY( 4 ), DELTA );
+    }
+
+}
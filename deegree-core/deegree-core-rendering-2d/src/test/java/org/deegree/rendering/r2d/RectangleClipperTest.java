@@ -0,0 +1,108 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.rendering.r2d.RectangleClipper.CROSSING;
+import static org.deegree.rendering.r2d.RectangleClipper.INSIDE;
+import static org.deegree.rendering.r2d.RectangleClipper.OUTSIDE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link RectangleClipper}.
+ * 
+ * @since 3.4
+ */
+public class RectangleClipperTest {
+
+    private static final double DELTA = 1e-9;
+
+    private final RectangleClipper clipper = new RectangleClipper( 0, 0, 10, 10 );
+
+    private static Points points( double... coords ) {
+        return new PackedPoints( null, coords, 2 );
+    }
+
+    @Test
+    public void testRelate() {
+        assertEquals( INSIDE, clipper.relate( points( 1, 1, 9, 9 ) ) );
+        assertEquals( OUTSIDE, clipper.relate( points( 11, 1, 19, 9 ) ) );
+        assertEquals( CROSSING, clipper.relate( points( 5, 5, 15, 5 ) ) );
+    }
+
+    @Test
+    public void testClipLineSplitsIntoParts() {
+        List<double[]> parts = clipper.clipLine( points( -5, 5, 5, 5, 5, 15, 8, 5, 8, 8, 20, 8 ) );
+        assertEquals( 2, parts.size() );
+        assertArrayEquals( new double[] { 0, 5, 5, 5, 5, 10 }, parts.get( 0 ), DELTA );
+        assertArrayEquals( new double[] { 6.5, 10, 8, 5, 8, 8, 10, 8 }, parts.get( 1 ), DELTA );
+    }
+
+    @Test
+    public void testClipLineOutside() {
+        assertEquals( 0, clipper.clipLine( points( -5, -5, -1, 20 ) ).size() );
+    }
+
+    @Test
+    public void testClipRingEnclosingRectangle() {
+        double[] ring = clipper.clipRing( points( -5, -5, 15, -5, 15, 15, -5, 15, -5, -5 ) );
+        assertArrayEquals( new double[] { 0, 10, 0, 0, 10, 0, 10, 10, 0, 10 }, ring, DELTA );
+    }
+
+    @Test
+    public void testClipRingPreservesOrientation() {
+        double[] ring = clipper.clipRing( points( -5, -5, -5, 15, 15, 15, 15, -5, -5, -5 ) );
+        assertArrayEquals( new double[] { 10, 10, 10, 0, 0, 0, 0, 10, 10, 10 }, ring, DELTA );
+    }
+
+    @Test
+    public void testClipRingAroundCornerIsDropped() {
+        assertNull( clipper.clipRing( points( 11, -1, 12, -1, 12, 12, -1, 12, -1, 11, 11, 11, 11, -1 ) ) );
+    }
+
+}
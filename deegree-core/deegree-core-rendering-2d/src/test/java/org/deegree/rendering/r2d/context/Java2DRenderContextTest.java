@@ -0,0 +1,110 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement.DEFAULT_ITERATION_LIMIT;
+import static org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement.DEFAULT_MAX_ITERATIONS;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the handling of the LABEL_ITERATIONS parameter in {@link Java2DRenderContext}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class Java2DRenderContextTest {
+
+    @Test
+    public void testDefaultLabelIterations() {
+        assertEquals( DEFAULT_MAX_ITERATIONS, Java2DRenderContext.getLabelIterations( createInfo( null ) ) );
+        RenderingInfo info = new RenderingInfo( "image/png", 100, 100, false, null, null, 0.28, null );
+        assertEquals( DEFAULT_MAX_ITERATIONS, Java2DRenderContext.getLabelIterations( info ) );
+    }
+
+    @Test
+    public void testParseLabelIterations() {
+        assertEquals( 5000, Java2DRenderContext.getLabelIterations( createInfo( "5000" ) ) );
+        assertEquals( 10, Java2DRenderContext.getLabelIterations( createInfo( " 10 " ) ) );
+        assertEquals( 0, Java2DRenderContext.getLabelIterations( createInfo( "0" ) ) );
+    }
+
+    @Test
+    public void testNegativeLabelIterations() {
+        assertEquals( 0, Java2DRenderContext.getLabelIterations( createInfo( "-100" ) ) );
+    }
+
+    @Test
+    public void testInvalidLabelIterations() {
+        assertEquals( DEFAULT_MAX_ITERATIONS, Java2DRenderContext.getLabelIterations( createInfo( "many" ) ) );
+        assertEquals( DEFAULT_MAX_ITERATIONS, Java2DRenderContext.getLabelIterations( createInfo( "1e9" ) ) );
+    }
+
+    @Test
+    public void testLabelIterationsLimitedToDefaultMaximum() {
+        assertEquals( DEFAULT_ITERATION_LIMIT, Java2DRenderContext.getLabelIterations( createInfo( "1000000000" ) ) );
+    }
+
+    @Test
+    public void testLabelIterationsLimitedToConfiguredMaximum() {
+        RenderingInfo info = createInfo( "5000" );
+        info.setMaxLabelIterations( 1000 );
+        assertEquals( 1000, Java2DRenderContext.getLabelIterations( info ) );
+
+        // the default is limited as well
+        info = createInfo( null );
+        info.setMaxLabelIterations( 100 );
+        assertEquals( 100, Java2DRenderContext.getLabelIterations( info ) );
+
+        info = createInfo( "50" );
+        info.setMaxLabelIterations( 100 );
+        assertEquals( 50, Java2DRenderContext.getLabelIterations( info ) );
+    }
+
+    private static RenderingInfo createInfo( String labelIterations ) {
+        Map<String, String> params = new HashMap<String, String>();
+        if ( labelIterations != null ) {
+            params.put( "LABEL_ITERATIONS", labelIterations );
+        }
+        return new RenderingInfo( "image/png", 100, 100, false, null, null, 0.28, params );
+    }
+
+}
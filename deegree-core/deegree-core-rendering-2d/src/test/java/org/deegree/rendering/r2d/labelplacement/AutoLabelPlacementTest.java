@@ -0,0 +1,207 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.labelplacement;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.rendering.r2d.Java2DLabelRenderer;
+import org.deegree.rendering.r2d.Java2DRenderer;
+import org.deegree.rendering.r2d.Java2DTextRenderer;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the neighbour search and the incremental quality computation of the {@link AutoLabelPlacement}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class AutoLabelPlacementTest {
+
+    private static final ICRS mapcs = CRSManager.getCRSRef( "CRS:1" );
+
+    private static final int SIZE = 600;
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    private final Font font = new Font( "SansSerif", Font.PLAIN, 12 );
+
+    private Java2DRenderer renderer;
+
+    private Java2DLabelRenderer labelRenderer;
+
+    @Before
+    public void setUp() {
+        BufferedImage img = new BufferedImage( SIZE, SIZE, TYPE_INT_ARGB );
+        renderer = new Java2DRenderer( img.createGraphics(), SIZE, SIZE,
+                                       geomFac.createEnvelope( new double[] { 0, 0 }, new double[] { SIZE, SIZE },
+                                                               mapcs ) );
+        labelRenderer = new Java2DLabelRenderer( renderer, new Java2DTextRenderer( renderer ) );
+    }
+
+    @Test
+    public void testNeighboursMatchPairwiseCheck() {
+        Random rand = new Random( 42 );
+        List<Label> labels = new ArrayList<Label>();
+        for ( int i = 0; i < 800; i++ ) {
+            labels.add( createLabel( rand.nextDouble() * SIZE, rand.nextDouble() * SIZE, 1 + rand.nextInt( 12 ),
+                                     i % 5 == 0 ? 30 : 0 ) );
+        }
+        // long labels cover many grid cells
+        for ( int i = 0; i < 20; i++ ) {
+            labels.add( createLabel( rand.nextDouble() * SIZE, rand.nextDouble() * SIZE, 40, i % 2 == 0 ? 45 : 0 ) );
+        }
+        List<PointLabelPositionOptions> options = createOptions( labels );
+
+        int[][] neighbours = new AutoLabelPlacement( options, 0 ).getNeighbours();
+
+        assertEquals( options.size(), neighbours.length );
+        int pairs = 0;
+        for ( int i = 0; i < options.size(); i++ ) {
+            List<Integer> expected = new ArrayList<Integer>();
+            for ( int j = 0; j < options.size(); j++ ) {
+                if ( j != i && options.get( i ).intersectsAny( options.get( j ) ) ) {
+                    expected.add( j );
+                }
+            }
+            int[] expectedArray = new int[expected.size()];
+            for ( int k = 0; k < expectedArray.length; k++ ) {
+                expectedArray[k] = expected.get( k );
+            }
+            int[] actual = neighbours[i].clone();
+            Arrays.sort( actual );
+            assertArrayEquals( "neighbours of label " + i, expectedArray, actual );
+            pairs += actual.length;
+        }
+        assertTrue( "test data should contain overlapping labels", pairs > 0 );
+    }
+
+    @Test
+    public void testIncrementalQualityMatchesRecompute() {
+        Random rand = new Random( 7 );
+        List<Label> labels = new ArrayList<Label>();
+        for ( int i = 0; i < 300; i++ ) {
+            labels.add( createLabel( rand.nextDouble() * SIZE / 3, rand.nextDouble() * SIZE / 3,
+                                     1 + rand.nextInt( 10 ), i % 4 == 0 ? 20 : 0 ) );
+        }
+        List<PointLabelPositionOptions> options = createOptions( labels );
+        AutoLabelPlacement placement = new AutoLabelPlacement( options, 0 );
+        placement.objectiveFunction();
+        assertTrue( "test data should contain intersections", placement.intersectionQuality > 0 );
+        assertEquals( intersectionQuality( options ), placement.intersectionQuality );
+
+        for ( int step = 0; step < 2000; step++ ) {
+            int index = rand.nextInt( options.size() );
+            placement.updateChoiceAndQuality( options.get( index ), index );
+            assertEquals( "intersection quality after step " + step, intersectionQuality( options ),
+                          placement.intersectionQuality );
+            assertEquals( "placement quality after step " + step, placementQuality( options ),
+                          placement.placementQuality, 0.01 );
+        }
+    }
+
+    // full recompute, pairwise over all labels
+    private static int intersectionQuality( List<PointLabelPositionOptions> options ) {
+        int quality = 0;
+        for ( int i = 0; i < options.size(); i++ ) {
+            for ( int j = i + 1; j < options.size(); j++ ) {
+                if ( options.get( i ).intersectsSelection( options.get( j ) ) ) {
+                    quality += 40;
+                }
+            }
+        }
+        return quality;
+    }
+
+    private static float placementQuality( List<PointLabelPositionOptions> options ) {
+        float quality = 0.0f;
+        for ( PointLabelPositionOptions option : options ) {
+            quality += option.getQuality();
+        }
+        return quality;
+    }
+
+    @Test(timeout = 10000)
+    public void testAnnealingStopsOnInterrupt()
+                            throws Exception {
+        // stacked labels can never reach the target quality, so only the interrupt ends the annealing
+        List<Label> labels = new ArrayList<Label>();
+        for ( int i = 0; i < 200; i++ ) {
+            labels.add( createLabel( SIZE / 2, SIZE / 2, 10, 0 ) );
+        }
+        Thread.currentThread().interrupt();
+        try {
+            new AutoLabelPlacement( labels, renderer, Integer.MAX_VALUE );
+        } finally {
+            assertTrue( "interrupt status must be kept", Thread.interrupted() );
+        }
+    }
+
+    private Label createLabel( double x, double y, int length, double rotation ) {
+        TextStyling styling = new TextStyling();
+        styling.auto = true;
+        styling.rotation = rotation;
+        char[] text = new char[length];
+        Arrays.fill( text, 'W' );
+        return labelRenderer.createLabel( styling, font, new String( text ),
+                                          geomFac.createPoint( null, new double[] { x, y }, mapcs ) );
+    }
+
+    private List<PointLabelPositionOptions> createOptions( List<Label> labels ) {
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( Label l : labels ) {
+            options.add( new PointLabelPositionOptions( l, renderer.rendererContext.uomCalculator ) );
+        }
+        return options;
+    }
+
+}
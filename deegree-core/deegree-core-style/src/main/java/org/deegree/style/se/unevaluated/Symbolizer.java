@@ -38,17 +38,23 @@ package org.deegree.style.se.unevaluated;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
 import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.filter.Expression;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Geometry;
 import org.deegree.style.styling.Styling;
 import org.slf4j.Logger;
@@ -66,13 +72,18 @@ public class Symbolizer<T extends Styling<T>> {
 
     private static final Logger LOG = getLogger( Symbolizer.class );
 
+    private static final int CACHE_SIZE = Integer.getInteger( "deegree.style.cacheSize", 1000 );
+
+    private static final Object UNCACHEABLE = new Object();
+
     private T evaluated;
 
     private T base;
 
-    // TODO improve the caching, eg. implement a real cache with a limit etc.
-    // NOTE: Using a synchronized map here is strictly necessary (race condition), RB / MS
-    // private Map<String, T> cache = new ConcurrentHashMap<String, T>();
+    // evaluators are created per request, so functions depending on the request (e.g. the current scale) are
+    // constant within one cache
+    // NOTE: Synchronizing access to the map is strictly necessary (race condition), RB / MS
+    private final Map<XPathEvaluator<Feature>, StylingCache<T>> caches;
 
     private Continuation<T> next;
 
@@ -115,6 +126,7 @@ public class Symbolizer<T extends Styling<T>> {
         }
         this.base = base;
         this.next = next;
+        this.caches = new WeakHashMap<XPathEvaluator<Feature>, StylingCache<T>>();
         this.geometry = geometry;
         this.name = name;
         this.file = file;
@@ -227,32 +239,71 @@ public class Symbolizer<T extends Styling<T>> {
             return new Pair<T, LinkedList<Geometry>>( evaluated == null ? base.copy() : evaluated.copy(), geoms );
         }
 
-        // String id = f.getId();
-        // if ( id != null && cache.containsKey( id ) ) {
-        // return new Pair<T, LinkedList<Geometry>>( cache.get( id ), geoms );
-        // }
-
         if ( evaluated != null ) {
-            Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
-            // if ( id != null ) {
-            // cache.put( id, pair.first );
-            // }
-            return pair;
+            return new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
         }
 
-        T evald = base.copy();
-        Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evald, geoms );
         if ( next == null ) {
             LOG.warn( "Something wrong with SE/SLD parsing. No continuation found, and no evaluated style." );
-            return pair;
+            return new Pair<T, LinkedList<Geometry>>( base.copy(), geoms );
         }
 
-        next.evaluate( evald, f, evaluator );
-        // if ( id != null ) {
-        // cache.put( id, pair.first );
-        // }
+        return new Pair<T, LinkedList<Geometry>>( evaluateContinuation( f, evaluator ), geoms );
+    }
+
+    /**
+     * Evaluates the continuation, sharing the result between features which have the same values for all value
+     * references the continuation reads. The returned styling must not be modified.
+     */
+    private T evaluateContinuation( Feature f, XPathEvaluator<Feature> evaluator ) {
+        StylingCache<T> cache = getCache( f, evaluator );
+        if ( cache == null ) {
+            T evald = base.copy();
+            next.evaluate( evald, f, evaluator );
+            return evald;
+        }
 
-        return pair;
+        List<Object> key = cache.getKey( f, evaluator );
+        if ( key != null ) {
+            T cached = cache.get( key );
+            if ( cached != null ) {
+                return cached;
+            }
+        }
+
+        T evald = base.copy();
+        RecordingXPathEvaluator recorder = new RecordingXPathEvaluator( evaluator );
+        next.evaluate( evald, f, recorder );
+        cache.put( key, evald, recorder );
+        return evald;
+    }
+
+    private StylingCache<T> getCache( Feature f, XPathEvaluator<Feature> evaluator ) {
+        // extra properties can be read by functions without going through the evaluator
+        if ( CACHE_SIZE <= 0 || evaluator == null || f.getExtraProperties() != null ) {
+            return null;
+        }
+        synchronized ( caches ) {
+            StylingCache<T> cache = caches.get( evaluator );
+            if ( cache == null ) {
+                cache = new StylingCache<T>();
+                caches.put( evaluator, cache );
+            }
+            return cache.isDisabled() ? null : cache;
+        }
+    }
+
+    private static Object getKeyValue( TypedObjectNode node ) {
+        if ( node instanceof Property ) {
+            node = ( (Property) node ).getValue();
+        }
+        if ( node == null ) {
+            return null;
+        }
+        if ( node instanceof PrimitiveValue ) {
+            return ( (PrimitiveValue) node ).getValue();
+        }
+        return UNCACHEABLE;
     }
 
     /**
@@ -269,4 +320,119 @@ public class Symbolizer<T extends Styling<T>> {
         return geometry;
     }
 
+    /**
+     * Bounded LRU cache of evaluated stylings, keyed by the values of all value references the continuation has read so
+     * far. Caching is disabled if the continuation reads feature ids or values which are not primitive.
+     */
+    private static class StylingCache<T> {
+
+        private final List<ValueReference> inputs = new ArrayList<ValueReference>();
+
+        private final Map<List<Object>, T> stylings = new LinkedHashMap<List<Object>, T>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<List<Object>, T> eldest ) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        // incremented whenever the inputs change, first element of every key
+        private int generation;
+
+        private boolean disabled;
+
+        synchronized boolean isDisabled() {
+            return disabled;
+        }
+
+        synchronized List<Object> getKey( Feature f, XPathEvaluator<Feature> evaluator ) {
+            List<Object> key = new ArrayList<Object>( inputs.size() * 2 + 1 );
+            key.add( generation );
+            for ( ValueReference input : inputs ) {
+                TypedObjectNode[] nodes;
+                try {
+                    nodes = evaluator.eval( f, input );
+                } catch ( FilterEvaluationException e ) {
+                    return null;
+                }
+                key.add( nodes.length );
+                for ( TypedObjectNode node : nodes ) {
+                    Object value = getKeyValue( node );
+                    if ( value == UNCACHEABLE ) {
+                        LOG.debug( "Not caching stylings, value reference '{}' selects non-primitive values.", input );
+                        disable();
+                        return null;
+                    }
+                    key.add( value );
+                }
+            }
+            return key;
+        }
+
+        synchronized T get( List<Object> key ) {
+            return stylings.get( key );
+        }
+
+        synchronized void put( List<Object> key, T styling, RecordingXPathEvaluator recorder ) {
+            if ( disabled ) {
+                return;
+            }
+            if ( recorder.idRead ) {
+                LOG.debug( "Not caching stylings, feature ids are used." );
+                disable();
+                return;
+            }
+            boolean changed = false;
+            for ( ValueReference input : recorder.inputs ) {
+                if ( !inputs.contains( input ) ) {
+                    inputs.add( input );
+                    changed = true;
+                }
+            }
+            if ( changed ) {
+                // keys computed with fewer inputs are ambiguous now
+                ++generation;
+                stylings.clear();
+            } else if ( key != null && key.get( 0 ).equals( generation ) ) {
+                stylings.put( key, styling );
+            }
+        }
+
+        private void disable() {
+            disabled = true;
+            stylings.clear();
+        }
+    }
+
+    /**
+     * Delegating evaluator which records the value references and ids read.
+     */
+    private static class RecordingXPathEvaluator implements XPathEvaluator<Feature> {
+
+        private final XPathEvaluator<Feature> evaluator;
+
+        private final List<ValueReference> inputs = new ArrayList<ValueReference>();
+
+        private boolean idRead;
+
+        RecordingXPathEvaluator( XPathEvaluator<Feature> evaluator ) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public TypedObjectNode[] eval( Feature context, ValueReference valueRef )
+                                throws FilterEvaluationException {
+            inputs.add( valueRef );
+            return evaluator.eval( context, valueRef );
+        }
+
+        @Override
+        public String getId( Feature context ) {
+            idRead = true;
+            return evaluator.getId( context );
+        }
+    }
+
 }
\ No newline at end of file
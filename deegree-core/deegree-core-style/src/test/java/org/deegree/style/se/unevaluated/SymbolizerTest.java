@@ -0,0 +1,158 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+package org.deegree.style.se.unevaluated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.style.styling.LineStyling;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the caching of evaluated stylings in {@link Symbolizer}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class SymbolizerTest {
+
+    private static final ValueReference WIDTH = new ValueReference( new QName( "width" ) );
+
+    private final Map<Feature, Integer> widths = new IdentityHashMap<Feature, Integer>();
+
+    private int evaluations;
+
+    private Symbolizer<LineStyling> symbolizer;
+
+    private XPathEvaluator<Feature> evaluator;
+
+    @Before
+    public void setUp() {
+        Continuation<LineStyling> contn = new Continuation<LineStyling>() {
+            @Override
+            public void updateStep( LineStyling base, Feature obj, XPathEvaluator<Feature> evaluator ) {
+                ++evaluations;
+                try {
+                    TypedObjectNode[] vals = WIDTH.evaluate( obj, evaluator );
+                    base.stroke.width = ( (Integer) ( (PrimitiveValue) vals[0] ).getValue() ).doubleValue();
+                } catch ( FilterEvaluationException e ) {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        symbolizer = new Symbolizer<LineStyling>( new LineStyling(), contn, null, null, null, 0, 0 );
+        evaluator = newEvaluator();
+    }
+
+    private XPathEvaluator<Feature> newEvaluator() {
+        return new XPathEvaluator<Feature>() {
+            @Override
+            public TypedObjectNode[] eval( Feature context, ValueReference valueRef ) {
+                return new TypedObjectNode[] { new PrimitiveValue( widths.get( context ) ) };
+            }
+
+            @Override
+            public String getId( Feature context ) {
+                return null;
+            }
+        };
+    }
+
+    private Feature newFeature( int width ) {
+        Feature f = (Feature) Proxy.newProxyInstance( Feature.class.getClassLoader(), new Class<?>[] { Feature.class },
+                                                      new InvocationHandler() {
+                                                          @Override
+                                                          public Object invoke( Object proxy, Method method,
+                                                                                Object[] args ) {
+                                                              return null;
+                                                          }
+                                                      } );
+        widths.put( f, width );
+        return f;
+    }
+
+    private LineStyling evaluate( Feature f, XPathEvaluator<Feature> evaluator ) {
+        return symbolizer.evaluate( f, evaluator ).first;
+    }
+
+    @Test
+    public void testEqualValuesShareStyling() {
+        evaluate( newFeature( 1 ), evaluator );
+        LineStyling first = evaluate( newFeature( 2 ), evaluator );
+        LineStyling second = evaluate( newFeature( 2 ), evaluator );
+        assertSame( first, second );
+        assertEquals( 2, second.stroke.width, 0 );
+        assertEquals( 2, evaluations );
+    }
+
+    @Test
+    public void testDifferentValuesAreEvaluated() {
+        for ( int i = 0; i < 3; ++i ) {
+            for ( int width = 1; width <= 5; ++width ) {
+                assertEquals( width, evaluate( newFeature( width ), evaluator ).stroke.width, 0 );
+            }
+        }
+        // first evaluation only determines the value references read
+        assertEquals( 6, evaluations );
+    }
+
+    @Test
+    public void testCachePerEvaluator() {
+        evaluate( newFeature( 1 ), evaluator );
+        LineStyling first = evaluate( newFeature( 1 ), evaluator );
+        LineStyling second = evaluate( newFeature( 1 ), newEvaluator() );
+        assertNotSame( first, second );
+        assertEquals( 1, second.stroke.width, 0 );
+    }
+
+}
@@ -84,6 +84,20 @@ public interface Tile {
     InputStream getAsStream()
                             throws TileIOException;
 
+    /**
+     * Returns information about the encoded tile image that can be used for HTTP caching.
+     * <p>
+     * Implementations that generate tiles on the fly (or can not determine this information cheaply) return
+     * <code>null</code>.
+     * </p>
+     * 
+     * @return cache information, can be <code>null</code>
+     * @throws TileIOException
+     *             if accessing the encoded tile image failed
+     */
+    TileCacheInfo getCacheInfo()
+                            throws TileIOException;
+
     /**
      * Returns the envelope of the tile data, specified from the outer bounds of the border pixels.
      * 
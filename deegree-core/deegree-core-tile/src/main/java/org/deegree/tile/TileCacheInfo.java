@@ -0,0 +1,110 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+import java.io.File;
+
+/**
+ * Information about the encoded image of a {@link Tile} that can be used for HTTP caching (validators such as ETag and
+ * Last-Modified headers) and efficient transfer.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class TileCacheInfo {
+
+    private final long lastModified;
+
+    private final String contentHash;
+
+    private final long length;
+
+    private final File file;
+
+    /**
+     * @param lastModified
+     *            time of last modification (milliseconds since the epoch), <code>-1</code> if unknown
+     * @param contentHash
+     *            a hash of the encoded image (or any other value that changes if the encoded image changes), can be
+     *            <code>null</code>
+     * @param length
+     *            length of the encoded image in bytes, <code>-1</code> if unknown
+     * @param file
+     *            file that contains exactly the encoded image, can be <code>null</code>
+     */
+    public TileCacheInfo( long lastModified, String contentHash, long length, File file ) {
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.length = length;
+        this.file = file;
+    }
+
+    /**
+     * @return time of last modification (milliseconds since the epoch), <code>-1</code> if unknown
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return a hash of the encoded image, can be <code>null</code>
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return length of the encoded image in bytes, <code>-1</code> if unknown
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the file that contains exactly the encoded image, can be <code>null</code>
+     */
+    public File getFile() {
+        return file;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.workspace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long building and initializing the individual resources took during workspace startup.
+ * 
+ * @since 3.4
+ */
+public class ResourceTimings {
+
+    private final Map<ResourceIdentifier<? extends Resource>, Timing> timings = new LinkedHashMap<ResourceIdentifier<? extends Resource>, Timing>();
+
+    private long startupMillis = -1;
+
+    /**
+     * @param id
+     *            may not be <code>null</code>
+     * @param buildMillis
+     *            time spent building the resource
+     * @param initMillis
+     *            time spent initializing the resource, -1 if it has not been initialized
+     */
+    public synchronized void record( ResourceIdentifier<? extends Resource> id, long buildMillis, long initMillis ) {
+        timings.put( id, new Timing( id, buildMillis, initMillis ) );
+    }
+
+    /**
+     * @param millis
+     *            wall clock time the complete workspace startup took
+     */
+    public synchronized void setStartupMillis( long millis ) {
+        this.startupMillis = millis;
+    }
+
+    /**
+     * @return wall clock time the last workspace startup took, -1 if unknown
+     */
+    public synchronized long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * @param id
+     *            may not be <code>null</code>
+     * @return the timing of the resource, <code>null</code> if none has been recorded
+     */
+    public synchronized Timing getTiming( ResourceIdentifier<? extends Resource> id ) {
+        return timings.get( id );
+    }
+
+    /**
+     * @return all recorded timings, slowest resources first, never <code>null</code>
+     */
+    public synchronized List<Timing> getTimings() {
+        List<Timing> list = new ArrayList<Timing>( timings.values() );
+        Collections.sort( list, new Comparator<Timing>() {
+            @Override
+            public int compare( Timing t1, Timing t2 ) {
+                long d = t2.getTotalMillis() - t1.getTotalMillis();
+                return d < 0 ? -1 : ( d > 0 ? 1 : 0 );
+            }
+        } );
+        return list;
+    }
+
+    public synchronized void clear() {
+        timings.clear();
+        startupMillis = -1;
+    }
+
+    public synchronized void clear( ResourceIdentifier<? extends Resource> id ) {
+        timings.remove( id );
+    }
+
+    /**
+     * Build and initialization time of a single resource.
+     * 
+     * @since 3.4
+     */
+    public static class Timing {
+
+        private final ResourceIdentifier<? extends Resource> id;
+
+        private final long buildMillis;
+
+        private final long initMillis;
+
+        Timing( ResourceIdentifier<? extends Resource> id, long buildMillis, long initMillis ) {
+            this.id = id;
+            this.buildMillis = buildMillis;
+            this.initMillis = initMillis;
+        }
+
+        /**
+         * @return the resource identifier, never <code>null</code>
+         */
+        public ResourceIdentifier<? extends Resource> getIdentifier() {
+            return id;
+        }
+
+        /**
+         * @return time spent building the resource
+         */
+        public long getBuildMillis() {
+            return buildMillis;
+        }
+
+        /**
+         * @return time spent initializing the resource, -1 if it has not been initialized
+         */
+        public long getInitMillis() {
+            return initMillis;
+        }
+
+        /**
+         * @return time spent building and initializing the resource
+         */
+        public long getTotalMillis() {
+            return buildMillis + Math.max( 0, initMillis );
+        }
+
+    }
+
+}
@@ -186,6 +186,13 @@ public interface Workspace {
      */
     ResourceStates getStates();
 
+    /**
+     * Returns the build and initialization times of the resources started up by {@link #initAll()}.
+     * 
+     * @return never <code>null</code>
+     */
+    ResourceTimings getTimings();
+
     /**
      * Can be used to obtain an Initializable object which has been loaded and started up during #startup.
      * 
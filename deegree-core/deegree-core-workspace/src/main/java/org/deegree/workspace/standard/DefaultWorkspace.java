@@ -57,10 +57,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deegree.workspace.Destroyable;
 import org.deegree.workspace.ErrorHandler;
@@ -77,6 +85,7 @@ import org.deegree.workspace.ResourceMetadata;
 import org.deegree.workspace.ResourceProvider;
 import org.deegree.workspace.ResourceStates;
 import org.deegree.workspace.ResourceStates.ResourceState;
+import org.deegree.workspace.ResourceTimings;
 import org.deegree.workspace.Workspace;
 import org.deegree.workspace.WorkspaceUtils;
 import org.deegree.workspace.graph.ResourceGraph;
@@ -94,6 +103,13 @@ public class DefaultWorkspace implements Workspace {
 
     private static final Logger LOG = getLogger( DefaultWorkspace.class );
 
+    /**
+     * Number of threads used for building and initializing resources in {@link #initAll()}, a value of 1 restores
+     * strictly sequential startup.
+     */
+    private static final int INIT_THREADS = Integer.getInteger( "deegree.workspace.initThreads",
+                                                                Runtime.getRuntime().availableProcessors() );
+
     private final File directory;
 
     private ClassLoader moduleClassLoader;
@@ -112,6 +128,8 @@ public class DefaultWorkspace implements Workspace {
 
     private final ErrorHandler errors = new ErrorHandler();
 
+    private final ResourceTimings timings = new ResourceTimings();
+
     private LocationHandler locationHandler;
 
     private ResourceStates states;
@@ -126,6 +144,7 @@ public class DefaultWorkspace implements Workspace {
     public void initAll() {
         startup();
         errors.clear();
+        timings.clear();
         scan();
         PreparedResources prepared = prepare();
 
@@ -133,47 +152,166 @@ public class DefaultWorkspace implements Workspace {
         LOG.info( "Building and initializing resources." );
         LOG.info( "--------------------------------------------------------------------------------" );
 
+        initResources( prepared, INIT_THREADS );
+    }
+
+    /**
+     * Builds and initializes the prepared resources in dependency order, using up to the given number of threads.
+     */
+    void initResources( PreparedResources prepared, int maxThreads ) {
         // probably better to implement an insert bulk operation on the graph
         for ( ResourceMetadata<? extends Resource> md : prepared.getMetadata() ) {
             graph.insertNode( md );
         }
 
-        outer: for ( ResourceMetadata<? extends Resource> md : graph.toSortedList() ) {
-            if ( states.getState( md.getIdentifier() ) == Deactivated ) {
-                LOG.warn( "Not building resource {} (deactivated).", md.getIdentifier() );
-                continue;
+        long start = System.currentTimeMillis();
+        List<ResourceMetadata<? extends Resource>> sorted = graph.toSortedList();
+        int threads = Math.min( maxThreads, sorted.size() );
+        if ( threads > 1 ) {
+            initParallel( sorted, prepared, threads );
+        } else {
+            for ( ResourceMetadata<? extends Resource> md : sorted ) {
+                initResource( md, prepared );
             }
-            LOG.info( "Building resource {}.", md.getIdentifier() );
-            for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
-                if ( states.getState( dep ) != Initialized ) {
-                    states.setState( md.getIdentifier(), Error );
-                    String msg = "Dependent resource " + dep + " failed to initialize.";
-                    LOG.error( "Unable to build resource {}: " + msg, md.getIdentifier() );
-                    errors.registerError( md.getIdentifier(), msg );
-                    continue outer;
+        }
+        long millis = System.currentTimeMillis() - start;
+        timings.setStartupMillis( millis );
+        LOG.info( "Building and initializing {} resources took {} ms.", sorted.size(), millis );
+    }
+
+    /**
+     * Schedules every resource as soon as all resources it depends on (hard and soft dependencies) have been
+     * processed. Returns once all resources have been processed.
+     */
+    private void initParallel( List<ResourceMetadata<? extends Resource>> sorted, final PreparedResources prepared,
+                               int threads ) {
+        final Map<ResourceIdentifier<? extends Resource>, AtomicInteger> pending = new HashMap<ResourceIdentifier<? extends Resource>, AtomicInteger>();
+        final Map<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>> dependents = new HashMap<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>>();
+        for ( ResourceMetadata<? extends Resource> md : sorted ) {
+            pending.put( md.getIdentifier(), new AtomicInteger() );
+            dependents.put( md.getIdentifier(), new ArrayList<ResourceMetadata<? extends Resource>>() );
+        }
+        for ( ResourceMetadata<? extends Resource> md : sorted ) {
+            ResourceNode<? extends Resource> node = graph.getNode( md.getIdentifier() );
+            Set<ResourceIdentifier<? extends Resource>> deps = new HashSet<ResourceIdentifier<? extends Resource>>();
+            for ( ResourceNode<? extends Resource> dep : node.getDependencies() ) {
+                deps.add( dep.getMetadata().getIdentifier() );
+            }
+            for ( ResourceNode<? extends Resource> dep : node.getSoftDependencies() ) {
+                deps.add( dep.getMetadata().getIdentifier() );
+            }
+            for ( ResourceIdentifier<? extends Resource> dep : deps ) {
+                List<ResourceMetadata<? extends Resource>> list = dependents.get( dep );
+                if ( list != null ) {
+                    list.add( md );
+                    pending.get( md.getIdentifier() ).incrementAndGet();
                 }
             }
-            try {
-                Resource res = prepared.getBuilder( md.getIdentifier() ).build();
-                if ( res == null ) {
-                    errors.registerError( md.getIdentifier(), "Unable to prepare." );
+        }
+
+        final CountDownLatch done = new CountDownLatch( sorted.size() );
+        final ExecutorService pool = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "workspace-init-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                t.setContextClassLoader( moduleClassLoader );
+                return t;
+            }
+        } );
+        LOG.info( "Using {} threads.", threads );
+
+        final class InitTask implements Runnable {
+
+            private final ResourceMetadata<? extends Resource> md;
+
+            InitTask( ResourceMetadata<? extends Resource> md ) {
+                this.md = md;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    initResource( md, prepared );
+                } catch ( Throwable t ) {
                     states.setState( md.getIdentifier(), Error );
-                    LOG.error( "Unable to build resource {}.", md.getIdentifier() );
-                    continue;
+                    errors.registerError( md.getIdentifier(), "Unable to build resource " + md.getIdentifier() + ": "
+                                                              + t.getLocalizedMessage() );
+                    LOG.error( "Unable to build resource {}: {}", md.getIdentifier(), t.getLocalizedMessage() );
+                    LOG.trace( "Stack trace:", t );
+                } finally {
+                    // dependents check the states of their dependencies themselves, so failures just propagate
+                    for ( ResourceMetadata<? extends Resource> dependent : dependents.get( md.getIdentifier() ) ) {
+                        if ( pending.get( dependent.getIdentifier() ).decrementAndGet() == 0 ) {
+                            pool.execute( new InitTask( dependent ) );
+                        }
+                    }
+                    done.countDown();
                 }
-                states.setState( md.getIdentifier(), Built );
-                LOG.info( "Initializing resource {}.", md.getIdentifier() );
-                res.init();
-                states.setState( md.getIdentifier(), Initialized );
-                resources.put( res.getMetadata().getIdentifier(), res );
-            } catch ( Exception ex ) {
+            }
+        }
+
+        try {
+            for ( ResourceMetadata<? extends Resource> md : sorted ) {
+                if ( pending.get( md.getIdentifier() ).get() == 0 ) {
+                    pool.execute( new InitTask( md ) );
+                }
+            }
+            done.await();
+        } catch ( InterruptedException e ) {
+            LOG.warn( "Interrupted while waiting for resources to initialize." );
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void initResource( ResourceMetadata<? extends Resource> md, PreparedResources prepared ) {
+        if ( states.getState( md.getIdentifier() ) == Deactivated ) {
+            LOG.warn( "Not building resource {} (deactivated).", md.getIdentifier() );
+            return;
+        }
+        LOG.info( "Building resource {}.", md.getIdentifier() );
+        for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
+            if ( states.getState( dep ) != Initialized ) {
                 states.setState( md.getIdentifier(), Error );
-                String msg = "Unable to build resource " + md.getIdentifier() + ": " + ex.getLocalizedMessage();
+                String msg = "Dependent resource " + dep + " failed to initialize.";
+                LOG.error( "Unable to build resource {}: " + msg, md.getIdentifier() );
                 errors.registerError( md.getIdentifier(), msg );
-                LOG.error( msg );
-                LOG.trace( "Stack trace:", ex );
+                return;
             }
         }
+        long start = System.currentTimeMillis();
+        long buildMillis = -1;
+        try {
+            Resource res = prepared.getBuilder( md.getIdentifier() ).build();
+            buildMillis = System.currentTimeMillis() - start;
+            if ( res == null ) {
+                errors.registerError( md.getIdentifier(), "Unable to prepare." );
+                states.setState( md.getIdentifier(), Error );
+                LOG.error( "Unable to build resource {}.", md.getIdentifier() );
+                timings.record( md.getIdentifier(), buildMillis, -1 );
+                return;
+            }
+            states.setState( md.getIdentifier(), Built );
+            LOG.info( "Initializing resource {}.", md.getIdentifier() );
+            res.init();
+            timings.record( md.getIdentifier(), buildMillis, System.currentTimeMillis() - start - buildMillis );
+            states.setState( md.getIdentifier(), Initialized );
+            resources.put( res.getMetadata().getIdentifier(), res );
+        } catch ( Exception ex ) {
+            if ( buildMillis < 0 ) {
+                buildMillis = System.currentTimeMillis() - start;
+            }
+            timings.record( md.getIdentifier(), buildMillis, -1 );
+            states.setState( md.getIdentifier(), Error );
+            String msg = "Unable to build resource " + md.getIdentifier() + ": " + ex.getLocalizedMessage();
+            errors.registerError( md.getIdentifier(), msg );
+            LOG.error( msg );
+            LOG.trace( "Stack trace:", ex );
+        }
     }
 
     @Override
@@ -218,6 +356,7 @@ public class DefaultWorkspace implements Workspace {
         locationHandler = null;
         startedUp = false;
         errors.clear();
+        timings.clear();
     }
 
     private void initClassloader() {
@@ -315,7 +454,7 @@ public class DefaultWorkspace implements Workspace {
         wsModules = new ArrayList<ModuleInfo>();
         resourceManagers = new HashMap<Class<? extends ResourceProvider<? extends Resource>>, ResourceManager<? extends Resource>>();
         resourceMetadata = new HashMap<ResourceIdentifier<? extends Resource>, ResourceMetadata<? extends Resource>>();
-        resources = new HashMap<ResourceIdentifier<? extends Resource>, Resource>();
+        resources = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Resource>();
         initializables.clear();
         graph = new ResourceGraph();
         states = new ResourceStates();
@@ -523,6 +662,7 @@ public class DefaultWorkspace implements Workspace {
         removeMetadataFromResourceManager( id );
         resources.remove( id );
         errors.clear( id );
+        timings.clear( id );
     }
 
     private void removeMetadataFromResourceManager( ResourceIdentifier<?> id ) {
@@ -546,6 +686,11 @@ public class DefaultWorkspace implements Workspace {
         return states;
     }
 
+    @Override
+    public ResourceTimings getTimings() {
+        return timings;
+    }
+
     @Override
     public <T extends Initializable> T getInitializable( Class<T> className ) {
         return (T) initializables.get( className );
@@ -0,0 +1,97 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.deegree.workspace.ResourceTimings.Timing;
+import org.deegree.workspace.standard.DefaultResourceIdentifier;
+import org.junit.Test;
+
+/**
+ * Tests for resource startup timings.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class ResourceTimingsTest {
+
+    private static final ResourceIdentifier ID1 = new DefaultResourceIdentifier( ResourceProvider.class, "res1" );
+
+    private static final ResourceIdentifier ID2 = new DefaultResourceIdentifier( ResourceProvider.class, "res2" );
+
+    private static final ResourceIdentifier ID3 = new DefaultResourceIdentifier( ResourceProvider.class, "res3" );
+
+    @Test
+    public void testSlowestFirst() {
+        ResourceTimings timings = new ResourceTimings();
+        timings.record( ID1, 10, 5 );
+        timings.record( ID2, 3, 100 );
+        timings.record( ID3, 20, -1 );
+        List<Timing> list = timings.getTimings();
+        assertEquals( 3, list.size() );
+        assertEquals( ID2, list.get( 0 ).getIdentifier() );
+        assertEquals( ID3, list.get( 1 ).getIdentifier() );
+        assertEquals( ID1, list.get( 2 ).getIdentifier() );
+        assertEquals( 20, list.get( 1 ).getTotalMillis() );
+    }
+
+    @Test
+    public void testClear() {
+        ResourceTimings timings = new ResourceTimings();
+        timings.record( ID1, 10, 5 );
+        timings.record( ID2, 3, 100 );
+        timings.setStartupMillis( 120 );
+        timings.clear( ID1 );
+        assertNull( timings.getTiming( ID1 ) );
+        assertEquals( 1, timings.getTimings().size() );
+        assertEquals( 120, timings.getStartupMillis() );
+        timings.clear();
+        assertEquals( 0, timings.getTimings().size() );
+        assertEquals( -1, timings.getStartupMillis() );
+    }
+
+}
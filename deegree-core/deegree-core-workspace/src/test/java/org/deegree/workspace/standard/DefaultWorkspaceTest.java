@@ -0,0 +1,279 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+package org.deegree.workspace.standard;
+
+import static org.deegree.workspace.ResourceStates.ResourceState.Deactivated;
+import static org.deegree.workspace.ResourceStates.ResourceState.Error;
+import static org.deegree.workspace.ResourceStates.ResourceState.Initialized;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for building and initializing the resources of a {@link DefaultWorkspace}, both in parallel and sequentially.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class DefaultWorkspaceTest {
+
+    private static final int THREADS = 4;
+
+    private final List<String> events = Collections.synchronizedList( new ArrayList<String>() );
+
+    private final Map<ResourceIdentifier<Resource>, TestMetadata> metadata = new LinkedHashMap<ResourceIdentifier<Resource>, TestMetadata>();
+
+    private File dir;
+
+    private DefaultWorkspace workspace;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        dir = File.createTempFile( "workspace", "" );
+        dir.delete();
+        dir.mkdir();
+        workspace = new DefaultWorkspace( dir );
+        workspace.startup();
+    }
+
+    @After
+    public void cleanup() {
+        dir.delete();
+    }
+
+    @Test(timeout = 10000)
+    public void testDependenciesAreInitializedFirst() {
+        TestMetadata a = add( "a" );
+        TestMetadata b = add( "b" ).dependsOn( a );
+        TestMetadata c = add( "c" ).softDependsOn( a );
+        TestMetadata d = add( "d" ).dependsOn( b ).softDependsOn( c );
+        TestMetadata e = add( "e" );
+        add( "f" ).dependsOn( e ).dependsOn( d );
+
+        workspace.initResources( new TestPreparedResources(), THREADS );
+
+        for ( TestMetadata md : metadata.values() ) {
+            assertEquals( Initialized, workspace.getStates().getState( md.getIdentifier() ) );
+            assertNotNull( workspace.getResource( md.getIdentifier().getProvider(), md.getIdentifier().getId() ) );
+        }
+        assertDependenciesFinishedFirst();
+    }
+
+    @Test(timeout = 10000)
+    public void testFailurePropagatesToDependents() {
+        testFailurePropagatesToDependents( THREADS );
+    }
+
+    @Test(timeout = 10000)
+    public void testFailurePropagatesToDependentsSequentially() {
+        testFailurePropagatesToDependents( 1 );
+    }
+
+    private void testFailurePropagatesToDependents( int threads ) {
+        TestMetadata a = add( "a" ).failing();
+        TestMetadata b = add( "b" ).dependsOn( a );
+        TestMetadata c = add( "c" ).dependsOn( b );
+        TestMetadata d = add( "d" ).softDependsOn( a );
+        TestMetadata e = add( "e" );
+
+        workspace.initResources( new TestPreparedResources(), threads );
+
+        assertEquals( Error, workspace.getStates().getState( a.getIdentifier() ) );
+        assertEquals( Error, workspace.getStates().getState( b.getIdentifier() ) );
+        assertEquals( Error, workspace.getStates().getState( c.getIdentifier() ) );
+        assertEquals( Initialized, workspace.getStates().getState( d.getIdentifier() ) );
+        assertEquals( Initialized, workspace.getStates().getState( e.getIdentifier() ) );
+        assertFalse( workspace.getErrorHandler().getErrors( a.getIdentifier() ).isEmpty() );
+        assertFalse( workspace.getErrorHandler().getErrors( b.getIdentifier() ).isEmpty() );
+        assertFalse( workspace.getErrorHandler().getErrors( c.getIdentifier() ).isEmpty() );
+        assertFalse( events.contains( "start " + b.getIdentifier() ) );
+        assertFalse( events.contains( "start " + c.getIdentifier() ) );
+        assertDependenciesFinishedFirst();
+    }
+
+    @Test(timeout = 10000)
+    public void testDeactivatedResourcesAreSkipped() {
+        TestMetadata a = add( "a" );
+        TestMetadata b = add( "b" ).dependsOn( a );
+        TestMetadata c = add( "c" ).dependsOn( b );
+        TestMetadata d = add( "d" ).softDependsOn( b );
+        workspace.getStates().setState( b.getIdentifier(), Deactivated );
+
+        workspace.initResources( new TestPreparedResources(), THREADS );
+
+        assertEquals( Initialized, workspace.getStates().getState( a.getIdentifier() ) );
+        assertEquals( Deactivated, workspace.getStates().getState( b.getIdentifier() ) );
+        assertEquals( Error, workspace.getStates().getState( c.getIdentifier() ) );
+        assertEquals( Initialized, workspace.getStates().getState( d.getIdentifier() ) );
+        assertFalse( events.contains( "start " + b.getIdentifier() ) );
+        assertFalse( events.contains( "start " + c.getIdentifier() ) );
+        assertDependenciesFinishedFirst();
+    }
+
+    private void assertDependenciesFinishedFirst() {
+        for ( TestMetadata md : metadata.values() ) {
+            int start = events.indexOf( "start " + md.getIdentifier() );
+            if ( start < 0 ) {
+                continue;
+            }
+            Set<ResourceIdentifier<? extends Resource>> deps = new HashSet<ResourceIdentifier<? extends Resource>>();
+            deps.addAll( md.getDependencies() );
+            deps.addAll( md.getSoftDependencies() );
+            for ( ResourceIdentifier<? extends Resource> dep : deps ) {
+                int end = events.indexOf( "end " + dep );
+                if ( events.contains( "start " + dep ) ) {
+                    assertTrue( dep + " must be finished before " + md.getIdentifier() + " is built", end >= 0
+                                                                                                      && end < start );
+                }
+            }
+        }
+    }
+
+    private TestMetadata add( String id ) {
+        TestMetadata md = new TestMetadata( id );
+        metadata.put( md.getIdentifier(), md );
+        return md;
+    }
+
+    private class TestMetadata extends AbstractResourceMetadata<Resource> {
+
+        private boolean fail;
+
+        TestMetadata( String id ) {
+            super( workspace, new DefaultResourceLocation( dir, new DefaultResourceIdentifier( ResourceProvider.class,
+                                                                                              id ) ), null );
+        }
+
+        TestMetadata dependsOn( TestMetadata md ) {
+            dependencies.add( md.getIdentifier() );
+            return this;
+        }
+
+        TestMetadata softDependsOn( TestMetadata md ) {
+            softDependencies.add( md.getIdentifier() );
+            return this;
+        }
+
+        TestMetadata failing() {
+            fail = true;
+            return this;
+        }
+
+        @Override
+        public ResourceBuilder<Resource> prepare() {
+            final TestMetadata md = this;
+            return new ResourceBuilder<Resource>() {
+                @Override
+                public Resource build() {
+                    events.add( "start " + getIdentifier() );
+                    return new Resource() {
+                        @Override
+                        public ResourceMetadata<? extends Resource> getMetadata() {
+                            return md;
+                        }
+
+                        @Override
+                        public void init() {
+                            try {
+                                // give resources that are initialized concurrently a chance to overlap
+                                Thread.sleep( 20 );
+                                if ( fail ) {
+                                    throw new IllegalStateException( "Initialization of " + getIdentifier()
+                                                                     + " failed." );
+                                }
+                            } catch ( InterruptedException e ) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                events.add( "end " + getIdentifier() );
+                            }
+                        }
+
+                        @Override
+                        public void destroy() {
+                            // nothing to do
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private class TestPreparedResources extends PreparedResources {
+
+        TestPreparedResources() {
+            super( workspace );
+        }
+
+        @Override
+        public <T extends Resource> ResourceBuilder<T> getBuilder( ResourceIdentifier<T> id ) {
+            return (ResourceBuilder<T>) metadata.get( id ).prepare();
+        }
+
+        @Override
+        public Set<ResourceMetadata<? extends Resource>> getMetadata() {
+            return new HashSet<ResourceMetadata<? extends Resource>>( metadata.values() );
+        }
+    }
+
+}
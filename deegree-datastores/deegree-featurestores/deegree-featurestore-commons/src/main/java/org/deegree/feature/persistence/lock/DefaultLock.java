@@ -36,33 +36,31 @@
 
 package org.deegree.feature.persistence.lock;
 
-import static org.deegree.commons.utils.JDBCUtils.close;
-import static org.deegree.commons.utils.JDBCUtils.rollbackQuietly;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.jdbc.ResultSetIterator;
 import org.deegree.commons.utils.CloseableIterator;
-import org.deegree.db.ConnectionProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.protocol.wfs.getfeature.TypeName;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * {@link Lock} implementation that is based on an SQL database.
+ * {@link Lock} implementation that is kept in memory by the {@link LockTable} of a lock database.
+ * <p>
+ * All modifications are delegated to the table, which writes them through to the lock database before the in-memory
+ * state is changed.
+ * </p>
  * 
  * @see DefaultLockManager
  * 
@@ -73,49 +71,43 @@ import org.slf4j.LoggerFactory;
  */
 class DefaultLock implements Lock {
 
-    private static final Logger LOG = LoggerFactory.getLogger( DefaultLock.class );
-
-    private final DefaultLockManager manager;
+    private final LockTable table;
 
     private final String id;
 
     private final Date acquired;
 
-    private Date expires;
-
-    private final int numFailed;
+    private volatile long expires;
 
-    private int numLocked;
+    private final Set<String> locked;
 
-    private ConnectionProvider connection;
+    private final List<String> failed;
 
     /**
      * Creates a new {@link DefaultLock} instance.
      * 
-     * @param manager
-     *            corresponding {@link DefaultLockManager} instance, must not be null
-     * @param jdbcConnId
-     *            id of the JDBC connection, must not be null
+     * @param table
+     *            corresponding {@link LockTable} instance, must not be null
      * @param id
      *            lock id, must not be null
      * @param acquired
      *            time that the lock has been acquired, never null
      * @param expires
      *            time that the lock will expire, never null
-     * @param numLocked
-     *            number of locked features
-     * @param numFailed
-     *            number of features that have been requested to be locked, but which couldn't
+     * @param locked
+     *            ids of the locked features, must not be null
+     * @param failed
+     *            ids of the features that have been requested to be locked, but which couldn't, must not be null
      */
-    DefaultLock( DefaultLockManager manager, ConnectionProvider connection, String id, Date acquired, Date expires,
-                 int numLocked, int numFailed ) {
-        this.manager = manager;
-        this.connection = connection;
+    DefaultLock( LockTable table, String id, Date acquired, Date expires, Collection<String> locked,
+                 List<String> failed ) {
+        this.table = table;
         this.id = id;
         this.acquired = acquired;
-        this.expires = expires;
-        this.numLocked = numLocked;
-        this.numFailed = numFailed;
+        this.expires = expires.getTime();
+        this.locked = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+        this.locked.addAll( locked );
+        this.failed = Collections.unmodifiableList( new ArrayList<String>( failed ) );
     }
 
     @Override
@@ -128,198 +120,85 @@ class DefaultLock implements Lock {
         return acquired.getTime();
     }
 
+    /**
+     * @return the date (milliseconds since 1970-01-01 00:00 UTC) when the lock expires
+     */
+    long getExpiryDate() {
+        return expires;
+    }
+
+    /**
+     * Only to be called by the {@link LockTable} after the lock database has been updated.
+     */
+    void updateExpiryDate( long expiryDate ) {
+        expires = expiryDate;
+    }
+
+    /**
+     * @return true, if the lock has expired (but may not have been released yet)
+     */
+    boolean isExpired() {
+        return expires <= System.currentTimeMillis();
+    }
+
+    /**
+     * @return the live set of locked feature ids, never null
+     */
+    Set<String> getLockedFids() {
+        return locked;
+    }
+
     @Override
     public void setExpiryDate( long expiryDate )
                             throws FeatureStoreException {
-        synchronized ( manager ) {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                conn.setAutoCommit( false );
-                stmt = conn.prepareStatement( "UPDATE LOCKS SET EXPIRES=? WHERE ID=?" );
-                stmt.setTimestamp( 1, new Timestamp( expiryDate ) );
-                stmt.setString( 2, id );
-                if ( stmt.executeUpdate() != 1 ) {
-                    String msg = "Could not reset expiry date for lock with id " + id;
-                    throw new FeatureStoreException( msg );
-                }
-                expires = new Date( expiryDate );
-                conn.commit();
-            } catch ( SQLException e ) {
-                rollbackQuietly( conn );
-                String msg = "Could not reset expiry date for lock with id " + id;
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
-            }
-        }
+        table.setExpiryDate( this, expiryDate );
     }
 
     @Override
     public int getNumLocked() {
-        return numLocked;
+        return locked.size();
     }
 
     @Override
     public int getNumFailedToLock() {
-        return numFailed;
+        return failed.size();
     }
 
     @Override
     public CloseableIterator<String> getLockedFeatures()
                             throws FeatureStoreException {
-
-        CloseableIterator<String> fidIter = null;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT FID FROM LOCKED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                rs = stmt.executeQuery();
-
-                fidIter = new ResultSetIterator<String>( rs, conn, stmt ) {
-                    @Override
-                    protected String createElement( ResultSet rs )
-                                            throws SQLException {
-                        return rs.getString( 1 );
-                    }
-                };
-            } catch ( SQLException e ) {
-                close( rs, stmt, conn, LOG );
-                String msg = "Could not retrieve ids of locked features: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            }
+        if ( isExpired() ) {
+            return new LockTable.SnapshotIterator<String>( Collections.<String> emptyList() );
         }
-        return fidIter;
+        return new LockTable.SnapshotIterator<String>( new ArrayList<String>( locked ) );
     }
 
     @Override
     public CloseableIterator<String> getFailedToLockFeatures()
                             throws FeatureStoreException {
-        CloseableIterator<String> fidIter = null;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT FID FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                rs = stmt.executeQuery();
-
-                fidIter = new ResultSetIterator<String>( rs, conn, stmt ) {
-                    @Override
-                    protected String createElement( ResultSet rs )
-                                            throws SQLException {
-                        return rs.getString( 1 );
-                    }
-                };
-            } catch ( SQLException e ) {
-                close( rs, stmt, conn, LOG );
-                String msg = "Could not retrieve ids of failed to lock features: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            }
+        if ( isExpired() ) {
+            return new LockTable.SnapshotIterator<String>( Collections.<String> emptyList() );
         }
-        return fidIter;
+        return new LockTable.SnapshotIterator<String>( failed );
     }
 
     @Override
     public boolean isLocked( String fid )
                             throws FeatureStoreException {
-        boolean isLocked = false;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE FID=? AND LOCK_ID=?" );
-                stmt.setString( 1, fid );
-                stmt.setString( 2, id );
-                rs = stmt.executeQuery();
-                rs.next();
-                int count = rs.getInt( 1 );
-                isLocked = count > 0;
-            } catch ( SQLException e ) {
-                String msg = "Could not retrieve active locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
-            }
-        }
-        return isLocked;
+        return !isExpired() && locked.contains( fid );
     }
 
     @Override
     public void release()
                             throws FeatureStoreException {
-        synchronized ( manager ) {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            try {
-                // delete entries from LOCKED_FIDS table
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-                stmt.close();
-
-                // delete entries from LOCK_FAILED_FIDS table
-                stmt = conn.prepareStatement( "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-                stmt.close();
-
-                // delete entry from LOCK table
-                stmt = conn.prepareStatement( "DELETE FROM LOCKS WHERE ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-
-                conn.commit();
-            } catch ( SQLException e ) {
-                throw new FeatureStoreException( e.getMessage(), e );
-            } finally {
-                close( null, stmt, conn, LOG );
-            }
-        }
+        table.release( this );
     }
 
     @Override
     public void release( String fid )
                             throws FeatureStoreException {
-
-        synchronized ( manager ) {
-            if ( isLocked( fid ) ) {
-                Connection conn = null;
-                PreparedStatement stmt = null;
-                ResultSet rs = null;
-                try {
-                    conn = connection.getConnection();
-                    stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE FID=?" );
-                    stmt.setString( 1, fid );
-                    stmt.executeUpdate();
-                    conn.commit();
-                    --numLocked;
-                } catch ( SQLException e ) {
-                    String msg = "Could not release locked feature: " + e.getMessage();
-                    LOG.debug( msg, e );
-                    throw new RuntimeException( msg, e );
-                } finally {
-                    close( rs, stmt, conn, LOG );
-                }
-            }
+        if ( isLocked( fid ) ) {
+            table.release( this, Collections.singletonList( fid ) );
         }
     }
 
@@ -327,61 +206,26 @@ class DefaultLock implements Lock {
     public void release( QName ftName, Filter filter )
                             throws FeatureStoreException {
 
-        synchronized ( this ) {
-
-            Query query = new Query( new TypeName[] { new TypeName( ftName, null ) }, filter, null, null, null );
-
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                // TODO don't actually fetch the feature collection, but only the fids of the features
-                FeatureCollection fc = manager.getStore().query( query ).toCollection();
-
-                conn = connection.getConnection();
-                conn.setAutoCommit( false );
-
-                // delete entries in LOCKED_FIDS table
-                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE FID=? AND LOCK_ID=?" );
-
-                for ( Feature feature : fc ) {
-                    String fid = feature.getId();
-                    stmt.setString( 1, fid );
-                    stmt.setString( 2, id );
-                    int deleted = stmt.executeUpdate();
-                    if ( deleted != 1 ) {
-                        LOG.error( "Internal error. Locked fid entry has not actually been removed from LOCKED_FIDS." );
-                    }
-                }
-                conn.commit();
-            } catch ( SQLException e ) {
-                try {
-                    if ( conn != null ) {
-                        conn.rollback();
-                    }
-                } catch ( SQLException e1 ) {
-                    // TODO Auto-generated catch block
-                    e1.printStackTrace();
-                }
-                throw new FeatureStoreException( e.getMessage(), e );
-            } catch ( FilterEvaluationException e ) {
-                LOG.debug( "Stack trace:", e );
-                throw new FeatureStoreException( e );
-            } finally {
-                try {
-                    if ( conn != null ) {
-                        conn.setAutoCommit( true );
-                    }
-                } catch ( SQLException e ) {
-                    e.printStackTrace();
-                }
-                close( rs, stmt, conn, LOG );
+        Query query = new Query( new TypeName[] { new TypeName( ftName, null ) }, filter, null, null, null );
+        List<String> fids = new ArrayList<String>();
+        FeatureInputStream rs = null;
+        try {
+            rs = table.getStore( ftName ).query( query );
+            for ( Feature feature : rs ) {
+                fids.add( feature.getId() );
+            }
+        } catch ( FilterEvaluationException e ) {
+            throw new FeatureStoreException( e );
+        } finally {
+            if ( rs != null ) {
+                rs.close();
             }
         }
+        table.release( this, fids );
     }
 
     @Override
     public String toString() {
-        return "{id=" + id + ",acquired=" + acquired + ",expires=" + expires + "}";
+        return "{id=" + id + ",acquired=" + acquired + ",expires=" + new Date( expires ) + "}";
     }
 }
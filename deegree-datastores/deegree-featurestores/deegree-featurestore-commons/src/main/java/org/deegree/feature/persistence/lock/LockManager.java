@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.lock;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.deegree.commons.ows.exception.OWSException;
@@ -138,4 +139,17 @@ public interface LockManager {
      */
     public boolean isFeatureModifiable( String fid, String lockId )
                             throws FeatureStoreException;
+
+    /**
+     * Checks in one pass whether all specified features are modifiable for the owner of the specified lock.
+     * 
+     * @param fids
+     *            ids of the features, must not be <code>null</code>
+     * @param lockId
+     *            if of the lock, may be null (in this case features are only modifiable if they are not locked at all)
+     * @return id of the first feature that is not modifiable, <code>null</code> if all features are modifiable
+     * @throws FeatureStoreException
+     */
+    public String findUnmodifiableFeature( Collection<String> fids, String lockId )
+                            throws FeatureStoreException;
 }
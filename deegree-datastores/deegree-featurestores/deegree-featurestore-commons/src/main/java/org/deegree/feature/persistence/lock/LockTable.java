@@ -0,0 +1,797 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.feature.persistence.lock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.deegree.commons.tom.datetime.ISO8601Converter.formatDateTime;
+import static org.deegree.commons.utils.JDBCUtils.close;
+import static org.deegree.commons.utils.JDBCUtils.rollbackQuietly;
+import static org.deegree.feature.i18n.Messages.getMessage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.tom.datetime.DateTime;
+import org.deegree.commons.utils.CloseableIterator;
+import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.i18n.Messages;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory table of the active locks of a lock database, shared by all {@link DefaultLockManager}s that use the same
+ * {@link ConnectionProvider}.
+ * <p>
+ * Lookups (e.g. {@link #isFeatureModifiable(String, String)} during transactions) are answered from a feature id to
+ * lock id table that is partitioned into independently locked stripes, so concurrent requests don't block each other
+ * and don't hit the database. New locks claim their features in this table first (this is where concurrent lock
+ * requests compete) and withdraw the claims if the lock can't be committed to the database; until the commit, claimed
+ * features count as locked already. All other changes (releases, new expiry dates) are written through to the
+ * database before they become visible in memory. The persisted locks are loaded when the first manager registers for
+ * the database. Expired locks are released by a timer when their expiry date is reached; until then, lookups treat
+ * them as released already. Since there is only one table (and one set of timer tasks) per lock database, the locks
+ * of one feature store can't be released by the timer of another one. The timer tasks are cancelled when the last
+ * manager has been destroyed.
+ * </p>
+ * 
+ * @see DefaultLockManager
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class LockTable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( LockTable.class );
+
+    private static final int STRIPES = 64;
+
+    private static final ScheduledThreadPoolExecutor EXPIRY_TIMER = createExpiryTimer();
+
+    // guarded by itself
+    private static final Map<ConnectionProvider, LockTable> TABLES = new HashMap<ConnectionProvider, LockTable>();
+
+    private final ConnectionProvider connection;
+
+    private final List<DefaultLockManager> managers = new CopyOnWriteArrayList<DefaultLockManager>();
+
+    private final ConcurrentMap<String, DefaultLock> locks = new ConcurrentHashMap<String, DefaultLock>();
+
+    private final ConcurrentMap<String, String> fidToLockId = new ConcurrentHashMap<String, String>( 1024, 0.75f,
+                                                                                                      STRIPES );
+
+    private final ConcurrentMap<String, ScheduledFuture<?>> expiryTasks;
+
+    private volatile boolean destroyed;
+
+    private LockTable( ConnectionProvider connection ) {
+        this.connection = connection;
+        this.expiryTasks = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+    }
+
+    /**
+     * Registers the given manager with the lock table of the given lock database. The table is created (and the
+     * persisted locks are loaded) if the manager is the first one for the database.
+     * 
+     * @param manager
+     *            never <code>null</code>
+     * @param connection
+     *            connection to the lock database, never <code>null</code>
+     * @return the lock table, never <code>null</code>
+     * @throws FeatureStoreException
+     *             if the initialization of the lock database fails
+     */
+    static LockTable register( DefaultLockManager manager, ConnectionProvider connection )
+                            throws FeatureStoreException {
+        synchronized ( TABLES ) {
+            LockTable table = TABLES.get( connection );
+            if ( table == null ) {
+                table = new LockTable( connection );
+                table.initDatabase();
+                table.loadLocks();
+                TABLES.put( connection, table );
+            }
+            table.managers.add( manager );
+            return table;
+        }
+    }
+
+    /**
+     * Unregisters the given manager. If it has been the last one, the pending expiry tasks are cancelled and the table
+     * is dropped. The persisted locks are left untouched, so they are active again when a new manager is created for
+     * the lock database.
+     * 
+     * @param manager
+     *            never <code>null</code>
+     */
+    void unregister( DefaultLockManager manager ) {
+        synchronized ( TABLES ) {
+            if ( !managers.remove( manager ) || !managers.isEmpty() ) {
+                return;
+            }
+            if ( TABLES.get( connection ) == this ) {
+                TABLES.remove( connection );
+            }
+            destroyed = true;
+            for ( ScheduledFuture<?> task : expiryTasks.values() ) {
+                task.cancel( false );
+            }
+            expiryTasks.clear();
+            EXPIRY_TIMER.purge();
+        }
+    }
+
+    /**
+     * Returns the feature store that serves the given feature type, used for releasing features by a query.
+     * 
+     * @param ftName
+     *            name of the feature type, never <code>null</code>
+     * @return the store of one of the registered managers, never <code>null</code>
+     * @throws FeatureStoreException
+     *             if no manager is registered
+     */
+    FeatureStore getStore( QName ftName )
+                            throws FeatureStoreException {
+        List<DefaultLockManager> current = new ArrayList<DefaultLockManager>( managers );
+        if ( current.isEmpty() ) {
+            throw new FeatureStoreException( "The lock manager has been destroyed." );
+        }
+        if ( current.size() > 1 ) {
+            for ( DefaultLockManager manager : current ) {
+                if ( manager.getStore().isMapped( ftName ) ) {
+                    return manager.getStore();
+                }
+            }
+        }
+        return current.get( 0 ).getStore();
+    }
+
+    /**
+     * Creates the lock tables that do not exist yet. Called while holding the registry monitor, so managers of the
+     * same VM never create the tables concurrently; a table created by another process in the meantime is accepted.
+     */
+    private void initDatabase()
+                            throws FeatureStoreException {
+
+        LOG.debug( "Initializing lock database." );
+        Connection conn = null;
+        try {
+            conn = connection.getConnection();
+            String sql = "CREATE TABLE LOCKS (";
+            sql += "ID INT NOT NULL GENERATED ALWAYS AS IDENTITY PRIMARY KEY,";
+            sql += "ACQUIRED TIMESTAMP NOT NULL,";
+            sql += "EXPIRES TIMESTAMP NOT NULL";
+            sql += ")";
+            createTable( conn, "LOCKS", sql );
+
+            sql = "CREATE TABLE LOCKED_FIDS (";
+            sql += "LOCK_ID INT REFERENCES LOCKS,";
+            sql += "FID VARCHAR(255) NOT NULL UNIQUE";
+            sql += ")";
+            createTable( conn, "LOCKED_FIDS", sql );
+
+            sql = "CREATE TABLE LOCK_FAILED_FIDS (";
+            sql += "LOCK_ID INT REFERENCES LOCKS,";
+            sql += "FID VARCHAR(255) NOT NULL";
+            sql += ")";
+            createTable( conn, "LOCK_FAILED_FIDS", sql );
+        } catch ( SQLException e ) {
+            String msg = Messages.getMessage( "LOCK_DB_CREATE_ERROR", e.getMessage() );
+            LOG.error( msg, e );
+            throw new FeatureStoreException( msg, e );
+        } finally {
+            close( conn );
+        }
+    }
+
+    private void createTable( Connection conn, String table, String sql )
+                            throws SQLException {
+        if ( tableExists( conn, table ) ) {
+            LOG.debug( "Table '{}' already exists.", table );
+            return;
+        }
+        LOG.debug( "Creating table '{}'.", table );
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute( sql );
+        } catch ( SQLException e ) {
+            if ( !tableExists( conn, table ) ) {
+                throw e;
+            }
+            LOG.debug( "Table '{}' has been created concurrently.", table );
+        } finally {
+            close( stmt );
+        }
+    }
+
+    private static boolean tableExists( Connection conn, String table )
+                            throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = conn.getMetaData().getTables( null, null, table, new String[] { "TABLE" } );
+            return rs.next();
+        } finally {
+            close( rs );
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createExpiryTimer() {
+        return new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "deegree-lock-expiry" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    private void loadLocks()
+                            throws FeatureStoreException {
+
+        deleteExpiredLocks();
+
+        Map<String, Date[]> dates = new HashMap<String, Date[]>();
+        Map<String, List<String>> lockedFids = new HashMap<String, List<String>>();
+        Map<String, List<String>> failedFids = new HashMap<String, List<String>>();
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = connection.getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery( "SELECT ID,ACQUIRED,EXPIRES FROM LOCKS" );
+            while ( rs.next() ) {
+                String lockId = rs.getString( 1 );
+                dates.put( lockId, new Date[] { rs.getTimestamp( 2 ), rs.getTimestamp( 3 ) } );
+                lockedFids.put( lockId, new ArrayList<String>() );
+                failedFids.put( lockId, new ArrayList<String>() );
+            }
+            rs.close();
+            rs = stmt.executeQuery( "SELECT LOCK_ID,FID FROM LOCKED_FIDS" );
+            while ( rs.next() ) {
+                List<String> fids = lockedFids.get( rs.getString( 1 ) );
+                if ( fids != null ) {
+                    fids.add( rs.getString( 2 ) );
+                }
+            }
+            rs.close();
+            rs = stmt.executeQuery( "SELECT LOCK_ID,FID FROM LOCK_FAILED_FIDS" );
+            while ( rs.next() ) {
+                List<String> fids = failedFids.get( rs.getString( 1 ) );
+                if ( fids != null ) {
+                    fids.add( rs.getString( 2 ) );
+                }
+            }
+        } catch ( SQLException e ) {
+            String msg = "Could not load active locks: " + e.getMessage();
+            LOG.debug( msg, e );
+            throw new FeatureStoreException( msg, e );
+        } finally {
+            close( rs, stmt, conn, LOG );
+        }
+
+        for ( Map.Entry<String, Date[]> entry : dates.entrySet() ) {
+            String lockId = entry.getKey();
+            DefaultLock lock = new DefaultLock( this, lockId, entry.getValue()[0], entry.getValue()[1],
+                                                lockedFids.get( lockId ), failedFids.get( lockId ) );
+            for ( String fid : lock.getLockedFids() ) {
+                fidToLockId.put( fid, lockId );
+            }
+            locks.put( lockId, lock );
+            scheduleExpiry( lock, lock.getExpiryDate() );
+        }
+        LOG.debug( "Loaded " + locks.size() + " active lock(s)." );
+    }
+
+    /**
+     * Creates a new lock for the given features.
+     * 
+     * @param fids
+     *            ids of the features to be locked, never <code>null</code>
+     * @param mustLockAll
+     *            if true, the lock fails if any of the features is locked already
+     * @param expireTimeout
+     *            number of milliseconds before the lock expires
+     * @return the new lock, never <code>null</code>
+     * @throws FeatureStoreException
+     *             if the lock database could not be updated
+     * @throws OWSException
+     *             if <code>mustLockAll</code> is true and a feature is locked already
+     */
+    DefaultLock createLock( List<String> fids, boolean mustLockAll, long expireTimeout )
+                            throws FeatureStoreException, OWSException {
+
+        Date acquired = new Date();
+        Date expires = new Date( acquired.getTime() + expireTimeout );
+        Set<String> locked = new LinkedHashSet<String>();
+        List<String> failed = new ArrayList<String>();
+        String lockId = null;
+        boolean committed = false;
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = connection.getConnection();
+            conn.setAutoCommit( false );
+
+            // create entry in LOCKS table
+            stmt = conn.prepareStatement( "INSERT INTO LOCKS (ACQUIRED,EXPIRES) VALUES (?,?)",
+                                          Statement.RETURN_GENERATED_KEYS );
+            stmt.setTimestamp( 1, new Timestamp( acquired.getTime() ) );
+            stmt.setTimestamp( 2, new Timestamp( expires.getTime() ) );
+            stmt.execute();
+            rs = stmt.getGeneratedKeys();
+            rs.next();
+            lockId = "" + rs.getInt( 1 );
+            rs.close();
+            rs = null;
+            stmt.close();
+
+            // claim the features in memory, this is where concurrent lock requests compete
+            for ( String fid : fids ) {
+                if ( locked.contains( fid ) ) {
+                    continue;
+                }
+                String holder = claim( fid, lockId );
+                if ( holder == null ) {
+                    locked.add( fid );
+                } else if ( mustLockAll ) {
+                    throw cannotLockAll( fid, holder );
+                } else {
+                    failed.add( fid );
+                }
+            }
+
+            // create entries in LOCKED_FIDS/LOCK_FAILED_FIDS tables
+            stmt = conn.prepareStatement( "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
+            addFidBatch( stmt, lockId, locked );
+            stmt.close();
+            stmt = conn.prepareStatement( "INSERT INTO LOCK_FAILED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
+            addFidBatch( stmt, lockId, failed );
+
+            conn.commit();
+            committed = true;
+        } catch ( SQLException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
+        } finally {
+            if ( !committed ) {
+                rollbackQuietly( conn );
+                // withdraw the in-memory claims, the lock never became valid
+                if ( lockId != null ) {
+                    for ( String fid : locked ) {
+                        fidToLockId.remove( fid, lockId );
+                    }
+                }
+            }
+            resetAutoCommit( conn );
+            close( rs, stmt, conn, LOG );
+        }
+
+        DefaultLock lock = new DefaultLock( this, lockId, acquired, expires, locked, failed );
+        locks.put( lockId, lock );
+        scheduleExpiry( lock, lock.getExpiryDate() );
+        return lock;
+    }
+
+    private void addFidBatch( PreparedStatement stmt, String lockId, Collection<String> fids )
+                            throws SQLException {
+        if ( fids.isEmpty() ) {
+            return;
+        }
+        int lockIdInt = Integer.parseInt( lockId );
+        for ( String fid : fids ) {
+            stmt.setInt( 1, lockIdInt );
+            stmt.setString( 2, fid );
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+    }
+
+    /**
+     * Tries to register the given lock as the holder of the feature.
+     * 
+     * @return <code>null</code>, if the feature has been claimed, otherwise the id of the lock that holds it
+     */
+    private String claim( String fid, String lockId )
+                            throws FeatureStoreException {
+        while ( true ) {
+            String holder = fidToLockId.putIfAbsent( fid, lockId );
+            if ( holder == null || holder.equals( lockId ) ) {
+                return null;
+            }
+            DefaultLock other = locks.get( holder );
+            if ( other == null || !other.isExpired() ) {
+                return holder;
+            }
+            // expired, but not released by the timer yet
+            release( other );
+        }
+    }
+
+    private OWSException cannotLockAll( String fid, String holder ) {
+        DefaultLock other = locks.get( holder );
+        String expires = "-";
+        String acquired = "-";
+        if ( other != null ) {
+            expires = formatDateTime( new DateTime( new Date( other.getExpiryDate() ), null ) );
+            acquired = formatDateTime( new DateTime( new Date( other.getAcquistionDate() ), null ) );
+        }
+        return new OWSException( getMessage( "LOCK_CANNOT_LOCK_ALL", fid, expires, acquired ), NO_APPLICABLE_CODE );
+    }
+
+    CloseableIterator<Lock> getActiveLocks() {
+        List<Lock> active = new ArrayList<Lock>();
+        for ( DefaultLock lock : locks.values() ) {
+            if ( !lock.isExpired() ) {
+                active.add( lock );
+            }
+        }
+        return new SnapshotIterator<Lock>( active );
+    }
+
+    Lock getLock( String lockId )
+                            throws FeatureStoreException {
+        DefaultLock lock = locks.get( normalize( lockId ) );
+        if ( lock == null || lock.isExpired() ) {
+            String msg = Messages.getMessage( "LOCK_NO_SUCH_ID", lockId );
+            throw new LockHasExpiredException( msg, "lockId" );
+        }
+        return lock;
+    }
+
+    boolean isFeatureLocked( String fid ) {
+        String holder = fidToLockId.get( fid );
+        return holder != null && isActive( holder );
+    }
+
+    boolean isFeatureModifiable( String fid, String lockId ) {
+        String holder = fidToLockId.get( fid );
+        if ( holder == null ) {
+            return true;
+        }
+        if ( lockId != null && holder.equals( normalize( lockId ) ) ) {
+            return true;
+        }
+        return !isActive( holder );
+    }
+
+    String findUnmodifiableFeature( Collection<String> fids, String lockId ) {
+        String ownLockId = lockId != null ? normalize( lockId ) : null;
+        for ( String fid : fids ) {
+            String holder = fidToLockId.get( fid );
+            if ( holder != null && !holder.equals( ownLockId ) && isActive( holder ) ) {
+                return fid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Features may be claimed by a lock that is still being acquired (and not registered yet), these count as locked.
+     */
+    private boolean isActive( String lockId ) {
+        DefaultLock lock = locks.get( lockId );
+        return lock == null || !lock.isExpired();
+    }
+
+    private String normalize( String lockId ) {
+        try {
+            return "" + Integer.parseInt( lockId );
+        } catch ( NumberFormatException e ) {
+            // not a number -> never matches
+            return lockId;
+        }
+    }
+
+    /**
+     * Updates the expiry date of the given lock.
+     */
+    void setExpiryDate( DefaultLock lock, long expiryDate )
+                            throws FeatureStoreException {
+        synchronized ( lock ) {
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            try {
+                conn = connection.getConnection();
+                conn.setAutoCommit( false );
+                stmt = conn.prepareStatement( "UPDATE LOCKS SET EXPIRES=? WHERE ID=?" );
+                stmt.setTimestamp( 1, new Timestamp( expiryDate ) );
+                stmt.setInt( 2, Integer.parseInt( lock.getId() ) );
+                if ( stmt.executeUpdate() != 1 ) {
+                    String msg = "Could not reset expiry date for lock with id " + lock.getId();
+                    throw new FeatureStoreException( msg );
+                }
+                conn.commit();
+            } catch ( SQLException e ) {
+                rollbackQuietly( conn );
+                String msg = "Could not reset expiry date for lock with id " + lock.getId();
+                LOG.debug( msg, e );
+                throw new FeatureStoreException( msg, e );
+            } finally {
+                resetAutoCommit( conn );
+                close( null, stmt, conn, LOG );
+            }
+            long previous = lock.getExpiryDate();
+            lock.updateExpiryDate( expiryDate );
+            if ( expiryDate < previous ) {
+                // a pending timer task for an extended lock simply reschedules itself
+                scheduleExpiry( lock, expiryDate );
+            }
+        }
+    }
+
+    /**
+     * Releases the given lock completely.
+     */
+    void release( DefaultLock lock )
+                            throws FeatureStoreException {
+        synchronized ( lock ) {
+            if ( locks.get( lock.getId() ) != lock ) {
+                return;
+            }
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            try {
+                int lockIdInt = Integer.parseInt( lock.getId() );
+                conn = connection.getConnection();
+                conn.setAutoCommit( false );
+                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=?" );
+                stmt.setInt( 1, lockIdInt );
+                stmt.execute();
+                stmt.close();
+                stmt = conn.prepareStatement( "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?" );
+                stmt.setInt( 1, lockIdInt );
+                stmt.execute();
+                stmt.close();
+                stmt = conn.prepareStatement( "DELETE FROM LOCKS WHERE ID=?" );
+                stmt.setInt( 1, lockIdInt );
+                stmt.execute();
+                conn.commit();
+            } catch ( SQLException e ) {
+                rollbackQuietly( conn );
+                throw new FeatureStoreException( e.getMessage(), e );
+            } finally {
+                resetAutoCommit( conn );
+                close( null, stmt, conn, LOG );
+            }
+            for ( String fid : lock.getLockedFids() ) {
+                fidToLockId.remove( fid, lock.getId() );
+            }
+            lock.getLockedFids().clear();
+            locks.remove( lock.getId(), lock );
+            ScheduledFuture<?> task = expiryTasks.remove( lock.getId() );
+            if ( task != null ) {
+                task.cancel( false );
+            }
+        }
+    }
+
+    /**
+     * Releases the given features from the lock.
+     */
+    void release( DefaultLock lock, Collection<String> fids )
+                            throws FeatureStoreException {
+        synchronized ( lock ) {
+            List<String> release = new ArrayList<String>( fids.size() );
+            for ( String fid : fids ) {
+                if ( lock.getLockedFids().contains( fid ) ) {
+                    release.add( fid );
+                }
+            }
+            if ( release.isEmpty() ) {
+                return;
+            }
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            try {
+                conn = connection.getConnection();
+                conn.setAutoCommit( false );
+                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=? AND FID=?" );
+                addFidBatch( stmt, lock.getId(), release );
+                conn.commit();
+            } catch ( SQLException e ) {
+                rollbackQuietly( conn );
+                String msg = "Could not release locked features: " + e.getMessage();
+                LOG.debug( msg, e );
+                throw new FeatureStoreException( msg, e );
+            } finally {
+                resetAutoCommit( conn );
+                close( null, stmt, conn, LOG );
+            }
+            for ( String fid : release ) {
+                lock.getLockedFids().remove( fid );
+                fidToLockId.remove( fid, lock.getId() );
+            }
+        }
+    }
+
+    private void scheduleExpiry( final DefaultLock lock, long expiryDate ) {
+        if ( destroyed ) {
+            return;
+        }
+        long delay = Math.max( 0, expiryDate - System.currentTimeMillis() );
+        ScheduledFuture<?> task = EXPIRY_TIMER.schedule( new Runnable() {
+            @Override
+            public void run() {
+                if ( destroyed || locks.get( lock.getId() ) != lock ) {
+                    return;
+                }
+                if ( !lock.isExpired() ) {
+                    scheduleExpiry( lock, lock.getExpiryDate() );
+                    return;
+                }
+                try {
+                    LOG.debug( "Releasing expired lock " + lock );
+                    release( lock );
+                } catch ( Exception e ) {
+                    // lookups treat the lock as released anyway, next attempt on the next conflicting claim
+                    LOG.warn( "Could not release expired lock {}: {}", lock.getId(), e.getMessage() );
+                    LOG.trace( "Stack trace:", e );
+                }
+            }
+        }, delay, MILLISECONDS );
+        ScheduledFuture<?> previous = expiryTasks.put( lock.getId(), task );
+        if ( previous != null ) {
+            previous.cancel( false );
+        }
+        if ( destroyed ) {
+            // raced with destroy()
+            task.cancel( false );
+        }
+    }
+
+    /**
+     * Removes all locks from the database that expired while no manager was running.
+     */
+    private void deleteExpiredLocks() {
+
+        Timestamp now = new Timestamp( new Date().getTime() );
+        LOG.debug( "Checking for and removing all locks expired until '" + now + "'" );
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = connection.getConnection();
+
+            stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID IN (SELECT ID FROM LOCKS WHERE EXPIRES <=?)" );
+            stmt.setTimestamp( 1, now );
+            int deleted = stmt.executeUpdate();
+            LOG.debug( "Deleted " + deleted + " row(s) from table LOCKED_FIDS." );
+            stmt.close();
+
+            stmt = conn.prepareStatement( "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID IN (SELECT ID FROM LOCKS WHERE EXPIRES <=?)" );
+            stmt.setTimestamp( 1, now );
+            deleted = stmt.executeUpdate();
+            LOG.debug( "Deleted " + deleted + " row(s) from table LOCK_FAILED_FIDS." );
+            stmt.close();
+
+            stmt = conn.prepareStatement( "DELETE FROM LOCKS WHERE EXPIRES <=?" );
+            stmt.setTimestamp( 1, now );
+            deleted = stmt.executeUpdate();
+            LOG.debug( "Deleted " + deleted + " row(s) from table LOCKS." );
+        } catch ( SQLException e ) {
+            String msg = "Could not determine expired locks: " + e.getMessage();
+            LOG.debug( msg, e );
+            throw new RuntimeException( msg, e );
+        } finally {
+            close( null, stmt, conn, LOG );
+        }
+    }
+
+    private void resetAutoCommit( Connection conn ) {
+        try {
+            if ( conn != null ) {
+                conn.setAutoCommit( true );
+            }
+        } catch ( SQLException e ) {
+            LOG.warn( "Error resetting auto commit on lock db connection: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * {@link CloseableIterator} over a snapshot of in-memory lock state.
+     */
+    static class SnapshotIterator<T> implements CloseableIterator<T> {
+
+        private final Iterator<T> iter;
+
+        SnapshotIterator( List<T> elements ) {
+            this.iter = elements.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iter.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public List<T> getAsListAndClose() {
+            return (List<T>) getAsCollectionAndClose( new ArrayList<T>() );
+        }
+
+        @Override
+        public Collection<T> getAsCollectionAndClose( Collection<T> collection ) {
+            while ( iter.hasNext() ) {
+                collection.add( iter.next() );
+            }
+            return collection;
+        }
+    }
+
+}
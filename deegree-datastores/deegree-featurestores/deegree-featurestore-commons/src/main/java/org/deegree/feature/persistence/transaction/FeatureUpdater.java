@@ -101,7 +101,8 @@ public class FeatureUpdater {
             updateAction = REPLACE;
         }
         int idx = replacement.getIndex();
-        final List<Property> ps = feature.getProperties();
+        // the properties of some feature implementations are unmodifiable
+        final List<Property> ps = new ArrayList<Property>( feature.getProperties() );
         switch ( updateAction ) {
         case INSERT_AFTER:
             if ( !targetProps.isEmpty() ) {
@@ -162,6 +163,11 @@ public class FeatureUpdater {
             }
             break;
         }
+        try {
+            feature.setProperties( ps );
+        } catch ( IllegalArgumentException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
+        }
         validateProperties( feature, feature.getProperties() );
         checkForDuplicateIds( feature );
     }
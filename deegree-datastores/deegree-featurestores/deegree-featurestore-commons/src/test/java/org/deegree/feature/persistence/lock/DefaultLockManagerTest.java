@@ -0,0 +1,431 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.workspace.ResourceMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultLockManager} against an in-memory Derby database.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class DefaultLockManagerTest {
+
+    private static final QName FT_NAME = new QName( "http://www.deegree.org/app", "City" );
+
+    private static int dbCount;
+
+    private final GenericFeatureType ft = new GenericFeatureType( FT_NAME, Collections.<PropertyType> emptyList(),
+                                                                  false );
+
+    private final Map<Query, List<String>> queries = new IdentityHashMap<Query, List<String>>();
+
+    private TestConnectionProvider connection;
+
+    private DefaultLockManager manager;
+
+    // manager of a second store that shares the lock database
+    private DefaultLockManager other;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        System.setProperty( "derby.stream.error.file", "target/derby.log" );
+        connection = new TestConnectionProvider( "jdbc:derby:memory:locks" + ( dbCount++ ) + ";create=true" );
+        manager = new DefaultLockManager( createStore(), connection );
+    }
+
+    @After
+    public void tearDown() {
+        manager.destroy();
+        if ( other != null ) {
+            other.destroy();
+        }
+    }
+
+    @Test
+    public void testAcquireAndRelease()
+                            throws Exception {
+        Lock lock = manager.acquireLock( queries( "F1", "F2" ), true, 60000 );
+        assertEquals( 2, lock.getNumLocked() );
+        assertTrue( manager.isFeatureLocked( "F1" ) );
+        assertFalse( manager.isFeatureModifiable( "F1", null ) );
+        assertTrue( manager.isFeatureModifiable( "F1", lock.getId() ) );
+        assertEquals( 2, countRows( "LOCKED_FIDS" ) );
+
+        lock.release( "F1" );
+        assertFalse( manager.isFeatureLocked( "F1" ) );
+        assertTrue( manager.isFeatureLocked( "F2" ) );
+        assertEquals( 1, countRows( "LOCKED_FIDS" ) );
+
+        lock.release();
+        assertFalse( manager.isFeatureLocked( "F2" ) );
+        assertEquals( 0, countRows( "LOCKS" ) );
+        assertEquals( 0, countRows( "LOCKED_FIDS" ) );
+        assertEquals( 2, manager.acquireLock( queries( "F1", "F2" ), true, 60000 ).getNumLocked() );
+    }
+
+    @Test
+    public void testAcquireLockedFeature()
+                            throws Exception {
+        manager.acquireLock( queries( "F1" ), true, 60000 );
+        try {
+            manager.acquireLock( queries( "F1", "F2" ), true, 60000 );
+            fail( "Expected OWSException." );
+        } catch ( OWSException e ) {
+            // expected
+        }
+        assertFalse( manager.isFeatureLocked( "F2" ) );
+        assertEquals( 1, countRows( "LOCKS" ) );
+
+        Lock some = manager.acquireLock( queries( "F1", "F2" ), false, 60000 );
+        assertEquals( 1, some.getNumLocked() );
+        assertEquals( 1, some.getNumFailedToLock() );
+        assertTrue( some.isLocked( "F2" ) );
+        assertFalse( some.isLocked( "F1" ) );
+    }
+
+    @Test
+    public void testConcurrentAcquireOfSameFeature()
+                            throws Exception {
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService exec = Executors.newFixedThreadPool( threads );
+        List<Future<Lock>> results = new ArrayList<Future<Lock>>();
+        try {
+            for ( int i = 0; i < threads; i++ ) {
+                final List<Query> query = queries( "F1", "F" + i + "_own" );
+                results.add( exec.submit( new Callable<Lock>() {
+                    @Override
+                    public Lock call()
+                                            throws Exception {
+                        start.await();
+                        return manager.acquireLock( query, false, 60000 );
+                    }
+                } ) );
+            }
+            start.countDown();
+            int winners = 0;
+            for ( Future<Lock> result : results ) {
+                Lock lock = result.get();
+                if ( lock.isLocked( "F1" ) ) {
+                    winners++;
+                } else {
+                    assertEquals( 1, lock.getNumFailedToLock() );
+                }
+                assertEquals( lock.isLocked( "F1" ) ? 2 : 1, lock.getNumLocked() );
+            }
+            assertEquals( 1, winners );
+        } finally {
+            exec.shutdown();
+        }
+        assertEquals( threads + 1, countRows( "LOCKED_FIDS" ) );
+        assertEquals( threads - 1, countRows( "LOCK_FAILED_FIDS" ) );
+    }
+
+    @Test
+    public void testFailedCommitWithdrawsClaims()
+                            throws Exception {
+        connection.failCommit = true;
+        try {
+            manager.acquireLock( queries( "F1" ), true, 60000 );
+            fail( "Expected FeatureStoreException." );
+        } catch ( FeatureStoreException e ) {
+            // expected
+        }
+        connection.failCommit = false;
+        assertFalse( manager.isFeatureLocked( "F1" ) );
+        assertFalse( manager.getActiveLocks().hasNext() );
+        assertEquals( 0, countRows( "LOCKS" ) );
+        assertEquals( 1, manager.acquireLock( queries( "F1" ), true, 60000 ).getNumLocked() );
+    }
+
+    @Test
+    public void testExpiry()
+                            throws Exception {
+        Lock lock = manager.acquireLock( queries( "F1" ), true, 200 );
+        assertTrue( manager.isFeatureLocked( "F1" ) );
+        Thread.sleep( 250 );
+        // lookups don't wait for the timer
+        assertFalse( manager.isFeatureLocked( "F1" ) );
+        assertFalse( lock.isLocked( "F1" ) );
+        waitForRows( "LOCKS", 0 );
+        assertEquals( 0, countRows( "LOCKED_FIDS" ) );
+        assertEquals( 1, manager.acquireLock( queries( "F1" ), true, 60000 ).getNumLocked() );
+    }
+
+    @Test
+    public void testExtendedLockDoesNotExpire()
+                            throws Exception {
+        Lock lock = manager.acquireLock( queries( "F1" ), true, 200 );
+        lock.setExpiryDate( System.currentTimeMillis() + 60000 );
+        Thread.sleep( 400 );
+        assertTrue( manager.isFeatureLocked( "F1" ) );
+        assertEquals( 1, countRows( "LOCKS" ) );
+    }
+
+    @Test
+    public void testDestroyCancelsExpiry()
+                            throws Exception {
+        manager.acquireLock( queries( "F1" ), true, 200 );
+        manager.destroy();
+        Thread.sleep( 400 );
+        assertEquals( 1, countRows( "LOCKS" ) );
+    }
+
+    @Test
+    public void testLocksAreLoadedAgain()
+                            throws Exception {
+        Lock lock = manager.acquireLock( queries( "F1", "F2" ), true, 60000 );
+        manager.destroy();
+        manager = new DefaultLockManager( createStore(), connection );
+        assertTrue( manager.isFeatureLocked( "F1" ) );
+        Lock loaded = manager.getLock( lock.getId() );
+        assertNotNull( loaded );
+        assertEquals( 2, loaded.getNumLocked() );
+    }
+
+    @Test
+    public void testManagersShareLocks()
+                            throws Exception {
+        other = new DefaultLockManager( createStore(), connection );
+        Lock lock = manager.acquireLock( queries( "F1" ), true, 60000 );
+        assertTrue( other.isFeatureLocked( "F1" ) );
+        assertFalse( other.isFeatureModifiable( "F1", null ) );
+        assertTrue( other.isFeatureModifiable( "F1", lock.getId() ) );
+        assertSame( lock, other.getLock( lock.getId() ) );
+        try {
+            other.acquireLock( queries( "F1" ), true, 60000 );
+            fail( "Expected OWSException." );
+        } catch ( OWSException e ) {
+            // expected
+        }
+        lock.release();
+        assertFalse( other.isFeatureLocked( "F1" ) );
+    }
+
+    @Test
+    public void testExtendedLockIsNotExpiredByOtherManager()
+                            throws Exception {
+        Lock lock = manager.acquireLock( queries( "F1" ), true, 200 );
+        other = new DefaultLockManager( createStore(), connection );
+        lock.setExpiryDate( System.currentTimeMillis() + 60000 );
+        Thread.sleep( 400 );
+        assertEquals( 1, countRows( "LOCKS" ) );
+        assertTrue( other.isFeatureLocked( "F1" ) );
+        assertTrue( manager.isFeatureLocked( "F1" ) );
+    }
+
+    @Test
+    public void testExpiryContinuesUntilLastManagerIsDestroyed()
+                            throws Exception {
+        other = new DefaultLockManager( createStore(), connection );
+        other.acquireLock( queries( "F1" ), true, 200 );
+        other.destroy();
+        other = null;
+        waitForRows( "LOCKS", 0 );
+        assertFalse( manager.isFeatureLocked( "F1" ) );
+    }
+
+    private List<Query> queries( String... fids ) {
+        Query query = new Query( FT_NAME, null, -1, -1, -1 );
+        List<String> ids = new ArrayList<String>();
+        Collections.addAll( ids, fids );
+        synchronized ( queries ) {
+            queries.put( query, ids );
+        }
+        return Collections.singletonList( query );
+    }
+
+    private FeatureStore createStore() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                if ( !method.getName().equals( "query" ) || !( args[0] instanceof Query ) ) {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+                List<String> fids;
+                synchronized ( queries ) {
+                    fids = queries.get( args[0] );
+                }
+                List<Feature> features = new ArrayList<Feature>();
+                for ( String fid : fids ) {
+                    features.add( new GenericFeature( ft, fid, Collections.<Property> emptyList(), null ) );
+                }
+                return new MemoryFeatureInputStream( new GenericFeatureCollection( null, features ) );
+            }
+        };
+        return (FeatureStore) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                      new Class<?>[] { FeatureStore.class }, handler );
+    }
+
+    private int countRows( String table )
+                            throws SQLException {
+        Connection conn = connection.getConnection();
+        try {
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery( "SELECT COUNT(*) FROM " + table );
+            rs.next();
+            return rs.getInt( 1 );
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void waitForRows( String table, int expected )
+                            throws Exception {
+        long timeout = System.currentTimeMillis() + 5000;
+        while ( countRows( table ) != expected && System.currentTimeMillis() < timeout ) {
+            Thread.sleep( 20 );
+        }
+        assertEquals( expected, countRows( table ) );
+    }
+
+    private static class TestConnectionProvider implements ConnectionProvider {
+
+        private final String url;
+
+        volatile boolean failCommit;
+
+        TestConnectionProvider( String url ) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() {
+            final Connection conn;
+            try {
+                conn = DriverManager.getConnection( url );
+            } catch ( SQLException e ) {
+                throw new RuntimeException( e.getMessage(), e );
+            }
+            InvocationHandler handler = new InvocationHandler() {
+                @Override
+                public Object invoke( Object proxy, Method method, Object[] args )
+                                        throws Throwable {
+                    if ( failCommit && method.getName().equals( "commit" ) ) {
+                        throw new SQLException( "Commit failed." );
+                    }
+                    try {
+                        return method.invoke( conn, args );
+                    } catch ( InvocationTargetException e ) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                        new Class<?>[] { Connection.class }, handler );
+        }
+
+        @Override
+        public SQLDialect getDialect() {
+            return null;
+        }
+
+        @Override
+        public void invalidate( Connection conn ) {
+            // nothing to do
+        }
+
+        @Override
+        public ResourceMetadata<ConnectionProvider> getMetadata() {
+            return null;
+        }
+
+        @Override
+        public void init() {
+            // nothing to do
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.transaction;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.INSERT_AFTER;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REMOVE;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REPLACE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.CompactFeature;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
+import org.deegree.protocol.wfs.transaction.action.UpdateAction;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FeatureUpdater}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class FeatureUpdaterTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private final QName name = new QName( APP_NS, "name" );
+
+    private final QName population = new QName( APP_NS, "population" );
+
+    private SimplePropertyType namePt;
+
+    private SimplePropertyType populationPt;
+
+    private Feature feature;
+
+    @Before
+    public void setUp() {
+        namePt = new SimplePropertyType( name, 1, 1, STRING, null, null );
+        populationPt = new SimplePropertyType( population, 0, 1, INTEGER, null, null );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( namePt );
+        pts.add( populationPt );
+        GenericFeatureType ft = new GenericFeatureType( new QName( APP_NS, "City" ), pts, false );
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( namePt, "Bonn" ) );
+        props.add( new SimpleProperty( populationPt, "300000" ) );
+        feature = ft.newFeature( "CITY_1", props, null );
+        assertTrue( feature instanceof CompactFeature );
+    }
+
+    private void update( Property newProp, UpdateAction action, QName propName )
+                            throws FeatureStoreException {
+        ParsedPropertyReplacement replacement = new ParsedPropertyReplacement( newProp, action,
+                                                                               new ValueReference( propName ), 0 );
+        new FeatureUpdater().update( feature, Collections.singletonList( replacement ) );
+    }
+
+    @Test
+    public void testReplaceCompactFeatureProperty()
+                            throws FeatureStoreException {
+        update( new SimpleProperty( namePt, "Beuel" ), REPLACE, name );
+        assertEquals( 2, feature.getProperties().size() );
+        assertEquals( "Beuel", feature.getProperties( name ).get( 0 ).getValue().toString() );
+        assertEquals( "300000", feature.getProperties( population ).get( 0 ).getValue().toString() );
+    }
+
+    @Test
+    public void testRemoveCompactFeatureProperty()
+                            throws FeatureStoreException {
+        update( new SimpleProperty( populationPt, "0" ), REMOVE, population );
+        assertEquals( 1, feature.getProperties().size() );
+        assertEquals( 0, feature.getProperties( population ).size() );
+    }
+
+    @Test(expected = FeatureStoreException.class)
+    public void testInsertSecondOccurrenceIntoCompactFeature()
+                            throws FeatureStoreException {
+        update( new SimpleProperty( namePt, "Beuel" ), INSERT_AFTER, name );
+    }
+
+}
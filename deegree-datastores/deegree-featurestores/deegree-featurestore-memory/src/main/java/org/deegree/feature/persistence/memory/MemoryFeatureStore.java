@@ -109,7 +109,9 @@ public class MemoryFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( lockManager != null ) {
+            lockManager.destroy();
+        }
     }
 
     @Override
@@ -158,15 +158,17 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
                 FeatureCollection delete = fc.getMembers( filter, evaluator );
 
                 // check if all can be deleted
+                List<String> fids = new ArrayList<String>( delete.size() );
                 for ( Feature feature : delete ) {
-                    if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
-                        if ( lockId == null ) {
-                            throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID",
-                                                                             feature.getId() ), "lockId" );
-                        }
-                        throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID",
-                                                                              feature.getId() ), "lockId" );
+                    fids.add( feature.getId() );
+                }
+                String fid = lockManager.findUnmodifiableFeature( fids, lockId );
+                if ( fid != null ) {
+                    if ( lockId == null ) {
+                        throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID", fid ), "lockId" );
                     }
+                    throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID", fid ),
+                                                              "lockId" );
                 }
 
                 deleted = delete.size();
@@ -190,15 +192,16 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
         String lockId = lock != null ? lock.getId() : null;
 
         // check if all features can be deleted
+        List<String> fids = new ArrayList<String>( filter.getSelectedIds().size() );
         for ( ResourceId id : filter.getSelectedIds() ) {
-            if ( !lockManager.isFeatureModifiable( id.getRid(), lockId ) ) {
-                if ( lockId == null ) {
-                    throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID", id.getRid() ),
-                                                         "lockId" );
-                }
-                throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID", id.getRid() ),
-                                                          "lockId" );
+            fids.add( id.getRid() );
+        }
+        String fid = lockManager.findUnmodifiableFeature( fids, lockId );
+        if ( fid != null ) {
+            if ( lockId == null ) {
+                throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID", fid ), "lockId" );
             }
+            throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID", fid ), "lockId" );
         }
 
         int deleted = 0;
@@ -535,15 +538,17 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
                 FeatureCollection update = fc.getMembers( filter, evaluator );
 
                 // check if all features can be updated
+                List<String> fids = new ArrayList<String>( update.size() );
                 for ( Feature feature : update ) {
-                    if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
-                        if ( lockId == null ) {
-                            throw new MissingParameterException( getMessage( "TA_UPDATE_LOCKED_NO_LOCK_ID",
-                                                                             feature.getId() ), "lockId" );
-                        }
-                        throw new InvalidParameterValueException( getMessage( "TA_UPDATE_LOCKED_WRONG_LOCK_ID",
-                                                                              feature.getId() ), "lockId" );
+                    fids.add( feature.getId() );
+                }
+                String fid = lockManager.findUnmodifiableFeature( fids, lockId );
+                if ( fid != null ) {
+                    if ( lockId == null ) {
+                        throw new MissingParameterException( getMessage( "TA_UPDATE_LOCKED_NO_LOCK_ID", fid ), "lockId" );
                     }
+                    throw new InvalidParameterValueException( getMessage( "TA_UPDATE_LOCKED_WRONG_LOCK_ID", fid ),
+                                                              "lockId" );
                 }
 
                 for ( Feature feature : update ) {
@@ -41,10 +41,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.Reference;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.utils.Pair;
@@ -58,6 +59,7 @@ import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
@@ -95,7 +97,9 @@ class StoredFeatures {
 
     private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
 
-    private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+    // indexes are dropped when features are added or removed and rebuilt on demand
+    private final Map<FeatureType, PackedRTree<Feature>> ftToIndex =
+                             new ConcurrentHashMap<FeatureType, PackedRTree<Feature>>();
 
     /**
      * Creates a new {@link StoredFeatures} instance.
@@ -185,7 +189,7 @@ class StoredFeatures {
                 }
 
                 float[] floats = toFloats( prefilterBox );
-                RTree<Feature> index = ftToIndex.get( ft );
+                PackedRTree<Feature> index = getIndex( ft );
                 fc = new GenericFeatureCollection( null, index.query( floats ) );
             }
 
@@ -208,9 +212,13 @@ class StoredFeatures {
             fc = new GenericFeatureCollection( null, features );
         }
 
-        // sort features
+        // sort features (features are in memory anyway, so only use the stream to keep the first ones)
         SortProperty[] sortCrit = query.getSortProperties();
         if ( sortCrit.length > 0 ) {
+            if ( query.getMaxFeatures() > 0 ) {
+                return new SortingFeatureInputStream( new MemoryFeatureInputStream( fc ), sortCrit,
+                                                      query.getMaxFeatures() );
+            }
             fc = Features.sortFc( fc, sortCrit );
         }
 
@@ -233,7 +241,8 @@ class StoredFeatures {
     }
 
     /**
-     * Adds the given {@link Feature} instance and updates the index structures.
+     * Adds the given {@link Feature} instance and updates the index structures. The spatial index of the feature type
+     * is rebuilt when it is needed the next time.
      * 
      * @param features
      *            feature to be added, must not be <code>null</code> and must have an id (as well as every geometry)
@@ -247,18 +256,12 @@ class StoredFeatures {
         }
         fc.add( feature );
         idToObject.put( feature.getId(), feature );
-        if ( feature.getEnvelope() != null ) {
-            RTree<Feature> rTree = ftToIndex.get( ft );
-            float[] insertBox = toFloats( feature.getEnvelope() );
-            if ( rTree == null ) {
-                rTree = new RTree<Feature>( insertBox, 16 );
-            }
-            rTree.insert( insertBox, feature );
-        }
+        ftToIndex.remove( ft );
     }
 
     /**
-     * Removes the given {@link Feature} instance and updates the index structures.
+     * Removes the given {@link Feature} instance and updates the index structures. The spatial index of the feature
+     * type is rebuilt when it is needed the next time.
      * 
      * @param feature
      *            feature to be removed, must not be <code>null</code>
@@ -266,10 +269,7 @@ class StoredFeatures {
     void removeFeature( Feature feature ) {
         idToObject.remove( feature.getId() );
         FeatureType ft = feature.getType();
-        RTree<Feature> rTree = ftToIndex.get( ft );
-        if ( rTree != null ) {
-            rTree.remove( feature );
-        }
+        ftToIndex.remove( ft );
         FeatureCollection fc = ftToFeatures.get( ft );
         if ( fc != null ) {
             fc.remove( feature );
@@ -305,21 +305,34 @@ class StoredFeatures {
         ftToIndex.clear();
         for ( FeatureType ft : ftToFeatures.keySet() ) {
             FeatureCollection fc = ftToFeatures.get( ft );
-            Envelope env = fc.getEnvelope();
-            if ( env != null ) {
-                RTree<Feature> index = new RTree<Feature>( toFloats( env ), 16 );
-                List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( fc.size() );
-                for ( Feature f : fc ) {
-                    Envelope fEnv = f.getEnvelope();
-                    if ( fEnv != null ) {
-                        float[] floats = toFloats( fEnv );
-                        fBboxes.add( new Pair<float[], Feature>( floats, f ) );
-                    }
-                }
-                index.insertBulk( fBboxes );
-                ftToIndex.put( ft, index );
+            if ( fc.getEnvelope() != null ) {
+                ftToIndex.put( ft, buildIndex( fc ) );
+            }
+        }
+    }
+
+    private PackedRTree<Feature> getIndex( FeatureType ft ) {
+        PackedRTree<Feature> index = ftToIndex.get( ft );
+        if ( index == null ) {
+            // concurrent callers may build the same index twice, which is harmless
+            index = buildIndex( ftToFeatures.get( ft ) );
+            ftToIndex.put( ft, index );
+        }
+        return index;
+    }
+
+    private PackedRTree<Feature> buildIndex( FeatureCollection fc ) {
+        List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( fc.size() );
+        for ( Feature f : fc ) {
+            Envelope fEnv = f.getEnvelope();
+            if ( fEnv != null ) {
+                float[] floats = toFloats( fEnv );
+                fBboxes.add( new Pair<float[], Feature>( floats, f ) );
             }
         }
+        PackedRTree<Feature> index = new PackedRTree<Feature>();
+        index.insertBulk( fBboxes );
+        return index;
     }
 
     private void rebuildIdToObjectMap() {
@@ -35,31 +35,78 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.deegree.feature.persistence.shape.DbfIndexBuilder.KIND_NUMERIC;
+import static org.deegree.feature.persistence.shape.DbfIndexBuilder.UTF8;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
 
-import org.deegree.commons.utils.JDBCUtils;
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.utils.Pair;
-import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.persistence.shape.DbfIndexBuilder.Column;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.property.SimplePropertyType;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.expression.Expression;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.LogicalOperator;
 import org.deegree.filter.sort.SortProperty;
-import org.deegree.sqldialect.filter.UnmappableException;
-import org.deegree.sqldialect.filter.expression.SQLArgument;
-import org.deegree.sqldialect.filter.expression.SQLExpression;
+import org.slf4j.Logger;
 
 /**
- * This class converts the dbf file into a H2 database, to enable proper filtering.
+ * Memory mapped, columnar index of the alphanumeric fields of a dbf file that evaluates filter operators into sets of
+ * record numbers.
+ * <p>
+ * The index is stored next to the dbf file (<code>.dbi</code>) and rebuilt if the modification time or size of the dbf
+ * changes. If only the set of indexed fields changes, the missing columns are built and the existing ones are copied.
+ * Layout (big endian): magic, version, dbf modification time, dbf length, number of records, number of columns,
+ * directory length, directory (name, kind, number of distinct values, data offset and length per column) and the
+ * column data. A column consists of the sorted dictionary of distinct values (text offsets, numeric values for
+ * numeric columns, UTF-8 text) and the record numbers grouped by dictionary code.
+ * </p>
+ * <p>
+ * Comparisons of a single indexed property with literals are evaluated once per distinct value (numeric ranges via
+ * binary search), so the semantics are exactly the same as for in-memory filtering. Other operators are left to
+ * in-memory filtering.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@lat-lon.de">Andreas Schmitz</a>
  * @author last edited by: $Author$
@@ -68,30 +115,250 @@ import org.deegree.sqldialect.filter.expression.SQLExpression;
  */
 public class DBFIndex {
 
-    private ConnectionProvider connProvider;
+    private static final Logger LOG = getLogger( DBFIndex.class );
+
+    private static final int MAGIC = 0x64424931;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 36;
+
+    private final int numRecords;
+
+    private final Map<String, IndexedColumn> columns = new HashMap<String, IndexedColumn>();
 
     /**
      * @param dbf
+     *            dbf to index, must not be <code>null</code>
      * @param file
-     * @param envelopes
+     *            the dbf file, must not be <code>null</code>
+     * @param mappings
+     *            the configured field mappings, can be <code>null</code> (index all fields)
      * @throws IOException
      */
-    public DBFIndex( DBFReader dbf, File file, Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes,
-                     List<Mapping> mappings ) throws IOException {
-        connProvider = new DbfIndexImporter( dbf, file, envelopes, mappings ).createIndex();
+    public DBFIndex( DBFReader dbf, File file, List<Mapping> mappings ) throws IOException {
+        numRecords = dbf.size();
+        List<SimplePropertyType> fields = getIndexedFields( dbf, mappings );
+        String name = file.getAbsolutePath();
+        File indexFile = new File( name.substring( 0, name.lastIndexOf( '.' ) ) + ".dbi" );
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        ByteBuffer existing = map( indexFile, lastModified, length );
+        Map<String, DirectoryEntry> entries = new HashMap<String, DirectoryEntry>();
+        if ( existing != null ) {
+            try {
+                entries = readDirectory( existing );
+            } catch ( Exception e ) {
+                LOG.warn( "Dbf index {} is corrupt, it will be rebuilt: {}", indexFile, e.getLocalizedMessage() );
+                existing = null;
+            }
+        }
+        List<SimplePropertyType> missing = new ArrayList<SimplePropertyType>();
+        for ( SimplePropertyType pt : fields ) {
+            if ( !entries.containsKey( pt.getName().getLocalPart() ) ) {
+                missing.add( pt );
+            }
+        }
+
+        ByteBuffer index = existing;
+        if ( existing == null || !missing.isEmpty() ) {
+            LOG.debug( "Building dbf index {} ({} of {} columns)", new Object[] { indexFile, missing.size(),
+                                                                                 fields.size() } );
+            List<Column> built = new DbfIndexBuilder( dbf ).build( missing );
+            index = write( indexFile, lastModified, length, fields, existing, entries, built );
+            entries = readDirectory( index );
+        }
+
+        for ( SimplePropertyType pt : fields ) {
+            DirectoryEntry entry = entries.get( pt.getName().getLocalPart() );
+            columns.put( entry.name, new IndexedColumn( pt, index, entry ) );
+        }
+    }
+
+    private static List<SimplePropertyType> getIndexedFields( DBFReader dbf, List<Mapping> mappings ) {
+        Map<String, Mapping> fieldMap = null;
+        if ( mappings != null ) {
+            fieldMap = new HashMap<String, Mapping>();
+            for ( Mapping m : mappings ) {
+                if ( m.propname != null ) {
+                    fieldMap.put( m.propname, m );
+                }
+            }
+        }
+        List<SimplePropertyType> fields = new ArrayList<SimplePropertyType>();
+        for ( PropertyType pt : dbf.getFields() ) {
+            if ( !( pt instanceof SimplePropertyType ) ) {
+                continue;
+            }
+            SimplePropertyType spt = (SimplePropertyType) pt;
+            if ( fieldMap != null ) {
+                Mapping m = fieldMap.get( spt.getName().getLocalPart() );
+                if ( m == null || !m.index ) {
+                    continue;
+                }
+            }
+            BaseType type = spt.getPrimitiveType().getBaseType();
+            if ( type == BaseType.DATE || type == BaseType.DATE_TIME || type == BaseType.TIME ) {
+                // date values are not text based, leave them to in-memory filtering
+                continue;
+            }
+            fields.add( spt );
+        }
+        return fields;
+    }
+
+    private ByteBuffer map( File indexFile, long lastModified, long length ) {
+        if ( !indexFile.exists() ) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile( indexFile, "r" );
+            if ( raf.length() < HEADER_LENGTH || raf.length() > Integer.MAX_VALUE ) {
+                return null;
+            }
+            ByteBuffer buffer = raf.getChannel().map( READ_ONLY, 0, raf.length() );
+            if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION ) {
+                LOG.debug( "Ignoring dbf index {} with unknown format.", indexFile );
+                return null;
+            }
+            if ( buffer.getLong( 8 ) != lastModified || buffer.getLong( 16 ) != length
+                 || buffer.getInt( 24 ) != numRecords ) {
+                LOG.debug( "Dbf index {} is outdated.", indexFile );
+                return null;
+            }
+            return buffer;
+        } catch ( IOException e ) {
+            LOG.warn( "Dbf index {} could not be read, it will be rebuilt: {}", indexFile, e.getLocalizedMessage() );
+            return null;
+        } finally {
+            IOUtils.closeQuietly( raf );
+        }
+    }
+
+    private static Map<String, DirectoryEntry> readDirectory( ByteBuffer index )
+                            throws IOException {
+        int numColumns = index.getInt( 28 );
+        byte[] directory = new byte[index.getInt( 32 )];
+        ByteBuffer buffer = index.duplicate();
+        buffer.position( HEADER_LENGTH );
+        buffer.get( directory );
+        long dataStart = HEADER_LENGTH + directory.length;
+
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( directory ) );
+        Map<String, DirectoryEntry> entries = new LinkedHashMap<String, DirectoryEntry>();
+        for ( int i = 0; i < numColumns; i++ ) {
+            DirectoryEntry entry = new DirectoryEntry( in.readUTF(), in.readByte(), in.readInt(),
+                                                       dataStart + in.readLong(), in.readLong() );
+            entries.put( entry.name, entry );
+        }
+        return entries;
+    }
+
+    private ByteBuffer write( File indexFile, long lastModified, long length, List<SimplePropertyType> fields,
+                              ByteBuffer existing, Map<String, DirectoryEntry> entries, List<Column> built )
+                            throws IOException {
+        Map<String, Column> builtByName = new HashMap<String, Column>();
+        for ( Column column : built ) {
+            builtByName.put( column.name, column );
+        }
+
+        // directory, with data offsets relative to the end of the directory
+        ByteArrayOutputStream dirBytes = new ByteArrayOutputStream();
+        DataOutputStream dir = new DataOutputStream( dirBytes );
+        long offset = 0;
+        for ( SimplePropertyType pt : fields ) {
+            String name = pt.getName().getLocalPart();
+            Column column = builtByName.get( name );
+            DirectoryEntry entry = entries.get( name );
+            byte kind = column != null ? column.kind : entry.kind;
+            int numDistinct = column != null ? column.getNumDistinct() : entry.numDistinct;
+            long columnLength = column != null ? column.getLength() : entry.length;
+            dir.writeUTF( name );
+            dir.writeByte( kind );
+            dir.writeInt( numDistinct );
+            dir.writeLong( offset );
+            dir.writeLong( columnLength );
+            offset += columnLength;
+        }
+        dir.close();
+
+        File tmp = new File( indexFile.getPath() + ".tmp" );
+        OutputStream os = null;
+        try {
+            os = new BufferedOutputStream( new FileOutputStream( tmp ) );
+            writeIndex( os, lastModified, length, fields, dirBytes.toByteArray(), existing, entries, builtByName );
+            os.close();
+            os = null;
+            if ( ( !indexFile.exists() || indexFile.delete() ) && tmp.renameTo( indexFile ) ) {
+                ByteBuffer mapped = map( indexFile, lastModified, length );
+                if ( mapped != null ) {
+                    return mapped;
+                }
+            }
+            LOG.warn( "The dbf index could not be stored in '{}', it will be kept in memory.", indexFile );
+        } catch ( IOException e ) {
+            LOG.warn( "The dbf index could not be stored in '{}', it will be kept in memory: {}", indexFile,
+                      e.getLocalizedMessage() );
+        } finally {
+            IOUtils.closeQuietly( os );
+            tmp.delete();
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeIndex( bos, lastModified, length, fields, dirBytes.toByteArray(), existing, entries, builtByName );
+        return ByteBuffer.wrap( bos.toByteArray() );
+    }
+
+    private void writeIndex( OutputStream os, long lastModified, long length, List<SimplePropertyType> fields,
+                             byte[] directory, ByteBuffer existing, Map<String, DirectoryEntry> entries,
+                             Map<String, Column> built )
+                            throws IOException {
+        DataOutputStream out = new DataOutputStream( os );
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        out.writeLong( lastModified );
+        out.writeLong( length );
+        out.writeInt( numRecords );
+        out.writeInt( fields.size() );
+        out.writeInt( directory.length );
+        out.write( directory );
+        WritableByteChannel channel = null;
+        for ( SimplePropertyType pt : fields ) {
+            String name = pt.getName().getLocalPart();
+            Column column = built.get( name );
+            if ( column != null ) {
+                column.write( out );
+            } else {
+                // copy the unchanged column
+                out.flush();
+                if ( channel == null ) {
+                    channel = Channels.newChannel( out );
+                }
+                channel.write( slice( existing, entries.get( name ).offset, entries.get( name ).length ) );
+            }
+        }
+        out.flush();
+    }
+
+    private static ByteBuffer slice( ByteBuffer buffer, long offset, long length ) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit( (int) ( offset + length ) );
+        slice.position( (int) offset );
+        return slice.slice();
     }
 
     /**
-     * @param available
-     *            is modified in place to contain only matches!
+     * @param matches
+     *            is modified in place to contain the matching record numbers
      * @param filter
      * @param sort
-     * @return null, if there was an error, else a pair of left overs (with possibly null values if everything could be
-     *         mapped)
+     * @return null, if the filter could not be evaluated using the index, else a pair of left overs (with possibly null
+     *         values if everything could be mapped)
      * @throws FilterEvaluationException
-     * @throws UnmappableException
      */
-    public Pair<Filter, SortProperty[]> query( List<Pair<Integer, Long>> available, Filter filter, SortProperty[] sort )
+    public Pair<Filter, SortProperty[]> query( BitSet matches, Filter filter, SortProperty[] sort )
                             throws FilterEvaluationException {
 
         if ( filter == null && ( sort == null || sort.length == 0 ) ) {
@@ -102,76 +369,354 @@ public class DBFIndex {
             return null;
         }
 
-        H2WhereBuilder where = null;
-        SQLExpression generated = null;
-        if ( filter instanceof OperatorFilter ) {
-            where = new H2WhereBuilder( null, (OperatorFilter) filter, sort );
-            generated = where.getWhere();
-            if ( generated == null ) {
-                return null;
+        if ( filter instanceof IdFilter ) {
+            for ( ResourceId rid : ( (IdFilter) filter ).getSelectedIds() ) {
+                String id = rid.getRid();
+                try {
+                    int num = Integer.parseInt( id.substring( id.lastIndexOf( "_" ) + 1 ) );
+                    if ( num >= 0 && num < numRecords ) {
+                        matches.set( num );
+                    }
+                } catch ( NumberFormatException e ) {
+                    LOG.debug( "Ignoring id {} that does not denote a record number.", id );
+                }
             }
+            return new Pair<Filter, SortProperty[]>( null, sort );
         }
 
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet set = null;
-        try {
-            conn = connProvider.getConnection();
-            if ( generated == null ) {
-                StringBuilder sb = new StringBuilder();
-                for ( ResourceId rid : ( (IdFilter) filter ).getSelectedIds() ) {
-                    String id = rid.getRid();
-                    sb.append( id.substring( id.lastIndexOf( "_" ) + 1 ) );
-                    sb.append( "," );
-                }
-                sb.deleteCharAt( sb.length() - 1 );
-                stmt = conn.prepareStatement( "select record_number,file_index from dbf_index where record_number in ("
-                                              + sb + ")" );
+        if ( !( filter instanceof OperatorFilter ) ) {
+            return null;
+        }
+
+        // conjunctions may be evaluated partially, the rest is filtered in memory
+        Operator op = ( (OperatorFilter) filter ).getOperator();
+        Operator[] params = op instanceof And ? ( (And) op ).getParams() : new Operator[] { op };
+        List<Operator> unmapped = new ArrayList<Operator>();
+        BitSet result = null;
+        for ( Operator param : params ) {
+            BitSet bits = evaluate( param );
+            if ( bits == null ) {
+                unmapped.add( param );
+            } else if ( result == null ) {
+                result = bits;
             } else {
-                String clause = generated.getSQL().toString();
-
-                stmt = conn.prepareStatement( "select record_number,file_index from dbf_index where " + clause );
-
-                int i = 1;
-                for ( SQLArgument lit : generated.getArguments() ) {
-                    lit.setArgument( stmt, i++ );
-                    // TODO what about ElementNode?
-                    // Object o = lit.getValue();
-                    // if ( o instanceof PrimitiveValue ) {
-                    // o = ( (PrimitiveValue) o ).getValue();
-                    // }
-                    // if ( o instanceof ElementNode ) {
-                    // stmt.setString( i++, o.toString() );
-                    // } else {
-                    // stmt.setObject( i++, o );
-                    // }
-                }
+                result.and( bits );
             }
+        }
+        if ( result == null ) {
+            return null;
+        }
+        matches.or( result );
 
-            set = stmt.executeQuery();
+        Filter postFilter = null;
+        if ( unmapped.size() == 1 ) {
+            postFilter = new OperatorFilter( unmapped.get( 0 ) );
+        } else if ( unmapped.size() > 1 ) {
+            postFilter = new OperatorFilter( new And( unmapped.toArray( new Operator[unmapped.size()] ) ) );
+        }
+        return new Pair<Filter, SortProperty[]>( postFilter, sort );
+    }
+
+    private BitSet evaluate( Operator op )
+                            throws FilterEvaluationException {
+        switch ( op.getType() ) {
+        case LOGICAL:
+            return evaluate( (LogicalOperator) op );
+        case COMPARISON:
+            return evaluate( (ComparisonOperator) op );
+        default:
+            return null;
+        }
+    }
 
-            while ( set.next() ) {
-                available.add( new Pair<Integer, Long>( set.getInt( "record_number" ), set.getLong( "file_index" ) ) );
+    private BitSet evaluate( LogicalOperator op )
+                            throws FilterEvaluationException {
+        BitSet result = null;
+        for ( Operator param : op.getParams() ) {
+            BitSet bits = evaluate( param );
+            if ( bits == null ) {
+                return null;
             }
+            if ( result == null ) {
+                result = bits;
+            } else if ( op.getSubType() == LogicalOperator.SubType.OR ) {
+                result.or( bits );
+            } else {
+                result.and( bits );
+            }
+        }
+        if ( op.getSubType() == LogicalOperator.SubType.NOT ) {
+            result.flip( 0, numRecords );
+        }
+        return result;
+    }
 
-            if ( where == null ) {
-                return new Pair<Filter, SortProperty[]>( null, sort );
+    private BitSet evaluate( ComparisonOperator op )
+                            throws FilterEvaluationException {
+        // a single indexed property compared with literals
+        IndexedColumn column = null;
+        for ( Expression expr : op.getParams() ) {
+            if ( expr instanceof ValueReference ) {
+                QName name = ( (ValueReference) expr ).getAsQName();
+                IndexedColumn c = name == null ? null : columns.get( name.getLocalPart() );
+                if ( c == null || ( column != null && c != column ) ) {
+                    return null;
+                }
+                column = c;
+            } else if ( !( expr instanceof Literal<?> ) ) {
+                return null;
             }
-            return new Pair<Filter, SortProperty[]>( where.getPostFilter(), where.getPostSortCriteria() );
-        } catch ( SQLException e ) {
-            e.printStackTrace();
-        } finally {
-            JDBCUtils.close( set );
-            JDBCUtils.close( stmt );
-            JDBCUtils.close( conn );
         }
+        if ( column == null ) {
+            return null;
+        }
+        BitSet bits = new BitSet( numRecords );
+        if ( column.numbers == null || !evaluateNumeric( op, column, bits ) ) {
+            evaluateDictionary( op, column, bits );
+        }
+        return bits;
+    }
 
-        return null;
+    /**
+     * Evaluates comparisons of a numeric column with a number using binary search on the sorted dictionary.
+     * 
+     * @return false, if the operator is not such a comparison
+     */
+    private static boolean evaluateNumeric( ComparisonOperator op, IndexedColumn column, BitSet bits ) {
+        if ( op instanceof PropertyIsBetween ) {
+            PropertyIsBetween between = (PropertyIsBetween) op;
+            Double lower = getNumber( between.getLowerBoundary() );
+            Double upper = getNumber( between.getUpperBoundary() );
+            if ( !( between.getExpression() instanceof ValueReference ) || lower == null || upper == null ) {
+                return false;
+            }
+            column.addRecords( column.lowerBound( lower ), column.upperBound( upper ), bits );
+            return true;
+        }
+        if ( !( op instanceof BinaryComparisonOperator ) ) {
+            return false;
+        }
+        BinaryComparisonOperator binary = (BinaryComparisonOperator) op;
+        boolean swapped = binary.getParameter2() instanceof ValueReference;
+        Double value = getNumber( swapped ? binary.getParameter1() : binary.getParameter2() );
+        if ( value == null ) {
+            return false;
+        }
+        int numDistinct = column.numDistinct;
+        int lower = column.lowerBound( value );
+        int upper = column.upperBound( value );
+        switch ( op.getSubType() ) {
+        case PROPERTY_IS_EQUAL_TO:
+            column.addRecords( lower, upper, bits );
+            return true;
+        case PROPERTY_IS_NOT_EQUAL_TO:
+            column.addRecords( 0, lower, bits );
+            column.addRecords( upper, numDistinct, bits );
+            return true;
+        case PROPERTY_IS_LESS_THAN:
+            if ( swapped ) {
+                column.addRecords( upper, numDistinct, bits );
+            } else {
+                column.addRecords( 0, lower, bits );
+            }
+            return true;
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+            if ( swapped ) {
+                column.addRecords( lower, numDistinct, bits );
+            } else {
+                column.addRecords( 0, upper, bits );
+            }
+            return true;
+        case PROPERTY_IS_GREATER_THAN:
+            if ( swapped ) {
+                column.addRecords( 0, lower, bits );
+            } else {
+                column.addRecords( upper, numDistinct, bits );
+            }
+            return true;
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+            if ( swapped ) {
+                column.addRecords( 0, upper, bits );
+            } else {
+                column.addRecords( lower, numDistinct, bits );
+            }
+            return true;
+        default:
+            return false;
+        }
+    }
 
+    private static Double getNumber( Expression expr ) {
+        if ( !( expr instanceof Literal<?> ) || ( (Literal<?>) expr ).getValue() == null ) {
+            return null;
+        }
+        try {
+            double d = Double.parseDouble( ( (Literal<?>) expr ).getValue().toString().trim() );
+            return Double.isNaN( d ) ? null : d;
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the operator once for every distinct value of the column (and once for records without a value).
+     */
+    private void evaluateDictionary( ComparisonOperator op, IndexedColumn column, BitSet bits )
+                            throws FilterEvaluationException {
+        ValueEvaluator evaluator = new ValueEvaluator();
+        if ( op.evaluate( evaluator, evaluator ) ) {
+            bits.set( 0, numRecords );
+            column.clearRecords( bits );
+        }
+        for ( int code = 0; code < column.numDistinct; code++ ) {
+            evaluator.value = new SimpleProperty( column.pt, column.getText( code ) );
+            if ( op.evaluate( evaluator, evaluator ) ) {
+                column.addRecords( code, code + 1, bits );
+            }
+        }
     }
 
+    /**
+     * Does nothing, the index is garbage collected.
+     */
     public void destroy() {
-        connProvider.destroy();
+        // nothing to release, mapped buffers are unmapped on garbage collection
     }
 
+    private static class DirectoryEntry {
+
+        final String name;
+
+        final byte kind;
+
+        final int numDistinct;
+
+        final long offset;
+
+        final long length;
+
+        DirectoryEntry( String name, byte kind, int numDistinct, long offset, long length ) {
+            this.name = name;
+            this.kind = kind;
+            this.numDistinct = numDistinct;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Read-only view of a column of the index, uses absolute access only and is therefore thread safe.
+     */
+    private static class IndexedColumn {
+
+        final SimplePropertyType pt;
+
+        final int numDistinct;
+
+        private final IntBuffer textOffsets;
+
+        private final IntBuffer codeStart;
+
+        private final IntBuffer records;
+
+        final DoubleBuffer numbers;
+
+        private final ByteBuffer text;
+
+        IndexedColumn( SimplePropertyType pt, ByteBuffer index, DirectoryEntry entry ) {
+            this.pt = pt;
+            numDistinct = entry.numDistinct;
+            long pos = entry.offset;
+            textOffsets = slice( index, pos, 4L * ( numDistinct + 1 ) ).asIntBuffer();
+            pos += 4L * ( numDistinct + 1 );
+            codeStart = slice( index, pos, 4L * ( numDistinct + 1 ) ).asIntBuffer();
+            pos += 4L * ( numDistinct + 1 );
+            int numPresent = codeStart.get( numDistinct );
+            records = slice( index, pos, 4L * numPresent ).asIntBuffer();
+            pos += 4L * numPresent;
+            if ( entry.kind == KIND_NUMERIC ) {
+                numbers = slice( index, pos, 8L * numDistinct ).asDoubleBuffer();
+                pos += 8L * numDistinct;
+            } else {
+                numbers = null;
+            }
+            text = slice( index, pos, textOffsets.get( numDistinct ) );
+        }
+
+        String getText( int code ) {
+            int from = textOffsets.get( code );
+            byte[] bs = new byte[textOffsets.get( code + 1 ) - from];
+            for ( int i = 0; i < bs.length; i++ ) {
+                bs[i] = text.get( from + i );
+            }
+            return new String( bs, UTF8 );
+        }
+
+        /**
+         * @return the first code whose value is not less than the given value
+         */
+        int lowerBound( double value ) {
+            int lo = 0, hi = numDistinct;
+            while ( lo < hi ) {
+                int mid = ( lo + hi ) >>> 1;
+                if ( numbers.get( mid ) < value ) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return the first code whose value is greater than the given value
+         */
+        int upperBound( double value ) {
+            int lo = 0, hi = numDistinct;
+            while ( lo < hi ) {
+                int mid = ( lo + hi ) >>> 1;
+                if ( numbers.get( mid ) <= value ) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        void addRecords( int fromCode, int toCode, BitSet bits ) {
+            if ( fromCode >= toCode ) {
+                return;
+            }
+            int end = codeStart.get( toCode );
+            for ( int i = codeStart.get( fromCode ); i < end; i++ ) {
+                bits.set( records.get( i ) );
+            }
+        }
+
+        void clearRecords( BitSet bits ) {
+            int end = codeStart.get( numDistinct );
+            for ( int i = 0; i < end; i++ ) {
+                bits.clear( records.get( i ) );
+            }
+        }
+    }
+
+    /**
+     * Provides the value of the current dictionary entry for every value reference.
+     */
+    private static class ValueEvaluator implements XPathEvaluator<ValueEvaluator> {
+
+        SimpleProperty value;
+
+        @Override
+        public TypedObjectNode[] eval( ValueEvaluator context, ValueReference valueRef ) {
+            return value == null ? new TypedObjectNode[0] : new TypedObjectNode[] { value };
+        }
+
+        @Override
+        public String getId( ValueEvaluator context ) {
+            return null;
+        }
+    }
 }
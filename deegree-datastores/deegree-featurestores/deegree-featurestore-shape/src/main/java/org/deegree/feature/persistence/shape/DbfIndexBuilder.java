@@ -0,0 +1,291 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.slf4j.Logger;
+
+/**
+ * Builds dictionary encoded columns for {@link DBFIndex} in a single pass over the dbf file.
+ * <p>
+ * Every column consists of the sorted dictionary of distinct values (as text, plus the numeric values for numeric
+ * columns) and the record numbers grouped by dictionary code, so that a range of codes maps to a contiguous range of
+ * record numbers.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class DbfIndexBuilder {
+
+    private static final Logger LOG = getLogger( DbfIndexBuilder.class );
+
+    static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    static final byte KIND_TEXT = 0;
+
+    static final byte KIND_NUMERIC = 1;
+
+    private final DBFReader dbf;
+
+    DbfIndexBuilder( DBFReader dbf ) {
+        this.dbf = dbf;
+    }
+
+    /**
+     * @param columns
+     *            the columns to build, must not be <code>null</code>
+     * @return the built columns, in the same order
+     * @throws IOException
+     *             if reading the dbf fails
+     */
+    List<Column> build( List<SimplePropertyType> columns )
+                            throws IOException {
+        LOG.debug( "Building dbf index columns {}", columns );
+        int numRecords = dbf.size();
+        List<ColumnBuilder> builders = new ArrayList<ColumnBuilder>( columns.size() );
+        for ( SimplePropertyType pt : columns ) {
+            builders.add( new ColumnBuilder( pt, numRecords ) );
+        }
+        for ( int i = 0; i < numRecords; i++ ) {
+            Map<SimplePropertyType, Property> entry = dbf.getEntry( i );
+            for ( ColumnBuilder builder : builders ) {
+                Property prop = entry.get( builder.pt );
+                if ( prop != null && prop.getValue() instanceof PrimitiveValue ) {
+                    builder.add( i, ( (PrimitiveValue) prop.getValue() ).getAsText() );
+                }
+            }
+        }
+        List<Column> result = new ArrayList<Column>( builders.size() );
+        for ( ColumnBuilder builder : builders ) {
+            result.add( builder.finish() );
+        }
+        LOG.debug( "Done building dbf index columns." );
+        return result;
+    }
+
+    private static boolean isNumeric( BaseType type ) {
+        return type == BaseType.INTEGER || type == BaseType.DECIMAL || type == BaseType.DOUBLE;
+    }
+
+    private static class ColumnBuilder {
+
+        private final SimplePropertyType pt;
+
+        private final int[] codes;
+
+        private final Map<String, Integer> textToCode = new HashMap<String, Integer>();
+
+        private final List<String> texts = new ArrayList<String>();
+
+        ColumnBuilder( SimplePropertyType pt, int numRecords ) {
+            this.pt = pt;
+            codes = new int[numRecords];
+            Arrays.fill( codes, -1 );
+        }
+
+        void add( int record, String text ) {
+            Integer code = textToCode.get( text );
+            if ( code == null ) {
+                code = texts.size();
+                textToCode.put( text, code );
+                texts.add( text );
+            }
+            codes[record] = code;
+        }
+
+        Column finish() {
+            int numDistinct = texts.size();
+            final double[] numbers = isNumeric( pt.getPrimitiveType().getBaseType() ) ? parseNumbers() : null;
+
+            // sort the dictionary, numerically if possible
+            Integer[] order = new Integer[numDistinct];
+            for ( int i = 0; i < numDistinct; i++ ) {
+                order[i] = i;
+            }
+            Arrays.sort( order, new Comparator<Integer>() {
+                @Override
+                public int compare( Integer o1, Integer o2 ) {
+                    if ( numbers != null ) {
+                        int c = Double.compare( numbers[o1], numbers[o2] );
+                        if ( c != 0 ) {
+                            return c;
+                        }
+                    }
+                    return texts.get( o1 ).compareTo( texts.get( o2 ) );
+                }
+            } );
+            int[] oldToNew = new int[numDistinct];
+            for ( int i = 0; i < numDistinct; i++ ) {
+                oldToNew[order[i]] = i;
+            }
+
+            Column column = new Column( pt.getName().getLocalPart() );
+            column.kind = numbers == null ? KIND_TEXT : KIND_NUMERIC;
+            column.textOffsets = new int[numDistinct + 1];
+            byte[][] encoded = new byte[numDistinct][];
+            int offset = 0;
+            for ( int i = 0; i < numDistinct; i++ ) {
+                encoded[i] = texts.get( order[i] ).getBytes( UTF8 );
+                column.textOffsets[i] = offset;
+                offset += encoded[i].length;
+            }
+            column.textOffsets[numDistinct] = offset;
+            column.text = new byte[offset];
+            for ( int i = 0; i < numDistinct; i++ ) {
+                System.arraycopy( encoded[i], 0, column.text, column.textOffsets[i], encoded[i].length );
+            }
+            if ( numbers != null ) {
+                column.numbers = new double[numDistinct];
+                for ( int i = 0; i < numDistinct; i++ ) {
+                    column.numbers[i] = numbers[order[i]];
+                }
+            }
+
+            // group record numbers by code (counting sort keeps them ascending within a code)
+            column.codeStart = new int[numDistinct + 1];
+            int numPresent = 0;
+            for ( int i = 0; i < codes.length; i++ ) {
+                if ( codes[i] != -1 ) {
+                    codes[i] = oldToNew[codes[i]];
+                    column.codeStart[codes[i] + 1]++;
+                    numPresent++;
+                }
+            }
+            for ( int i = 0; i < numDistinct; i++ ) {
+                column.codeStart[i + 1] += column.codeStart[i];
+            }
+            column.records = new int[numPresent];
+            int[] next = Arrays.copyOf( column.codeStart, numDistinct );
+            for ( int i = 0; i < codes.length; i++ ) {
+                if ( codes[i] != -1 ) {
+                    column.records[next[codes[i]]++] = i;
+                }
+            }
+            return column;
+        }
+
+        private double[] parseNumbers() {
+            double[] numbers = new double[texts.size()];
+            try {
+                for ( int i = 0; i < numbers.length; i++ ) {
+                    numbers[i] = Double.parseDouble( texts.get( i ) );
+                    if ( Double.isNaN( numbers[i] ) ) {
+                        return null;
+                    }
+                }
+            } catch ( NumberFormatException e ) {
+                LOG.debug( "Column {} contains non-numeric values, indexing it as text.", pt.getName() );
+                return null;
+            }
+            return numbers;
+        }
+    }
+
+    /**
+     * A built column, see {@link DBFIndex} for the binary layout.
+     */
+    static class Column {
+
+        final String name;
+
+        byte kind;
+
+        int[] textOffsets;
+
+        int[] codeStart;
+
+        int[] records;
+
+        double[] numbers;
+
+        byte[] text;
+
+        Column( String name ) {
+            this.name = name;
+        }
+
+        int getNumDistinct() {
+            return codeStart.length - 1;
+        }
+
+        long getLength() {
+            long length = 4L * textOffsets.length + 4L * codeStart.length + 4L * records.length + text.length;
+            return numbers == null ? length : length + 8L * numbers.length;
+        }
+
+        void write( DataOutputStream out )
+                            throws IOException {
+            for ( int i : textOffsets ) {
+                out.writeInt( i );
+            }
+            for ( int i : codeStart ) {
+                out.writeInt( i );
+            }
+            for ( int i : records ) {
+                out.writeInt( i );
+            }
+            if ( numbers != null ) {
+                for ( double d : numbers ) {
+                    out.writeDouble( d );
+                }
+            }
+            out.write( text );
+        }
+    }
+}
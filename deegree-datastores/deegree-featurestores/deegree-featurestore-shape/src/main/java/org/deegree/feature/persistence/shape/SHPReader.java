@@ -52,12 +52,12 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.deegree.commons.index.SpatialIndex;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -211,7 +211,7 @@ public class SHPReader {
 
     private Envelope bbox;
 
-    private SpatialIndex<Long> rtree;
+    private PackedRTree<Integer> rtree;
 
     private boolean recordNumStartsWith0 = false;
 
@@ -226,10 +226,11 @@ public class SHPReader {
      * @param inFile
      * @param crs
      * @param rtree
+     *            the index of the record positions
      * @param startsWithZero
      * @throws IOException
      */
-    public SHPReader( RandomAccessFile inFile, ICRS crs, SpatialIndex<Long> rtree, boolean startsWithZero )
+    public SHPReader( RandomAccessFile inFile, ICRS crs, PackedRTree<Integer> rtree, boolean startsWithZero )
                             throws IOException {
         file = inFile;
         channel = file.getChannel();
@@ -356,17 +357,17 @@ public class SHPReader {
      *            If null, all matching records are returned.
      * @return the list of matching record ids
      */
-    public List<Pair<Integer, Long>> query( Envelope bbox, HashSet<Integer> ids ) {
+    public List<Pair<Integer, Long>> query( Envelope bbox, BitSet ids ) {
 
         LOG.debug( "Querying shp with bbox {}", bbox );
 
         ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.size() );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
-            buffer.position( (int) ( ptr - 8 ) );
+        int[] pointers = rtree.queryPayloads( createEnvelope( bbox ) );
+        List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.length );
+        Arrays.sort( pointers );
+        for ( int ptr : pointers ) {
+            buffer.position( ptr - 8 );
             int num = getBEInt( buffer );
             if ( num == 0 && !recordNumStartsWith0 && rtree != null ) {
                 LOG.error( "PLEASE NOTE THIS: Detected that the shape file starts counting record numbers at 0 and not at 1 as specified!" );
@@ -378,11 +379,11 @@ public class SHPReader {
                 num -= 1;
             }
 
-            if ( ids != null && !ids.contains( num ) ) {
+            if ( ids != null && !ids.get( num ) ) {
                 continue;
             }
 
-            recNums.add( new Pair<Integer, Long>( num, ptr ) );
+            recNums.add( new Pair<Integer, Long>( num, (long) ptr ) );
         }
 
         return recNums;
@@ -402,10 +403,10 @@ public class SHPReader {
 
         LinkedList<Pair<Integer, Geometry>> list = new LinkedList<Pair<Integer, Geometry>>();
 
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
-            buffer.position( (int) ( ptr - 8 ) );
+        int[] pointers = rtree.queryPayloads( createEnvelope( bbox ) );
+        Arrays.sort( pointers );
+        for ( int ptr : pointers ) {
+            buffer.position( ptr - 8 );
 
             int num = getBEInt( buffer );
             if ( num == 0 && !recordNumStartsWith0 ) {
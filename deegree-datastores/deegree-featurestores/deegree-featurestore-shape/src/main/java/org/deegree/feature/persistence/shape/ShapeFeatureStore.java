@@ -35,11 +35,9 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
-import static org.deegree.commons.utils.CollectionUtils.unzipPair;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
-import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.BufferedReader;
@@ -49,6 +47,8 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -62,7 +62,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.annotations.LoggingNotes;
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
@@ -74,7 +74,6 @@ import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.cs.exceptions.WKTParsingException;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.feature.Feature;
-import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -90,6 +89,7 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -176,7 +176,7 @@ public class ShapeFeatureStore implements FeatureStore {
      *            if null, the shape file base name will be used
      * @param ftPrefix
      * @param generateAlphanumericIndexes
-     *            whether to copy the dbf into a h2 database for indexing
+     *            whether to build a columnar index of the dbf fields for filtering
      * @param cache
      *            used for caching retrieved feature instances, can be <code>null</code> (will create a default cache)
      * @param mappings
@@ -252,8 +252,8 @@ public class ShapeFeatureStore implements FeatureStore {
 
         if ( rtfile.exists() && !( rtfile.lastModified() < shpFile.lastModified() ) && !forceIndexRebuild ) {
             try {
-                LOG.debug( "Loading RTree from disk." );
-                RTree<Long> rtree = RTree.loadFromDisk( shpName + ".rti" );
+                LOG.debug( "Mapping rtree index from disk." );
+                PackedRTree<Integer> rtree = PackedRTree.map( rtfile );
                 shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
             } catch ( IOException e ) {
                 LOG.debug( "Stack trace:", e );
@@ -268,26 +268,54 @@ public class ShapeFeatureStore implements FeatureStore {
 
         LOG.debug( "Building rtree index in memory for '{}'", new File( shpName ).getName() );
 
-        Pair<RTree<Long>, Boolean> p = createIndex( shp );
+        PackedRTree<Integer> rtree = createIndex( shp );
         LOG.debug( "done building index." );
-        shp = new SHPReader( raf, crs, p.first, p.second );
-        p.first.writeTreeToDisk( shpName + ".rti" );
+        shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
+        writeIndex( rtree, rtfile );
         return shp;
     }
 
     /**
      * @param shapeReader
+     * @return an index of the record positions, the extra flag is set if the record numbers start with zero
      */
-    private static Pair<RTree<Long>, Boolean> createIndex( SHPReader shapeReader ) {
-        Envelope env = shapeReader.getEnvelope();
-        // use 128 values per rect.
-        RTree<Long> result = new RTree<Long>( createEnvelope( env ), -1 );
-        // to work around Java's non-existent variant type
+    private static PackedRTree<Integer> createIndex( SHPReader shapeReader ) {
         LOG.debug( "Read envelopes from shape file..." );
         Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
         LOG.debug( "done reading envelopes." );
-        result.insertBulk( p.first );
-        return new Pair<RTree<Long>, Boolean>( result, p.second );
+        float[] envelopes = new float[p.first.size() * 4];
+        int[] positions = new int[p.first.size()];
+        int i = 0;
+        for ( Pair<float[], Long> record : p.first ) {
+            if ( record.first == null ) {
+                // NULL shapes
+                Arrays.fill( envelopes, i * 4, i * 4 + 4, Float.NaN );
+            } else {
+                System.arraycopy( record.first, 0, envelopes, i * 4, 4 );
+            }
+            positions[i++] = record.second.intValue();
+        }
+        PackedRTree<Integer> result = PackedRTree.create( envelopes, positions, PackedRTree.DEFAULT_NODE_SIZE );
+        result.setExtraFlag( p.second );
+        return result;
+    }
+
+    /**
+     * Writes the index to a temporary file which is then renamed, as the old index file may still be mapped.
+     */
+    private static void writeIndex( PackedRTree<Integer> rtree, File file ) {
+        File tmp = new File( file.getPath() + ".tmp" );
+        try {
+            rtree.write( tmp );
+            if ( !tmp.renameTo( file ) && !( file.delete() && tmp.renameTo( file ) ) ) {
+                LOG.warn( "The rtree index could not be stored in '{}', it will be rebuilt next time.", file );
+                tmp.delete();
+            }
+        } catch ( IOException e ) {
+            LOG.warn( "The rtree index could not be stored in '{}': {}", file, e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            tmp.delete();
+        }
     }
 
     private void checkForUpdate() {
@@ -309,7 +337,7 @@ public class ShapeFeatureStore implements FeatureStore {
                                          mappings );
                     if ( generateAlphanumericIndexes ) {
                         // set up index
-                        dbfIndex = new DBFIndex( dbf, dbfFile, shp.readEnvelopes(), mappings );
+                        dbfIndex = new DBFIndex( dbf, dbfFile, mappings );
                     }
                     ft = dbf.getFeatureType();
                     schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
@@ -383,7 +411,6 @@ public class ShapeFeatureStore implements FeatureStore {
         Filter filter = query.getFilter();
         Pair<Filter, Envelope> filterPair = splitOffBBoxConstraint( filter );
 
-        List<Pair<Integer, Long>> recNumsAndPos = new LinkedList<Pair<Integer, Long>>();
         Envelope bbox = getTransformedEnvelope( query.getPrefilterBBoxEnvelope() );
 
         if ( bbox == null ) {
@@ -391,13 +418,18 @@ public class ShapeFeatureStore implements FeatureStore {
         }
 
         boolean queryIndex = filterPair.first == null || !generateAlphanumericIndexes;
-        Pair<Filter, SortProperty[]> p = queryIndex ? null : dbfIndex.query( recNumsAndPos, filterPair.first,
+        BitSet recNums = new BitSet();
+        Pair<Filter, SortProperty[]> p = queryIndex ? null : dbfIndex.query( recNums, filterPair.first,
                                                                              query.getSortProperties() );
-        HashSet<Integer> recNums = new HashSet<Integer>( unzipPair( recNumsAndPos ).first );
         if ( idFilterNums != null ) {
-            recNums.addAll( idFilterNums );
+            for ( Integer num : idFilterNums ) {
+                if ( num >= 0 ) {
+                    recNums.set( num );
+                }
+            }
         }
-        recNumsAndPos = shp.query( bbox, filter == null || p == null ? null : recNums );
+        // intersect the alphanumeric matches with the spatial index result
+        List<Pair<Integer, Long>> recNumsAndPos = shp.query( bbox, filter == null || p == null ? null : recNums );
         LOG.debug( "{} records matching after BBOX filtering", recNumsAndPos.size() );
 
         // don't forget about filters if dbf index could not be queried
@@ -414,7 +446,7 @@ public class ShapeFeatureStore implements FeatureStore {
 
         if ( p.second != null && p.second.length > 0 ) {
             LOG.debug( "Applying in-memory sorting." );
-            rs = new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), p.second ) );
+            rs = new SortingFeatureInputStream( rs, p.second, query.getMaxFeatures() );
         }
 
         return rs;
@@ -474,16 +506,21 @@ public class ShapeFeatureStore implements FeatureStore {
             } else {
                 entry = new HashMap<SimplePropertyType, Property>();
             }
-            LinkedList<Property> props = new LinkedList<Property>();
-            for ( PropertyType t : ft.getPropertyDeclarations() ) {
-                if ( entry.containsKey( t ) ) {
+            // add properties in declaration order, so compact features can be used
+            List<PropertyType> propDecls = ft.getPropertyDeclarations();
+            List<Property> props = new ArrayList<Property>( propDecls.size() );
+            GeometryPropertyType geomDecl = ft.getDefaultGeometryPropertyDeclaration();
+            for ( PropertyType t : propDecls ) {
+                if ( t == geomDecl ) {
+                    Geometry g = shp.readGeometry( recNumAndPos.second );
+                    props.add( new GenericProperty( geomDecl, g ) );
+                } else if ( entry.containsKey( t ) ) {
                     props.add( entry.get( t ) );
                 }
             }
-
-            // add geometry property
-            Geometry g = shp.readGeometry( recNumAndPos.second );
-            props.add( new GenericProperty( ft.getDefaultGeometryPropertyDeclaration(), g ) );
+            if ( geomDecl == null ) {
+                props.add( new GenericProperty( geomDecl, shp.readGeometry( recNumAndPos.second ) ) );
+            }
             feature = ft.newFeature( fid, props, null );
 
             cache.add( feature );
@@ -725,7 +762,7 @@ public class ShapeFeatureStore implements FeatureStore {
 
             if ( generateAlphanumericIndexes ) {
                 // set up index
-                dbfIndex = new DBFIndex( dbf, dbfFile, shp.readEnvelopes(), mappings );
+                dbfIndex = new DBFIndex( dbf, dbfFile, mappings );
             }
 
             ft = dbf.getFeatureType();
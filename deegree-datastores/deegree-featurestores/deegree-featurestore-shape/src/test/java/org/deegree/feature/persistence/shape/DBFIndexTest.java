@@ -0,0 +1,289 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.FileUtils;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsGreaterThan;
+import org.deegree.filter.comparison.PropertyIsLessThanOrEqualTo;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Not;
+import org.deegree.filter.logical.Or;
+import org.deegree.filter.sort.SortProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the results of {@link DBFIndex} queries with a plain scan over the records of the dbf file.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class DBFIndexTest {
+
+    private static final Charset ASCII = Charset.forName( "US-ASCII" );
+
+    private static final QName FT_NAME = new QName( "http://www.deegree.org/app", "City", "app" );
+
+    // name (C 12), population (N 8), code (N 4, empty for some records)
+    private static final String[][] RECORDS = { { "Bonn", "300000", "1" }, { "Berlin", "3500000", "2" },
+                                               { "Bremen", "550000", "" }, { "Aachen", "250000", "1" },
+                                               { "Bonn", "300000", "3" }, { "Koeln", "1000000", "2" },
+                                               { "Beuel", "60000", "" }, { "", "100", "5" },
+                                               { "Dresden", "550000", "4" }, { "Berlin", "3500000", "2" },
+                                               { "Ahrweiler", "27500", "1" }, { "Zwickau", "90000", "12" } };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dbfFile;
+
+    private DBFReader dbf;
+
+    private List<Feature> features;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        dbfFile = folder.newFile( "cities.dbf" );
+        writeDbf( dbfFile );
+        dbf = new DBFReader( new RandomAccessFile( dbfFile, "r" ), ASCII, FT_NAME, null, null );
+        features = new ArrayList<Feature>( dbf.size() );
+        for ( int i = 0; i < dbf.size(); i++ ) {
+            List<Property> props = new ArrayList<Property>();
+            for ( Property prop : dbf.getEntry( i ).values() ) {
+                if ( prop != null ) {
+                    props.add( prop );
+                }
+            }
+            features.add( new GenericFeature( dbf.getFeatureType(), "City_" + i, props, null ) );
+        }
+    }
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        dbf.close();
+    }
+
+    private static void writeDbf( File file )
+                            throws IOException {
+        String[] names = { "NAME", "POP", "CODE" };
+        char[] types = { 'C', 'N', 'N' };
+        int[] lengths = { 12, 8, 4 };
+        int headerLength = 32 + 32 * names.length + 1;
+        int recordLength = 1 + 12 + 8 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate( headerLength + RECORDS.length * recordLength + 1 );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        buffer.put( (byte) 3 ).put( (byte) 115 ).put( (byte) 1 ).put( (byte) 1 );
+        buffer.putInt( RECORDS.length );
+        buffer.putShort( (short) headerLength );
+        buffer.putShort( (short) recordLength );
+        buffer.position( 32 );
+        for ( int i = 0; i < names.length; i++ ) {
+            int start = buffer.position();
+            buffer.put( names[i].getBytes( ASCII ) );
+            buffer.position( start + 11 );
+            buffer.put( (byte) types[i] );
+            buffer.position( start + 16 );
+            buffer.put( (byte) lengths[i] );
+            buffer.position( start + 32 );
+        }
+        buffer.put( (byte) 13 );
+        for ( String[] record : RECORDS ) {
+            buffer.put( (byte) ' ' );
+            for ( int i = 0; i < record.length; i++ ) {
+                // text is left aligned, numbers are right aligned
+                String format = types[i] == 'C' ? "%-" + lengths[i] + "s" : "%" + lengths[i] + "s";
+                buffer.put( String.format( format, record[i] ).getBytes( ASCII ) );
+            }
+        }
+        buffer.put( (byte) 26 );
+        FileUtils.writeByteArrayToFile( file, buffer.array() );
+    }
+
+    private static ValueReference property( String name ) {
+        return new ValueReference( new QName( FT_NAME.getNamespaceURI(), name, FT_NAME.getPrefix() ) );
+    }
+
+    private static Literal<PrimitiveValue> literal( String value ) {
+        return new Literal<PrimitiveValue>( value );
+    }
+
+    private static Operator equalTo( String name, String value ) {
+        return new PropertyIsEqualTo( property( name ), literal( value ), true, null );
+    }
+
+    private BitSet scan( Filter filter )
+                            throws Exception {
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        BitSet expected = new BitSet();
+        for ( int i = 0; i < features.size(); i++ ) {
+            if ( filter.evaluate( features.get( i ), evaluator ) ) {
+                expected.set( i );
+            }
+        }
+        return expected;
+    }
+
+    private BitSet query( DBFIndex index, Filter filter )
+                            throws Exception {
+        BitSet matches = new BitSet();
+        Pair<Filter, SortProperty[]> leftOvers = index.query( matches, filter, null );
+        assertNotNull( "Filter could not be evaluated using the index: " + filter, leftOvers );
+        if ( leftOvers.first == null ) {
+            return matches;
+        }
+        // the rest of the filter is evaluated in memory
+        TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+        BitSet result = new BitSet();
+        for ( int i = matches.nextSetBit( 0 ); i >= 0; i = matches.nextSetBit( i + 1 ) ) {
+            if ( leftOvers.first.evaluate( features.get( i ), evaluator ) ) {
+                result.set( i );
+            }
+        }
+        return result;
+    }
+
+    private void assertSameAsScan( DBFIndex index, Operator op )
+                            throws Exception {
+        Filter filter = new OperatorFilter( op );
+        assertEquals( filter.toString(), scan( filter ), query( index, filter ) );
+    }
+
+    private void assertSameAsScan( DBFIndex index )
+                            throws Exception {
+        assertSameAsScan( index, equalTo( "NAME", "Bonn" ) );
+        assertSameAsScan( index, equalTo( "NAME", "" ) );
+        assertSameAsScan( index, equalTo( "NAME", "Paris" ) );
+        assertSameAsScan( index, equalTo( "POP", "550000" ) );
+        assertSameAsScan( index, equalTo( "CODE", "2" ) );
+        assertSameAsScan( index, new PropertyIsGreaterThan( property( "POP" ), literal( "300000" ), true, null ) );
+        assertSameAsScan( index, new PropertyIsGreaterThan( literal( "300000" ), property( "POP" ), true, null ) );
+        assertSameAsScan( index, new PropertyIsLessThanOrEqualTo( property( "CODE" ), literal( "2" ), true, null ) );
+        assertSameAsScan( index, new PropertyIsBetween( property( "POP" ), literal( "60000" ), literal( "550000" ),
+                                                        true, null ) );
+        assertSameAsScan( index, new PropertyIsLike( property( "NAME" ), literal( "B*n" ), "*", "?", "\\", true,
+                                                     null ) );
+        assertSameAsScan( index, new Or( equalTo( "NAME", "Aachen" ), equalTo( "CODE", "2" ) ) );
+        assertSameAsScan( index, new Not( equalTo( "NAME", "Bonn" ) ) );
+        assertSameAsScan( index, new And( equalTo( "CODE", "1" ), new PropertyIsGreaterThan( property( "POP" ),
+                                                                                               literal( "30000" ),
+                                                                                               true, null ) ) );
+        // the comparison of two properties is left to in-memory filtering
+        assertSameAsScan( index, new And( equalTo( "NAME", "Berlin" ), new PropertyIsGreaterThan( property( "POP" ),
+                                                                                                   property( "CODE" ),
+                                                                                                   true, null ) ) );
+    }
+
+    @Test
+    public void testQueriesMatchScan()
+                            throws Exception {
+        assertSameAsScan( new DBFIndex( dbf, dbfFile, null ) );
+    }
+
+    @Test
+    public void testStoredIndexIsReused()
+                            throws Exception {
+        new DBFIndex( dbf, dbfFile, null );
+        File indexFile = new File( folder.getRoot(), "cities.dbi" );
+        byte[] stored = FileUtils.readFileToByteArray( indexFile );
+
+        DBFIndex index = new DBFIndex( dbf, dbfFile, null );
+        assertArrayEquals( stored, FileUtils.readFileToByteArray( indexFile ) );
+        assertSameAsScan( index );
+    }
+
+    @Test
+    public void testInvalidIndexIsRebuilt()
+                            throws Exception {
+        new DBFIndex( dbf, dbfFile, null );
+        File indexFile = new File( folder.getRoot(), "cities.dbi" );
+        byte[] stored = FileUtils.readFileToByteArray( indexFile );
+        OutputStream out = new FileOutputStream( indexFile );
+        try {
+            out.write( new byte[stored.length] );
+        } finally {
+            out.close();
+        }
+
+        DBFIndex index = new DBFIndex( dbf, dbfFile, null );
+        assertArrayEquals( stored, FileUtils.readFileToByteArray( indexFile ) );
+        assertSameAsScan( index );
+    }
+
+}
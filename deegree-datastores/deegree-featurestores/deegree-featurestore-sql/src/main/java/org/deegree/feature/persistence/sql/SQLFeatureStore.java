@@ -41,6 +41,7 @@ import static org.deegree.commons.xml.CommonNamespaces.XSINS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
+import java.math.BigInteger;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -77,7 +78,6 @@ import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.Features;
 import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -112,7 +112,7 @@ import org.deegree.feature.stream.EmptyFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
-import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -159,6 +159,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_FETCH_SIZE = 1000;
 
+    private static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
     private final SQLFeatureStoreJAXB config;
@@ -189,6 +191,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final int fetchSize;
 
+    private final int insertBatchSize;
+
     private final Boolean readAutoCommit;
 
     private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
@@ -223,6 +227,9 @@ public class SQLFeatureStore implements FeatureStore {
         fetchSize = config.getJDBCConnId().getFetchSize() != null ? config.getJDBCConnId().getFetchSize().intValue()
                                                                  : DEFAULT_FETCH_SIZE;
         LOG.debug( "Fetch size: " + fetchSize );
+        BigInteger batchSize = config.getJDBCConnId().getInsertBatchSize();
+        insertBatchSize = batchSize != null ? batchSize.intValue() : DEFAULT_INSERT_BATCH_SIZE;
+        LOG.debug( "Insert batch size: " + insertBatchSize );
         readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
                                                                           : !dialect.requiresTransactionForCursorMode();
         LOG.debug( "Read auto commit: " + readAutoCommit );
@@ -614,7 +621,9 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( lockManager != null ) {
+            lockManager.destroy();
+        }
     }
 
     @Override
@@ -644,7 +653,7 @@ public class SQLFeatureStore implements FeatureStore {
                 throw new FilterEvaluationException( msg );
             }
             // should be no problem iterating over the features (id queries usually request only a few ids)
-            hits = queryByIdFilter( (IdFilter) filter, query.getSortProperties() ).count();
+            hits = queryByIdFilter( (IdFilter) filter, query.getSortProperties(), -1 ).count();
         }
         return hits;
     }
@@ -901,7 +910,7 @@ public class SQLFeatureStore implements FeatureStore {
                 String msg = "Invalid query. If no type names are specified, it must contain an IdFilter.";
                 throw new FilterEvaluationException( msg );
             }
-            result = queryByIdFilter( (IdFilter) filter, query.getSortProperties() );
+            result = queryByIdFilter( (IdFilter) filter, query.getSortProperties(), query.getMaxFeatures() );
         }
         return result;
     }
@@ -962,15 +971,15 @@ public class SQLFeatureStore implements FeatureStore {
         return new CombinedFeatureInputStream( rsIter );
     }
 
-    private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit )
+    private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit, int maxFeatures )
                             throws FeatureStoreException {
         if ( blobMapping != null ) {
-            return queryByIdFilterBlob( filter, sortCrit );
+            return queryByIdFilterBlob( filter, sortCrit, maxFeatures );
         }
         return queryByIdFilterRelational( filter, sortCrit );
     }
 
-    private FeatureInputStream queryByIdFilterBlob( IdFilter filter, SortProperty[] sortCrit )
+    private FeatureInputStream queryByIdFilterBlob( IdFilter filter, SortProperty[] sortCrit, int maxFeatures )
                             throws FeatureStoreException {
 
         FeatureInputStream result = null;
@@ -1008,7 +1017,7 @@ public class SQLFeatureStore implements FeatureStore {
 
         // sort features
         if ( sortCrit.length > 0 ) {
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), sortCrit ) );
+            result = new SortingFeatureInputStream( result, sortCrit, maxFeatures );
         }
         return result;
     }
@@ -1273,7 +1282,7 @@ public class SQLFeatureStore implements FeatureStore {
 
         if ( query.getSortProperties().length > 0 ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), query.getSortProperties() ) );
+            result = new SortingFeatureInputStream( result, query.getSortProperties(), query.getMaxFeatures() );
         }
         return result;
     }
@@ -1392,7 +1401,7 @@ public class SQLFeatureStore implements FeatureStore {
         }
         if ( wb.getPostSortCriteria() != null ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
+            result = new SortingFeatureInputStream( result, wb.getPostSortCriteria(), query.getMaxFeatures() );
         }
         return result;
     }
@@ -1507,6 +1516,15 @@ public class SQLFeatureStore implements FeatureStore {
         return dialect;
     }
 
+    /**
+     * Returns the maximum number of rows to be collected in JDBC batches during inserts.
+     * 
+     * @return maximum number of batched rows, <code>0</code> if batching is disabled
+     */
+    int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
     private class FeatureResultSetIterator extends ResultSetIterator<Feature> {
 
         private final FeatureBuilder builder;
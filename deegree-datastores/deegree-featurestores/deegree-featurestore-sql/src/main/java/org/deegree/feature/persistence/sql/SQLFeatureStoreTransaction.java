@@ -562,6 +562,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
         long begin = System.currentTimeMillis();
 
+        int batchSize = getInsertBatchSize();
         String fid = null;
         try {
             PreparedStatement blobInsertStmt = null;
@@ -627,10 +628,15 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 sql.append( ")" );
                 LOG.debug( "Inserting: {}", sql );
                 blobInsertStmt = conn.prepareStatement( sql.toString() );
+                int batched = 0;
                 for ( Feature feature : features ) {
                     fid = feature.getId();
                     if ( blobInsertStmt != null ) {
-                        insertFeatureBlob( blobInsertStmt, feature );
+                        insertFeatureBlob( blobInsertStmt, feature, batchSize > 0 );
+                        if ( batchSize > 0 && ++batched >= batchSize ) {
+                            blobInsertStmt.executeBatch();
+                            batched = 0;
+                        }
                     }
                     FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
                     if ( ftMapping != null ) {
@@ -640,25 +646,33 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                     bboxTracker.insert( feature, storageSrs );
                 }
                 if ( blobInsertStmt != null ) {
+                    if ( batched > 0 ) {
+                        blobInsertStmt.executeBatch();
+                    }
                     blobInsertStmt.close();
                 }
             } else {
                 // pure relational mode
                 List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode );
-                for ( Feature feature : features ) {
-                    FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
-                    if ( ftMapping == null ) {
-                        continue;
-//                        throw new FeatureStoreException( "Cannot insert feature of type '" + feature.getName()
-//                                                         + "'. No mapping defined and BLOB mode is off." );
-                    }
-                    idAssignments.add( insertManager.insertFeature( feature, ftMapping ) );
-                    Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
-                    if ( mapping != null ) {
-                        ICRS storageSrs = mapping.second.getCRS();
-                        bboxTracker.insert( feature, storageSrs );
+                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode, batchSize );
+                try {
+                    for ( Feature feature : features ) {
+                        FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
+                        if ( ftMapping == null ) {
+                            continue;
+                            // throw new FeatureStoreException( "Cannot insert feature of type '" + feature.getName()
+                            // + "'. No mapping defined and BLOB mode is off." );
+                        }
+                        idAssignments.add( insertManager.insertFeature( feature, ftMapping ) );
+                        Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
+                        if ( mapping != null ) {
+                            ICRS storageSrs = mapping.second.getCRS();
+                            bboxTracker.insert( feature, storageSrs );
+                        }
                     }
+                    insertManager.flush();
+                } finally {
+                    insertManager.close();
                 }
                 if ( insertManager.getDelayedRows() != 0 ) {
                     String msg = "After insertion, " + insertManager.getDelayedRows()
@@ -683,20 +697,43 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         return new ArrayList<String>( fids );
     }
 
+    /**
+     * Returns the number of rows to be collected in JDBC batches, or <code>0</code> if the connection does not support
+     * batch updates or batching is disabled.
+     */
+    private int getInsertBatchSize() {
+        int batchSize = fs.getInsertBatchSize();
+        if ( batchSize > 0 ) {
+            try {
+                if ( !conn.getMetaData().supportsBatchUpdates() ) {
+                    LOG.debug( "JDBC driver does not support batch updates, inserting rows one by one." );
+                    return 0;
+                }
+            } catch ( SQLException e ) {
+                LOG.debug( "Could not determine batch support of the JDBC driver: " + e.getMessage() );
+                return 0;
+            }
+        }
+        return batchSize;
+    }
+
     private String generateNewId() {
         return UUID.randomUUID().toString();
     }
 
     /**
-     * Inserts the given feature into BLOB table and returns the generated primary key.
+     * Inserts the given feature into the BLOB table (or adds it to the batch of the insert statement) and returns the
+     * generated primary key.
      *
      * @param stmt
      * @param feature
+     * @param batch
+     *            if <code>true</code>, the row is added to the batch of the statement instead of being inserted
      * @return primary key of the feature
      * @throws SQLException
      * @throws FeatureStoreException
      */
-    private int insertFeatureBlob( PreparedStatement stmt, Feature feature )
+    private int insertFeatureBlob( PreparedStatement stmt, Feature feature, boolean batch )
                             throws SQLException, FeatureStoreException {
         LOG.debug( "Inserting feature with id '" + feature.getId() + "' (BLOB)" );
         if ( fs.getSchema().getFeatureType( feature.getName() ) == null ) {
@@ -711,7 +748,11 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         LOG.debug( "Feature blob size: " + bytes.length );
         Geometry bboxGeom = getFeatureEnvelopeAsGeometry( feature );
         blobGeomConverter.setParticle( stmt, bboxGeom, 4 );
-        stmt.execute();
+        if ( batch ) {
+            stmt.addBatch();
+        } else {
+            stmt.execute();
+        }
         int internalId = -1;
         // ResultSet rs = null;
         // try {
@@ -1063,15 +1104,16 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         String lockId = lock != null ? lock.getId() : null;
     
         // check if all features can be deleted
+        List<String> fids = new ArrayList<String>( filter.getSelectedIds().size() );
         for ( ResourceId id : filter.getSelectedIds() ) {
-            if ( !fs.getLockManager().isFeatureModifiable( id.getRid(), lockId ) ) {
-                if ( lockId == null ) {
-                    throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID", id.getRid() ),
-                                                         "lockId" );
-                }
-                throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID", id.getRid() ),
-                                                          "lockId" );
+            fids.add( id.getRid() );
+        }
+        String fid = fs.getLockManager().findUnmodifiableFeature( fids, lockId );
+        if ( fid != null ) {
+            if ( lockId == null ) {
+                throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID", fid ), "lockId" );
             }
+            throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID", fid ), "lockId" );
         }
     }
 
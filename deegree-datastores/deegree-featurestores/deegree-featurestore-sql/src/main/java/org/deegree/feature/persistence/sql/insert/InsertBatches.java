@@ -0,0 +1,202 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.utils.JDBCUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects {@link InsertRow}s in JDBC batches, one reusable {@link PreparedStatement} per distinct INSERT statement.
+ * <p>
+ * Batches are executed in the order of their creation. A row must only be added to a batch if its parent rows are
+ * either inserted already or queued in the same or an earlier batch, see {@link #getBatch(InsertRow, String)}.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class InsertBatches {
+
+    private static final Logger LOG = LoggerFactory.getLogger( InsertBatches.class );
+
+    private final Connection conn;
+
+    private final int batchSize;
+
+    private final Map<String, Batch> sqlToBatch = new LinkedHashMap<String, Batch>();
+
+    private int queued;
+
+    /**
+     * @param conn
+     *            connection to use, must not be <code>null</code>
+     * @param batchSize
+     *            number of queued rows that triggers the execution of all batches, must be positive
+     */
+    InsertBatches( Connection conn, int batchSize ) {
+        this.conn = conn;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the batch for the given statement. If the row depends on a row queued in a later batch, all batches are
+     * executed first.
+     * 
+     * @param row
+     *            the row to be queued, must not be <code>null</code>
+     * @param sql
+     *            the INSERT statement of the row, must not be <code>null</code>
+     * @return the batch, never <code>null</code>
+     * @throws SQLException
+     */
+    Batch getBatch( InsertRow row, String sql )
+                            throws SQLException {
+        Batch batch = sqlToBatch.get( sql );
+        if ( batch == null ) {
+            LOG.debug( "Preparing batch statement: {}", sql );
+            batch = new Batch( sqlToBatch.size(), sql, conn.prepareStatement( sql ) );
+            sqlToBatch.put( sql, batch );
+        }
+        Batch parentBatch = row.getParentBatch();
+        if ( parentBatch != null && parentBatch.isPending() && parentBatch.order > batch.order ) {
+            execute();
+        }
+        return batch;
+    }
+
+    /**
+     * Adds the row to the batch, after its arguments have been set on the batch statement.
+     * 
+     * @param batch
+     *            the batch returned by {@link #getBatch(InsertRow, String)}, must not be <code>null</code>
+     * @param row
+     *            the row, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void add( Batch batch, InsertRow row )
+                            throws SQLException {
+        batch.stmt.addBatch();
+        batch.rows.add( row );
+        row.setBatch( batch );
+        if ( ++queued >= batchSize ) {
+            execute();
+        }
+    }
+
+    /**
+     * Executes all pending batches, in the order of their creation.
+     * 
+     * @throws SQLException
+     */
+    void execute()
+                            throws SQLException {
+        if ( queued == 0 ) {
+            return;
+        }
+        LOG.debug( "Executing {} batched rows.", queued );
+        for ( Batch batch : sqlToBatch.values() ) {
+            if ( !batch.isPending() ) {
+                continue;
+            }
+            try {
+                batch.stmt.executeBatch();
+            } catch ( BatchUpdateException e ) {
+                SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+                String msg = "Error executing batched insert '" + batch.sql + "': " + cause.getMessage();
+                throw new SQLException( msg, cause );
+            } finally {
+                for ( InsertRow row : batch.rows ) {
+                    row.setBatch( null );
+                }
+                batch.rows.clear();
+            }
+        }
+        queued = 0;
+    }
+
+    /**
+     * Closes all statements, pending rows are discarded.
+     */
+    void close() {
+        for ( Batch batch : sqlToBatch.values() ) {
+            JDBCUtils.close( batch.stmt );
+        }
+        sqlToBatch.clear();
+        queued = 0;
+    }
+
+    /**
+     * A prepared statement and the rows queued for it.
+     */
+    static class Batch {
+
+        final int order;
+
+        final String sql;
+
+        final PreparedStatement stmt;
+
+        final List<InsertRow> rows = new ArrayList<InsertRow>();
+
+        private Batch( int order, String sql, PreparedStatement stmt ) {
+            this.order = order;
+            this.sql = sql;
+            this.stmt = stmt;
+        }
+
+        boolean isPending() {
+            return !rows.isEmpty();
+        }
+    }
+
+}
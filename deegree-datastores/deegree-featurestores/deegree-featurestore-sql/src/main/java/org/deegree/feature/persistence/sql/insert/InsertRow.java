@@ -50,6 +50,7 @@ import java.util.UUID;
 
 import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.jdbc.TransactionRow;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConversion;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -57,6 +58,7 @@ import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
 import org.deegree.feature.persistence.sql.id.IDGenerator;
 import org.deegree.feature.persistence.sql.id.SequenceIDGenerator;
 import org.deegree.feature.persistence.sql.id.UUIDGenerator;
+import org.deegree.feature.persistence.sql.insert.InsertBatches.Batch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +79,12 @@ public abstract class InsertRow extends TransactionRow {
     // parent rows
     private final Map<InsertRow, ParentRowReference> parentToRef = new HashMap<InsertRow, ParentRowReference>();
 
+    // batch this row is queued in (null if not queued)
+    private Batch batch;
+
+    // latest batch that contains a parent of this row (may have been executed already)
+    private Batch parentBatch;
+
     protected InsertRow( InsertRowManager mgr ) {
         super( null );
         this.mgr = mgr;
@@ -158,6 +166,10 @@ public abstract class InsertRow extends TransactionRow {
             addPreparedArgument( toColumn, key );
         }
 
+        if ( parent.batch != null && ( parentBatch == null || parent.batch.order > parentBatch.order ) ) {
+            parentBatch = parent.batch;
+        }
+
         // if parent is a feature row, set value for href column
         if ( ref.isHrefed( this ) && parent instanceof FeatureRow ) {
             addPreparedArgument( ref.getHrefColum( this ), "#" + ( (FeatureRow) parent ).getNewId() );
@@ -176,8 +188,27 @@ public abstract class InsertRow extends TransactionRow {
         return !parentToRef.isEmpty();
     }
 
+    /**
+     * @return the batches to queue this row in, <code>null</code> if rows are inserted one by one
+     */
+    InsertBatches getBatches() {
+        return mgr.getBatches();
+    }
+
+    Batch getParentBatch() {
+        return parentBatch;
+    }
+
+    void setBatch( Batch batch ) {
+        this.batch = batch;
+    }
+
     /**
      * Performs the insertion and deals with propagating the values of auto-generated columns to child rows.
+     * <p>
+     * If the manager uses batches and all key values are known before the insert, the row is only queued in a batch.
+     * Otherwise, pending batches containing parent rows are executed and the row is inserted immediately.
+     * </p>
      * 
      * @param conn
      *            JDBC connection to use for insertion, must not be <code>null</code>
@@ -198,6 +229,21 @@ public abstract class InsertRow extends TransactionRow {
         PreparedStatement stmt = null;
 
         Set<SQLIdentifier> autoGenColumns = getAutogenColumns( propagateNonFidAutoGenColumns );
+
+        InsertBatches batches = getBatches();
+        if ( batches != null ) {
+            if ( areValuesKnown( autoGenColumns ) ) {
+                Batch target = batches.getBatch( this, sql );
+                setArguments( target.stmt );
+                batches.add( target, this );
+                unwrapValues( autoGenColumns );
+                return;
+            }
+            if ( parentBatch != null && parentBatch.isPending() ) {
+                batches.execute();
+            }
+        }
+
         if ( autoGenColumns.isEmpty() ) {
             stmt = conn.prepareStatement( sql );
         } else {
@@ -212,22 +258,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -253,6 +284,55 @@ public abstract class InsertRow extends TransactionRow {
         stmt.close();
     }
 
+    private void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
+    }
+
+    /**
+     * Returns whether the values of the given columns are known before the insert (so the DB doesn't need to return
+     * them).
+     */
+    private boolean areValuesKnown( Set<SQLIdentifier> columns ) {
+        for ( SQLIdentifier column : columns ) {
+            Object value = get( column );
+            if ( value instanceof ParticleConversion<?> ) {
+                if ( !( ( (ParticleConversion<?>) value ).getParticle() instanceof PrimitiveValue ) ) {
+                    return false;
+                }
+            } else if ( value == null ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // replaces converted key values with the plain values, as the DB doesn't return them for batched rows
+    private void unwrapValues( Set<SQLIdentifier> columns ) {
+        for ( SQLIdentifier column : columns ) {
+            Object value = get( column );
+            if ( value instanceof ParticleConversion<?> ) {
+                PrimitiveValue particle = (PrimitiveValue) ( (ParticleConversion<?>) value ).getParticle();
+                columnToObject.put( column, particle.getValue() );
+            }
+        }
+    }
+
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
         Set<SQLIdentifier> cols = new LinkedHashSet<SQLIdentifier>();
         if ( propagateNonFidAutoGenColumns ) {
@@ -93,6 +93,7 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>Optional JDBC batching of rows whose key values are known before the insert</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -114,6 +115,9 @@ public class InsertRowManager {
 
     private final TableDependencies tableDeps;
 
+    // null, if rows are inserted one by one
+    private final InsertBatches batches;
+
     // key: original feature id (from Feature or FeatureReference), value: feature row
     private final Map<String, FeatureRow> origFidToFeatureRow = new HashMap<String, FeatureRow>();
 
@@ -137,11 +141,30 @@ public class InsertRowManager {
      *            feature id generation mode, must not be <code>null</code>
      */
     public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        this( fs, conn, idGenMode, 0 );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance that collects rows in JDBC batches. The caller must invoke
+     * {@link #flush()} after the last feature has been inserted and {@link #close()} afterwards.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows to be queued before the batches are executed, <code>0</code> disables
+     *            batching
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize ) {
         this.fs = fs;
         this.dialect = fs.getDialect();
         this.conn = conn;
         this.idGenMode = idGenMode;
         this.tableDeps = fs.getSchema().getKeyDependencies();
+        this.batches = batchSize > 0 ? new InsertBatches( conn, batchSize ) : null;
     }
 
     /**
@@ -244,6 +267,31 @@ public class InsertRowManager {
         return featureRow;
     }
 
+    /**
+     * Executes all rows that are still queued in batches.
+     * 
+     * @throws SQLException
+     */
+    public void flush()
+                            throws SQLException {
+        if ( batches != null ) {
+            batches.execute();
+        }
+    }
+
+    /**
+     * Releases the batch statements. Rows that have not been flushed are discarded.
+     */
+    public void close() {
+        if ( batches != null ) {
+            batches.close();
+        }
+    }
+
+    InsertBatches getBatches() {
+        return batches;
+    }
+
     SQLDialect getDialect() {
         return dialect;
     }
@@ -0,0 +1,184 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.feature.persistence.sql.id.KeyPropagation;
+import org.deegree.feature.persistence.sql.insert.InsertBatches.Batch;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the queueing and execution of {@link InsertBatches}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class InsertBatchesTest {
+
+    private static final String SQL_A = "INSERT INTO a(id) VALUES(?)";
+
+    private static final String SQL_B = "INSERT INTO b(id) VALUES(?)";
+
+    private RecordingConnection recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new RecordingConnection();
+    }
+
+    private InsertRow queue( InsertBatches batches, InsertRow row, String sql )
+                            throws SQLException {
+        Batch batch = batches.getBatch( row, sql );
+        batches.add( batch, row );
+        return row;
+    }
+
+    @Test
+    public void testExecutesWhenBatchSizeIsReached()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 2 );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        assertEquals( 0, recorder.count( "executeBatch " + SQL_A ) );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        assertEquals( 1, recorder.count( "executeBatch " + SQL_A ) );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        assertEquals( 1, recorder.count( "executeBatch " + SQL_A ) );
+        batches.execute();
+        assertEquals( 2, recorder.count( "executeBatch " + SQL_A ) );
+        assertEquals( 3, recorder.count( "addBatch " + SQL_A ) );
+        // one statement per distinct SQL
+        assertEquals( 1, recorder.count( "prepare " + SQL_A ) );
+    }
+
+    @Test
+    public void testExecuteWithoutQueuedRows()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 10 );
+        batches.execute();
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        batches.execute();
+        batches.execute();
+        assertEquals( 1, recorder.count( "executeBatch " + SQL_A ) );
+    }
+
+    @Test
+    public void testBatchesAreExecutedInCreationOrder()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 10 );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        queue( batches, new SimpleInsertRow( "b", batches ), SQL_B );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        batches.execute();
+        int a = recorder.events.indexOf( "executeBatch " + SQL_A );
+        int b = recorder.events.indexOf( "executeBatch " + SQL_B );
+        assertTrue( a >= 0 && b > a );
+    }
+
+    @Test
+    public void testParentInLaterBatchForcesExecution()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 10 );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        InsertRow parent = new SimpleInsertRow( "b", batches );
+        parent.addPreparedArgument( "id", 1 );
+        queue( batches, parent, SQL_B );
+
+        // child goes into batch a, which is executed before batch b
+        InsertRow child = new SimpleInsertRow( "a", batches );
+        KeyPropagation propagation = new KeyPropagation( new TableName( "b" ),
+                                                         singletonList( new SQLIdentifier( "id" ) ),
+                                                         new TableName( "a" ),
+                                                         singletonList( new SQLIdentifier( "b_id" ) ) );
+        child.addParent( new ParentRowReference( parent, propagation ) );
+        child.removeParent( parent );
+        assertEquals( 0, recorder.count( "executeBatch " + SQL_B ) );
+        batches.getBatch( child, SQL_A );
+        assertEquals( 1, recorder.count( "executeBatch " + SQL_A ) );
+        assertEquals( 1, recorder.count( "executeBatch " + SQL_B ) );
+    }
+
+    @Test
+    public void testParentInEarlierBatchDoesNotForceExecution()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 10 );
+        InsertRow parent = new SimpleInsertRow( "a", batches );
+        parent.addPreparedArgument( "id", 1 );
+        queue( batches, parent, SQL_A );
+
+        InsertRow child = new SimpleInsertRow( "b", batches );
+        KeyPropagation propagation = new KeyPropagation( new TableName( "a" ),
+                                                         singletonList( new SQLIdentifier( "id" ) ),
+                                                         new TableName( "b" ),
+                                                         singletonList( new SQLIdentifier( "a_id" ) ) );
+        child.addParent( new ParentRowReference( parent, propagation ) );
+        child.removeParent( parent );
+        queue( batches, child, SQL_B );
+        assertEquals( 0, recorder.count( "executeBatch " + SQL_A ) );
+        batches.execute();
+        assertTrue( recorder.events.indexOf( "executeBatch " + SQL_A ) < recorder.events.indexOf( "executeBatch "
+                                                                                                  + SQL_B ) );
+    }
+
+    @Test
+    public void testCloseReleasesStatements()
+                            throws SQLException {
+        InsertBatches batches = new InsertBatches( recorder.getConnection(), 10 );
+        queue( batches, new SimpleInsertRow( "a", batches ), SQL_A );
+        queue( batches, new SimpleInsertRow( "b", batches ), SQL_B );
+        batches.close();
+        assertEquals( 1, recorder.count( "close " + SQL_A ) );
+        assertEquals( 1, recorder.count( "close " + SQL_B ) );
+        // discarded rows are not executed
+        batches.execute();
+        assertEquals( 0, recorder.count( "executeBatch " + SQL_A ) );
+    }
+
+}
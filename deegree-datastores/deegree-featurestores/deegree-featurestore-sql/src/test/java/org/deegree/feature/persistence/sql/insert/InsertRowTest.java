@@ -0,0 +1,167 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.feature.persistence.sql.id.KeyPropagation;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests batching of {@link InsertRow}s and the propagation of their key values.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class InsertRowTest {
+
+    private static final SQLIdentifier ID = new SQLIdentifier( "id" );
+
+    private static final SQLIdentifier PARENT_ID = new SQLIdentifier( "parent_id" );
+
+    private static final ParticleConverter<PrimitiveValue> CONVERTER = new ParticleConverter<PrimitiveValue>() {
+        @Override
+        public String getSelectSnippet( String tableAlias ) {
+            return null;
+        }
+
+        @Override
+        public PrimitiveValue toParticle( ResultSet rs, int colIndex ) {
+            return null;
+        }
+
+        @Override
+        public String getSetSnippet( PrimitiveValue particle ) {
+            return "?";
+        }
+
+        @Override
+        public void setParticle( PreparedStatement stmt, PrimitiveValue particle, int paramIndex )
+                                throws SQLException {
+            stmt.setObject( paramIndex, particle.getValue() );
+        }
+    };
+
+    private RecordingConnection recorder;
+
+    private InsertBatches batches;
+
+    @Before
+    public void setUp() {
+        recorder = new RecordingConnection();
+        batches = new InsertBatches( recorder.getConnection(), 10 );
+    }
+
+    private static void link( InsertRow parent, InsertRow child ) {
+        KeyPropagation propagation = new KeyPropagation( parent.getTable(), singletonList( ID ), child.getTable(),
+                                                         singletonList( PARENT_ID ) );
+        child.addParent( new ParentRowReference( parent, propagation ) );
+        child.removeParent( parent );
+    }
+
+    @Test
+    public void testRowWithKnownKeyIsBatched()
+                            throws Exception {
+        InsertRow parent = new SimpleInsertRow( "parent", batches, "id" );
+        parent.addPreparedArgument( ID, new PrimitiveValue( 7 ), CONVERTER );
+        parent.performInsert( recorder.getConnection(), true );
+
+        String sql = parent.getSql();
+        assertEquals( 1, recorder.count( "addBatch " + sql ) );
+        assertEquals( 0, recorder.count( "execute " + sql ) );
+        assertEquals( 1, recorder.count( "set " + sql + " 1=7" ) );
+        // key value is available to child rows before the batch is executed
+        assertEquals( 7, parent.get( ID ) );
+
+        InsertRow child = new SimpleInsertRow( "child", batches );
+        link( parent, child );
+        assertEquals( 7, child.get( PARENT_ID ) );
+    }
+
+    @Test
+    public void testRowWithGeneratedKeyIsInsertedImmediately()
+                            throws Exception {
+        InsertRow parent = new SimpleInsertRow( "parent", batches, "id" );
+        parent.addPreparedArgument( ID, 1 );
+        parent.performInsert( recorder.getConnection(), true );
+
+        InsertRow child = new SimpleInsertRow( "child", batches, "id" );
+        child.addPreparedArgument( "name", "x" );
+        link( parent, child );
+        recorder.generatedKey = 42;
+        child.performInsert( recorder.getConnection(), true );
+
+        // the pending batch with the parent row is executed first
+        int parentInsert = recorder.events.indexOf( "executeBatch " + parent.getSql() );
+        int childInsert = recorder.events.indexOf( "execute " + child.getSql() );
+        assertTrue( parentInsert >= 0 && childInsert > parentInsert );
+        assertEquals( 0, recorder.count( "addBatch " + child.getSql() ) );
+        assertEquals( 42, child.get( ID ) );
+
+        InsertRow grandChild = new SimpleInsertRow( "grandchild", batches );
+        link( child, grandChild );
+        assertEquals( 42, grandChild.get( PARENT_ID ) );
+    }
+
+    @Test
+    public void testRowsWithoutBatchesAreInsertedImmediately()
+                            throws Exception {
+        InsertRow row = new SimpleInsertRow( "parent", null );
+        row.addPreparedArgument( ID, 1 );
+        row.performInsert( recorder.getConnection(), true );
+        assertEquals( 1, recorder.count( "execute " + row.getSql() ) );
+        assertEquals( 1, recorder.count( "close " + row.getSql() ) );
+    }
+
+}
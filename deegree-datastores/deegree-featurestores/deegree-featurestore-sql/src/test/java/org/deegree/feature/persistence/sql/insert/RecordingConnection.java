@@ -0,0 +1,159 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dynamic proxy {@link Connection} that records the calls on its prepared statements, e.g.
+ * <code>executeBatch INSERT INTO ...</code>.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class RecordingConnection implements InvocationHandler {
+
+    final List<String> events = new ArrayList<String>();
+
+    // returned as first column of generated keys
+    Object generatedKey;
+
+    Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                                                    this );
+    }
+
+    int count( String event ) {
+        return Collections.frequency( events, event );
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) {
+        if ( method.getName().equals( "prepareStatement" ) ) {
+            String sql = (String) args[0];
+            events.add( "prepare " + sql );
+            return createStatement( sql );
+        }
+        return getDefault( method.getReturnType() );
+    }
+
+    private PreparedStatement createStatement( final String sql ) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                String name = method.getName();
+                if ( name.equals( "setObject" ) ) {
+                    events.add( "set " + sql + " " + args[0] + "=" + args[1] );
+                } else if ( name.equals( "getGeneratedKeys" ) ) {
+                    return createGeneratedKeys();
+                } else if ( name.equals( "executeBatch" ) ) {
+                    events.add( name + " " + sql );
+                    return new int[0];
+                } else if ( name.equals( "addBatch" ) || name.equals( "execute" ) || name.equals( "close" ) ) {
+                    events.add( name + " " + sql );
+                }
+                return getDefault( method.getReturnType() );
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                           new Class<?>[] { PreparedStatement.class }, handler );
+    }
+
+    private ResultSet createGeneratedKeys() {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean read;
+
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                String name = method.getName();
+                if ( name.equals( "next" ) ) {
+                    boolean hasNext = !read;
+                    read = true;
+                    return hasNext;
+                } else if ( name.equals( "getObject" ) ) {
+                    return generatedKey;
+                }
+                return getDefault( method.getReturnType() );
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+                                                   handler );
+    }
+
+    private static Object getDefault( Class<?> type ) {
+        if ( type == Boolean.TYPE ) {
+            return false;
+        }
+        if ( type == Integer.TYPE ) {
+            return 0;
+        }
+        if ( type == Long.TYPE ) {
+            return 0L;
+        }
+        if ( type == Short.TYPE ) {
+            return (short) 0;
+        }
+        if ( type == Byte.TYPE ) {
+            return (byte) 0;
+        }
+        if ( type == Double.TYPE ) {
+            return 0.0;
+        }
+        if ( type == Float.TYPE ) {
+            return 0.0f;
+        }
+        if ( type == Character.TYPE ) {
+            return (char) 0;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,90 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+
+/**
+ * {@link InsertRow} for a single table that does not need an {@link InsertRowManager}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class SimpleInsertRow extends InsertRow {
+
+    private final InsertBatches batches;
+
+    private final Set<SQLIdentifier> autoGenColumns = new LinkedHashSet<SQLIdentifier>();
+
+    /**
+     * @param table
+     *            table to insert into, must not be <code>null</code>
+     * @param batches
+     *            batches to queue the row in, <code>null</code> if the row is inserted immediately
+     * @param autoGenColumns
+     *            columns whose values are generated on insert, if unknown
+     */
+    SimpleInsertRow( String table, InsertBatches batches, String... autoGenColumns ) {
+        super( null );
+        this.table = new TableName( table );
+        this.batches = batches;
+        for ( String column : autoGenColumns ) {
+            this.autoGenColumns.add( new SQLIdentifier( column ) );
+        }
+    }
+
+    @Override
+    InsertBatches getBatches() {
+        return batches;
+    }
+
+    @Override
+    protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
+        return autoGenColumns;
+    }
+
+}
@@ -0,0 +1,774 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.metadata.iso.persistence.memory;
+
+import static org.deegree.commons.tom.datetime.ISO8601Converter.parseDate;
+import static org.deegree.commons.xml.CommonNamespaces.OWS_NS;
+import static org.deegree.filter.MatchAction.ANY;
+import static org.deegree.filter.comparison.ComparisonOperator.SubType.PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO;
+import static org.deegree.filter.comparison.ComparisonOperator.SubType.PROPERTY_IS_LESS_THAN_OR_EQUAL_TO;
+import static org.deegree.protocol.csw.CSWConstants.APISO_NS;
+import static org.deegree.protocol.csw.CSWConstants.CSW_202_NS;
+import static org.deegree.protocol.csw.CSWConstants.DC_NS;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.index.RTree;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.datetime.Date;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Pair;
+import org.deegree.cs.CRSUtils;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.logical.Or;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
+import org.deegree.metadata.iso.ISORecord;
+import org.deegree.metadata.iso.ISORecordEvaluator;
+import org.deegree.metadata.iso.parsing.QueryableProperties;
+import org.deegree.metadata.iso.types.BoundingBox;
+import org.deegree.metadata.iso.types.Keyword;
+
+/**
+ * In-memory indexes over the queryable properties of the records of a {@link StoredISORecords} instance.
+ * <p>
+ * Records are addressed by their ordinal in the store. The text queryables (AnyText, Title, Abstract, Subject and
+ * Identifier) are kept in inverted token indexes, the date queryables in sorted indexes and the bounding boxes in an
+ * {@link RTree}. A filter is compiled into lookups on these indexes which yield a superset of the matching records;
+ * the filter itself still has to be evaluated on the candidates, so every operator that can not be answered from the
+ * indexes simply does not restrict the candidates.
+ * </p>
+ * <p>
+ * The value sources and the queryable names mirror the ones of the {@link ISORecordEvaluator}.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class ISORecordIndex {
+
+    private final List<TextIndex> textIndexes = new ArrayList<TextIndex>();
+
+    private final List<DateIndex> dateIndexes = new ArrayList<DateIndex>();
+
+    private final List<QName> bboxNames = names( "BoundingBox", "boundingBox" );
+
+    private final Map<Integer, float[]> ordinalToBBox = new HashMap<Integer, float[]>();
+
+    private RTree<Integer> bboxTree;
+
+    ISORecordIndex() {
+        bboxNames.add( new QName( OWS_NS, "BoundingBox" ) );
+        bboxNames.add( new QName( OWS_NS, "boundingBox" ) );
+        bboxNames.add( new QName( DC_NS, "coverage" ) );
+
+        textIndexes.add( new TextIndex( names( "AnyText", "anyText" ) ) {
+            @Override
+            String[] getValues( ISORecord record, QueryableProperties qp ) {
+                return new String[] { qp.getAnyText() };
+            }
+        } );
+        textIndexes.add( new TextIndex( names( "Title", "title" ) ) {
+            @Override
+            String[] getValues( ISORecord record, QueryableProperties qp ) {
+                return record.getTitle();
+            }
+        } );
+        textIndexes.add( new TextIndex( names( "Abstract", "abstract" ) ) {
+            @Override
+            String[] getValues( ISORecord record, QueryableProperties qp ) {
+                return record.getAbstract();
+            }
+        } );
+        textIndexes.add( new TextIndex( names( "Subject", "subject" ) ) {
+            @Override
+            String[] getValues( ISORecord record, QueryableProperties qp ) {
+                List<String> values = new ArrayList<String>();
+                if ( qp.getKeywords() != null ) {
+                    for ( Keyword keyword : qp.getKeywords() ) {
+                        values.addAll( keyword.getKeywords() );
+                    }
+                }
+                return values.toArray( new String[values.size()] );
+            }
+        } );
+        textIndexes.add( new TextIndex( names( "Identifier", "identifier" ) ) {
+            @Override
+            String[] getValues( ISORecord record, QueryableProperties qp ) {
+                return new String[] { qp.getIdentifier() };
+            }
+        } );
+
+        dateIndexes.add( new DateIndex( names( "Modified", "modified" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getModified();
+            }
+        } );
+        dateIndexes.add( new DateIndex( apiso( "RevisionDate" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getRevisionDate();
+            }
+        } );
+        dateIndexes.add( new DateIndex( apiso( "CreationDate" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getCreationDate();
+            }
+        } );
+        dateIndexes.add( new DateIndex( apiso( "PublicationDate" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getPublicationDate();
+            }
+        } );
+        dateIndexes.add( new DateIndex( apiso( "TempExtent_begin" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getTemporalExtentBegin();
+            }
+        } );
+        dateIndexes.add( new DateIndex( apiso( "TempExtent_end" ) ) {
+            @Override
+            Date getValue( QueryableProperties qp ) {
+                return qp.getTemporalExtentEnd();
+            }
+        } );
+    }
+
+    /**
+     * Adds the record with the given ordinal to the indexes. All values are extracted before the indexes are touched,
+     * so a record that can not be parsed leaves the indexes unchanged.
+     * 
+     * @param ordinal
+     *            ordinal of the record in the store
+     * @param record
+     *            never <code>null</code>
+     */
+    void add( int ordinal, ISORecord record ) {
+        QueryableProperties qp = record.getParsedElement().getQueryableProperties();
+        List<List<String>> tokens = new ArrayList<List<String>>( textIndexes.size() );
+        for ( TextIndex index : textIndexes ) {
+            tokens.add( tokenize( index.getValues( record, qp ) ) );
+        }
+        List<Long> dates = new ArrayList<Long>( dateIndexes.size() );
+        for ( DateIndex index : dateIndexes ) {
+            Date date = index.getValue( qp );
+            dates.add( date == null ? null : date.getTimeInMilliseconds() );
+        }
+        float[] bbox = toFloats( qp.getBoundingBox() );
+
+        for ( int i = 0; i < textIndexes.size(); ++i ) {
+            for ( String token : tokens.get( i ) ) {
+                set( textIndexes.get( i ).postings, token, ordinal );
+            }
+        }
+        for ( int i = 0; i < dateIndexes.size(); ++i ) {
+            if ( dates.get( i ) != null ) {
+                set( dateIndexes.get( i ).postings, dates.get( i ), ordinal );
+            }
+        }
+        if ( bbox != null ) {
+            synchronized ( ordinalToBBox ) {
+                ordinalToBBox.put( ordinal, bbox );
+                bboxTree = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the record with the given ordinal from the indexes.
+     * 
+     * @param ordinal
+     *            ordinal of the record in the store
+     * @param record
+     *            the record that was added with this ordinal, never <code>null</code>
+     */
+    void remove( int ordinal, ISORecord record ) {
+        QueryableProperties qp = record.getParsedElement().getQueryableProperties();
+        for ( TextIndex index : textIndexes ) {
+            for ( String token : tokenize( index.getValues( record, qp ) ) ) {
+                clear( index.postings, token, ordinal );
+            }
+        }
+        for ( DateIndex index : dateIndexes ) {
+            Date date = index.getValue( qp );
+            if ( date != null ) {
+                clear( index.postings, date.getTimeInMilliseconds(), ordinal );
+            }
+        }
+        synchronized ( ordinalToBBox ) {
+            if ( ordinalToBBox.remove( ordinal ) != null ) {
+                bboxTree = null;
+            }
+        }
+    }
+
+    /**
+     * Removes all records from the indexes.
+     */
+    void clear() {
+        for ( TextIndex index : textIndexes ) {
+            index.postings.clear();
+        }
+        for ( DateIndex index : dateIndexes ) {
+            index.postings.clear();
+        }
+        synchronized ( ordinalToBBox ) {
+            ordinalToBBox.clear();
+            bboxTree = null;
+        }
+    }
+
+    /**
+     * Determines the records that may match the given filter.
+     * 
+     * @param filter
+     *            may be <code>null</code>
+     * @return the ordinals of all records that may match the filter (a superset of the matching records), or
+     *         <code>null</code>, if the filter could not be answered from the indexes and every record has to be
+     *         evaluated
+     */
+    BitSet getCandidates( Filter filter ) {
+        if ( filter instanceof OperatorFilter ) {
+            return getCandidates( ( (OperatorFilter) filter ).getOperator() );
+        }
+        return null;
+    }
+
+    private BitSet getCandidates( Operator operator ) {
+        if ( operator instanceof And ) {
+            BitSet result = null;
+            for ( Operator param : ( (LogicalOperator) operator ).getParams() ) {
+                BitSet candidates = getCandidates( param );
+                if ( candidates != null ) {
+                    if ( result == null ) {
+                        result = candidates;
+                    } else {
+                        result.and( candidates );
+                    }
+                }
+            }
+            return result;
+        }
+        if ( operator instanceof Or ) {
+            BitSet result = new BitSet();
+            for ( Operator param : ( (LogicalOperator) operator ).getParams() ) {
+                BitSet candidates = getCandidates( param );
+                if ( candidates == null ) {
+                    return null;
+                }
+                result.or( candidates );
+            }
+            return result;
+        }
+        if ( operator instanceof PropertyIsLike ) {
+            return getCandidates( (PropertyIsLike) operator );
+        }
+        if ( operator instanceof PropertyIsBetween ) {
+            return getCandidates( (PropertyIsBetween) operator );
+        }
+        if ( operator instanceof BinaryComparisonOperator ) {
+            return getCandidates( (BinaryComparisonOperator) operator );
+        }
+        if ( operator instanceof BBOX ) {
+            return getCandidates( (BBOX) operator );
+        }
+        return null;
+    }
+
+    private BitSet getCandidates( PropertyIsLike operator ) {
+        TextIndex index = findTextIndex( operator.getExpression() );
+        String pattern = getLiteralText( operator.getPattern() );
+        String wildCard = operator.getWildCard();
+        String singleChar = operator.getSingleChar();
+        String escapeChar = operator.getEscapeChar();
+        if ( index == null || pattern == null || wildCard.length() != 1 || singleChar.length() != 1
+             || escapeChar.length() != 1 || pattern.indexOf( escapeChar ) != -1 ) {
+            return null;
+        }
+
+        BitSet result = null;
+        int start = 0;
+        while ( start <= pattern.length() ) {
+            int end = start;
+            while ( end < pattern.length() && pattern.charAt( end ) != wildCard.charAt( 0 )
+                    && pattern.charAt( end ) != singleChar.charAt( 0 ) ) {
+                ++end;
+            }
+            // a fragment only touches the value boundaries where it touches the pattern boundaries
+            String fragment = normalize( pattern.substring( start, end ) );
+            boolean atStart = start == 0;
+            boolean atEnd = end == pattern.length();
+            int i = 0;
+            while ( i < fragment.length() ) {
+                if ( !Character.isLetterOrDigit( fragment.charAt( i ) ) ) {
+                    ++i;
+                    continue;
+                }
+                int j = i;
+                while ( j < fragment.length() && Character.isLetterOrDigit( fragment.charAt( j ) ) ) {
+                    ++j;
+                }
+                boolean leftBounded = i > 0 || atStart;
+                boolean rightBounded = j < fragment.length() || atEnd;
+                BitSet candidates = index.lookup( fragment.substring( i, j ), leftBounded, rightBounded );
+                if ( result == null ) {
+                    result = candidates;
+                } else {
+                    result.and( candidates );
+                }
+                i = j;
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    private BitSet getCandidates( BinaryComparisonOperator operator ) {
+        if ( !isAnyMatch( operator ) ) {
+            return null;
+        }
+        Expression param1 = operator.getParameter1();
+        Expression param2 = operator.getParameter2();
+        boolean swapped = !( param1 instanceof ValueReference );
+        Expression property = swapped ? param2 : param1;
+        Expression literal = swapped ? param1 : param2;
+
+        switch ( operator.getSubType() ) {
+        case PROPERTY_IS_EQUAL_TO: {
+            TextIndex textIndex = findTextIndex( property );
+            if ( textIndex != null ) {
+                String text = getLiteralText( literal );
+                List<String> tokens = text == null ? null : tokenize( new String[] { text } );
+                if ( tokens == null || tokens.isEmpty() ) {
+                    return null;
+                }
+                BitSet result = null;
+                for ( String token : tokens ) {
+                    BitSet candidates = textIndex.lookup( token, true, true );
+                    if ( result == null ) {
+                        result = candidates;
+                    } else {
+                        result.and( candidates );
+                    }
+                }
+                return result;
+            }
+            if ( Boolean.FALSE.equals( operator.isMatchCase() ) ) {
+                // compares the string representations instead of the points in time
+                return null;
+            }
+            return getDateCandidates( property, literal, true, literal, true );
+        }
+        case PROPERTY_IS_GREATER_THAN:
+        case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO: {
+            boolean inclusive = operator.getSubType() == PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO;
+            if ( swapped ) {
+                return getDateCandidates( property, null, false, literal, inclusive );
+            }
+            return getDateCandidates( property, literal, inclusive, null, false );
+        }
+        case PROPERTY_IS_LESS_THAN:
+        case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO: {
+            boolean inclusive = operator.getSubType() == PROPERTY_IS_LESS_THAN_OR_EQUAL_TO;
+            if ( swapped ) {
+                return getDateCandidates( property, literal, inclusive, null, false );
+            }
+            return getDateCandidates( property, null, false, literal, inclusive );
+        }
+        default:
+            return null;
+        }
+    }
+
+    private BitSet getCandidates( PropertyIsBetween operator ) {
+        if ( !isAnyMatch( operator ) ) {
+            return null;
+        }
+        return getDateCandidates( operator.getExpression(), operator.getLowerBoundary(), true,
+                                  operator.getUpperBoundary(), true );
+    }
+
+    private BitSet getDateCandidates( Expression property, Expression lower, boolean lowerInclusive,
+                                      Expression upper, boolean upperInclusive ) {
+        DateIndex index = findDateIndex( property );
+        if ( index == null ) {
+            return null;
+        }
+        Long from = lower == null ? null : getLiteralTime( lower );
+        Long to = upper == null ? null : getLiteralTime( upper );
+        if ( ( lower != null && from == null ) || ( upper != null && to == null ) ) {
+            return null;
+        }
+        SortedMap<Long, BitSet> range = index.postings;
+        if ( from != null ) {
+            if ( !lowerInclusive && from == Long.MAX_VALUE ) {
+                return new BitSet();
+            }
+            range = range.tailMap( lowerInclusive ? from : from + 1 );
+        }
+        if ( to != null && !( upperInclusive && to == Long.MAX_VALUE ) ) {
+            long toKey = upperInclusive ? to + 1 : to;
+            if ( from != null && toKey <= ( lowerInclusive ? from : from + 1 ) ) {
+                return new BitSet();
+            }
+            range = range.headMap( toKey );
+        }
+        return union( range.values() );
+    }
+
+    private BitSet getCandidates( BBOX operator ) {
+        if ( !( operator.getParam1() instanceof ValueReference )
+             || !bboxNames.contains( ( (ValueReference) operator.getParam1() ).getAsQName() ) ) {
+            return null;
+        }
+        Envelope env = operator.getBoundingBox();
+        ICRS crs = env.getCoordinateSystem();
+        if ( crs != null && !CRSUtils.EPSG_4326.equals( crs ) ) {
+            // the envelope would be transformed during evaluation
+            return null;
+        }
+        float[] queryBox = toFloats( env.getMin().get0(), env.getMin().get1(), env.getMax().get0(),
+                                     env.getMax().get1() );
+        BitSet result = new BitSet();
+        synchronized ( ordinalToBBox ) {
+            if ( ordinalToBBox.isEmpty() ) {
+                return result;
+            }
+            if ( bboxTree == null ) {
+                bboxTree = buildTree();
+            }
+            for ( Integer ordinal : bboxTree.query( queryBox ) ) {
+                result.set( ordinal );
+            }
+        }
+        return result;
+    }
+
+    private RTree<Integer> buildTree() {
+        float[] extent = null;
+        List<Pair<float[], Integer>> entries = new ArrayList<Pair<float[], Integer>>( ordinalToBBox.size() );
+        for ( Entry<Integer, float[]> entry : ordinalToBBox.entrySet() ) {
+            float[] bbox = entry.getValue();
+            if ( extent == null ) {
+                extent = bbox.clone();
+            } else {
+                extent[0] = Math.min( extent[0], bbox[0] );
+                extent[1] = Math.min( extent[1], bbox[1] );
+                extent[2] = Math.max( extent[2], bbox[2] );
+                extent[3] = Math.max( extent[3], bbox[3] );
+            }
+            entries.add( new Pair<float[], Integer>( bbox, entry.getKey() ) );
+        }
+        RTree<Integer> tree = new RTree<Integer>( extent, 16 );
+        tree.insertBulk( entries );
+        return tree;
+    }
+
+    private boolean isAnyMatch( ComparisonOperator operator ) {
+        return operator.getMatchAction() == null || operator.getMatchAction() == ANY;
+    }
+
+    private TextIndex findTextIndex( Expression expr ) {
+        if ( expr instanceof ValueReference ) {
+            QName name = ( (ValueReference) expr ).getAsQName();
+            for ( TextIndex index : textIndexes ) {
+                if ( index.names.contains( name ) ) {
+                    return index;
+                }
+            }
+        }
+        return null;
+    }
+
+    private DateIndex findDateIndex( Expression expr ) {
+        if ( expr instanceof ValueReference ) {
+            QName name = ( (ValueReference) expr ).getAsQName();
+            for ( DateIndex index : dateIndexes ) {
+                if ( index.names.contains( name ) ) {
+                    return index;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object getLiteralValue( Expression expr ) {
+        if ( expr instanceof Literal<?> ) {
+            TypedObjectNode value = ( (Literal<?>) expr ).getValue();
+            if ( value instanceof PrimitiveValue ) {
+                return ( (PrimitiveValue) value ).getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Only string literals are compared as text, other literals make the comparison convert the value.
+     */
+    private static String getLiteralText( Expression expr ) {
+        Object value = getLiteralValue( expr );
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Parses the literal the same way the comparison of a date value against it does.
+     */
+    private static Long getLiteralTime( Expression expr ) {
+        Object value = getLiteralValue( expr );
+        if ( value == null ) {
+            return null;
+        }
+        try {
+            return parseDate( value.toString() ).getTimeInMilliseconds();
+        } catch ( Exception e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits the normalized values into runs of letters and digits.
+     */
+    static List<String> tokenize( String[] values ) {
+        List<String> tokens = new ArrayList<String>();
+        if ( values == null ) {
+            return tokens;
+        }
+        for ( String value : values ) {
+            if ( value == null ) {
+                continue;
+            }
+            String text = normalize( value );
+            int i = 0;
+            while ( i < text.length() ) {
+                if ( !Character.isLetterOrDigit( text.charAt( i ) ) ) {
+                    ++i;
+                    continue;
+                }
+                int j = i;
+                while ( j < text.length() && Character.isLetterOrDigit( text.charAt( j ) ) ) {
+                    ++j;
+                }
+                tokens.add( text.substring( i, j ) );
+                i = j;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Lower cases the text like {@link PropertyIsLike} does and folds the remaining case variants per character like
+     * {@link String#equalsIgnoreCase(String)} does, so that every case (in)sensitive match is also a match of the
+     * normalized strings.
+     */
+    static String normalize( String text ) {
+        char[] chars = text.toLowerCase().toCharArray();
+        for ( int i = 0; i < chars.length; ++i ) {
+            chars[i] = Character.toLowerCase( Character.toUpperCase( chars[i] ) );
+        }
+        return new String( chars );
+    }
+
+    private static float[] toFloats( List<BoundingBox> bboxes ) {
+        if ( bboxes == null || bboxes.isEmpty() ) {
+            return null;
+        }
+        double west = bboxes.get( 0 ).getWestBoundLongitude();
+        double east = bboxes.get( 0 ).getEastBoundLongitude();
+        double south = bboxes.get( 0 ).getSouthBoundLatitude();
+        double north = bboxes.get( 0 ).getNorthBoundLatitude();
+        for ( BoundingBox b : bboxes ) {
+            west = Math.min( west, b.getWestBoundLongitude() );
+            east = Math.max( east, b.getEastBoundLongitude() );
+            south = Math.min( south, b.getSouthBoundLatitude() );
+            north = Math.max( north, b.getNorthBoundLatitude() );
+        }
+        return toFloats( west, south, east, north );
+    }
+
+    /**
+     * Rounds the box outwards, so that no intersection gets lost in float precision.
+     */
+    private static float[] toFloats( double minX, double minY, double maxX, double maxY ) {
+        return new float[] { floor( minX ), floor( minY ), ceil( maxX ), ceil( maxY ) };
+    }
+
+    private static float floor( double d ) {
+        float f = (float) d;
+        return f > d ? Math.nextAfter( f, Double.NEGATIVE_INFINITY ) : f;
+    }
+
+    private static float ceil( double d ) {
+        float f = (float) d;
+        return f < d ? Math.nextUp( f ) : f;
+    }
+
+    private static <K> void set( Map<K, BitSet> postings, K key, int ordinal ) {
+        BitSet bits = postings.get( key );
+        if ( bits == null ) {
+            bits = new BitSet();
+            postings.put( key, bits );
+        }
+        bits.set( ordinal );
+    }
+
+    private static <K> void clear( Map<K, BitSet> postings, K key, int ordinal ) {
+        BitSet bits = postings.get( key );
+        if ( bits != null ) {
+            bits.clear( ordinal );
+            if ( bits.isEmpty() ) {
+                postings.remove( key );
+            }
+        }
+    }
+
+    private static BitSet union( Iterable<BitSet> postings ) {
+        BitSet result = new BitSet();
+        for ( BitSet bits : postings ) {
+            result.or( bits );
+        }
+        return result;
+    }
+
+    private static List<QName> names( String... localNames ) {
+        List<QName> names = new ArrayList<QName>();
+        for ( String localName : localNames ) {
+            names.add( new QName( APISO_NS, localName ) );
+        }
+        String localName = localNames[0];
+        names.add( new QName( DC_NS, localName ) );
+        names.add( new QName( localName ) );
+        names.add( new QName( CSW_202_NS, localName ) );
+        return names;
+    }
+
+    private static List<QName> apiso( String localName ) {
+        List<QName> names = new ArrayList<QName>();
+        names.add( new QName( APISO_NS, localName ) );
+        return names;
+    }
+
+    /**
+     * Inverted index from normalized tokens to the records containing them.
+     */
+    private abstract static class TextIndex {
+
+        final List<QName> names;
+
+        final TreeMap<String, BitSet> postings = new TreeMap<String, BitSet>();
+
+        TextIndex( List<QName> names ) {
+            this.names = names;
+        }
+
+        abstract String[] getValues( ISORecord record, QueryableProperties qp );
+
+        /**
+         * @return the records containing a token that contains the given token (starting/ending with it, if it is
+         *         bounded on that side), never <code>null</code>
+         */
+        BitSet lookup( String token, boolean leftBounded, boolean rightBounded ) {
+            if ( leftBounded && rightBounded ) {
+                BitSet bits = postings.get( token );
+                return bits == null ? new BitSet() : (BitSet) bits.clone();
+            }
+            List<BitSet> matches = new ArrayList<BitSet>();
+            if ( leftBounded ) {
+                for ( Entry<String, BitSet> entry : postings.tailMap( token ).entrySet() ) {
+                    if ( !entry.getKey().startsWith( token ) ) {
+                        break;
+                    }
+                    matches.add( entry.getValue() );
+                }
+            } else {
+                for ( Entry<String, BitSet> entry : postings.entrySet() ) {
+                    String key = entry.getKey();
+                    if ( rightBounded ? key.endsWith( token ) : key.contains( token ) ) {
+                        matches.add( entry.getValue() );
+                    }
+                }
+            }
+            return union( matches );
+        }
+    }
+
+    /**
+     * Sorted index from points in time (in milliseconds) to the records having them.
+     */
+    private abstract static class DateIndex {
+
+        final List<QName> names;
+
+        final TreeMap<Long, BitSet> postings = new TreeMap<Long, BitSet>();
+
+        DateIndex( List<QName> names ) {
+            this.names = names;
+        }
+
+        abstract Date getValue( QueryableProperties qp );
+    }
+
+}
@@ -40,8 +40,11 @@ import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.axiom.om.OMElement;
 import org.deegree.commons.xml.XMLAdapter;
@@ -71,6 +74,13 @@ public class StoredISORecords {
 
     private final LinkedHashMap<String, ISORecord> identifierToRecord = new LinkedHashMap<String, ISORecord>();
 
+    // ordinals ascend in the iteration order of identifierToRecord, deleted records leave a null slot
+    private final List<ISORecord> ordinalToRecord = new ArrayList<ISORecord>();
+
+    private final Map<String, Integer> identifierToOrdinal = new HashMap<String, Integer>();
+
+    private final ISORecordIndex index = new ISORecordIndex();
+
     /**
      * Creates an empty store.
      */
@@ -126,13 +136,35 @@ public class StoredISORecords {
      */
     public boolean deleteRecord( String identifier ) {
         if ( identifierToRecord.containsKey( identifier ) ) {
-            identifierToRecord.remove( identifier );
+            ISORecord record = identifierToRecord.remove( identifier );
             identifierToFile.remove( identifier );
+            int ordinal = identifierToOrdinal.remove( identifier );
+            ordinalToRecord.set( ordinal, null );
+            index.remove( ordinal, record );
+            if ( ordinalToRecord.size() > 1024 && ordinalToRecord.size() > 2 * identifierToRecord.size() ) {
+                reindex();
+            }
             return true;
         }
         return false;
     }
 
+    /**
+     * Assigns new ordinals without gaps and rebuilds the index.
+     */
+    private void reindex() {
+        LOG.debug( "Rebuilding index of {} records.", identifierToRecord.size() );
+        ordinalToRecord.clear();
+        identifierToOrdinal.clear();
+        index.clear();
+        for ( ISORecord record : identifierToRecord.values() ) {
+            int ordinal = ordinalToRecord.size();
+            ordinalToRecord.add( record );
+            identifierToOrdinal.put( record.getIdentifier(), ordinal );
+            index.add( ordinal, record );
+        }
+    }
+
     private void loadRecord( File recordFile ) throws IOException {
         FileInputStream recordStream = new FileInputStream( recordFile );
         OMElement document = new XMLAdapter( recordStream ).getRootElement();
@@ -154,9 +186,25 @@ public class StoredISORecords {
                 LOG.debug( "Ignore record {}, fileIdentifier is null.", file != null ? file.getName() : "" );
                 return null;
             }
-            if ( identifierToRecord.containsKey( identifier ) ) {
+            Integer ordinal = identifierToOrdinal.get( identifier );
+            if ( ordinal != null ) {
                 LOG.debug( "Overwrite record with fileIdentifier {}.", identifier );
+                // the record keeps its position (and ordinal), as in the map
+                ISORecord replaced = ordinalToRecord.get( ordinal );
+                index.remove( ordinal, replaced );
+                try {
+                    index.add( ordinal, record );
+                } catch ( RuntimeException e ) {
+                    index.add( ordinal, replaced );
+                    throw e;
+                }
+            } else {
+                ordinal = ordinalToRecord.size();
+                index.add( ordinal, record );
+                ordinalToRecord.add( null );
+                identifierToOrdinal.put( identifier, ordinal );
             }
+            ordinalToRecord.set( ordinal, record );
             identifierToRecord.put( identifier, record );
             identifierToFile.put( identifier, file );
             return identifier;
@@ -210,7 +258,7 @@ public class StoredISORecords {
         }
         List<ISORecord> result = new ArrayList<ISORecord>( maxRecords );
         int matched = 1;
-        for ( ISORecord record : identifierToRecord.values() ) {
+        for ( ISORecord record : getCandidates( filter ) ) {
             if ( record.eval( filter ) ) {
                 if ( matched >= startPosition ) {
                     result.add( record );
@@ -224,6 +272,26 @@ public class StoredISORecords {
         return result;
     }
 
+    /**
+     * @return the records that may match the filter (as determined by the index), in storage order
+     */
+    private Iterable<ISORecord> getCandidates( Filter filter ) {
+        BitSet candidates = index.getCandidates( filter );
+        if ( candidates == null ) {
+            return identifierToRecord.values();
+        }
+        LOG.debug( "Evaluating filter on {} of {} records.", candidates.cardinality(), identifierToRecord.size() );
+        List<ISORecord> records = new ArrayList<ISORecord>( candidates.cardinality() );
+        int numOrdinals = ordinalToRecord.size();
+        for ( int i = candidates.nextSetBit( 0 ); i >= 0 && i < numOrdinals; i = candidates.nextSetBit( i + 1 ) ) {
+            ISORecord record = ordinalToRecord.get( i );
+            if ( record != null ) {
+                records.add( record );
+            }
+        }
+        return records;
+    }
+
     private List<ISORecord> applyNullFilter( int startPosition, int maxRecords ) {
         List<ISORecord> result = new ArrayList<ISORecord>( maxRecords );
         int index = 1;
@@ -262,7 +330,7 @@ public class StoredISORecords {
         if ( filter == null ) {
             result.addAll( identifierToRecord.values() );
         } else {
-            for ( ISORecord record : identifierToRecord.values() ) {
+            for ( ISORecord record : getCandidates( filter ) ) {
                 if ( record.eval( filter ) ) {
                     result.add( record );
                 }
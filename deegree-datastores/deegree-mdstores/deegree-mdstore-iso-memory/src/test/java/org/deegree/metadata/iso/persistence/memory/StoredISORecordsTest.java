@@ -54,6 +54,7 @@ import org.deegree.filter.Operator;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.comparison.PropertyIsBetween;
 import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsLike;
 import org.deegree.filter.expression.Literal;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.logical.Or;
@@ -300,6 +301,68 @@ public class StoredISORecordsTest {
         assertEquals( 4, allRecords.getRemaining() );
     }
 
+    @Test
+    public void testGetRecordsWithLikeFilterForTitle()
+                            throws Exception {
+        StoredISORecords storedIsoRecords = getStoredIsoRecords();
+        Operator operator = new PropertyIsLike( new ValueReference( "apiso:Title", nsContext ),
+                                                new Literal<PrimitiveValue>( "*kon*RAW 2006*" ), "*", "?", "\\", false,
+                                                null );
+        Filter filter = new OperatorFilter( operator );
+        MetadataQuery query = new MetadataQuery( null, null, filter, null, 1, 100 );
+        assertEquals( 3, storedIsoRecords.getRecords( query ).getRemaining() );
+        assertEquals( countMatches( filter ), storedIsoRecords.getRecords( filter ).size() );
+    }
+
+    @Test
+    public void testGetRecordsWithLikeFilterForTitleAfterDelete()
+                            throws Exception {
+        StoredISORecords storedIsoRecords = getStoredIsoRecords();
+        Operator operator = new PropertyIsLike( new ValueReference( "apiso:Title", nsContext ),
+                                                new Literal<PrimitiveValue>( "SPOT?2*" ), "*", "?", "\\", true, null );
+        Filter filter = new OperatorFilter( operator );
+        assertEquals( 1, storedIsoRecords.getRecords( filter ).size() );
+
+        storedIsoRecords.deleteRecord( "f90258d9a412aa5f3ba679b4997bb176" );
+        assertEquals( 0, storedIsoRecords.getRecords( filter ).size() );
+
+        storedIsoRecords.insertRecord( getRecord( "2.xml" ), null );
+        assertEquals( 1, storedIsoRecords.getRecords( filter ).size() );
+    }
+
+    @Test
+    public void testGetRecordsWithIndexedFiltersMatchesFullScan()
+                            throws Exception {
+        StoredISORecords storedIsoRecords = getStoredIsoRecords();
+        GeometryFactory geomFactory = new GeometryFactory();
+        List<Operator> operators = new ArrayList<Operator>();
+        operators.add( new PropertyIsEqualTo( new ValueReference( "apiso:Identifier", nsContext ),
+                                              new Literal<PrimitiveValue>( "33AFF99D54C5D6B4D248C882C72E657D" ),
+                                              false, null ) );
+        operators.add( new PropertyIsLike( new ValueReference( "apiso:AnyText", nsContext ),
+                                           new Literal<PrimitiveValue>( "*ikonos*" ), "*", "?", "\\", false, null ) );
+        operators.add( new PropertyIsBetween( new ValueReference( "apiso:CreationDate", nsContext ),
+                                              new Literal<PrimitiveValue>( "2006-06-14" ),
+                                              new Literal<PrimitiveValue>( "2006-06-16" ), true, null ) );
+        operators.add( new BBOX( new ValueReference( "apiso:BoundingBox", nsContext ),
+                                 geomFactory.createEnvelope( 10, 45.22, 11., 45.5, CRSUtils.EPSG_4326 ) ) );
+        for ( Operator operator : operators ) {
+            Filter filter = new OperatorFilter( operator );
+            assertEquals( countMatches( filter ), storedIsoRecords.getRecords( filter ).size() );
+        }
+    }
+
+    private int countMatches( Filter filter )
+                            throws Exception {
+        int matches = 0;
+        for ( ISORecord record : GetTestRecordsUtils.getAllRecords() ) {
+            if ( record.eval( filter ) ) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetRecordsWithNullQuery()
                             throws Exception {
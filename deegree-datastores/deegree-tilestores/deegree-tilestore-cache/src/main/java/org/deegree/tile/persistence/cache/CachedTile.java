@@ -47,6 +47,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.CRC32;
 
 import javax.imageio.ImageIO;
 
@@ -56,7 +57,9 @@ import net.sf.ehcache.Element;
 import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.CachingTile;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 import org.slf4j.Logger;
 
@@ -69,7 +72,7 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class CachedTile implements Tile {
+public class CachedTile implements CachingTile {
 
     private static final Logger LOG = getLogger( CachedTile.class );
 
@@ -81,6 +84,8 @@ public class CachedTile implements Tile {
 
     private byte[] data;
 
+    private boolean cacheHit;
+
     public CachedTile( Tile tile, Cache cache, String key ) {
         this.tile = tile;
         this.cache = cache;
@@ -104,6 +109,20 @@ public class CachedTile implements Tile {
         return new ByteArrayInputStream( getData() );
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        byte[] bytes = getData();
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        String hash = Long.toHexString( crc.getValue() ) + "-" + Integer.toHexString( bytes.length );
+        return new TileCacheInfo( -1, hash, bytes.length, null );
+    }
+
+    @Override
+    public synchronized boolean isCacheHit() {
+        return cacheHit;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return tile.getEnvelope();
@@ -133,6 +152,7 @@ public class CachedTile implements Tile {
                 }
             } else {
                 data = (byte[]) elem.getValue();
+                cacheHit = true;
             }
         }
         return data;
@@ -49,6 +49,7 @@ import javax.imageio.ImageIO;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -102,6 +103,19 @@ class FileSystemTile implements Tile {
         }
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo()
+                            throws TileIOException {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            throw new TileIOException( "Tile file '" + file + "' does not exist." );
+        }
+        long length = file.length();
+        // derived from modification time and size (like common web servers do), hashing the file would be too costly
+        String hash = Long.toHexString( lastModified ) + "-" + Long.toHexString( length );
+        return new TileCacheInfo( lastModified, hash, length, file );
+    }
+
     @Override
     public Envelope getEnvelope() {
         return bbox;
@@ -0,0 +1,110 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.deegree.tile.TileCacheInfo;
+import org.deegree.tile.TileIOException;
+import org.junit.Test;
+
+/**
+ * Tests the cache information of {@link FileSystemTile}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class FileSystemTileTest {
+
+    @Test
+    public void testCacheInfo()
+                            throws IOException {
+        File file = createTile( 10 );
+        TileCacheInfo info = new FileSystemTile( null, file ).getCacheInfo();
+        assertEquals( 10, info.getLength() );
+        assertEquals( file.lastModified(), info.getLastModified() );
+        assertEquals( file, info.getFile() );
+        assertNotNull( info.getContentHash() );
+    }
+
+    @Test
+    public void testContentHashChangesWithFile()
+                            throws IOException {
+        File file = createTile( 10 );
+        String hash = new FileSystemTile( null, file ).getCacheInfo().getContentHash();
+        FileOutputStream out = new FileOutputStream( file, true );
+        try {
+            out.write( 1 );
+        } finally {
+            out.close();
+        }
+        assertFalse( hash.equals( new FileSystemTile( null, file ).getCacheInfo().getContentHash() ) );
+    }
+
+    @Test(expected = TileIOException.class)
+    public void testCacheInfoOfMissingFile()
+                            throws IOException {
+        File file = createTile( 10 );
+        file.delete();
+        new FileSystemTile( null, file ).getCacheInfo();
+    }
+
+    private File createTile( int length )
+                            throws IOException {
+        File file = File.createTempFile( "tile", ".png" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( new byte[length] );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+}
@@ -40,6 +40,7 @@ import org.deegree.commons.gdal.GdalDatasetPool;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -136,6 +137,12 @@ class GdalTile implements Tile {
         return new ByteArrayInputStream( bos.toByteArray() );
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        // tiles are read and encoded on the fly
+        return null;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return tileEnvelope;
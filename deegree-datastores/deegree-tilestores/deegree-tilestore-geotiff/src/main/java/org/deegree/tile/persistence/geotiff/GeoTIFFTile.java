@@ -55,11 +55,16 @@ import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 
 /**
  * A {@link Tile} that is read from a GeoTIFF/BigTIFF file, through ImageIO/imageio-ext. Uses an object pool to cache
  * readers (they take a long time to startup). </p>
+ * <p>
+ * If a {@link GeoTiffTileIndex} is available, JPEG compressed tiles are streamed as they are stored in the file,
+ * without decoding and re-encoding them.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -78,9 +83,17 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
+    private final GeoTiffTileIndex tileIndex;
+
     public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
                         int sizeY ) {
+        this( readerPool, null, imageIndex, x, y, envelope, sizeX, sizeY );
+    }
+
+    GeoTIFFTile( GenericObjectPool readerPool, GeoTiffTileIndex tileIndex, int imageIndex, int x, int y,
+                 Envelope envelope, int sizeX, int sizeY ) {
         this.readerPool = readerPool;
+        this.tileIndex = tileIndex;
         this.imageIndex = imageIndex;
         this.x = x;
         this.y = y;
@@ -127,6 +140,12 @@ public class GeoTIFFTile implements Tile {
     @Override
     public InputStream getAsStream()
                             throws TileIOException {
+        if ( tileIndex != null ) {
+            byte[] jpeg = tileIndex.getJpegTile( imageIndex, x, y, sizeX, sizeY );
+            if ( jpeg != null ) {
+                return new ByteArrayInputStream( jpeg );
+            }
+        }
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
             ImageIO.write( getAsImage(), "png", bos );
@@ -136,6 +155,12 @@ public class GeoTIFFTile implements Tile {
         return new ByteArrayInputStream( bos.toByteArray() );
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        // tiles are read from the GeoTIFF upon each request
+        return null;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return envelope;
@@ -69,10 +69,18 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private GenericObjectPool readerPool;
 
+    private final GeoTiffTileIndex tileIndex;
+
     private final int xoff, yoff, numx, numy;
 
     public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
+        this( metadata, file, null, imageIndex, xoff, yoff, numx, numy );
+    }
+
+    GeoTIFFTileDataLevel( TileMatrix metadata, File file, GeoTiffTileIndex tileIndex, int imageIndex, int xoff,
+                          int yoff, int numx, int numy ) {
         this.metadata = metadata;
+        this.tileIndex = tileIndex;
         this.imageIndex = imageIndex;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
@@ -108,8 +116,8 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
-        return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+        return new GeoTIFFTile( readerPool, tileIndex, imageIndex, (int) x, (int) y, envelope,
+                                (int) metadata.getTilePixelsX(), (int) metadata.getTilePixelsY() );
     }
 
     @Override
@@ -41,7 +41,10 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -56,6 +59,7 @@ import org.deegree.tile.persistence.geotiff.jaxb.GeoTIFFTileStoreJAXB;
 import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
 import org.deegree.workspace.ResourceLocation;
 import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
 
 /**
  * Builds tile data sets from jaxb config beans.
@@ -67,6 +71,8 @@ import org.deegree.workspace.Workspace;
  */
 class GeoTiffTileDataSetBuilder {
 
+    private static final Logger LOG = getLogger( GeoTiffTileDataSetBuilder.class );
+
     private Workspace workspace;
 
     GeoTiffTileDataSetBuilder( Workspace workspace ) {
@@ -83,6 +89,17 @@ class GeoTiffTileDataSetBuilder {
 
         TileMatrixSet tms = workspace.getResource( TileMatrixSetProvider.class, tmsId );
 
+        // JPEG compressed tiles can be handed out without decoding them
+        GeoTiffTileIndex tileIndex = null;
+        if ( "image/jpeg".equals( format ) ) {
+            try {
+                tileIndex = GeoTiffTileIndex.open( file );
+            } catch ( IOException e ) {
+                LOG.warn( "Could not index the tiles of {}, tiles will be decoded: {}", file, e.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", e );
+            }
+        }
+
         List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
         double x = envelope.getMin().get0() - tms.getSpatialMetadata().getEnvelope().getMin().get0();
         double y = envelope.getMax().get1() - tms.getSpatialMetadata().getEnvelope().getMax().get1();
@@ -93,7 +110,7 @@ class GeoTiffTileDataSetBuilder {
             int yoff = (int) Math.round( y / tm.getTileHeight() );
             int numx = (int) Math.ceil( envelope.getSpan0() / tm.getTileWidth() );
             int numy = (int) Math.ceil( envelope.getSpan1() / tm.getTileHeight() );
-            levels.add( new GeoTIFFTileDataLevel( tm, file, idx++, xoff, yoff, numx, numy ) );
+            levels.add( new GeoTIFFTileDataLevel( tm, file, tileIndex, idx++, xoff, yoff, numx, numy ) );
         }
 
         return new DefaultTileDataSet( levels, tms, format );
@@ -0,0 +1,468 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+/**
+ * Index of the internal tiles of a (Big)TIFF file, used to hand out JPEG compressed tiles without decoding and
+ * re-encoding them.
+ * <p>
+ * The tile offset and byte count tables of all images (IFDs) are read once, the file itself is memory mapped. Only
+ * images that are tiled, JPEG compressed (new style), chunky and either YCbCr or grayscale are indexed, as only these
+ * yield tiles that can be sent to clients as plain JPEG images. For all other images, {@link #getJpegTile} returns
+ * <code>null</code>, and the tile needs to be decoded the regular way.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class GeoTiffTileIndex {
+
+    private static final Logger LOG = getLogger( GeoTiffTileIndex.class );
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+
+    private static final int TAG_IMAGE_LENGTH = 257;
+
+    private static final int TAG_COMPRESSION = 259;
+
+    private static final int TAG_PHOTOMETRIC = 262;
+
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+
+    private static final int TAG_TILE_WIDTH = 322;
+
+    private static final int TAG_TILE_LENGTH = 323;
+
+    private static final int TAG_TILE_OFFSETS = 324;
+
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    private static final int TAG_JPEG_TABLES = 347;
+
+    private static final int COMPRESSION_JPEG = 7;
+
+    private static final int PHOTOMETRIC_BLACK_IS_ZERO = 1;
+
+    private static final int PHOTOMETRIC_YCBCR = 6;
+
+    private static final int TYPE_BYTE = 1;
+
+    private static final int TYPE_SHORT = 3;
+
+    private static final int TYPE_LONG = 4;
+
+    private static final int TYPE_UNDEFINED = 7;
+
+    private static final int TYPE_LONG8 = 16;
+
+    // size of the mapped regions (regions overlap by the size of the biggest tile)
+    private static final long CHUNK_SIZE = 1 << 30;
+
+    // list index is the image index, null if the image cannot be passed through
+    private final List<ImageTiles> images;
+
+    private final MappedByteBuffer[] chunks;
+
+    private GeoTiffTileIndex( List<ImageTiles> images, MappedByteBuffer[] chunks ) {
+        this.images = images;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Reads the tile tables of the given file and maps it into memory.
+     * 
+     * @param file
+     *            the (Big)TIFF file, never <code>null</code>
+     * @return the index, or <code>null</code>, if the file does not contain any image that could be passed through
+     * @throws IOException
+     *             if the file could not be read or is not a valid TIFF file
+     */
+    static GeoTiffTileIndex open( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = raf.getChannel();
+            List<ImageTiles> images = readImages( channel );
+            long maxTileSize = 0;
+            boolean passThrough = false;
+            for ( ImageTiles img : images ) {
+                if ( img != null ) {
+                    passThrough = true;
+                    for ( long count : img.byteCounts ) {
+                        maxTileSize = Math.max( maxTileSize, count );
+                    }
+                }
+            }
+            if ( !passThrough ) {
+                LOG.debug( "No JPEG compressed tiles in {}, tiles will be decoded.", file );
+                return null;
+            }
+            long size = channel.size();
+            int numChunks = (int) ( ( size + CHUNK_SIZE - 1 ) / CHUNK_SIZE );
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+            for ( int i = 0; i < numChunks; ++i ) {
+                long start = i * CHUNK_SIZE;
+                long length = Math.min( size - start, CHUNK_SIZE + maxTileSize );
+                chunks[i] = channel.map( READ_ONLY, start, length );
+            }
+            LOG.debug( "Indexed JPEG compressed tiles of {} ({} images).", file, images.size() );
+            return new GeoTiffTileIndex( images, chunks );
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the given tile as a complete JPEG image (with the JPEG tables of the image merged in).
+     * 
+     * @param imageIndex
+     *            index of the image (IFD) in the file
+     * @param x
+     *            tile column
+     * @param y
+     *            tile row
+     * @param width
+     *            expected tile width in pixels
+     * @param height
+     *            expected tile height in pixels
+     * @return the encoded JPEG image, or <code>null</code>, if the tile cannot be passed through
+     */
+    byte[] getJpegTile( int imageIndex, int x, int y, int width, int height ) {
+        if ( imageIndex >= images.size() ) {
+            return null;
+        }
+        ImageTiles img = images.get( imageIndex );
+        if ( img == null || img.tileWidth != width || img.tileHeight != height ) {
+            return null;
+        }
+        if ( x < 0 || y < 0 || x >= img.tilesAcross || y >= img.tilesDown ) {
+            return null;
+        }
+        int tile = y * img.tilesAcross + x;
+        long offset = img.offsets[tile];
+        int count = (int) img.byteCounts[tile];
+        if ( count < 4 ) {
+            // sparse (missing) tile
+            return null;
+        }
+        ByteBuffer chunk = chunks[(int) ( offset / CHUNK_SIZE )].duplicate();
+        chunk.position( (int) ( offset % CHUNK_SIZE ) );
+        if ( chunk.remaining() < count ) {
+            LOG.debug( "Tile {}/{} of image {} exceeds the file size.", new Object[] { x, y, imageIndex } );
+            return null;
+        }
+
+        byte[] tables = img.jpegTables;
+        byte[] jpeg = new byte[count + tables.length];
+        chunk.get( jpeg, 0, 2 );
+        if ( ( jpeg[0] & 0xff ) != 0xff || ( jpeg[1] & 0xff ) != 0xd8 ) {
+            LOG.debug( "Tile {}/{} of image {} does not start with a JPEG SOI marker.",
+                       new Object[] { x, y, imageIndex } );
+            return null;
+        }
+        System.arraycopy( tables, 0, jpeg, 2, tables.length );
+        chunk.get( jpeg, 2 + tables.length, count - 2 );
+        return jpeg;
+    }
+
+    private static List<ImageTiles> readImages( FileChannel channel )
+                            throws IOException {
+        ByteBuffer header = read( channel, 0, 16, BIG_ENDIAN );
+        ByteOrder order;
+        if ( header.get( 0 ) == 'I' && header.get( 1 ) == 'I' ) {
+            order = LITTLE_ENDIAN;
+        } else if ( header.get( 0 ) == 'M' && header.get( 1 ) == 'M' ) {
+            order = BIG_ENDIAN;
+        } else {
+            throw new IOException( "Not a TIFF file (invalid byte order mark)." );
+        }
+        header.order( order );
+        boolean bigTiff;
+        long ifdOffset;
+        int magic = header.getShort( 2 ) & 0xffff;
+        if ( magic == 42 ) {
+            bigTiff = false;
+            ifdOffset = header.getInt( 4 ) & 0xffffffffL;
+        } else if ( magic == 43 ) {
+            bigTiff = true;
+            ifdOffset = header.getLong( 8 );
+        } else {
+            throw new IOException( "Not a TIFF file (invalid magic number " + magic + ")." );
+        }
+
+        List<ImageTiles> images = new ArrayList<ImageTiles>();
+        long size = channel.size();
+        while ( ifdOffset != 0 ) {
+            if ( ifdOffset < 0 || ifdOffset >= size || images.size() > 10000 ) {
+                throw new IOException( "Invalid IFD offset " + ifdOffset + "." );
+            }
+            Ifd ifd = new Ifd( channel, ifdOffset, bigTiff, order );
+            images.add( ifd.toImageTiles() );
+            ifdOffset = ifd.next;
+        }
+        return images;
+    }
+
+    private static ByteBuffer read( FileChannel channel, long position, int length, ByteOrder order )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( length );
+        while ( buf.hasRemaining() ) {
+            if ( channel.read( buf, position + buf.position() ) < 0 ) {
+                throw new IOException( "Unexpected end of TIFF file." );
+            }
+        }
+        buf.flip();
+        buf.order( order );
+        return buf;
+    }
+
+    /**
+     * Raw tag values of a single image file directory.
+     */
+    private static class Ifd {
+
+        private final FileChannel channel;
+
+        private final boolean bigTiff;
+
+        private final ByteOrder order;
+
+        private long imageWidth, imageLength, compression, photometric, samplesPerPixel = 1, planarConfiguration = 1,
+                                tileWidth, tileLength;
+
+        private long[] tileOffsets, tileByteCounts;
+
+        private byte[] jpegTables;
+
+        private long next;
+
+        Ifd( FileChannel channel, long offset, boolean bigTiff, ByteOrder order )
+                                throws IOException {
+            this.channel = channel;
+            this.bigTiff = bigTiff;
+            this.order = order;
+            int entrySize = bigTiff ? 20 : 12;
+            int countSize = bigTiff ? 8 : 2;
+            int offsetSize = bigTiff ? 8 : 4;
+            ByteBuffer buf = read( channel, offset, countSize, order );
+            long numEntries = bigTiff ? buf.getLong( 0 ) : buf.getShort( 0 ) & 0xffff;
+            if ( numEntries < 0 || numEntries > 65535 ) {
+                throw new IOException( "Invalid number of IFD entries: " + numEntries + "." );
+            }
+            buf = read( channel, offset + countSize, (int) numEntries * entrySize + offsetSize, order );
+            for ( int i = 0; i < numEntries; ++i ) {
+                readEntry( buf, i * entrySize );
+            }
+            int pos = (int) numEntries * entrySize;
+            next = bigTiff ? buf.getLong( pos ) : buf.getInt( pos ) & 0xffffffffL;
+        }
+
+        private void readEntry( ByteBuffer buf, int pos )
+                                throws IOException {
+            int tag = buf.getShort( pos ) & 0xffff;
+            int type = buf.getShort( pos + 2 ) & 0xffff;
+            long count = bigTiff ? buf.getLong( pos + 4 ) : buf.getInt( pos + 4 ) & 0xffffffffL;
+            int valuePos = pos + ( bigTiff ? 12 : 8 );
+            switch ( tag ) {
+            case TAG_IMAGE_WIDTH:
+                imageWidth = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_IMAGE_LENGTH:
+                imageLength = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_COMPRESSION:
+                compression = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_PHOTOMETRIC:
+                photometric = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_SAMPLES_PER_PIXEL:
+                samplesPerPixel = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_PLANAR_CONFIGURATION:
+                planarConfiguration = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_TILE_WIDTH:
+                tileWidth = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_TILE_LENGTH:
+                tileLength = readValues( buf, valuePos, type, count )[0];
+                break;
+            case TAG_TILE_OFFSETS:
+                tileOffsets = readValues( buf, valuePos, type, count );
+                break;
+            case TAG_TILE_BYTE_COUNTS:
+                tileByteCounts = readValues( buf, valuePos, type, count );
+                break;
+            case TAG_JPEG_TABLES:
+                if ( type == TYPE_BYTE || type == TYPE_UNDEFINED ) {
+                    jpegTables = readValueBuffer( buf, valuePos, count ).array();
+                }
+                break;
+            default:
+                // not needed
+            }
+        }
+
+        private long[] readValues( ByteBuffer buf, int valuePos, int type, long count )
+                                throws IOException {
+            int size;
+            switch ( type ) {
+            case TYPE_SHORT:
+                size = 2;
+                break;
+            case TYPE_LONG:
+                size = 4;
+                break;
+            case TYPE_LONG8:
+                size = 8;
+                break;
+            default:
+                throw new IOException( "Unsupported TIFF field type " + type + " for an integer value." );
+            }
+            if ( count < 1 || count * size > Integer.MAX_VALUE ) {
+                throw new IOException( "Invalid TIFF field count " + count + "." );
+            }
+            ByteBuffer values = readValueBuffer( buf, valuePos, count * size );
+            long[] result = new long[(int) count];
+            for ( int i = 0; i < result.length; ++i ) {
+                switch ( type ) {
+                case TYPE_SHORT:
+                    result[i] = values.getShort( i * 2 ) & 0xffff;
+                    break;
+                case TYPE_LONG:
+                    result[i] = values.getInt( i * 4 ) & 0xffffffffL;
+                    break;
+                default:
+                    result[i] = values.getLong( i * 8 );
+                }
+            }
+            return result;
+        }
+
+        private ByteBuffer readValueBuffer( ByteBuffer buf, int valuePos, long length )
+                                throws IOException {
+            int inlineSize = bigTiff ? 8 : 4;
+            if ( length <= inlineSize ) {
+                ByteBuffer values = ByteBuffer.allocate( (int) length ).order( order );
+                for ( int i = 0; i < length; ++i ) {
+                    values.put( i, buf.get( valuePos + i ) );
+                }
+                return values;
+            }
+            long offset = bigTiff ? buf.getLong( valuePos ) : buf.getInt( valuePos ) & 0xffffffffL;
+            return read( channel, offset, (int) length, order );
+        }
+
+        ImageTiles toImageTiles() {
+            if ( compression != COMPRESSION_JPEG || planarConfiguration != 1 ) {
+                return null;
+            }
+            boolean ycbcr = photometric == PHOTOMETRIC_YCBCR && samplesPerPixel == 3;
+            boolean gray = photometric == PHOTOMETRIC_BLACK_IS_ZERO && samplesPerPixel == 1;
+            if ( !( ycbcr || gray ) || tileWidth <= 0 || tileLength <= 0 ) {
+                return null;
+            }
+            int tilesAcross = (int) ( ( imageWidth + tileWidth - 1 ) / tileWidth );
+            int tilesDown = (int) ( ( imageLength + tileLength - 1 ) / tileLength );
+            long numTiles = (long) tilesAcross * tilesDown;
+            if ( tileOffsets == null || tileByteCounts == null || tileOffsets.length < numTiles
+                 || tileByteCounts.length < numTiles ) {
+                return null;
+            }
+            byte[] tables = new byte[0];
+            if ( jpegTables != null && jpegTables.length > 4 && ( jpegTables[0] & 0xff ) == 0xff
+                 && ( jpegTables[1] & 0xff ) == 0xd8 ) {
+                // strip SOI and EOI markers
+                int end = jpegTables.length;
+                if ( ( jpegTables[end - 2] & 0xff ) == 0xff && ( jpegTables[end - 1] & 0xff ) == 0xd9 ) {
+                    end -= 2;
+                }
+                tables = new byte[end - 2];
+                System.arraycopy( jpegTables, 2, tables, 0, tables.length );
+            }
+            return new ImageTiles( (int) tileWidth, (int) tileLength, tilesAcross, tilesDown, tileOffsets,
+                                   tileByteCounts, tables );
+        }
+    }
+
+    private static class ImageTiles {
+
+        private final int tileWidth, tileHeight, tilesAcross, tilesDown;
+
+        private final long[] offsets, byteCounts;
+
+        private final byte[] jpegTables;
+
+        ImageTiles( int tileWidth, int tileHeight, int tilesAcross, int tilesDown, long[] offsets, long[] byteCounts,
+                    byte[] jpegTables ) {
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.tilesAcross = tilesAcross;
+            this.tilesDown = tilesDown;
+            this.offsets = offsets;
+            this.byteCounts = byteCounts;
+            this.jpegTables = jpegTables;
+        }
+    }
+
+}
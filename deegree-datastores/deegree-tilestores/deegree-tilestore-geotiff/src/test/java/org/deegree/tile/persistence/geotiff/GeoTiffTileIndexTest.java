@@ -0,0 +1,215 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link GeoTiffTileIndex}, using small synthetic TIFF files.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class GeoTiffTileIndexTest {
+
+    private static final byte[] TABLES = bytes( 0xff, 0xd8, 0xff, 0xdb, 0x01, 0x02, 0xff, 0xd9 );
+
+    private static final byte[] TILE0 = bytes( 0xff, 0xd8, 0x10, 0x11, 0xff, 0xd9 );
+
+    private static final byte[] TILE1 = bytes( 0xff, 0xd8, 0x20, 0xff, 0xd9 );
+
+    @Test
+    public void testJpegTilesWithTables()
+                            throws IOException {
+        GeoTiffTileIndex index = GeoTiffTileIndex.open( writeTiff( false, 7, 6 ) );
+        assertNotNull( index );
+        assertArrayEquals( bytes( 0xff, 0xd8, 0xff, 0xdb, 0x01, 0x02, 0x10, 0x11, 0xff, 0xd9 ),
+                           index.getJpegTile( 0, 0, 0, 16, 16 ) );
+        assertArrayEquals( bytes( 0xff, 0xd8, 0xff, 0xdb, 0x01, 0x02, 0x20, 0xff, 0xd9 ),
+                           index.getJpegTile( 0, 1, 0, 16, 16 ) );
+    }
+
+    @Test
+    public void testJpegTilesBigTiff()
+                            throws IOException {
+        GeoTiffTileIndex index = GeoTiffTileIndex.open( writeTiff( true, 7, 6 ) );
+        assertNotNull( index );
+        assertArrayEquals( bytes( 0xff, 0xd8, 0xff, 0xdb, 0x01, 0x02, 0x20, 0xff, 0xd9 ),
+                           index.getJpegTile( 0, 1, 0, 16, 16 ) );
+    }
+
+    @Test
+    public void testTileOutsideOfImage()
+                            throws IOException {
+        GeoTiffTileIndex index = GeoTiffTileIndex.open( writeTiff( false, 7, 6 ) );
+        assertNull( index.getJpegTile( 0, 2, 0, 16, 16 ) );
+        assertNull( index.getJpegTile( 0, 0, 1, 16, 16 ) );
+        assertNull( index.getJpegTile( 1, 0, 0, 16, 16 ) );
+    }
+
+    @Test
+    public void testTileSizeMismatch()
+                            throws IOException {
+        GeoTiffTileIndex index = GeoTiffTileIndex.open( writeTiff( false, 7, 6 ) );
+        assertNull( index.getJpegTile( 0, 0, 0, 256, 256 ) );
+    }
+
+    @Test
+    public void testDeflateIsNotIndexed()
+                            throws IOException {
+        assertNull( GeoTiffTileIndex.open( writeTiff( false, 8, 6 ) ) );
+    }
+
+    @Test
+    public void testRgbJpegIsNotIndexed()
+                            throws IOException {
+        assertNull( GeoTiffTileIndex.open( writeTiff( false, 7, 2 ) ) );
+    }
+
+    private static byte[] bytes( int... values ) {
+        byte[] bs = new byte[values.length];
+        for ( int i = 0; i < values.length; ++i ) {
+            bs[i] = (byte) values[i];
+        }
+        return bs;
+    }
+
+    /**
+     * Writes a 32x16 pixel image consisting of two 16x16 tiles.
+     */
+    private static File writeTiff( boolean bigTiff, int compression, int photometric )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( 2048 ).order( LITTLE_ENDIAN );
+        int tilePos = 1024;
+        buf.put( (byte) 'I' ).put( (byte) 'I' );
+        if ( bigTiff ) {
+            buf.putShort( (short) 43 ).putShort( (short) 8 ).putShort( (short) 0 ).putLong( 16 );
+        } else {
+            buf.putShort( (short) 42 ).putInt( 8 );
+        }
+        int numEntries = 10;
+        int entrySize = bigTiff ? 20 : 12;
+        int ifdPos = buf.position();
+        int extPos = ifdPos + ( bigTiff ? 8 : 2 ) + numEntries * entrySize + ( bigTiff ? 8 : 4 );
+        if ( bigTiff ) {
+            buf.putLong( numEntries );
+        } else {
+            buf.putShort( (short) numEntries );
+        }
+        extPos = putEntry( buf, bigTiff, 256, 4, longs( 4, 32 ), extPos );
+        extPos = putEntry( buf, bigTiff, 257, 4, longs( 4, 16 ), extPos );
+        extPos = putEntry( buf, bigTiff, 259, 3, longs( 2, compression ), extPos );
+        extPos = putEntry( buf, bigTiff, 262, 3, longs( 2, photometric ), extPos );
+        extPos = putEntry( buf, bigTiff, 277, 3, longs( 2, 3 ), extPos );
+        extPos = putEntry( buf, bigTiff, 322, 3, longs( 2, 16 ), extPos );
+        extPos = putEntry( buf, bigTiff, 323, 3, longs( 2, 16 ), extPos );
+        extPos = putEntry( buf, bigTiff, 324, 4, longs( 4, tilePos, tilePos + TILE0.length ), extPos );
+        extPos = putEntry( buf, bigTiff, 325, 4, longs( 4, TILE0.length, TILE1.length ), extPos );
+        extPos = putEntry( buf, bigTiff, 347, 7, TABLES, extPos );
+        if ( bigTiff ) {
+            buf.putLong( 0 );
+        } else {
+            buf.putInt( 0 );
+        }
+        buf.position( tilePos );
+        buf.put( TILE0 ).put( TILE1 );
+
+        File file = File.createTempFile( "tiles", ".tif" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            out.write( buf.array(), 0, buf.position() );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] longs( int size, long... values ) {
+        ByteBuffer buf = ByteBuffer.allocate( size * values.length ).order( LITTLE_ENDIAN );
+        for ( long v : values ) {
+            if ( size == 2 ) {
+                buf.putShort( (short) v );
+            } else {
+                buf.putInt( (int) v );
+            }
+        }
+        return buf.array();
+    }
+
+    private static int putEntry( ByteBuffer buf, boolean bigTiff, int tag, int type, byte[] value, int extPos ) {
+        int count = type == 7 ? value.length : value.length / ( type == 3 ? 2 : 4 );
+        buf.putShort( (short) tag ).putShort( (short) type );
+        if ( bigTiff ) {
+            buf.putLong( count );
+        } else {
+            buf.putInt( count );
+        }
+        int inlineSize = bigTiff ? 8 : 4;
+        if ( value.length <= inlineSize ) {
+            buf.put( value );
+            buf.position( buf.position() + inlineSize - value.length );
+            return extPos;
+        }
+        if ( bigTiff ) {
+            buf.putLong( extPos );
+        } else {
+            buf.putInt( extPos );
+        }
+        int pos = buf.position();
+        buf.position( extPos );
+        buf.put( value );
+        buf.position( pos );
+        return extPos + value.length;
+    }
+
+}
@@ -51,6 +51,7 @@ import javax.imageio.ImageIO;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -126,6 +127,12 @@ class MergingTile implements Tile {
         return new ByteArrayInputStream( output.toByteArray() );
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        // tiles are merged on the fly
+        return null;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return tiles.get( 0 ).getEnvelope();
@@ -66,6 +66,7 @@ import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetFeatureInfo;
 import org.deegree.protocol.wms.ops.GetMap;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 
 /**
@@ -155,6 +156,12 @@ class RemoteWMSTile implements Tile {
         }
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        // tiles are fetched from the remote service upon each request
+        return null;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return gm.getBoundingBox();
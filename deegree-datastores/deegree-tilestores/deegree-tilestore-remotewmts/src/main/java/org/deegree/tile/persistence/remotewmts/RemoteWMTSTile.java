@@ -67,6 +67,7 @@ import org.deegree.protocol.wmts.client.WMTSClient;
 import org.deegree.protocol.wmts.ops.GetFeatureInfo;
 import org.deegree.protocol.wmts.ops.GetTile;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileIOException;
 import org.slf4j.Logger;
 
@@ -169,6 +170,12 @@ class RemoteWMTSTile implements Tile {
         return new CloseRequiredInputStream( null, new ByteArrayInputStream( out.toByteArray() ) );
     }
 
+    @Override
+    public TileCacheInfo getCacheInfo() {
+        // tiles are fetched from the remote service upon each request
+        return null;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return envelope;
@@ -76,6 +76,8 @@ public class TileLayer extends AbstractLayer {
     // maps crs to tile matrix set ids
     private final Map<ICRS, String> coordinateSystems = new LinkedHashMap<ICRS, String>();
 
+    private final TileCacheStatistics cacheStatistics = new TileCacheStatistics();
+
     public TileLayer( LayerMetadata md, List<TileDataSet> datasets ) {
         super( md );
         for ( TileDataSet tds : datasets ) {
@@ -101,7 +103,7 @@ public class TileLayer extends AbstractLayer {
         TileDataSet data = tileDataSets.get( tds );
 
         Iterator<Tile> tiles = data.getTiles( env, query.getResolution() );
-        return new TileLayerData( tiles );
+        return new TileLayerData( tiles, cacheStatistics );
     }
 
     @Override
@@ -124,6 +126,14 @@ public class TileLayer extends AbstractLayer {
         return tileDataSets.values();
     }
 
+    /**
+     * @return the number of tiles of this layer that were found in (or missed by) a tile cache, never
+     *         <code>null</code>
+     */
+    public TileCacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
+
     @Override
     public boolean isStyleApplicable( StyleRef style ) {
         return true;
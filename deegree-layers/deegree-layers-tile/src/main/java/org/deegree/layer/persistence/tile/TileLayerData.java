@@ -40,16 +40,42 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.layer.persistence.tile;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.deegree.commons.utils.RequestUtils;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.TileRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.tile.CachingTile;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
 
 /**
  * <code>TileLayerData</code>
+ * <p>
+ * The tile images are fetched and decoded concurrently on a shared thread pool (size configurable using the system
+ * property <code>deegree.tile.fetchThreads</code>), at most as many tiles per request as there are threads. The tiles
+ * are drawn in the order of the tile iterator. If the rendering thread is interrupted (request time-out), pending
+ * fetches are cancelled.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -59,17 +85,105 @@ import org.deegree.tile.Tile;
 
 public class TileLayerData implements LayerData {
 
+    private static final Logger LOG = getLogger( TileLayerData.class );
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private static final int FETCH_THREADS = Integer.getInteger( "deegree.tile.fetchThreads", Math.max( 4, 2 * CPUS ) );
+
+    private static final ExecutorService FETCH_POOL = FETCH_THREADS > 1 ? createFetchPool() : null;
+
     private final Iterator<Tile> tiles;
 
+    private final TileCacheStatistics statistics;
+
     public TileLayerData( Iterator<Tile> tiles ) {
+        this( tiles, null );
+    }
+
+    /**
+     * @param tiles
+     *            the tiles to render, never <code>null</code>
+     * @param statistics
+     *            used to count tile cache hits and misses, can be <code>null</code>
+     */
+    public TileLayerData( Iterator<Tile> tiles, TileCacheStatistics statistics ) {
         this.tiles = tiles;
+        this.statistics = statistics;
+    }
+
+    private static ExecutorService createFetchPool() {
+        return Executors.newFixedThreadPool( FETCH_THREADS, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "tile-fetch-" + threadCounter.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
     }
 
     @Override
-    public void render( RenderContext context ) {
+    public void render( RenderContext context )
+                            throws InterruptedException {
         TileRenderer renderer = context.getTileRenderer();
-        while ( tiles.hasNext() ) {
-            renderer.render( tiles.next() );
+        if ( FETCH_POOL == null ) {
+            while ( tiles.hasNext() ) {
+                if ( Thread.interrupted() ) {
+                    throw new InterruptedException();
+                }
+                Tile tile = tiles.next();
+                renderer.render( tile );
+                count( tile );
+            }
+            return;
+        }
+
+        Map<String, String> parameters = RequestUtils.getCurrentThreadRequestParameters().get();
+        List<Future<Tile>> pending = new ArrayList<Future<Tile>>( FETCH_THREADS );
+        try {
+            while ( tiles.hasNext() || !pending.isEmpty() ) {
+                while ( tiles.hasNext() && pending.size() < FETCH_THREADS ) {
+                    pending.add( FETCH_POOL.submit( new FetchTask( tiles.next(), parameters ) ) );
+                }
+                Tile tile = waitFor( pending.remove( 0 ) );
+                renderer.render( tile );
+                count( tile );
+            }
+        } finally {
+            for ( Future<Tile> f : pending ) {
+                f.cancel( true );
+            }
+        }
+    }
+
+    private void count( Tile tile ) {
+        if ( statistics == null ) {
+            return;
+        }
+        if ( tile instanceof FetchedTile ) {
+            tile = ( (FetchedTile) tile ).tile;
+        }
+        if ( tile instanceof CachingTile ) {
+            statistics.record( ( (CachingTile) tile ).isCacheHit() );
+        }
+    }
+
+    private static Tile waitFor( Future<Tile> future )
+                            throws InterruptedException {
+        try {
+            return future.get();
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause );
         }
     }
 
@@ -78,4 +192,86 @@ public class TileLayerData implements LayerData {
         return null;
     }
 
+    /**
+     * Fetches and decodes the image of a tile, the result is a {@link FetchedTile} (or <code>null</code> for
+     * <code>null</code> tiles).
+     */
+    private static class FetchTask implements Callable<Tile> {
+
+        private final Tile tile;
+
+        private final Map<String, String> parameters;
+
+        FetchTask( Tile tile, Map<String, String> parameters ) {
+            this.tile = tile;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Tile call() {
+            if ( tile == null ) {
+                return null;
+            }
+            RequestUtils.getCurrentThreadRequestParameters().set( parameters );
+            try {
+                return new FetchedTile( tile, tile.getAsImage(), null );
+            } catch ( TileIOException e ) {
+                LOG.debug( "Error retrieving tile image: " + e.getMessage() );
+                return new FetchedTile( tile, null, e );
+            } finally {
+                RequestUtils.getCurrentThreadRequestParameters().remove();
+            }
+        }
+    }
+
+    /**
+     * {@link Tile} whose image has already been fetched, so it can be drawn without blocking.
+     */
+    private static class FetchedTile implements Tile {
+
+        private final Tile tile;
+
+        private final BufferedImage image;
+
+        private final TileIOException error;
+
+        FetchedTile( Tile tile, BufferedImage image, TileIOException error ) {
+            this.tile = tile;
+            this.image = image;
+            this.error = error;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            if ( error != null ) {
+                throw error;
+            }
+            return image;
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            return tile.getAsStream();
+        }
+
+        @Override
+        public TileCacheInfo getCacheInfo()
+                                throws TileIOException {
+            return tile.getCacheInfo();
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return tile.getEnvelope();
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            return tile.getFeatures( i, j, limit );
+        }
+    }
+
 }
@@ -0,0 +1,215 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.tile;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.rendering.r2d.TileRenderer;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
+import org.deegree.tile.TileIOException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TileLayerData}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class TileLayerDataTest {
+
+    private static final BufferedImage FAILED = new BufferedImage( 1, 1, TYPE_INT_ARGB );
+
+    @Test
+    public void testTilesAreRenderedInIteratorOrder()
+                            throws Exception {
+        Random random = new Random( 42 );
+        List<Tile> tiles = new ArrayList<Tile>();
+        List<BufferedImage> expected = new ArrayList<BufferedImage>();
+        for ( int i = 0; i < 50; i++ ) {
+            // later tiles are often fetched before earlier ones
+            TestTile tile = new TestTile( random.nextInt( 20 ), false );
+            tiles.add( tile );
+            expected.add( tile.image );
+        }
+        assertRendered( expected, tiles );
+    }
+
+    @Test
+    public void testFailingTileDoesNotBreakResponse()
+                            throws Exception {
+        List<Tile> tiles = new ArrayList<Tile>();
+        List<BufferedImage> expected = new ArrayList<BufferedImage>();
+        for ( int i = 0; i < 20; i++ ) {
+            TestTile tile = new TestTile( i % 3, i == 5 || i == 13 );
+            tiles.add( tile );
+            expected.add( tile.fails ? FAILED : tile.image );
+        }
+        assertRendered( expected, tiles );
+    }
+
+    @Test
+    public void testNullTilesAreSkipped()
+                            throws Exception {
+        TestTile first = new TestTile( 5, false );
+        TestTile last = new TestTile( 0, false );
+        List<Tile> tiles = new ArrayList<Tile>();
+        tiles.add( first );
+        tiles.add( null );
+        tiles.add( last );
+        List<BufferedImage> expected = new ArrayList<BufferedImage>();
+        expected.add( first.image );
+        expected.add( last.image );
+        assertRendered( expected, tiles );
+    }
+
+    private void assertRendered( List<BufferedImage> expected, List<Tile> tiles )
+                            throws InterruptedException {
+        RecordingTileRenderer renderer = new RecordingTileRenderer();
+        new TileLayerData( tiles.iterator() ).render( createContext( renderer ) );
+        assertEquals( expected.size(), renderer.rendered.size() );
+        for ( int i = 0; i < expected.size(); i++ ) {
+            assertSame( "Tile " + i, expected.get( i ), renderer.rendered.get( i ) );
+        }
+    }
+
+    private RenderContext createContext( final TileRenderer renderer ) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                if ( method.getName().equals( "getTileRenderer" ) ) {
+                    return renderer;
+                }
+                throw new UnsupportedOperationException( method.getName() );
+            }
+        };
+        return (RenderContext) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                       new Class<?>[] { RenderContext.class }, handler );
+    }
+
+    /**
+     * Records the drawn images like the Java2D renderer draws them, failed tiles are recorded as {@link #FAILED}.
+     */
+    private static class RecordingTileRenderer implements TileRenderer {
+
+        private final List<BufferedImage> rendered = Collections.synchronizedList( new ArrayList<BufferedImage>() );
+
+        @Override
+        public void render( Tile tile ) {
+            if ( tile == null ) {
+                return;
+            }
+            try {
+                rendered.add( tile.getAsImage() );
+            } catch ( TileIOException e ) {
+                rendered.add( FAILED );
+            }
+        }
+    }
+
+    private static class TestTile implements Tile {
+
+        private final BufferedImage image = new BufferedImage( 1, 1, TYPE_INT_ARGB );
+
+        private final long delay;
+
+        private final boolean fails;
+
+        TestTile( long delay, boolean fails ) {
+            this.delay = delay;
+            this.fails = fails;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            try {
+                Thread.sleep( delay );
+            } catch ( InterruptedException e ) {
+                throw new TileIOException( e );
+            }
+            if ( fails ) {
+                throw new TileIOException( "Tile not available." );
+            }
+            return image;
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TileCacheInfo getCacheInfo()
+                                throws TileIOException {
+            return null;
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return null;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
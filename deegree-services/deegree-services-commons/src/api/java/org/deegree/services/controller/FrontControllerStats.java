@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.controller;
 
+import static java.lang.Integer.getInteger;
 import static org.deegree.commons.utils.ArrayUtils.splitAsDoubles;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -46,8 +47,16 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.deegree.commons.utils.ComparablePair;
 import org.deegree.commons.utils.ConfigManager;
@@ -59,6 +68,9 @@ import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.services.controller.stats.LatencyHistogram;
+import org.deegree.services.controller.stats.RequestMetrics;
+import org.deegree.services.controller.stats.StripedCounter;
 import org.h2.util.IOUtils;
 import org.slf4j.Logger;
 
@@ -74,13 +86,24 @@ public class FrontControllerStats {
 
     private static final Logger LOG = getLogger( FrontControllerStats.class );
 
-    private static long numDispatched;
+    private static final int MAX_METRICS = 1000;
 
-    private static long numFinished;
+    private static final int REQUEST_LOG_CAPACITY = getInteger( "deegree.requestlog.capacity", 8192 );
 
-    private static double averageResponseTime;
+    private static final StripedCounter numDispatched = new StripedCounter();
 
-    private static double maxResponseTime;
+    private static final LatencyHistogram responseTimes = new LatencyHistogram();
+
+    private static final ConcurrentMap<String, RequestMetrics> metrics = new ConcurrentHashMap<String, RequestMetrics>();
+
+    private static final RequestMetrics otherMetrics = new RequestMetrics( "*", "*", "*", "*" );
+
+    private static final BlockingQueue<Pair<Long, String>> requestLog = new ArrayBlockingQueue<Pair<Long, String>>(
+                                                                                                                REQUEST_LOG_CAPACITY );
+
+    private static final StripedCounter numDroppedLogEntries = new StripedCounter();
+
+    private static volatile RequestLogWriter requestLogWriter;
 
     private static Envelope bbox;
 
@@ -92,11 +115,28 @@ public class FrontControllerStats {
      * Called by the {@link OGCFrontController} to indicate that a new request has just been dispatched to an
      * {@link AbstractOWS}.
      * 
-     * @return current time
+     * @return dispatch time, to be passed to one of the <code>requestFinished</code> methods
      */
-    synchronized static long requestDispatched() {
-        numDispatched++;
-        return System.currentTimeMillis();
+    static long requestDispatched() {
+        numDispatched.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Called by the {@link OGCFrontController} to indicate that a dispatched KVP request has been finished.
+     * 
+     * @param dispatchTime
+     *            time when the request has been dispatched
+     * @param service
+     *            service type, never <code>null</code>
+     * @param normalizedKvp
+     *            request parameters (normalized to upper case keys), never <code>null</code>
+     */
+    static void requestFinished( long dispatchTime, String service, Map<String, String> normalizedKvp ) {
+        String layer = firstNonNull( normalizedKvp, "LAYERS", "LAYER", "TYPENAMES", "TYPENAME", "COVERAGE",
+                                     "COVERAGEID", "IDENTIFIER" );
+        String format = firstNonNull( normalizedKvp, "FORMAT", "OUTPUTFORMAT", "INFO_FORMAT" );
+        requestFinished( dispatchTime, service, normalizedKvp.get( "REQUEST" ), layer, format );
     }
 
     /**
@@ -104,55 +144,116 @@ public class FrontControllerStats {
      * 
      * @param dispatchTime
      *            time when the request has been dispatched
+     * @param service
+     *            service type, never <code>null</code>
+     * @param operation
+     *            request name, can be <code>null</code>
+     * @param layer
+     *            requested layer(s)/feature type(s), can be <code>null</code>
+     * @param format
+     *            requested output format, can be <code>null</code>
      */
-    synchronized static void requestFinished( long dispatchTime ) {
-        long duration = System.currentTimeMillis() - dispatchTime;
-        if ( duration > maxResponseTime ) {
-            maxResponseTime = duration;
+    static void requestFinished( long dispatchTime, String service, String operation, String layer, String format ) {
+        long micros = ( System.nanoTime() - dispatchTime ) / 1000;
+        responseTimes.record( micros );
+        getMetrics( service, operation, layer, format ).getLatencies().record( micros );
+    }
+
+    private static RequestMetrics getMetrics( String service, String operation, String layer, String format ) {
+        service = service == null ? "" : service;
+        operation = operation == null ? "" : operation;
+        layer = layer == null ? "" : layer;
+        format = format == null ? "" : format;
+        String key = service + '\u0000' + operation + '\u0000' + layer + '\u0000' + format;
+        RequestMetrics m = metrics.get( key );
+        if ( m == null ) {
+            if ( metrics.size() >= MAX_METRICS ) {
+                // don't let arbitrary layer/format combinations grow the map
+                return otherMetrics;
+            }
+            m = new RequestMetrics( service, operation, layer, format );
+            RequestMetrics existing = metrics.putIfAbsent( key, m );
+            if ( existing != null ) {
+                m = existing;
+            }
+        }
+        return m;
+    }
+
+    private static String firstNonNull( Map<String, String> kvp, String... keys ) {
+        for ( String key : keys ) {
+            String value = kvp.get( key );
+            if ( value != null ) {
+                return value;
+            }
         }
-        averageResponseTime = ( averageResponseTime * numFinished + duration ) / ( numFinished + 1 );
-        numFinished++;
+        return null;
     }
 
     /**
+     * Queues a KVP request for the request log (<code>requests.txt</code>). The log is written asynchronously, if the
+     * queue is full (configured with system property <code>deegree.requestlog.capacity</code>), the request is not
+     * logged.
+     * 
      * @param request
      *            the query string
      * @param timestamp
      */
-    public synchronized static void incomingKVP( String request, long timestamp ) {
+    public static void incomingKVP( String request, long timestamp ) {
+        if ( requestLogWriter == null ) {
+            ensureRequestLogWriter();
+        }
+        if ( !requestLog.offer( new Pair<Long, String>( timestamp, request ) ) ) {
+            numDroppedLogEntries.increment();
+        }
+    }
+
+    private static synchronized void ensureRequestLogWriter() {
+        if ( requestLogWriter == null ) {
+            requestLogWriter = new RequestLogWriter();
+            requestLogWriter.start();
+        }
+    }
+
+    /**
+     * Stops the request log writer thread after writing the pending requests.
+     */
+    public static void shutdown() {
+        RequestLogWriter writer;
+        synchronized ( FrontControllerStats.class ) {
+            writer = requestLogWriter;
+            requestLogWriter = null;
+        }
+        if ( writer != null ) {
+            writer.interrupt();
+            try {
+                writer.join( 5000 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static synchronized void trackGetMap( String request ) {
+        if ( bbox == null || !request.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
+            return;
+        }
         try {
-            OutputStream os = ConfigManager.getOutputResource( "requests.txt", true );
-            PrintWriter out = new PrintWriter( new OutputStreamWriter( os, "UTF-8" ) );
-            out.println( timestamp + " " + request );
-            out.close();
-            if ( request.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
-                try {
-                    Map<String, String> map = KVPUtils.getNormalizedKVPMap( request, "UTF-8" );
-                    if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
-                        return;
-                    }
-                    double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
-                    Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
-                                                          CRSManager.getCRSRef( map.get( "SRS" ) ) );
-                    if ( bbox != null ) {
-                        bbox.merge( trans.transform( newBox ) );
-                    }
-                } catch ( UnsupportedEncodingException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( IllegalArgumentException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( TransformationException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( UnknownCRSException e ) {
-                    LOG.trace( "Stack trace:", e );
-                }
+            Map<String, String> map = KVPUtils.getNormalizedKVPMap( request, "UTF-8" );
+            if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
+                return;
             }
-        } catch ( FileNotFoundException e ) {
-            LOG.debug( "Could not find the file to store requests." );
-            LOG.debug( " Probably the DEEGREE_HOME directory does not exist and could not be created." );
-            LOG.trace( "Stack trace:", e );
+            double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
+            Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3], CRSManager.getCRSRef( map.get( "SRS" ) ) );
+            bbox.merge( trans.transform( newBox ) );
         } catch ( UnsupportedEncodingException e ) {
             LOG.trace( "Stack trace:", e );
+        } catch ( IllegalArgumentException e ) {
+            LOG.trace( "Stack trace:", e );
+        } catch ( TransformationException e ) {
+            LOG.trace( "Stack trace:", e );
+        } catch ( UnknownCRSException e ) {
+            LOG.trace( "Stack trace:", e );
         }
     }
 
@@ -162,7 +263,7 @@ public class FrontControllerStats {
      * @return number of dispatched requests
      */
     public static long getDispatchedRequests() {
-        return numDispatched;
+        return numDispatched.sum();
     }
 
     /**
@@ -172,25 +273,70 @@ public class FrontControllerStats {
      * @return number of active requests
      */
     public static long getActiveRequests() {
-        return numDispatched - numFinished;
+        return Math.max( 0, numDispatched.sum() - responseTimes.getCount() );
     }
 
     /**
      * Returns the average response time for all finished requests.
      * 
-     * @return the average response time
+     * @return the average response time (milliseconds)
      */
     public static long getAverageResponseTime() {
-        return (long) averageResponseTime;
+        return (long) ( responseTimes.getMean() / 1000 );
     }
 
     /**
      * Returns the maximum response time of all finished requests.
      * 
-     * @return the maximum response time
+     * @return the maximum response time (milliseconds)
      */
     public static long getMaximumResponseTime() {
-        return (long) maxResponseTime;
+        return responseTimes.getMax() / 1000;
+    }
+
+    /**
+     * Returns the response time distribution of all finished requests.
+     * 
+     * @return the response times, never <code>null</code>
+     */
+    public static LatencyHistogram getResponseTimes() {
+        return responseTimes;
+    }
+
+    /**
+     * Returns the metrics of the finished requests, keyed by service, operation, layer and output format.
+     * 
+     * @return the request metrics, sorted by service and operation, never <code>null</code>
+     */
+    public static List<RequestMetrics> getRequestMetrics() {
+        List<RequestMetrics> list = new ArrayList<RequestMetrics>( metrics.values() );
+        Collections.sort( list, new Comparator<RequestMetrics>() {
+            @Override
+            public int compare( RequestMetrics m1, RequestMetrics m2 ) {
+                int c = m1.getService().compareTo( m2.getService() );
+                if ( c == 0 ) {
+                    c = m1.getOperation().compareTo( m2.getOperation() );
+                }
+                if ( c == 0 ) {
+                    c = m1.getLayer().compareTo( m2.getLayer() );
+                }
+                if ( c == 0 ) {
+                    c = m1.getFormat().compareTo( m2.getFormat() );
+                }
+                return c;
+            }
+        } );
+        if ( otherMetrics.getCount() > 0 ) {
+            list.add( otherMetrics );
+        }
+        return list;
+    }
+
+    /**
+     * @return number of KVP requests that have not been written to the request log, because the queue was full
+     */
+    public static long getDroppedLogEntries() {
+        return numDroppedLogEntries.sum();
     }
 
     /**
@@ -301,4 +447,66 @@ public class FrontControllerStats {
         return bbox;
     }
 
+    /**
+     * Drains the request log queue, so request threads never wait for the log file.
+     */
+    private static class RequestLogWriter extends Thread {
+
+        private static final int BATCH_SIZE = 512;
+
+        private PrintWriter out;
+
+        RequestLogWriter() {
+            super( "deegree-request-log" );
+            setDaemon( true );
+        }
+
+        @Override
+        public void run() {
+            List<Pair<Long, String>> batch = new ArrayList<Pair<Long, String>>( BATCH_SIZE );
+            try {
+                while ( !isInterrupted() ) {
+                    batch.add( requestLog.take() );
+                    requestLog.drainTo( batch, BATCH_SIZE - 1 );
+                    write( batch );
+                }
+            } catch ( InterruptedException e ) {
+                // shutdown, write what's left
+            }
+            requestLog.drainTo( batch );
+            write( batch );
+            if ( out != null ) {
+                out.close();
+            }
+        }
+
+        private void write( List<Pair<Long, String>> batch ) {
+            if ( batch.isEmpty() ) {
+                return;
+            }
+            if ( out == null ) {
+                try {
+                    OutputStream os = ConfigManager.getOutputResource( "requests.txt", true );
+                    out = new PrintWriter( new OutputStreamWriter( os, "UTF-8" ) );
+                } catch ( FileNotFoundException e ) {
+                    LOG.debug( "Could not find the file to store requests." );
+                    LOG.debug( " Probably the DEEGREE_HOME directory does not exist and could not be created." );
+                    LOG.trace( "Stack trace:", e );
+                } catch ( UnsupportedEncodingException e ) {
+                    LOG.trace( "Stack trace:", e );
+                }
+            }
+            if ( out != null ) {
+                for ( Pair<Long, String> request : batch ) {
+                    out.println( request.first + " " + request.second );
+                }
+                out.flush();
+            }
+            for ( Pair<Long, String> request : batch ) {
+                trackGetMap( request.second );
+            }
+            batch.clear();
+        }
+    }
+
 }
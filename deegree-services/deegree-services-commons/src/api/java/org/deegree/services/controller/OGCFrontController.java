@@ -109,6 +109,7 @@ import org.deegree.commons.xml.XMLProcessingException;
 import org.deegree.commons.xml.stax.XMLInputFactoryUtils;
 import org.deegree.commons.xml.stax.XMLStreamUtils;
 import org.deegree.feature.stream.ThreadedFeatureInputStream;
+import org.deegree.protocol.ows.http.OwsHttpConnectionPool;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
@@ -533,7 +534,9 @@ public class OGCFrontController extends HttpServlet {
         if ( loader.getRequestLogger() != null ) {
             response = createLoggingResponseWrapper( request, response );
         }
-        return new HttpResponseBuffer( response );
+        boolean indentXml = mainConfig != null && mainConfig.isIndentResponses() != null
+                            && mainConfig.isIndentResponses();
+        return new HttpResponseBuffer( response, indentXml );
     }
 
     private HttpServletResponse createLoggingResponseWrapper( HttpServletRequest request, HttpServletResponse response )
@@ -807,7 +810,7 @@ public class OGCFrontController extends HttpServlet {
                 watchTimeout( ows, request );
                 ows.doKVP( normalizedKVPParams, requestWrapper, response, multiParts );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
+                FrontControllerStats.requestFinished( dispatchTime, getServiceName( ows ), normalizedKVPParams );
                 unwatchTimeout();
             }
         } catch ( SecurityException e ) {
@@ -889,12 +892,14 @@ public class OGCFrontController extends HttpServlet {
             }
             if ( ows != null ) {
                 LOG.debug( "Dispatching request to OWS: " + ows.getClass().getName() );
+                String operation = xmlStream.getLocalName();
+                String format = xmlStream.getAttributeValue( null, "outputFormat" );
                 long dispatchTime = FrontControllerStats.requestDispatched();
                 try {
-                    watchTimeout( ows, xmlStream.getLocalName() );
+                    watchTimeout( ows, operation );
                     ows.doXML( xmlStream, requestWrapper, response, multiParts );
                 } finally {
-                    FrontControllerStats.requestFinished( dispatchTime );
+                    FrontControllerStats.requestFinished( dispatchTime, getServiceName( ows ), operation, null, format );
                     unwatchTimeout();
                 }
             }
@@ -1009,12 +1014,13 @@ public class OGCFrontController extends HttpServlet {
             }
 
             LOG.debug( "Dispatching request to OWS class: " + ows.getClass().getName() );
+            String operation = env.getSOAPBodyFirstElementLocalName();
             long dispatchTime = FrontControllerStats.requestDispatched();
             try {
-                watchTimeout( ows, env.getSOAPBodyFirstElementLocalName() );
+                watchTimeout( ows, operation );
                 ows.doSOAP( env, requestWrapper, response, multiParts, factory );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
+                FrontControllerStats.requestFinished( dispatchTime, getServiceName( ows ), operation, null, null );
             }
         } catch ( SecurityException e ) {
             if ( credentialsProvider != null ) {
@@ -1399,6 +1405,8 @@ public class OGCFrontController extends HttpServlet {
             // just eat it
         }
         Executor.getInstance().shutdown();
+        OwsHttpConnectionPool.shutdown();
+        FrontControllerStats.shutdown();
 
         LogFactory.releaseAll();
         LogManager.shutdown();
@@ -1571,6 +1579,10 @@ public class OGCFrontController extends HttpServlet {
         }
     }
 
+    private static String getServiceName( OWS ows ) {
+        return ( (OWSProvider) ows.getMetadata().getProvider() ).getImplementationMetadata().getImplementedServiceName()[0];
+    }
+
     private static String getHttpURL() {
         RequestContext context = getContext();
         String xForwardedHost = context.getXForwardedHost();
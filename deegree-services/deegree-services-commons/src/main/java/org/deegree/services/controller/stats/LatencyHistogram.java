@@ -0,0 +1,172 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic-linear buckets (like an HDR histogram).
+ * <p>
+ * Values (in microseconds) are recorded into buckets that split every power of two into {@value #SUB_BUCKETS} linear
+ * sub buckets, so percentiles are reported with a relative error of at most ~6%, independent of the magnitude. Values
+ * above 2^{@value #MAX_EXPONENT} microseconds (about twelve days) are counted in the highest bucket.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    static final int MAX_EXPONENT = 40;
+
+    private static final int NUM_BUCKETS = SUB_BUCKETS + ( MAX_EXPONENT - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( NUM_BUCKETS );
+
+    private final StripedCounter count = new StripedCounter();
+
+    private final StripedCounter sum = new StripedCounter();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param micros
+     *            the measured value in microseconds, negative values are treated as zero
+     */
+    public void record( long micros ) {
+        long value = Math.max( 0, micros );
+        buckets.incrementAndGet( bucket( value ) );
+        count.increment();
+        sum.add( value );
+        long currentMax = max.get();
+        while ( value > currentMax && !max.compareAndSet( currentMax, value ) ) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded values (microseconds)
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return maximum recorded value (microseconds), zero if nothing has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of all recorded values (microseconds), zero if nothing has been recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     * 
+     * @param percentile
+     *            between 0 and 100
+     * @return the (upper bucket bound of the) value at the percentile (microseconds), zero if nothing has been
+     *         recorded
+     */
+    public long getValueAtPercentile( double percentile ) {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for ( int i = 0; i < NUM_BUCKETS; ++i ) {
+            counts[i] = buckets.get( i );
+            total += counts[i];
+        }
+        if ( total == 0 ) {
+            return 0;
+        }
+        long target = Math.max( 1, (long) Math.ceil( Math.min( 100, percentile ) / 100 * total ) );
+        long seen = 0;
+        for ( int i = 0; i < NUM_BUCKETS; ++i ) {
+            seen += counts[i];
+            if ( seen >= target ) {
+                return Math.min( upperBound( i ), getMax() );
+            }
+        }
+        return getMax();
+    }
+
+    static int bucket( long value ) {
+        if ( value < SUB_BUCKETS ) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        if ( exponent > MAX_EXPONENT ) {
+            return NUM_BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) ( value >>> shift ) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound( int bucket ) {
+        if ( bucket < SUB_BUCKETS ) {
+            return bucket;
+        }
+        int shift = ( bucket - SUB_BUCKETS ) / SUB_BUCKETS;
+        int sub = ( bucket - SUB_BUCKETS ) % SUB_BUCKETS;
+        return ( ( (long) SUB_BUCKETS + sub + 1 ) << shift ) - 1;
+    }
+
+}
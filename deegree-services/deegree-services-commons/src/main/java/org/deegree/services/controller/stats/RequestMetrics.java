@@ -0,0 +1,157 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.stats;
+
+/**
+ * Request count and latency distribution of requests with the same service, operation, layer and output format.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class RequestMetrics {
+
+    private final String service;
+
+    private final String operation;
+
+    private final String layer;
+
+    private final String format;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * @param service
+     *            service type, never <code>null</code>
+     * @param operation
+     *            request name, never <code>null</code>
+     * @param layer
+     *            requested layer(s)/feature type(s), may be empty, never <code>null</code>
+     * @param format
+     *            requested output format, may be empty, never <code>null</code>
+     */
+    public RequestMetrics( String service, String operation, String layer, String format ) {
+        this.service = service;
+        this.operation = operation;
+        this.layer = layer;
+        this.format = format;
+    }
+
+    /**
+     * @return the service type, never <code>null</code>
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return the request name, never <code>null</code>
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the requested layer(s)/feature type(s), may be empty, never <code>null</code>
+     */
+    public String getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return the requested output format, may be empty, never <code>null</code>
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the response time distribution, never <code>null</code>
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return number of finished requests
+     */
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    /**
+     * @return mean response time in milliseconds
+     */
+    public double getMeanMillis() {
+        return latencies.getMean() / 1000;
+    }
+
+    /**
+     * @return median response time in milliseconds
+     */
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile( 50 ) / 1000.0;
+    }
+
+    /**
+     * @return 90th percentile of the response time in milliseconds
+     */
+    public double getP90Millis() {
+        return latencies.getValueAtPercentile( 90 ) / 1000.0;
+    }
+
+    /**
+     * @return 99th percentile of the response time in milliseconds
+     */
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile( 99 ) / 1000.0;
+    }
+
+    /**
+     * @return maximum response time in milliseconds
+     */
+    public double getMaxMillis() {
+        return latencies.getMax() / 1000.0;
+    }
+
+}
@@ -0,0 +1,109 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads concurrent updates over several cells, so request threads don't contend on a single value.
+ * <p>
+ * Each thread updates the cell selected by its id, cells are padded to separate cache lines. {@link #sum()} is not an
+ * atomic snapshot, but exact as soon as concurrent updates have finished.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class StripedCounter {
+
+    // 8 longs = one 64 byte cache line
+    private static final int PADDING = 8;
+
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while ( stripes < 2 * Runtime.getRuntime().availableProcessors() ) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray( STRIPES * PADDING );
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        add( 1 );
+    }
+
+    /**
+     * @param delta
+     *            value to add, may be negative
+     */
+    public void add( long delta ) {
+        cells.addAndGet( cell(), delta );
+    }
+
+    /**
+     * @return the current sum of all cells
+     */
+    public long sum() {
+        long sum = 0;
+        for ( int i = 0; i < cells.length(); i += PADDING ) {
+            sum += cells.get( i );
+        }
+        return sum;
+    }
+
+    private static int cell() {
+        long id = Thread.currentThread().getId();
+        int h = (int) ( id ^ ( id >>> 32 ) );
+        h ^= ( h >>> 16 );
+        h *= 0x85ebca6b;
+        h ^= ( h >>> 13 );
+        return ( h & ( STRIPES - 1 ) ) * PADDING;
+    }
+
+}
@@ -38,6 +38,7 @@ package org.deegree.services.controller.utils;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -83,6 +84,13 @@ import org.slf4j.Logger;
  * called. This is unlike the original servlet API that throws an {@link IllegalStateException} when getWriter is called
  * after getOutputStream, or vice versa.
  * </p>
+ * <p>
+ * For large responses (e.g. GetFeature, GetRecords or GetTile), buffering the whole response is expensive, as the
+ * buffer spills to a temp file and is only copied to the client after the response has been generated completely. In
+ * this case, {@link #enableStreaming()} can be used: output is kept in memory only until the rollback window is
+ * exceeded, then the headers are committed and all further output is written to the client directly. Exceptions that
+ * occur before the window is exceeded can still be reported as a proper ExceptionReport.
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author <a href="mailto:tonnhofer@lat-lon.de">Oliver Tonnhofer</a>
@@ -95,11 +103,23 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
 
     private static final Logger LOG = getLogger( HttpResponseBuffer.class );
 
+    /**
+     * Default size (in bytes) of the in-memory rollback window used in streaming mode.
+     */
+    public static final int DEFAULT_ROLLBACK_WINDOW = 64 * 1024;
+
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
     private boolean addEncoding = true;
 
-    // if buffer == null, buffering is disabled
+    private final boolean indentXml;
+
+    // if buffer == null, buffering is disabled (or streaming is enabled)
     private StreamBufferStore buffer;
 
+    // if stream != null, streaming is enabled
+    private StreamingOutputStream stream;
+
     /**
      * The servlet api only allows a call to either getWriter or getOutputStream. This enum will protocol the current
      * state.
@@ -119,11 +139,24 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     private final HttpServletResponse wrappee;
 
     /**
+     * Creates a new {@link HttpResponseBuffer} that produces indented XML output.
+     * 
      * @param response
      */
     public HttpResponseBuffer( HttpServletResponse response ) {
+        this( response, true );
+    }
+
+    /**
+     * @param response
+     * @param indentXml
+     *            true, if the {@link XMLStreamWriter}s returned by {@link #getXMLWriter()} should indent the output,
+     *            false otherwise (more compact and faster)
+     */
+    public HttpResponseBuffer( HttpServletResponse response, boolean indentXml ) {
         super( response );
         wrappee = response;
+        this.indentXml = indentXml;
         buffer = new StreamBufferStore();
         outputStream = new BufferedServletOutputStream( buffer );
     }
@@ -149,12 +182,51 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         }
         LOG.debug( "Disabling buffering." );
         this.buffer = null;
+        this.stream = null;
+    }
+
+    /**
+     * Enables streaming of the output, using the {@link #DEFAULT_ROLLBACK_WINDOW}.
+     * 
+     * @see #enableStreaming(int)
+     */
+    public void enableStreaming() {
+        enableStreaming( DEFAULT_ROLLBACK_WINDOW );
+    }
+
+    /**
+     * Enables streaming of the output.
+     * <p>
+     * Written data is kept in memory until the given number of bytes is exceeded. At this point, the headers are
+     * committed and the data is sent to the client directly. Until then, the response can still be {@link #reset()}.
+     * </p>
+     * <p>
+     * This method may only be called, if neither {@link #getWriter()}, {@link #getOutputStream()} nor
+     * {@link #getXMLWriter()} has been called before.
+     * </p>
+     * 
+     * @param rollbackWindow
+     *            number of bytes to keep in memory before the response is committed, must not be negative
+     */
+    public void enableStreaming( int rollbackWindow ) {
+        if ( returnType != ReturnType.NOT_DEFINED_YET ) {
+            throw new IllegalStateException(
+                                             "getOutputStream() / getWriter() has already been called for this response, cannot enable streaming" );
+        }
+        LOG.debug( "Enabling streaming (rollback window: " + rollbackWindow + " bytes)." );
+        this.buffer = null;
+        this.stream = new StreamingOutputStream( rollbackWindow );
+        this.outputStream = new BufferedServletOutputStream( stream );
+    }
+
+    private boolean isBuffered() {
+        return buffer != null || stream != null;
     }
 
     @Override
     public PrintWriter getWriter()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( !isBuffered() ) {
             return super.getWriter();
         }
 
@@ -176,7 +248,7 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     @Override
     public ServletOutputStream getOutputStream()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( !isBuffered() ) {
             return super.getOutputStream();
         }
         if ( returnType == ReturnType.NOT_DEFINED_YET ) {
@@ -203,9 +275,8 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     public synchronized XMLStreamWriter getXMLWriter()
                             throws IOException, XMLStreamException {
         if ( xmlWriter == null ) {
-            XMLOutputFactory factory = XMLOutputFactory.newInstance();
             String encoding = "UTF-8";
-            xmlWriter = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( getOutputStream(), encoding ) );
+            xmlWriter = createXMLWriter( encoding );
             xmlWriter.writeStartDocument( encoding, "1.0" );
             // TODO decide again if character encoding should be set (WFS CITE 1.1.0 tests don't like it, but
             // iGeoDesktop/OpenJUMP currently require it)
@@ -234,9 +305,8 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
                             throws IOException, XMLStreamException {
 
         if ( xmlWriter == null ) {
-            XMLOutputFactory factory = XMLOutputFactory.newInstance();
             String xmlEncoding = "UTF-8";
-            xmlWriter = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( getOutputStream(), xmlEncoding ) );
+            xmlWriter = createXMLWriter( xmlEncoding );
             xmlWriter.writeStartDocument( xmlEncoding, "1.0" );
             if ( setCharacterEncoding ) {
                 setCharacterEncoding( xmlEncoding );
@@ -245,8 +315,18 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         return xmlWriter;
     }
 
+    private XMLStreamWriter createXMLWriter( String encoding )
+                            throws IOException, XMLStreamException {
+        XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter( getOutputStream(), encoding );
+        if ( indentXml ) {
+            return new IndentingXMLStreamWriter( writer );
+        }
+        return writer;
+    }
+
     /**
-     * Performs a schema-based validation of the response (only if the written output has been buffered and was XML).
+     * Performs a schema-based validation of the response (only if the written output has been buffered completely and
+     * was XML).
      */
     public void validate() {
 
@@ -312,13 +392,20 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
             buffer.writeTo( super.getOutputStream() );
             buffer.reset();
         }
+        if ( stream != null ) {
+            stream.commit();
+        }
         super.flushBuffer();
     }
 
     @Override
     public void reset() {
-        if ( buffer != null && !isCommitted() ) {
-            buffer.reset();
+        if ( isBuffered() && !isCommitted() ) {
+            if ( buffer != null ) {
+                buffer.reset();
+            } else {
+                stream.reset();
+            }
             super.reset();
             returnType = ReturnType.NOT_DEFINED_YET;
             xmlWriter = null;
@@ -354,6 +441,86 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         }
     }
 
+    private void commitHeaders()
+                            throws IOException {
+        super.flushBuffer();
+    }
+
+    private ServletOutputStream getWrappedOutputStream()
+                            throws IOException {
+        return super.getOutputStream();
+    }
+
+    /**
+     * Keeps written data in memory until the rollback window is exceeded, afterwards all data is passed to the output
+     * stream of the wrapped response.
+     */
+    private class StreamingOutputStream extends OutputStream {
+
+        private final int rollbackWindow;
+
+        private final ByteArrayOutputStream window = new ByteArrayOutputStream();
+
+        // if != null, the response has been committed
+        private OutputStream os;
+
+        StreamingOutputStream( int rollbackWindow ) {
+            this.rollbackWindow = rollbackWindow;
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            if ( os == null && window.size() + 1 > rollbackWindow ) {
+                commit();
+            }
+            if ( os != null ) {
+                os.write( b );
+            } else {
+                window.write( b );
+            }
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            if ( os == null && window.size() + len > rollbackWindow ) {
+                commit();
+            }
+            if ( os != null ) {
+                os.write( b, off, len );
+            } else {
+                window.write( b, off, len );
+            }
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            if ( os != null ) {
+                os.flush();
+            }
+        }
+
+        void commit()
+                                throws IOException {
+            if ( os == null ) {
+                LOG.debug( "Committing streamed response after " + window.size() + " bytes." );
+                os = getWrappedOutputStream();
+                window.writeTo( os );
+                window.reset();
+                commitHeaders();
+            }
+        }
+
+        void reset() {
+            if ( os != null ) {
+                throw new IllegalStateException( "Cannot reset response, streamed output has already been committed." );
+            }
+            window.reset();
+        }
+    }
+
     /**
      * This is a ServletOutputStream that uses our internal ByteArrayOutputStream to buffer all data.
      */
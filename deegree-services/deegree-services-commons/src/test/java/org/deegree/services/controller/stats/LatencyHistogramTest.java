@@ -0,0 +1,100 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        long lower = 0;
+        for ( int bucket = 0; bucket < 400; ++bucket ) {
+            long upper = LatencyHistogram.upperBound( bucket );
+            assertEquals( bucket, LatencyHistogram.bucket( lower ) );
+            assertEquals( bucket, LatencyHistogram.bucket( upper ) );
+            lower = upper + 1;
+        }
+    }
+
+    @Test
+    public void testRelativeErrorIsBounded() {
+        for ( long value = 1; value < 1L << 36; value = value * 3 + 1 ) {
+            long upper = LatencyHistogram.upperBound( LatencyHistogram.bucket( value ) );
+            assertTrue( upper >= value );
+            assertTrue( upper - value <= value / LatencyHistogram.SUB_BUCKETS );
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 1000; ++i ) {
+            histogram.record( i * 1000 );
+        }
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 1000000, histogram.getMax() );
+        assertEquals( 500500.0, histogram.getMean(), 0.001 );
+        assertEquals( 500000, histogram.getValueAtPercentile( 50 ), 500000 / 16 );
+        assertEquals( 990000, histogram.getValueAtPercentile( 99 ), 990000 / 16 );
+        assertEquals( 1000000, histogram.getValueAtPercentile( 100 ) );
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+        assertEquals( 0.0, histogram.getMean(), 0 );
+    }
+
+}
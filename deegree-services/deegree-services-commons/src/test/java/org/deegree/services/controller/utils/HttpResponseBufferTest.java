@@ -0,0 +1,145 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HttpResponseBuffer}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class HttpResponseBufferTest {
+
+    private ByteArrayOutputStream sent;
+
+    private HttpServletResponse response;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        sent = new ByteArrayOutputStream();
+        response = mock( HttpServletResponse.class );
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                sent.write( b );
+            }
+        } );
+    }
+
+    @Test
+    public void testStreamingKeepsSmallResponseUntilFlush()
+                            throws IOException {
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response );
+        buffer.enableStreaming( 16 );
+        buffer.getOutputStream().write( new byte[10] );
+        assertEquals( 0, sent.size() );
+        verify( response, never() ).flushBuffer();
+        buffer.flushBuffer();
+        assertEquals( 10, sent.size() );
+    }
+
+    @Test
+    public void testStreamingCommitsWhenWindowIsExceeded()
+                            throws IOException {
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response );
+        buffer.enableStreaming( 16 );
+        buffer.getOutputStream().write( new byte[10] );
+        buffer.getOutputStream().write( new byte[10] );
+        assertEquals( 20, sent.size() );
+        verify( response, times( 1 ) ).flushBuffer();
+        buffer.getOutputStream().write( 1 );
+        assertEquals( 21, sent.size() );
+    }
+
+    @Test
+    public void testStreamingResetDiscardsWindow()
+                            throws IOException {
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response );
+        buffer.enableStreaming( 16 );
+        buffer.getOutputStream().write( new byte[10] );
+        buffer.reset();
+        buffer.getOutputStream().write( "abc".getBytes( "UTF-8" ) );
+        buffer.flushBuffer();
+        assertEquals( "abc", sent.toString( "UTF-8" ) );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingResetAfterCommitFails()
+                            throws IOException {
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response );
+        buffer.enableStreaming( 16 );
+        buffer.getOutputStream().write( new byte[20] );
+        buffer.reset();
+    }
+
+    @Test
+    public void testXMLWriterWithoutIndentation()
+                            throws Exception {
+        HttpResponseBuffer buffer = new HttpResponseBuffer( response, false );
+        XMLStreamWriter writer = buffer.getXMLWriter();
+        writer.writeStartElement( "a" );
+        writer.writeEmptyElement( "b" );
+        writer.writeEndElement();
+        buffer.flushBuffer();
+        assertFalse( sent.toString( "UTF-8" ).contains( "\n" ) );
+    }
+
+}
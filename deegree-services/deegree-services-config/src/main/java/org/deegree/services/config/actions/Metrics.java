@@ -0,0 +1,95 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.services.config.actions;
+
+import static org.deegree.services.controller.FrontControllerStats.getActiveRequests;
+import static org.deegree.services.controller.FrontControllerStats.getDispatchedRequests;
+import static org.deegree.services.controller.FrontControllerStats.getDroppedLogEntries;
+import static org.deegree.services.controller.FrontControllerStats.getRequestMetrics;
+import static org.deegree.services.controller.FrontControllerStats.getResponseTimes;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.services.controller.stats.LatencyHistogram;
+import org.deegree.services.controller.stats.RequestMetrics;
+
+/**
+ * Writes the request metrics in the plain text exposition format understood by common monitoring scrapers.
+ * 
+ * @since 3.4
+ */
+public class Metrics {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    public static void metrics( HttpServletResponse resp )
+                            throws IOException {
+        resp.setContentType( "text/plain; version=0.0.4; charset=UTF-8" );
+        PrintWriter out = new PrintWriter( new OutputStreamWriter( resp.getOutputStream(), "UTF-8" ) );
+
+        out.println( "# TYPE deegree_requests_dispatched_total counter" );
+        out.println( "deegree_requests_dispatched_total " + getDispatchedRequests() );
+        out.println( "# TYPE deegree_requests_active gauge" );
+        out.println( "deegree_requests_active " + getActiveRequests() );
+        out.println( "# TYPE deegree_requestlog_dropped_total counter" );
+        out.println( "deegree_requestlog_dropped_total " + getDroppedLogEntries() );
+
+        out.println( "# TYPE deegree_request_duration_seconds summary" );
+        writeSummary( out, "", getResponseTimes() );
+        for ( RequestMetrics m : getRequestMetrics() ) {
+            String labels = "service=\"" + escape( m.getService() ) + "\",operation=\"" + escape( m.getOperation() )
+                            + "\",layer=\"" + escape( m.getLayer() ) + "\",format=\"" + escape( m.getFormat() ) + "\"";
+            writeSummary( out, labels, m.getLatencies() );
+        }
+        out.flush();
+    }
+
+    private static void writeSummary( PrintWriter out, String labels, LatencyHistogram latencies ) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for ( double q : QUANTILES ) {
+            out.println( "deegree_request_duration_seconds{" + prefix + "quantile=\"" + q + "\"} "
+                         + seconds( latencies.getValueAtPercentile( q * 100 ) ) );
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.println( "deegree_request_duration_seconds_sum" + suffix + seconds( latencies.getSum() ) );
+        out.println( "deegree_request_duration_seconds_count" + suffix + latencies.getCount() );
+    }
+
+    private static double seconds( long micros ) {
+        return micros / 1000000.0;
+    }
+
+    private static String escape( String value ) {
+        return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+
+}
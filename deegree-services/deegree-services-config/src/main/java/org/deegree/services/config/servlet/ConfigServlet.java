@@ -43,6 +43,7 @@ import static org.deegree.services.config.actions.Download.download;
 import static org.deegree.services.config.actions.Invalidate.invalidate;
 import static org.deegree.services.config.actions.List.list;
 import static org.deegree.services.config.actions.ListWorkspaces.listWorkspaces;
+import static org.deegree.services.config.actions.Metrics.metrics;
 import static org.deegree.services.config.actions.Restart.restart;
 import static org.deegree.services.config.actions.Upload.upload;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -92,6 +93,7 @@ public class ConfigServlet extends HttpServlet {
             data.append( "GET /config/list/wsname[/path]                               - list workspace with name <wsname> or directory in workspace\n" );
             data.append( "GET /config/invalidate/datasources/tile/id/matrixset[?bbox=] - invalidate part or all of a tile store cache's tile matrix set\n" );
             data.append( "GET /config/crs/list                                         - list available CRS definitions\n" );
+            data.append( "GET /config/metrics                                          - request metrics in plain text exposition format\n" );
             data.append( "POST /config/crs/getcodes with wkt=<wkt>                     - retrieves a list of CRS codes corresponding to the WKT (POSTed KVP)\n" );
             data.append( "GET /config/crs/<code>                                       - checks if a CRS definition is available, returns true/false\n" );
             data.append( "PUT /config/upload/wsname.zip                                - upload workspace <wsname>\n" );
@@ -143,6 +145,10 @@ public class ConfigServlet extends HttpServlet {
             delete( path.substring( 7 ), resp );
         }
 
+        if ( path.toLowerCase().startsWith( "/metrics" ) ) {
+            metrics( resp );
+        }
+
         if ( path.toLowerCase().startsWith( "/crs/list" ) ) {
             listCrs( resp );
         } else if ( path.toLowerCase().startsWith( "/crs/getcodes" ) ) {
@@ -318,6 +318,7 @@ public class CSWController extends AbstractOWS {
             case GetRecords:
                 GetRecords getRec = GetRecordsKVPAdapter.parse( normalizedKVPParams, "application/xml",
                                                                 "http://www.opengis.net/cat/csw/2.0.2" );
+                response.enableStreaming();
                 getRecordsHandler.doGetRecords( getRec, response, store );
                 break;
             case GetRecordById:
@@ -363,7 +364,7 @@ public class CSWController extends AbstractOWS {
             XMLAdapter requestDoc = new XMLAdapter( xmlStream );
             OMElement rootElement = requestDoc.getRootElement();
 
-            doXML( rootElement, response );
+            doXML( rootElement, response, false );
         } catch ( OWSException e ) {
             LOG.debug( e.getMessage(), e );
             sendServiceException( e, response );
@@ -400,7 +401,7 @@ public class CSWController extends AbstractOWS {
             } else {
                 beginSOAPResponse( response );
             }
-            doXML( soapDoc.getBody().getFirstElement(), response );
+            doXML( soapDoc.getBody().getFirstElement(), response, true );
         } catch ( XMLStreamException e ) {
             LOG.debug( e.getMessage(), e );
             sendSoapException( soapDoc, factory, response, new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE ),
@@ -432,7 +433,7 @@ public class CSWController extends AbstractOWS {
         }
     }
 
-    private void doXML( OMElement requestElement, HttpResponseBuffer response )
+    private void doXML( OMElement requestElement, HttpResponseBuffer response, boolean isSoap )
                             throws OWSException, XMLStreamException, IOException {
         String rootElement = requestElement.getLocalName();
         CSWRequestType requestType = getRequestType( rootElement );
@@ -470,6 +471,9 @@ public class CSWController extends AbstractOWS {
             getRecordsAdapter.setRootElement( requestElement );
             GetRecords cswGRRequest = getRecordsAdapter.parse( requestVersion, "application/xml",
                                                                "http://www.opengis.net/cat/csw/2.0.2" );
+            if ( !isSoap ) {
+                response.enableStreaming();
+            }
             getRecordsHandler.doGetRecords( cswGRRequest, response, store );
             break;
         case GetRecordById:
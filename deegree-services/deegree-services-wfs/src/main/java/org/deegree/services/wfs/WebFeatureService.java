@@ -726,7 +726,7 @@ public class WebFeatureService extends AbstractOWS {
             Map<String, String> nsMap = service.getPrefixToNs();
 
             if ( disableBuffering ) {
-                response.disableBuffering();
+                response.enableStreaming();
             }
 
             switch ( requestType ) {
@@ -868,7 +868,7 @@ public class WebFeatureService extends AbstractOWS {
             }
 
             if ( disableBuffering ) {
-                response.disableBuffering();
+                response.enableStreaming();
             }
 
             switch ( requestType ) {
@@ -151,8 +151,12 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
         GMLVersion gmlVersion = options.getGmlVersion();
 
+        int returnMaxFeatures = getReturnMaxFeatures( request );
+        int startIndex = getStartIndex( request );
+
         QueryAnalyzer analyzer = new QueryAnalyzer( request.getQueries(), format.getMaster(),
-                                                    format.getMaster().getStoreManager(), options.isCheckAreaOfUse() );
+                                                    format.getMaster().getStoreManager(), options.isCheckAreaOfUse(),
+                                                    getQueryLimit( request, returnMaxFeatures, startIndex ) );
         Lock lock = acquireLock( request, analyzer );
 
         String schemaLocation = getSchemaLocation( request.getVersion(), analyzer.getFeatureTypes() );
@@ -251,16 +255,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
             }
         }
 
-        int returnMaxFeatures = options.getQueryMaxFeatures();
         BigInteger count = request.getPresentationParams().getCount();
-        if ( count != null && ( options.getQueryMaxFeatures() < 1 || count.intValue() < options.getQueryMaxFeatures() ) ) {
-            returnMaxFeatures = count.intValue();
-        }
-
-        int startIndex = 0;
-        if ( request.getPresentationParams().getStartIndex() != null ) {
-            startIndex = request.getPresentationParams().getStartIndex().intValue();
-        }
 
         GMLStreamWriter gmlStream = createGMLStreamWriter( gmlVersion, xmlStream );
         gmlStream.setProjections( analyzer.getProjections() );
@@ -305,6 +300,36 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    private int getReturnMaxFeatures( GetFeature request ) {
+        int returnMaxFeatures = options.getQueryMaxFeatures();
+        BigInteger count = request.getPresentationParams().getCount();
+        if ( count != null && ( options.getQueryMaxFeatures() < 1 || count.intValue() < options.getQueryMaxFeatures() ) ) {
+            returnMaxFeatures = count.intValue();
+        }
+        return returnMaxFeatures;
+    }
+
+    private int getStartIndex( GetFeature request ) {
+        int startIndex = 0;
+        if ( request.getPresentationParams().getStartIndex() != null ) {
+            startIndex = request.getPresentationParams().getStartIndex().intValue();
+        }
+        return startIndex;
+    }
+
+    /**
+     * Returns the number of features the feature stores need to deliver at most, so sorting stores can drop the rest
+     * early. Locking requests and requests with several queries (where duplicate features are skipped) are not
+     * limited.
+     */
+    private int getQueryLimit( GetFeature request, int returnMaxFeatures, int startIndex ) {
+        if ( request instanceof GetFeatureWithLock || request.getQueries().size() != 1 || returnMaxFeatures < 1 ) {
+            return -1;
+        }
+        long limit = (long) startIndex + returnMaxFeatures;
+        return limit > Integer.MAX_VALUE ? -1 : (int) limit;
+    }
+
     private ResponsePagingUris createResponsePagingUris( GetFeature request, BigInteger count, int startIndex )
                             throws UnknownCRSException, XMLStreamException, TransformationException,
                             UnsupportedEncodingException, FilterEvaluationException, FeatureStoreException,
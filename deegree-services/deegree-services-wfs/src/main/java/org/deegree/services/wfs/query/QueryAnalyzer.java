@@ -138,6 +138,8 @@ public class QueryAnalyzer {
 
     private final boolean checkAreaOfUse;
 
+    private final int maxFeatures;
+
     /**
      * Creates a new {@link QueryAnalyzer}.
      * 
@@ -153,10 +155,32 @@ public class QueryAnalyzer {
      */
     public QueryAnalyzer( List<org.deegree.protocol.wfs.query.Query> wfsQueries, WebFeatureService controller,
                           WfsFeatureStoreManager service, boolean checkInputDomain ) throws OWSException {
+        this( wfsQueries, controller, service, checkInputDomain, -1 );
+    }
+
+    /**
+     * Creates a new {@link QueryAnalyzer} whose feature store queries return at most the given number of features.
+     * 
+     * @param wfsQueries
+     *            queries be performed, must not be <code>null</code>
+     * @param service
+     *            {@link WfsFeatureStoreManager} to be used, must not be <code>null</code>
+     * @param checkInputDomain
+     *            true, if geometries in query constraints should be checked against validity domain of the SRS (needed
+     *            for CITE 1.1.0 compliance)
+     * @param maxFeatures
+     *            maximum number of features each feature store query needs to return, -1 for unlimited
+     * @throws OWSException
+     *             if the request cannot be performed, e.g. because it queries feature types that are not served
+     */
+    public QueryAnalyzer( List<org.deegree.protocol.wfs.query.Query> wfsQueries, WebFeatureService controller,
+                          WfsFeatureStoreManager service, boolean checkInputDomain, int maxFeatures )
+                            throws OWSException {
 
         this.controller = controller;
         this.service = service;
         this.checkAreaOfUse = checkInputDomain;
+        this.maxFeatures = maxFeatures;
 
         // generate validated feature store queries
         if ( wfsQueries.isEmpty() ) {
@@ -458,8 +482,7 @@ public class QueryAnalyzer {
             Filters.setDefaultCRS( filter, controller.getDefaultQueryCrs() );
         }
 
-        return new Query( typeNames, filter, ( (AdHocQuery) wfsQuery ).getFeatureVersion(),
-                          ( (AdHocQuery) wfsQuery ).getSrsName(), sortProps );
+        return new Query( typeNames, filter, sortProps, -1, maxFeatures, -1 );
     }
 
     private void validatePropertyName( ValueReference propName, TypeName[] typeNames )
@@ -112,6 +112,8 @@ public class MapService {
 
     private final GetLegendHandler getLegendHandler;
 
+    private final ParallelLayerRenderer parallelRenderer;
+
     /**
      * @param conf
      * @param adapter
@@ -125,6 +127,7 @@ public class MapService {
         MapServiceBuilder builder = new MapServiceBuilder( conf );
 
         defaultLayerOptions = builder.buildMapOptions();
+        parallelRenderer = builder.buildParallelLayerRenderer();
 
         if ( conf != null && conf.getThemeId() != null && !conf.getThemeId().isEmpty() ) {
             themes = new ArrayList<Theme>();
@@ -210,20 +213,29 @@ public class MapService {
 
         List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
         Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            try {
-                d.render( ctx );
-            } catch ( InterruptedException e ) {
-                String msg = "Request time-out.";
-                throw new OWSException( msg, NO_APPLICABLE_CODE );
+        try {
+            if ( isParallelRenderingApplicable( gm, layerDataList ) ) {
+                parallelRenderer.render( gm, layerDataList, optIter, ctx );
+            } else {
+                for ( LayerData d : layerDataList ) {
+                    ctx.applyOptions( optIter.next() );
+                    d.render( ctx );
+                }
             }
+        } catch ( InterruptedException e ) {
+            String msg = "Request time-out.";
+            throw new OWSException( msg, NO_APPLICABLE_CODE );
         }
         ctx.optimizeAndDrawLabels();
 
         ScaleFunction.getCurrentScaleValue().remove();
     }
 
+    private boolean isParallelRenderingApplicable( org.deegree.protocol.wms.ops.GetMap gm, List<LayerData> layers ) {
+        // vector output formats must be rendered into the target context directly
+        return parallelRenderer != null && layers.size() > 1 && !gm.getFormat().startsWith( "image/svg" );
+    }
+
     private List<LayerData> checkStyleValidAndBuildLayerDataList( org.deegree.protocol.wms.ops.GetMap gm,
                                                                   List<String> headers, double scale,
                                                                   ListIterator<LayerQuery> queryIter )
@@ -402,4 +414,13 @@ public class MapService {
         return updateSequence;
     }
 
+    /**
+     * Releases resources held by this map service.
+     */
+    public void destroy() {
+        if ( parallelRenderer != null ) {
+            parallelRenderer.destroy();
+        }
+    }
+
 }
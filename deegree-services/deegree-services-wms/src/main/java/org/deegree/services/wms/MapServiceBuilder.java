@@ -42,15 +42,18 @@
 package org.deegree.services.wms;
 
 import static org.deegree.rendering.r2d.context.MapOptions.Antialias.BOTH;
+import static org.deegree.rendering.r2d.context.MapOptions.Generalization.NONE;
 import static org.deegree.rendering.r2d.context.MapOptions.Interpolation.NEARESTNEIGHBOR;
 import static org.deegree.rendering.r2d.context.MapOptions.Quality.NORMAL;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptions.Antialias;
+import org.deegree.rendering.r2d.context.MapOptions.Generalization;
 import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
 import org.deegree.rendering.r2d.context.MapOptions.Quality;
 import org.deegree.services.jaxb.wms.LayerOptionsType;
+import org.deegree.services.jaxb.wms.ParallelRenderingType;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.workspace.Workspace;
 import org.slf4j.Logger;
@@ -104,11 +107,30 @@ class MapServiceBuilder {
             } else {
                 LOG.debug( "Using default feature info radius of {}.", featureInfoRadius );
             }
-            return new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            MapOptions options = new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            options.setGeneralization( handleDefaultValue( sf == null ? null : sf.getGeneralization(),
+                                                           Generalization.class, NONE ) );
+            return options;
         }
         return null;
     }
 
+    ParallelLayerRenderer buildParallelLayerRenderer() {
+        if ( conf == null || conf.getParallelRendering() == null ) {
+            return null;
+        }
+        ParallelRenderingType pr = conf.getParallelRendering();
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        if ( pr.getThreads() != null ) {
+            threads = pr.getThreads().intValue();
+        }
+        int maxConcurrentLayers = Math.max( 1, threads / 2 );
+        if ( pr.getMaxConcurrentLayers() != null ) {
+            maxConcurrentLayers = pr.getMaxConcurrentLayers().intValue();
+        }
+        return new ParallelLayerRenderer( threads, maxConcurrentLayers );
+    }
+
     private static <T extends Enum<T>> T handleDefaultValue( String val, Class<T> enumType, T defaultValue ) {
         if ( val == null ) {
             return defaultValue;
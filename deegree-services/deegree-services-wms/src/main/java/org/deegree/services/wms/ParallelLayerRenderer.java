@@ -0,0 +1,235 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.RequestUtils;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.LazyImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.slf4j.Logger;
+
+/**
+ * Renders the layers of a GetMap request concurrently. Each layer is rendered into an off-screen image of its own on a
+ * bounded thread pool, the images are then painted onto the target context in the original layer order. Labels of all
+ * layers are collected into the label renderer of the target context, so they can still be placed in one pass.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class ParallelLayerRenderer {
+
+    private static final Logger LOG = getLogger( ParallelLayerRenderer.class );
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    private final int maxConcurrentLayers;
+
+    /**
+     * @param threads
+     *            number of rendering threads shared by all requests, must be positive
+     * @param maxConcurrentLayers
+     *            maximum number of layers of a single request being rendered (and kept in memory) at the same time,
+     *            must be positive
+     */
+    ParallelLayerRenderer( int threads, int maxConcurrentLayers ) {
+        this.maxConcurrentLayers = maxConcurrentLayers;
+        final String prefix = "wms-render-" + POOL_COUNTER.incrementAndGet() + "-";
+        executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, prefix + threadCounter.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        LOG.debug( "Rendering layers in parallel using {} threads, at most {} layers per request.", threads,
+                   maxConcurrentLayers );
+    }
+
+    /**
+     * @param gm
+     *            the request, never <code>null</code>
+     * @param layers
+     *            the layers to render, never <code>null</code>
+     * @param options
+     *            the map options, in the same order as the layers
+     * @param ctx
+     *            the context to paint the layer images and to collect the labels into
+     * @throws InterruptedException
+     *             if the request thread has been interrupted (request time-out)
+     */
+    void render( GetMap gm, List<LayerData> layers, Iterator<MapOptions> options, RenderContext ctx )
+                            throws InterruptedException {
+        Double scale = ScaleFunction.getCurrentScaleValue().get();
+        Map<String, String> parameters = RequestUtils.getCurrentThreadRequestParameters().get();
+
+        List<LayerTask> tasks = new ArrayList<LayerTask>( layers.size() );
+        for ( LayerData data : layers ) {
+            tasks.add( new LayerTask( gm, data, options.next(), scale, parameters ) );
+        }
+
+        if ( ctx instanceof LazyImageRenderContext ) {
+            // the layer images must be drawn onto an image with the requested format/background
+            ( (LazyImageRenderContext) ctx ).initialize();
+        }
+
+        List<Future<LayerTask>> futures = new ArrayList<Future<LayerTask>>( tasks.size() );
+        int submitted = 0;
+        try {
+            for ( int painted = 0; painted < tasks.size(); ++painted ) {
+                while ( submitted < tasks.size() && submitted - painted < maxConcurrentLayers ) {
+                    futures.add( executor.submit( tasks.get( submitted++ ) ) );
+                }
+                LayerTask task = waitFor( futures.get( painted ) );
+                ctx.paintImage( task.image );
+                ctx.getLabelRenderer().getLabels().addAll( task.context.getLabelRenderer().getLabels() );
+                futures.set( painted, null );
+            }
+        } finally {
+            for ( Future<LayerTask> f : futures ) {
+                if ( f != null ) {
+                    f.cancel( true );
+                }
+            }
+        }
+    }
+
+    private static LayerTask waitFor( Future<LayerTask> future )
+                            throws InterruptedException {
+        try {
+            return future.get();
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof InterruptedException ) {
+                throw (InterruptedException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+    }
+
+    /**
+     * Stops the rendering threads.
+     */
+    void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class LayerTask implements Callable<LayerTask> {
+
+        private final GetMap gm;
+
+        private final LayerData data;
+
+        private final MapOptions options;
+
+        private final Double scale;
+
+        private final Map<String, String> parameters;
+
+        BufferedImage image;
+
+        RenderContext context;
+
+        LayerTask( GetMap gm, LayerData data, MapOptions options, Double scale, Map<String, String> parameters ) {
+            this.gm = gm;
+            this.data = data;
+            this.options = options;
+            this.scale = scale;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public LayerTask call()
+                                throws Exception {
+            ScaleFunction.getCurrentScaleValue().set( scale );
+            RequestUtils.getCurrentThreadRequestParameters().set( parameters );
+            try {
+                RenderingInfo info = new RenderingInfo( "image/png", gm.getWidth(), gm.getHeight(), true, null,
+                                                        gm.getBoundingBox(), gm.getPixelSize(), gm.getParameterMap() );
+                image = new BufferedImage( gm.getWidth(), gm.getHeight(), BufferedImage.TYPE_INT_ARGB );
+                context = ImageRenderContext.createInstance( info, image, null );
+                context.applyOptions( options );
+                try {
+                    data.render( context );
+                } finally {
+                    context.close();
+                }
+                return this;
+            } finally {
+                ScaleFunction.getCurrentScaleValue().remove();
+                RequestUtils.getCurrentThreadRequestParameters().remove();
+            }
+        }
+    }
+
+}
@@ -813,6 +813,9 @@ public class WMSController extends AbstractOWS {
         RenderingInfo info = new RenderingInfo( getMap.getFormat(), getMap.getWidth(), getMap.getHeight(),
                                                 getMap.getTransparent(), getMap.getBgColor(), getMap.getBoundingBox(),
                                                 getMap.getPixelSize(), map );
+        if ( conf.getMaxLabelIterations() != null ) {
+            info.setMaxLabelIterations( conf.getMaxLabelIterations().intValue() );
+        }
         RenderContext ctx = ouputFormatProvider.getRenderers( info, stream );
         LinkedList<String> headers = new LinkedList<String>();
         service.getMap( getMap, headers, ctx );
@@ -1147,7 +1150,9 @@ public class WMSController extends AbstractOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( service != null ) {
+            service.destroy();
+        }
     }
 
 }
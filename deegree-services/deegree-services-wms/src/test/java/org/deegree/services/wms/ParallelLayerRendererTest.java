@@ -0,0 +1,360 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.SimpleGeometryFactory;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.rendering.r2d.LabelRenderer;
+import org.deegree.rendering.r2d.RasterRenderer;
+import org.deegree.rendering.r2d.Renderer;
+import org.deegree.rendering.r2d.TextRenderer;
+import org.deegree.rendering.r2d.TileRenderer;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.MapOptions.Antialias;
+import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
+import org.deegree.rendering.r2d.context.MapOptions.Quality;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelLayerRenderer}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class ParallelLayerRendererTest {
+
+    private static final int SIZE = 4;
+
+    private ParallelLayerRenderer renderer;
+
+    @After
+    public void tearDown() {
+        if ( renderer != null ) {
+            renderer.destroy();
+        }
+    }
+
+    @Test
+    public void testCompositingInLayerOrder()
+                            throws Exception {
+        renderer = new ParallelLayerRenderer( 8, 8 );
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for ( int i = 0; i < 6; i++ ) {
+            // earlier layers take longer, so they finish last
+            layers.add( new TestLayer( i, ( 6 - i ) * 30 ) );
+        }
+        RecordingContext ctx = new RecordingContext();
+        renderer.render( createGetMap(), layers, options( layers.size() ), ctx );
+
+        assertEquals( layers.size(), ctx.painted.size() );
+        for ( int i = 0; i < layers.size(); i++ ) {
+            assertEquals( color( i ).getRGB(), ctx.painted.get( i ).getRGB( 0, 0 ) );
+        }
+    }
+
+    @Test
+    public void testLabelsOfAllLayersAreCollected()
+                            throws Exception {
+        renderer = new ParallelLayerRenderer( 4, 4 );
+        List<LayerData> layers = new ArrayList<LayerData>();
+        List<Label> expected = new ArrayList<Label>();
+        for ( int i = 0; i < 5; i++ ) {
+            TestLayer layer = new TestLayer( i, ( 5 - i ) * 10 );
+            for ( int j = 0; j < 3; j++ ) {
+                Label label = mock( Label.class );
+                layer.labels.add( label );
+                expected.add( label );
+            }
+            layers.add( layer );
+        }
+        RecordingContext ctx = new RecordingContext();
+        renderer.render( createGetMap(), layers, options( layers.size() ), ctx );
+
+        assertEquals( expected, ctx.labels );
+    }
+
+    @Test
+    public void testConcurrentLayersAreLimitedPerRequest()
+                            throws Exception {
+        renderer = new ParallelLayerRenderer( 16, 2 );
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for ( int i = 0; i < 10; i++ ) {
+            TestLayer layer = new TestLayer( i, 20 );
+            layer.active = active;
+            layer.maxActive = maxActive;
+            layers.add( layer );
+        }
+        RecordingContext ctx = new RecordingContext();
+        renderer.render( createGetMap(), layers, options( layers.size() ), ctx );
+
+        assertEquals( layers.size(), ctx.painted.size() );
+        assertTrue( "At most 2 layers at a time, but was " + maxActive.get(), maxActive.get() <= 2 );
+    }
+
+    @Test
+    public void testInterruptCancelsPendingLayers()
+                            throws Exception {
+        renderer = new ParallelLayerRenderer( 4, 2 );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch cancelled = new CountDownLatch( 1 );
+        final AtomicInteger rendered = new AtomicInteger();
+        final List<LayerData> layers = new ArrayList<LayerData>();
+        layers.add( new LayerData() {
+            @Override
+            public void render( RenderContext context )
+                                    throws InterruptedException {
+                started.countDown();
+                try {
+                    Thread.sleep( 60000 );
+                } catch ( InterruptedException e ) {
+                    cancelled.countDown();
+                    throw e;
+                }
+            }
+
+            @Override
+            public FeatureCollection info() {
+                return null;
+            }
+        } );
+        for ( int i = 1; i < 5; i++ ) {
+            layers.add( new TestLayer( i, 0 ) {
+                @Override
+                public void render( RenderContext context )
+                                        throws InterruptedException {
+                    rendered.incrementAndGet();
+                    super.render( context );
+                }
+            } );
+        }
+        final RecordingContext ctx = new RecordingContext();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread request = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    renderer.render( createGetMap(), layers, options( layers.size() ), ctx );
+                } catch ( Throwable t ) {
+                    error.set( t );
+                }
+            }
+        };
+        request.start();
+        assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+        request.interrupt();
+        request.join( 5000 );
+
+        assertFalse( request.isAlive() );
+        assertTrue( error.get() instanceof InterruptedException );
+        assertTrue( "Blocking layer has not been cancelled.", cancelled.await( 5, TimeUnit.SECONDS ) );
+        assertTrue( ctx.painted.isEmpty() );
+        // only the second layer fits into the per-request limit, the others have never been submitted
+        assertTrue( rendered.get() <= 1 );
+    }
+
+    private static GetMap createGetMap() {
+        GetMap gm = mock( GetMap.class );
+        when( gm.getWidth() ).thenReturn( SIZE );
+        when( gm.getHeight() ).thenReturn( SIZE );
+        when( gm.getBoundingBox() ).thenReturn( new SimpleGeometryFactory().createEnvelope( 0, 0, SIZE, SIZE, null ) );
+        when( gm.getPixelSize() ).thenReturn( 0.28 );
+        when( gm.getParameterMap() ).thenReturn( Collections.<String, String> emptyMap() );
+        return gm;
+    }
+
+    private static Iterator<MapOptions> options( int count ) {
+        List<MapOptions> options = new ArrayList<MapOptions>();
+        for ( int i = 0; i < count; i++ ) {
+            options.add( new MapOptions( Quality.NORMAL, Interpolation.NEARESTNEIGHBOR, Antialias.NONE, -1, 1 ) );
+        }
+        return options.iterator();
+    }
+
+    private static Color color( int layer ) {
+        return new Color( 10 * layer, 255 - 10 * layer, 100 );
+    }
+
+    /**
+     * Paints the whole map in a color identifying the layer, after an optional delay.
+     */
+    private static class TestLayer implements LayerData {
+
+        private final int index;
+
+        private final long delay;
+
+        final List<Label> labels = new ArrayList<Label>();
+
+        AtomicInteger active;
+
+        AtomicInteger maxActive;
+
+        TestLayer( int index, long delay ) {
+            this.index = index;
+            this.delay = delay;
+        }
+
+        @Override
+        public void render( RenderContext context )
+                                throws InterruptedException {
+            if ( active != null ) {
+                int current = active.incrementAndGet();
+                while ( true ) {
+                    int max = maxActive.get();
+                    if ( current <= max || maxActive.compareAndSet( max, current ) ) {
+                        break;
+                    }
+                }
+            }
+            try {
+                Thread.sleep( delay );
+                BufferedImage img = new BufferedImage( SIZE, SIZE, TYPE_INT_ARGB );
+                Graphics2D g = img.createGraphics();
+                g.setColor( color( index ) );
+                g.fillRect( 0, 0, SIZE, SIZE );
+                g.dispose();
+                context.paintImage( img );
+                context.getLabelRenderer().getLabels().addAll( labels );
+            } finally {
+                if ( active != null ) {
+                    active.decrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public FeatureCollection info() {
+            return null;
+        }
+    }
+
+    /**
+     * Target context that records the composited layer images and the collected labels.
+     */
+    private static class RecordingContext implements RenderContext {
+
+        final List<BufferedImage> painted = Collections.synchronizedList( new ArrayList<BufferedImage>() );
+
+        final List<Label> labels = new ArrayList<Label>();
+
+        private final LabelRenderer labelRenderer = mock( LabelRenderer.class );
+
+        RecordingContext() {
+            when( labelRenderer.getLabels() ).thenReturn( labels );
+        }
+
+        @Override
+        public Renderer getVectorRenderer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TextRenderer getTextRenderer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public LabelRenderer getLabelRenderer() {
+            return labelRenderer;
+        }
+
+        @Override
+        public RasterRenderer getRasterRenderer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TileRenderer getTileRenderer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void optimizeAndDrawLabels() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void paintImage( BufferedImage img ) {
+            painted.add( img );
+        }
+
+        @Override
+        public boolean close()
+                                throws IOException {
+            return true;
+        }
+
+        @Override
+        public void applyOptions( MapOptions options ) {
+            // nothing to do
+        }
+    }
+
+}
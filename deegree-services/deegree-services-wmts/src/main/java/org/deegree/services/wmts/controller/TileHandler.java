@@ -45,13 +45,21 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
@@ -61,11 +69,18 @@ import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileCacheInfo;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.slf4j.Logger;
 
 /**
  * Responsible for handling GetTile requests.
+ * <p>
+ * If a tile provides {@link TileCacheInfo}, ETag/Last-Modified/Cache-Control headers are sent and conditional requests
+ * (If-None-Match/If-Modified-Since) are answered with 304 (Not Modified). File based tiles are transferred directly
+ * from the file channel, bypassing the response buffer.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -75,9 +90,14 @@ import org.deegree.tile.TileDataSet;
 
 class TileHandler {
 
+    private static final Logger LOG = getLogger( TileHandler.class );
+
     private Map<String, TileLayer> layers;
 
-    TileHandler( List<Theme> themes ) {
+    private final int cacheMaxAge;
+
+    TileHandler( List<Theme> themes, int cacheMaxAge ) {
+        this.cacheMaxAge = cacheMaxAge;
         layers = new HashMap<String, TileLayer>();
         for ( Theme theme : themes ) {
             for ( Layer l : Themes.getAllLayers( theme ) ) {
@@ -88,13 +108,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( final GetTile op, final HttpResponseBuffer response )
+    private void getTile( final GetTile op, final HttpServletRequest request, final HttpResponseBuffer response )
                             throws OWSException, ServletException {
         final TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -136,6 +156,20 @@ class TileHandler {
 
         InputStream in = null;
         try {
+            TileCacheInfo info = t.getCacheInfo();
+            if ( info != null ) {
+                String etag = info.getContentHash() == null ? null : "\"" + info.getContentHash() + "\"";
+                setCacheHeaders( response, etag, info.getLastModified() );
+                if ( isNotModified( request, etag, info.getLastModified() ) ) {
+                    response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+                    return;
+                }
+                if ( info.getFile() != null ) {
+                    response.setContentType( format );
+                    sendFile( info, response );
+                    return;
+                }
+            }
             in = t.getAsStream();
             if ( in == null ) {
                 throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
@@ -149,4 +183,70 @@ class TileHandler {
         }
     }
 
+    private void setCacheHeaders( HttpResponseBuffer response, String etag, long lastModified ) {
+        if ( etag != null ) {
+            response.setHeader( "ETag", etag );
+        }
+        if ( lastModified >= 0 ) {
+            response.setDateHeader( "Last-Modified", lastModified );
+        }
+        response.setHeader( "Cache-Control", "max-age=" + cacheMaxAge );
+    }
+
+    private boolean isNotModified( HttpServletRequest request, String etag, long lastModified ) {
+        if ( request == null ) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null ) {
+            // If-Modified-Since must be ignored if If-None-Match is present
+            if ( etag == null ) {
+                return false;
+            }
+            for ( String tag : ifNoneMatch.split( "," ) ) {
+                tag = tag.trim();
+                if ( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if ( tag.equals( "*" ) || tag.equals( etag ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if ( lastModified < 0 ) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+        } catch ( IllegalArgumentException e ) {
+            LOG.debug( "Ignoring invalid If-Modified-Since header: {}", e.getLocalizedMessage() );
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private void sendFile( TileCacheInfo info, HttpResponseBuffer response )
+                            throws IOException {
+        FileInputStream in = new FileInputStream( info.getFile() );
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            // the length is known and the file exists, so there is no need to buffer the response
+            response.disableBuffering();
+            if ( size <= Integer.MAX_VALUE ) {
+                response.setContentLength( (int) size );
+            }
+            WritableByteChannel out = Channels.newChannel( response.getOutputStream() );
+            long pos = 0;
+            while ( pos < size ) {
+                pos += channel.transferTo( pos, size - pos, out );
+            }
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
 }
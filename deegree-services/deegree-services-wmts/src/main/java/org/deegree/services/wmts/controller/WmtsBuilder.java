@@ -72,6 +72,8 @@ class WmtsBuilder {
 
     private FeatureInfoFormatsType featureInfoConf;
 
+    private int cacheMaxAge;
+
     WmtsBuilder( Workspace workspace, DeegreeWMTS conf ) {
         this.metadataUrlTemplate = conf.getMetadataURLTemplate();
 
@@ -88,6 +90,10 @@ class WmtsBuilder {
         }
 
         featureInfoConf = conf.getFeatureInfoFormats();
+
+        if ( conf.getCacheMaxAge() != null ) {
+            cacheMaxAge = conf.getCacheMaxAge().intValue();
+        }
     }
 
     String getMetadataUrlTemplate() {
@@ -102,4 +108,11 @@ class WmtsBuilder {
         return featureInfoConf;
     }
 
+    /**
+     * @return number of seconds clients may cache tiles without revalidating them
+     */
+    int getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
 }
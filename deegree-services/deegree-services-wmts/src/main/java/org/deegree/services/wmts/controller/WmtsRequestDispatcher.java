@@ -48,6 +48,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.tom.ows.Version;
@@ -84,10 +85,11 @@ class WmtsRequestDispatcher {
                                                      builder.getThemes() );
         capabilitiesHandler = new CapabilitiesHandler( mainMetadataConf, workspace, builder.getMetadataUrlTemplate(),
                                                        wmtsId, builder.getThemes(), featureInfoHandler.getManager() );
-        tileHandler = new TileHandler( builder.getThemes() );
+        tileHandler = new TileHandler( builder.getThemes(), builder.getCacheMaxAge() );
     }
 
-    void handleRequest( WMTSRequestType req, HttpResponseBuffer response, Map<String, String> map, Version version )
+    void handleRequest( WMTSRequestType req, HttpServletRequest request, HttpResponseBuffer response,
+                        Map<String, String> map, Version version )
                             throws OWSException, ServletException {
         if ( !map.get( "SERVICE" ).equals( "WMTS" ) ) {
             throw new OWSException( "The service parameter must to be WMTS.", INVALID_PARAMETER_VALUE, "service" );
@@ -116,7 +118,8 @@ class WmtsRequestDispatcher {
             }
             break;
         case GetTile:
-            tileHandler.getTile( map, response );
+            response.enableStreaming();
+            tileHandler.getTile( map, request, response );
             break;
         }
     }
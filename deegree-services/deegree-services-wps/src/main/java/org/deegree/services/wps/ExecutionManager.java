@@ -50,8 +50,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.stream.XMLOutputFactory;
@@ -101,7 +99,7 @@ public class ExecutionManager {
 
     private final StorageManager storageManager;
 
-    private final ExecutorService exec;
+    private final ExecutionScheduler scheduler;
 
     // number of executions to keep track of
     private final int maxEntries;
@@ -122,11 +120,53 @@ public class ExecutionManager {
      *            outputs)
      * @param maxExecutions
      *            number of executions to keep track of
+     * @param scheduler
+     *            used for running asynchronous executions, never <code>null</code>
      */
-    ExecutionManager( WPService master, StorageManager storageManager, int maxExecutions ) {
+    ExecutionManager( WPService master, StorageManager storageManager, int maxExecutions,
+                      ExecutionScheduler scheduler ) {
         this.storageManager = storageManager;
-        this.exec = Executors.newCachedThreadPool();
         this.maxEntries = maxExecutions;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the scheduler of the asynchronous executions, e.g. for querying queue depth, wait and run times.
+     * 
+     * @return the scheduler, never <code>null</code>
+     */
+    public ExecutionScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Cancels the asynchronous execution that stores its response document at the given location.
+     * 
+     * @param location
+     *            storage location of a response document
+     * @return <code>true</code>, if the execution was waiting or running, <code>false</code> otherwise
+     */
+    public boolean cancel( StorageLocation location ) {
+        ProcessExecution state = responseDocumentIdToState.get( location );
+        return state != null && scheduler.cancel( state );
+    }
+
+    /**
+     * Cancels the given asynchronous execution (used by the console).
+     * 
+     * @param execution
+     *            execution as returned by {@link #getAllProcesses()}, never <code>null</code>
+     * @return <code>true</code>, if the execution was waiting or running, <code>false</code> otherwise
+     */
+    public boolean cancel( ProcessExecution execution ) {
+        return scheduler.cancel( execution );
+    }
+
+    /**
+     * Stops the scheduler. Waiting executions are dropped, running ones are interrupted.
+     */
+    void destroy() {
+        scheduler.shutdown();
     }
 
     /**
@@ -305,10 +345,17 @@ public class ExecutionManager {
 
             state = createProcessletExecution( request, responseStorage, serviceInstance, outputParams, outputs );
 
-            // submit the process for asynchronous execution
+            // submit the process for asynchronous execution, the status is available as soon as it is accepted
             ProcessWorker worker = new ProcessWorker( process.getProcesslet(), outputs, state, outputParams,
                                                       responseStorage, request, serviceInstance );
-            exec.execute( worker );
+            responseDocumentIdToState.put( responseStorage, state );
+            try {
+                scheduler.submit( state, worker );
+            } catch ( OWSException e ) {
+                responseDocumentIdToState.remove( responseStorage );
+                state.setFailed( e );
+                throw e;
+            }
         } else {
             // response is directly returned in the HTTP response stream (-> synchronous process execution)
             LOG.debug( "Return response document in response stream (synchronous execution)" );
@@ -496,12 +543,11 @@ public class ExecutionManager {
         @SuppressWarnings("synthetic-access")
         @Override
         public void run() {
-
-            // register the storage location of the response document from the lookup map
-            responseDocumentIdToState.put( responseStorage, state );
-
             try {
-                executeProcess( process, request.getDataInputs(), outputs, state );
+                // a cancelled execution has already failed
+                if ( state.getExecutionState() != FAILED ) {
+                    executeProcess( process, request.getDataInputs(), outputs, state );
+                }
 
                 LOG.debug( "Storing final response document at " + responseStorage );
 
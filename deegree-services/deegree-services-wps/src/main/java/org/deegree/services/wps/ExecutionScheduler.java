@@ -0,0 +1,461 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.deegree.protocol.wps.WPSConstants.ExecutionState.ACCEPTED;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the asynchronous process executions of an {@link ExecutionManager}.
+ * <p>
+ * Accepted executions wait in a bounded queue, ordered by the priority of their process and then by arrival. An
+ * execution is started as soon as neither the global limit of concurrent executions nor the limit of its process is
+ * reached. Executions that don't fit into the queue are rejected with a <code>ServerBusy</code> exception. While an
+ * execution is waiting, the accepted message of its status reports the position in the queue.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class ExecutionScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ExecutionScheduler.class );
+
+    /** WPS 1.0.0 exception code for requests that can not be handled due to the current load. */
+    public static final String SERVER_BUSY = "ServerBusy";
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final int maxConcurrentExecutions;
+
+    private final int queueCapacity;
+
+    private final Map<String, Integer> processLimits;
+
+    private final Map<String, Integer> processPriorities;
+
+    private final ExecutorService exec;
+
+    private final TreeSet<Job> queue = new TreeSet<Job>( new Comparator<Job>() {
+        @Override
+        public int compare( Job o1, Job o2 ) {
+            if ( o1.priority != o2.priority ) {
+                return o1.priority > o2.priority ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : ( o1.sequence == o2.sequence ? 0 : 1 );
+        }
+    } );
+
+    private final Map<ProcessExecution, Job> jobs = new HashMap<ProcessExecution, Job>();
+
+    private final Map<String, Integer> runningPerProcess = new HashMap<String, Integer>();
+
+    private long sequence;
+
+    private int running;
+
+    private long accepted, rejected, completed;
+
+    private long totalWaitTime, totalRunTime;
+
+    /**
+     * Creates a new {@link ExecutionScheduler}.
+     * 
+     * @param maxConcurrentExecutions
+     *            maximum number of executions that run at the same time, must be positive
+     * @param queueCapacity
+     *            maximum number of executions waiting to be run, must not be negative
+     * @param processLimits
+     *            maximum number of concurrent executions per process identifier, may be empty, but never
+     *            <code>null</code>
+     * @param processPriorities
+     *            priorities per process identifier (executions of processes with a higher priority are started first,
+     *            default is 0), may be empty, but never <code>null</code>
+     */
+    public ExecutionScheduler( int maxConcurrentExecutions, int queueCapacity, Map<String, Integer> processLimits,
+                               Map<String, Integer> processPriorities ) {
+        if ( maxConcurrentExecutions < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of concurrent executions must be positive." );
+        }
+        if ( queueCapacity < 0 ) {
+            throw new IllegalArgumentException( "The queue capacity must not be negative." );
+        }
+        this.maxConcurrentExecutions = maxConcurrentExecutions;
+        this.queueCapacity = queueCapacity;
+        this.processLimits = new HashMap<String, Integer>( processLimits );
+        this.processPriorities = new HashMap<String, Integer>( processPriorities );
+        final int poolNumber = POOL_NUMBER.incrementAndGet();
+        this.exec = Executors.newFixedThreadPool( maxConcurrentExecutions, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "wps-execution-" + poolNumber + "-" + threadNumber.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Enqueues the given execution.
+     * 
+     * @param execution
+     *            status of the execution, never <code>null</code>
+     * @param task
+     *            runs the process and stores the final response document, never <code>null</code>; if the execution
+     *            gets cancelled while waiting, it is run in the calling thread with an execution that has already
+     *            failed
+     * @throws OWSException
+     *             if the queue is full or the scheduler has been shut down
+     */
+    public synchronized void submit( ProcessExecution execution, Runnable task )
+                            throws OWSException {
+        String processId = getProcessId( execution );
+        if ( exec.isShutdown() ) {
+            String msg = "The execution of process '" + processId
+                         + "' cannot be accepted, the service is shutting down.";
+            throw new OWSException( msg, NO_APPLICABLE_CODE );
+        }
+        Integer priority = processPriorities.get( processId );
+        Job job = new Job( execution, task, processId, priority == null ? 0 : priority, sequence++ );
+        queue.add( job );
+        dispatch();
+        if ( queue.size() > queueCapacity && queue.contains( job ) ) {
+            queue.remove( job );
+            ++rejected;
+            String msg = "The server is too busy to accept the execution of process '" + processId
+                         + "'. Please try again later.";
+            throw new OWSException( msg, SERVER_BUSY );
+        }
+        ++accepted;
+        jobs.put( execution, job );
+        updateQueuePositions();
+    }
+
+    /**
+     * Cancels the given execution. A waiting execution (or one that has been dispatched, but not started yet) is
+     * removed from the queue and fails, a running execution is interrupted (it's up to the processlet to react on
+     * this).
+     * 
+     * @param execution
+     *            never <code>null</code>
+     * @return <code>true</code>, if the execution was waiting or running, <code>false</code> otherwise
+     */
+    public boolean cancel( ProcessExecution execution ) {
+        Job job;
+        synchronized ( this ) {
+            job = jobs.get( execution );
+            if ( job == null ) {
+                return false;
+            }
+            if ( job.thread != null ) {
+                LOG.debug( "Interrupting execution of process '{}'.", job.processId );
+                job.thread.interrupt();
+                return true;
+            }
+            // if the job has already been dispatched, runJob skips it
+            job.cancelled = true;
+            queue.remove( job );
+            jobs.remove( execution );
+            updateQueuePositions();
+        }
+        LOG.debug( "Cancelled waiting execution of process '{}'.", job.processId );
+        fail( job, "The process execution has been cancelled." );
+        return true;
+    }
+
+    /**
+     * Returns the position of the given execution in the queue.
+     * 
+     * @param execution
+     *            never <code>null</code>
+     * @return the position (starting with 1), or -1, if the execution is not waiting
+     */
+    public synchronized int getQueuePosition( ProcessExecution execution ) {
+        Job job = jobs.get( execution );
+        if ( job == null || !queue.contains( job ) ) {
+            return -1;
+        }
+        return queue.headSet( job ).size() + 1;
+    }
+
+    /**
+     * Stops accepting executions and interrupts the running ones. Waiting executions fail.
+     */
+    public void shutdown() {
+        List<Job> waiting;
+        synchronized ( this ) {
+            waiting = new ArrayList<Job>( queue );
+            queue.clear();
+            // dispatched executions that have not been started yet
+            for ( Runnable runner : exec.shutdownNow() ) {
+                if ( runner instanceof JobRunner ) {
+                    waiting.add( ( (JobRunner) runner ).job );
+                }
+            }
+            for ( Job job : waiting ) {
+                job.cancelled = true;
+                jobs.remove( job.execution );
+            }
+        }
+        for ( Job job : waiting ) {
+            try {
+                fail( job, "The process execution has been aborted, the service is shutting down." );
+            } catch ( Throwable t ) {
+                LOG.error( "Unable to abort execution of process '" + job.processId + "': " + t.getMessage(), t );
+            }
+        }
+    }
+
+    /**
+     * @return the number of executions waiting to be run
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of executions currently running
+     */
+    public synchronized int getRunningExecutions() {
+        return running;
+    }
+
+    /**
+     * @return the number of executions accepted since startup
+     */
+    public synchronized long getAcceptedExecutions() {
+        return accepted;
+    }
+
+    /**
+     * @return the number of executions rejected since startup because the queue was full
+     */
+    public synchronized long getRejectedExecutions() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of executions finished since startup
+     */
+    public synchronized long getCompletedExecutions() {
+        return completed;
+    }
+
+    /**
+     * @return the average time (in milliseconds) that started executions had to wait in the queue
+     */
+    public synchronized long getAverageWaitTime() {
+        long started = completed + running;
+        return started == 0 ? 0 : totalWaitTime / started;
+    }
+
+    /**
+     * @return the average run time (in milliseconds) of the finished executions
+     */
+    public synchronized long getAverageRunTime() {
+        return completed == 0 ? 0 : totalRunTime / completed;
+    }
+
+    /**
+     * @return the maximum number of concurrent executions
+     */
+    public int getMaxConcurrentExecutions() {
+        return maxConcurrentExecutions;
+    }
+
+    /**
+     * @return the maximum number of waiting executions
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    private void dispatch() {
+        Iterator<Job> iter = queue.iterator();
+        while ( running < maxConcurrentExecutions && iter.hasNext() ) {
+            final Job job = iter.next();
+            Integer limit = processLimits.get( job.processId );
+            int runningOfProcess = getRunning( job.processId );
+            if ( limit != null && runningOfProcess >= limit ) {
+                continue;
+            }
+            iter.remove();
+            ++running;
+            runningPerProcess.put( job.processId, runningOfProcess + 1 );
+            job.started = System.currentTimeMillis();
+            totalWaitTime += job.started - job.submitted;
+            exec.execute( new JobRunner( job ) );
+        }
+    }
+
+    private void runJob( Job job ) {
+        synchronized ( this ) {
+            if ( job.cancelled ) {
+                LOG.debug( "Skipping cancelled execution of process '{}'.", job.processId );
+                totalWaitTime -= job.started - job.submitted;
+                release( job );
+                return;
+            }
+            job.thread = Thread.currentThread();
+        }
+        try {
+            job.task.run();
+        } catch ( Throwable t ) {
+            LOG.error( "Execution of process '" + job.processId + "' failed: " + t.getMessage(), t );
+        } finally {
+            synchronized ( this ) {
+                job.thread = null;
+                jobs.remove( job.execution );
+                ++completed;
+                totalRunTime += System.currentTimeMillis() - job.started;
+                release( job );
+            }
+            // clear a pending interrupt of a cancelled execution before the thread is reused
+            Thread.interrupted();
+        }
+    }
+
+    // frees the slot of a dispatched job, must be called while holding the lock
+    private void release( Job job ) {
+        --running;
+        runningPerProcess.put( job.processId, getRunning( job.processId ) - 1 );
+        if ( !exec.isShutdown() ) {
+            dispatch();
+            updateQueuePositions();
+        }
+    }
+
+    private static void fail( Job job, String msg ) {
+        job.execution.setFailed( new OWSException( msg, NO_APPLICABLE_CODE ) );
+        job.task.run();
+    }
+
+    private int getRunning( String processId ) {
+        Integer count = runningPerProcess.get( processId );
+        return count == null ? 0 : count;
+    }
+
+    private void updateQueuePositions() {
+        int position = 1;
+        for ( Job job : queue ) {
+            if ( job.execution.getExecutionState() == ACCEPTED ) {
+                job.execution.setAcceptedMessage( "Process execution accepted, waiting for execution (position "
+                                                  + position + " of " + queue.size() + " in queue)." );
+            }
+            ++position;
+        }
+    }
+
+    private static String getProcessId( ProcessExecution execution ) {
+        return execution.getProcessId() == null ? null : execution.getProcessId().getCode();
+    }
+
+    /**
+     * An accepted execution.
+     */
+    private static class Job {
+
+        final ProcessExecution execution;
+
+        final Runnable task;
+
+        final String processId;
+
+        final int priority;
+
+        final long sequence;
+
+        final long submitted = System.currentTimeMillis();
+
+        long started;
+
+        // set while the task is running
+        Thread thread;
+
+        // set when the job must not be run anymore
+        boolean cancelled;
+
+        Job( ProcessExecution execution, Runnable task, String processId, int priority, long sequence ) {
+            this.execution = execution;
+            this.task = task;
+            this.processId = processId;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Runs a dispatched job in the pool.
+     */
+    private class JobRunner implements Runnable {
+
+        final Job job;
+
+        JobRunner( Job job ) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            runJob( job );
+        }
+    }
+}
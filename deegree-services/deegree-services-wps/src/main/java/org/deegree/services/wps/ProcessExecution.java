@@ -216,6 +216,16 @@ public class ProcessExecution implements ProcessletExecutionInfo {
         return failedException;
     }
 
+    /**
+     * Sets the human-readable text associated with the acceptance of the process execution.
+     * 
+     * @param msg
+     *            additional human-readable client information, may be null
+     */
+    void setAcceptedMessage( String msg ) {
+        this.acceptedMessage = msg;
+    }
+
     /**
      * Sets the processing state to {@link ExecutionState#STARTED}.
      */
@@ -85,6 +85,7 @@ import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
 import org.deegree.services.jaxb.metadata.DeegreeServicesMetadataType;
 import org.deegree.services.jaxb.wps.DeegreeWPS;
 import org.deegree.services.jaxb.wps.DefaultExecutionManager;
+import org.deegree.services.jaxb.wps.DefaultExecutionManager.ProcessScheduling;
 import org.deegree.services.ows.OWS110ExceptionReportSerializer;
 import org.deegree.services.wps.capabilities.CapabilitiesXMLWriter;
 import org.deegree.services.wps.describeprocess.DescribeProcessResponseXMLAdapter;
@@ -152,6 +153,10 @@ public class WPService extends AbstractOWS {
         String storage = "../var/wps";
         int trackedExecutions = 100;
         int inputDiskSwitchLimit = 1024 * 1024;
+        int maxConcurrentExecutions = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 100;
+        Map<String, Integer> processLimits = new HashMap<String, Integer>();
+        Map<String, Integer> processPriorities = new HashMap<String, Integer>();
         if ( sc.getAbstractExecutionManager() != null ) {
             LOG.info( "Explicit ExecutionManager config." );
             DefaultExecutionManager execManagerConfig = (DefaultExecutionManager) sc.getAbstractExecutionManager().getValue();
@@ -164,6 +169,21 @@ public class WPService extends AbstractOWS {
             if ( execManagerConfig.getInputDiskSwitchLimit() != null ) {
                 inputDiskSwitchLimit = execManagerConfig.getInputDiskSwitchLimit().intValue();
             }
+            if ( execManagerConfig.getMaxConcurrentExecutions() != null ) {
+                maxConcurrentExecutions = execManagerConfig.getMaxConcurrentExecutions().intValue();
+            }
+            if ( execManagerConfig.getQueueCapacity() != null ) {
+                queueCapacity = execManagerConfig.getQueueCapacity().intValue();
+            }
+            for ( ProcessScheduling processConfig : execManagerConfig.getProcessScheduling() ) {
+                if ( processConfig.getMaxConcurrentExecutions() != null ) {
+                    processLimits.put( processConfig.getProcessId(),
+                                       processConfig.getMaxConcurrentExecutions().intValue() );
+                }
+                if ( processConfig.getPriority() != null ) {
+                    processPriorities.put( processConfig.getProcessId(), processConfig.getPriority().intValue() );
+                }
+            }
         }
 
         File storageDir = null;
@@ -184,12 +204,19 @@ public class WPService extends AbstractOWS {
 
         validateAndSetOfferedVersions( sc.getSupportedVersions().getVersion() );
 
-        executeHandler = new ExecutionManager( this, storageManager, trackedExecutions );
+        LOG.info( "Running at most " + maxConcurrentExecutions + " asynchronous executions at once, queueing up to "
+                  + queueCapacity + "." );
+        ExecutionScheduler scheduler = new ExecutionScheduler( maxConcurrentExecutions, queueCapacity, processLimits,
+                                                               processPriorities );
+        executeHandler = new ExecutionManager( this, storageManager, trackedExecutions, scheduler );
         mainMetadataConf = serviceMetadata;
     }
 
     @Override
     public void destroy() {
+        if ( executeHandler != null ) {
+            executeHandler.destroy();
+        }
         // rest should be done by workspace
     }
 
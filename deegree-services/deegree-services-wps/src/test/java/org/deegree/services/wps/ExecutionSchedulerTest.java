@@ -0,0 +1,291 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.protocol.wps.WPSConstants.ExecutionState.ACCEPTED;
+import static org.deegree.protocol.wps.WPSConstants.ExecutionState.FAILED;
+import static org.deegree.services.wps.ExecutionScheduler.SERVER_BUSY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.tom.ows.CodeType;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests queueing, cancelling and shutdown of the {@link ExecutionScheduler}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class ExecutionSchedulerTest {
+
+    private static final Map<String, Integer> NONE = Collections.emptyMap();
+
+    private final CountDownLatch release = new CountDownLatch( 1 );
+
+    // process ids in the order the tasks were run
+    private final List<String> runs = Collections.synchronizedList( new ArrayList<String>() );
+
+    private ExecutionScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if ( scheduler != null ) {
+            scheduler.shutdown();
+        }
+    }
+
+    private static ProcessExecution execution( final String processId ) {
+        return new ProcessExecution( null, null, null, null, null ) {
+            @Override
+            public CodeType getProcessId() {
+                return new CodeType( processId );
+            }
+        };
+    }
+
+    /**
+     * Task that records its run and blocks until {@link #release} is counted down (if the execution has not failed).
+     */
+    private class Task implements Runnable {
+
+        final ProcessExecution execution;
+
+        final CountDownLatch started = new CountDownLatch( 1 );
+
+        final CountDownLatch finished = new CountDownLatch( 1 );
+
+        final AtomicInteger runCount = new AtomicInteger();
+
+        volatile boolean interrupted;
+
+        Task( ProcessExecution execution ) {
+            this.execution = execution;
+        }
+
+        @Override
+        public void run() {
+            runCount.incrementAndGet();
+            runs.add( execution.getProcessId().getCode() );
+            started.countDown();
+            try {
+                if ( execution.getExecutionState() != FAILED ) {
+                    release.await();
+                }
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private Task submit( String processId )
+                            throws OWSException {
+        ProcessExecution execution = execution( processId );
+        Task task = new Task( execution );
+        scheduler.submit( execution, task );
+        return task;
+    }
+
+    private static void await( CountDownLatch latch )
+                            throws InterruptedException {
+        assertTrue( "Timed out.", latch.await( 10, SECONDS ) );
+    }
+
+    private void awaitIdle()
+                            throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while ( scheduler.getRunningExecutions() > 0 || scheduler.getQueueDepth() > 0 ) {
+            assertTrue( "Timed out.", System.currentTimeMillis() < end );
+            Thread.sleep( 5 );
+        }
+    }
+
+    @Test
+    public void testQueueIsOrderedByPriority()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 1, 10, NONE, singletonMap( "high", 5 ) );
+        Task running = submit( "first" );
+        await( running.started );
+        Task low = submit( "low" );
+        Task high = submit( "high" );
+        assertEquals( 2, scheduler.getQueueDepth() );
+        assertEquals( 1, scheduler.getRunningExecutions() );
+        assertEquals( 1, scheduler.getQueuePosition( high.execution ) );
+        assertEquals( 2, scheduler.getQueuePosition( low.execution ) );
+        assertEquals( -1, scheduler.getQueuePosition( running.execution ) );
+        assertTrue( low.execution.getAcceptedMessage().contains( "position 2 of 2" ) );
+
+        release.countDown();
+        await( low.finished );
+        awaitIdle();
+        assertEquals( 0, scheduler.getQueueDepth() );
+        assertEquals( 3, scheduler.getCompletedExecutions() );
+        assertEquals( 3, scheduler.getAcceptedExecutions() );
+        assertEquals( "first", runs.get( 0 ) );
+        assertEquals( "high", runs.get( 1 ) );
+        assertEquals( "low", runs.get( 2 ) );
+    }
+
+    @Test
+    public void testProcessLimit()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 2, 10, singletonMap( "limited", 1 ), NONE );
+        Task first = submit( "limited" );
+        Task second = submit( "limited" );
+        Task other = submit( "other" );
+        await( first.started );
+        await( other.started );
+        assertEquals( 2, scheduler.getRunningExecutions() );
+        assertEquals( 1, scheduler.getQueuePosition( second.execution ) );
+        release.countDown();
+        await( second.finished );
+    }
+
+    @Test
+    public void testFullQueueRejects()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 1, 1, NONE, NONE );
+        await( submit( "running" ).started );
+        submit( "waiting" );
+        try {
+            submit( "rejected" );
+            fail( "Execution should have been rejected." );
+        } catch ( OWSException e ) {
+            assertEquals( SERVER_BUSY, e.getExceptionCode() );
+        }
+        assertEquals( 1, scheduler.getQueueDepth() );
+        assertEquals( 2, scheduler.getAcceptedExecutions() );
+        assertEquals( 1, scheduler.getRejectedExecutions() );
+    }
+
+    @Test
+    public void testCancelWaitingExecution()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 1, 10, NONE, NONE );
+        Task running = submit( "running" );
+        await( running.started );
+        Task waiting = submit( "waiting" );
+
+        assertTrue( scheduler.cancel( waiting.execution ) );
+        assertEquals( FAILED, waiting.execution.getExecutionState() );
+        assertEquals( 1, waiting.runCount.get() );
+        assertEquals( 0, scheduler.getQueueDepth() );
+        assertFalse( scheduler.cancel( waiting.execution ) );
+
+        release.countDown();
+        awaitIdle();
+        assertEquals( 1, waiting.runCount.get() );
+        assertEquals( 1, scheduler.getCompletedExecutions() );
+    }
+
+    @Test
+    public void testCancelRunningExecution()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 1, 10, NONE, NONE );
+        Task running = submit( "running" );
+        await( running.started );
+        assertTrue( scheduler.cancel( running.execution ) );
+        await( running.finished );
+        assertTrue( running.interrupted );
+        awaitIdle();
+        assertFalse( scheduler.cancel( running.execution ) );
+    }
+
+    @Test
+    public void testCancelledExecutionRunsOnce()
+                            throws Exception {
+        release.countDown();
+        scheduler = new ExecutionScheduler( 2, 100, NONE, NONE );
+        List<Task> tasks = new ArrayList<Task>();
+        for ( int i = 0; i < 500; i++ ) {
+            Task task = submit( "process" );
+            // races with the dispatching of the execution
+            scheduler.cancel( task.execution );
+            tasks.add( task );
+        }
+        awaitIdle();
+        for ( Task task : tasks ) {
+            await( task.finished );
+            assertEquals( 1, task.runCount.get() );
+        }
+    }
+
+    @Test
+    public void testShutdownFailsWaitingExecutions()
+                            throws Exception {
+        scheduler = new ExecutionScheduler( 1, 10, NONE, NONE );
+        Task running = submit( "running" );
+        await( running.started );
+        Task waiting = submit( "waiting" );
+        assertEquals( ACCEPTED, waiting.execution.getExecutionState() );
+
+        scheduler.shutdown();
+        assertEquals( FAILED, waiting.execution.getExecutionState() );
+        assertEquals( 1, waiting.runCount.get() );
+        await( running.finished );
+        assertTrue( running.interrupted );
+        try {
+            submit( "late" );
+            fail( "Execution should not have been accepted after shutdown." );
+        } catch ( OWSException e ) {
+            // expected
+        }
+    }
+
+}
@@ -35,11 +35,14 @@
 package org.deegree.console.connection.remoteows;
 
 import java.io.Serializable;
+import java.util.List;
 
 import javax.faces.bean.ManagedBean;
 import javax.faces.bean.ViewScoped;
 
 import org.deegree.console.AbstractResourceManagerBean;
+import org.deegree.protocol.ows.http.OwsHttpConnectionPool;
+import org.deegree.protocol.ows.http.OwsHttpPoolStats;
 import org.deegree.remoteows.RemoteOWSManager;
 
 @ManagedBean
@@ -57,4 +60,12 @@ public class RemoteOwsManagerBean extends AbstractResourceManagerBean<RemoteOWSM
         return "/console/connection/ows/index";
     }
 
+    public List<OwsHttpPoolStats> getHttpPoolStats() {
+        return OwsHttpConnectionPool.getStats();
+    }
+
+    public OwsHttpPoolStats getHttpPoolTotalStats() {
+        return OwsHttpConnectionPool.getTotalStats();
+    }
+
 }
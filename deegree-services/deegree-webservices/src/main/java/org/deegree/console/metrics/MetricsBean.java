@@ -0,0 +1,141 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+ and others
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ e-mail: info@deegree.org
+ website: http://www.deegree.org/
+----------------------------------------------------------------------------*/
+package org.deegree.console.metrics;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.faces.bean.ManagedBean;
+import javax.faces.bean.RequestScoped;
+
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.services.OWS;
+import org.deegree.services.OwsManager;
+import org.deegree.services.controller.FrontControllerStats;
+import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.stats.RequestMetrics;
+import org.deegree.services.wps.ExecutionScheduler;
+import org.deegree.services.wps.WPService;
+import org.deegree.workspace.ResourceTimings;
+import org.deegree.workspace.ResourceTimings.Timing;
+
+/**
+ * Backing bean for request metrics, workspace startup times and WPS execution queue view.
+ * 
+ * @since 3.4
+ */
+@ManagedBean
+@RequestScoped
+public class MetricsBean implements Serializable {
+
+    private static final long serialVersionUID = -2946201826207167614L;
+
+    public long getDispatchedRequests() {
+        return FrontControllerStats.getDispatchedRequests();
+    }
+
+    public long getActiveRequests() {
+        return FrontControllerStats.getActiveRequests();
+    }
+
+    public long getAverageResponseTime() {
+        return FrontControllerStats.getAverageResponseTime();
+    }
+
+    public long getMaximumResponseTime() {
+        return FrontControllerStats.getMaximumResponseTime();
+    }
+
+    public long getDroppedLogEntries() {
+        return FrontControllerStats.getDroppedLogEntries();
+    }
+
+    public List<RequestMetrics> getRequestMetrics() {
+        return FrontControllerStats.getRequestMetrics();
+    }
+
+    public long getWorkspaceStartupTime() {
+        ResourceTimings timings = getResourceTimings();
+        return timings == null ? -1 : timings.getStartupMillis();
+    }
+
+    public List<Timing> getResourceStartupTimes() {
+        ResourceTimings timings = getResourceTimings();
+        if ( timings == null ) {
+            return Collections.emptyList();
+        }
+        return timings.getTimings();
+    }
+
+    public List<WpsExecutionMetrics> getWpsExecutionMetrics() {
+        OwsManager services = OGCFrontController.getServiceConfiguration();
+        if ( services == null ) {
+            return Collections.emptyList();
+        }
+        List<WpsExecutionMetrics> metrics = new ArrayList<WpsExecutionMetrics>();
+        for ( OWS ows : services.getByOWSClass( WPService.class ) ) {
+            ExecutionScheduler scheduler = ( (WPService) ows ).getExecutionManager().getScheduler();
+            metrics.add( new WpsExecutionMetrics( ows.getMetadata().getIdentifier().getId(), scheduler ) );
+        }
+        return metrics;
+    }
+
+    private ResourceTimings getResourceTimings() {
+        DeegreeWorkspace ws = OGCFrontController.getServiceWorkspace();
+        if ( ws == null || ws.getNewWorkspace() == null ) {
+            return null;
+        }
+        return ws.getNewWorkspace().getTimings();
+    }
+
+    /**
+     * Queue and execution statistics of the asynchronous executions of a WPS.
+     */
+    public static class WpsExecutionMetrics {
+
+        private final String serviceId;
+
+        private final ExecutionScheduler scheduler;
+
+        WpsExecutionMetrics( String serviceId, ExecutionScheduler scheduler ) {
+            this.serviceId = serviceId;
+            this.scheduler = scheduler;
+        }
+
+        public String getServiceId() {
+            return serviceId;
+        }
+
+        public ExecutionScheduler getScheduler() {
+            return scheduler;
+        }
+    }
+
+}
@@ -34,6 +34,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.console.webservices.wps;
 
+import static org.deegree.protocol.wps.WPSConstants.ExecutionState.ACCEPTED;
+import static org.deegree.protocol.wps.WPSConstants.ExecutionState.STARTED;
 import static org.deegree.protocol.wps.WPSConstants.ExecutionState.SUCCEEDED;
 
 import java.text.SimpleDateFormat;
@@ -60,6 +62,10 @@ public class ProcessExecution {
 
     public String duration = "-";
 
+    public String key;
+
+    public boolean cancellable;
+
     public String getId() {
         return id;
     }
@@ -84,6 +90,14 @@ public class ProcessExecution {
         return duration;
     }
 
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isCancellable() {
+        return cancellable;
+    }
+
     /**
      * @param p
      */
@@ -103,7 +117,9 @@ public class ProcessExecution {
             this.duration = String.format( "%02d:%02d:%02d", hours, minutes, seconds );
         }
         this.id = p.getProcessId().toString();
+        this.key = getKey( p );
         this.state = p.getExecutionState().toString();
+        this.cancellable = p.getExecutionState() == ACCEPTED || p.getExecutionState() == STARTED;
         if ( p.getExecutionState() != SUCCEEDED ) {
             this.percentage = "" + p.getPercentCompleted();
         }
@@ -113,4 +129,8 @@ public class ProcessExecution {
             this.finishTime = df.format( p.getFinishTime() );
         }
     }
+
+    static String getKey( org.deegree.services.wps.ProcessExecution p ) {
+        return Integer.toHexString( System.identityHashCode( p ) );
+    }
 }
@@ -37,10 +37,13 @@ package org.deegree.console.webservices.wps;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.faces.application.FacesMessage;
 import javax.faces.bean.ManagedBean;
 import javax.faces.bean.RequestScoped;
+import javax.faces.context.FacesContext;
 
 import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.wps.ExecutionManager;
 import org.deegree.services.wps.WPService;
 
 /**
@@ -59,6 +62,8 @@ public class ProcessExecutionsBean {
 
     private final boolean hasExecutions;
 
+    private final ExecutionManager manager;
+
     public List<ProcessExecution> getExecutions() {
         return executions;
     }
@@ -72,9 +77,32 @@ public class ProcessExecutionsBean {
      */
     public ProcessExecutionsBean() {
         WPService service = (WPService) ( OGCFrontController.getServiceConfiguration().getByOWSClass( WPService.class ).get( 0 ) );
-        for ( org.deegree.services.wps.ProcessExecution p : service.getExecutionManager().getAllProcesses() ) {
+        manager = service.getExecutionManager();
+        for ( org.deegree.services.wps.ProcessExecution p : manager.getAllProcesses() ) {
             executions.add( new ProcessExecution( p ) );
         }
         hasExecutions = !executions.isEmpty();
     }
+
+    /**
+     * Cancels the execution given by the request parameter <code>execution</code> (the key of a
+     * {@link ProcessExecution}).
+     * 
+     * @return <code>null</code> (stay on the page)
+     */
+    public String cancel() {
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        String key = ctx.getExternalContext().getRequestParameterMap().get( "execution" );
+        for ( org.deegree.services.wps.ProcessExecution p : manager.getAllProcesses() ) {
+            if ( ProcessExecution.getKey( p ).equals( key ) ) {
+                if ( !manager.cancel( p ) ) {
+                    ctx.addMessage( null, new FacesMessage( FacesMessage.SEVERITY_WARN,
+                                                            "The execution is not waiting or running (anymore).",
+                                                            null ) );
+                }
+                break;
+            }
+        }
+        return null;
+    }
 }
@@ -90,6 +90,8 @@ public class FeatureStoreLoader {
 
     private static final String OPT_IDGEN_MODE = "idgen";
 
+    private static final String OPT_CHUNK_SIZE = "chunksize";
+
     private enum Action {
         insert, stats
     }
@@ -126,6 +128,21 @@ public class FeatureStoreLoader {
         }
     }
 
+    private static void insertStreaming( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode,
+                                         int chunkSize ) {
+        long begin = System.currentTimeMillis();
+        try {
+            StreamingFeatureImport importer = new StreamingFeatureImport( fs, mode, chunkSize );
+            int inserted = importer.importDataset( new File( datasetFile ), gmlVersion );
+            long elapsed = System.currentTimeMillis() - begin;
+            System.out.println( "\n- Insert succeeded (" + inserted + " features in " + elapsed + " [ms])." );
+        } catch ( Exception e ) {
+            e.printStackTrace();
+            System.err.println( "Error performing insert: " + e.getMessage()
+                                + ". Chunks committed before the error remain in the feature store." );
+        }
+    }
+
     /**
      * @param args
      * @throws FeatureStoreException
@@ -184,6 +201,20 @@ public class FeatureStoreLoader {
 
             String inputFileName = cmdline.getOptionValue( OPT_DATASET_FILE );
 
+            int chunkSize = 0;
+            if ( cmdline.hasOption( OPT_CHUNK_SIZE ) ) {
+                try {
+                    chunkSize = Integer.parseInt( cmdline.getOptionValue( OPT_CHUNK_SIZE ) );
+                } catch ( NumberFormatException e ) {
+                    chunkSize = -1;
+                }
+                if ( chunkSize <= 0 ) {
+                    System.out.println( "Invalid chunk size '" + cmdline.getOptionValue( OPT_CHUNK_SIZE )
+                                        + "'. Must be a positive number." );
+                    System.exit( 0 );
+                }
+            }
+
             Workspace ws = new DefaultWorkspace( new File( workspace ) );
             ws.initAll();
 
@@ -191,7 +222,11 @@ public class FeatureStoreLoader {
 
             switch ( action ) {
             case insert:
-                insert( fs, inputFileName, format, idGenMode );
+                if ( chunkSize > 0 ) {
+                    insertStreaming( fs, inputFileName, format, idGenMode, chunkSize );
+                } else {
+                    insert( fs, inputFileName, format, idGenMode );
+                }
                 break;
             case stats:
                 System.out.println( "TODO: Stats..." );
@@ -245,6 +280,9 @@ public class FeatureStoreLoader {
         opt.setRequired( true );
         opts.addOption( opt );
 
+        opt = new Option( OPT_CHUNK_SIZE, true, "stream the dataset and commit every n features (optional)" );
+        opts.addOption( opt );
+
         CommandUtils.addDefaultOptions( opts );
         return opts;
     }
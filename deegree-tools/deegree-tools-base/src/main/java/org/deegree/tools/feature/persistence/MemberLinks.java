@@ -0,0 +1,268 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
+import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
+import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Groups the members of a GML feature collection document into components that are connected by local xlink
+ * references.
+ * <p>
+ * The document is scanned once using plain StAX, without building any objects. Only the ids of the objects and the
+ * member index they occur in are kept. All members of a component have to be inserted together, so that references
+ * between them can be resolved. A component is complete once its last member (in document order) has been read.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class MemberLinks {
+
+    private final Map<String, Integer> idToMember = new HashMap<String, Integer>();
+
+    // members that reference ids which have not been seen yet
+    private final Map<String, List<Integer>> forwardRefs = new HashMap<String, List<Integer>>();
+
+    // union find forest over the member indexes
+    private int[] parents = new int[1024];
+
+    // last member of each component, indexed by root
+    private int[] lastMembers;
+
+    private int size;
+
+    private MemberLinks() {
+        // use analyze
+    }
+
+    /**
+     * Scans the given GML feature collection document.
+     * 
+     * @param file
+     *            the document, must not be <code>null</code>
+     * @return the links between the members, never <code>null</code>
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    static MemberLinks analyze( File file )
+                            throws IOException, XMLStreamException {
+        MemberLinks links = new MemberLinks();
+        InputStream in = new BufferedInputStream( new FileInputStream( file ) );
+        try {
+            XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( in );
+            int depth = 0;
+            boolean inMemberProperty = false;
+            int member = -1;
+            while ( xmlStream.hasNext() ) {
+                int event = xmlStream.next();
+                if ( event == START_ELEMENT ) {
+                    ++depth;
+                    if ( depth == 2 ) {
+                        inMemberProperty = isMemberProperty( xmlStream.getLocalName() );
+                        if ( inMemberProperty && isXlink( xmlStream ) ) {
+                            // the reader returns the reference as a member as well
+                            member = links.addMember();
+                        }
+                    } else if ( depth == 3 && inMemberProperty ) {
+                        member = links.addMember();
+                    }
+                    if ( member != -1 ) {
+                        links.scanAttributes( xmlStream, member );
+                    }
+                } else if ( event == END_ELEMENT ) {
+                    if ( depth == 2 || depth == 3 ) {
+                        member = -1;
+                    }
+                    --depth;
+                }
+            }
+            xmlStream.close();
+        } finally {
+            in.close();
+        }
+        links.finish();
+        return links;
+    }
+
+    /**
+     * @return the number of members
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param id
+     *            the id of an object
+     * @return the index of the member containing the object, or <code>-1</code> if the id does not occur in the members
+     */
+    int getMember( String id ) {
+        Integer member = idToMember.get( id );
+        return member == null ? -1 : member;
+    }
+
+    /**
+     * @param member
+     *            index of the member
+     * @return the component of the member, which is the index of one of its members
+     */
+    int getComponent( int member ) {
+        return find( member );
+    }
+
+    /**
+     * @param member
+     *            index of the member
+     * @return <code>true</code>, if no later member belongs to the same component
+     */
+    boolean isLastOfComponent( int member ) {
+        return lastMembers[find( member )] == member;
+    }
+
+    private static boolean isMemberProperty( String localName ) {
+        return "featureMember".equals( localName ) || "featureMembers".equals( localName )
+               || "member".equals( localName );
+    }
+
+    private static boolean isXlink( XMLStreamReader xmlStream ) {
+        return xmlStream.getAttributeValue( XLNNS, "href" ) != null;
+    }
+
+    private void scanAttributes( XMLStreamReader xmlStream, int member ) {
+        for ( int i = 0; i < xmlStream.getAttributeCount(); ++i ) {
+            String ns = xmlStream.getAttributeNamespace( i );
+            String name = xmlStream.getAttributeLocalName( i );
+            if ( ( "id".equals( name ) && ( GMLNS.equals( ns ) || GML3_2_NS.equals( ns ) ) )
+                 || ( "fid".equals( name ) && ( ns == null || ns.isEmpty() ) ) ) {
+                String id = xmlStream.getAttributeValue( i );
+                idToMember.put( id, member );
+                List<Integer> referencing = forwardRefs.remove( id );
+                if ( referencing != null ) {
+                    for ( Integer other : referencing ) {
+                        union( member, other );
+                    }
+                }
+            } else if ( "href".equals( name ) && XLNNS.equals( ns ) ) {
+                String href = xmlStream.getAttributeValue( i );
+                if ( href.startsWith( "#" ) ) {
+                    String id = href.substring( 1 );
+                    Integer target = idToMember.get( id );
+                    if ( target != null ) {
+                        union( member, target );
+                    } else {
+                        List<Integer> referencing = forwardRefs.get( id );
+                        if ( referencing == null ) {
+                            referencing = new ArrayList<Integer>( 1 );
+                            forwardRefs.put( id, referencing );
+                        }
+                        referencing.add( member );
+                    }
+                }
+            }
+        }
+    }
+
+    private int addMember() {
+        if ( size == parents.length ) {
+            parents = Arrays.copyOf( parents, size * 2 );
+        }
+        parents[size] = size;
+        return size++;
+    }
+
+    private int find( int member ) {
+        int root = member;
+        while ( parents[root] != root ) {
+            root = parents[root];
+        }
+        // path compression
+        while ( parents[member] != root ) {
+            int next = parents[member];
+            parents[member] = root;
+            member = next;
+        }
+        return root;
+    }
+
+    private void union( int a, int b ) {
+        int rootA = find( a );
+        int rootB = find( b );
+        if ( rootA != rootB ) {
+            // keep the smaller index as root
+            if ( rootA < rootB ) {
+                parents[rootB] = rootA;
+            } else {
+                parents[rootA] = rootB;
+            }
+        }
+    }
+
+    private void finish() {
+        // references to ids that do not occur in the document don't link anything
+        forwardRefs.clear();
+        lastMembers = new int[size];
+        for ( int i = 0; i < size; ++i ) {
+            lastMembers[find( i )] = i;
+        }
+    }
+
+}
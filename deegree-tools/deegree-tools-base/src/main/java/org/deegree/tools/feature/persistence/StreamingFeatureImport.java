@@ -0,0 +1,308 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static org.deegree.feature.Features.findFeaturesAndGeometries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.geometry.Geometry;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLVersion;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+
+/**
+ * Imports a GML feature collection into a {@link FeatureStore} without keeping the whole dataset in memory.
+ * <p>
+ * The document is scanned for xlink references first (see {@link MemberLinks}). A reader thread then parses the
+ * features and collects them into chunks, which are inserted and committed one by one in the calling thread. Members
+ * that are connected by local references always end up in the same chunk, so references across chunks never occur.
+ * Chunks are handed over using a bounded queue, so parsing and inserting overlap, but the reader cannot get far ahead.
+ * </p>
+ * <p>
+ * Chunks committed before an error occurs stay in the feature store.
+ * </p>
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+class StreamingFeatureImport {
+
+    private static final int QUEUE_SIZE = 2;
+
+    // marks the end of the dataset
+    private static final List<Feature> END = Collections.emptyList();
+
+    private final FeatureStore fs;
+
+    private final IDGenMode mode;
+
+    private final int chunkSize;
+
+    private final BlockingQueue<List<Feature>> queue = new ArrayBlockingQueue<List<Feature>>( QUEUE_SIZE );
+
+    private volatile boolean cancelled;
+
+    private volatile Throwable readError;
+
+    /**
+     * @param fs
+     *            feature store to insert into, must not be <code>null</code>
+     * @param mode
+     *            id generation mode, must not be <code>null</code>
+     * @param chunkSize
+     *            number of features to insert per transaction, must be positive
+     */
+    StreamingFeatureImport( FeatureStore fs, IDGenMode mode, int chunkSize ) {
+        this.fs = fs;
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports the given dataset.
+     * 
+     * @param file
+     *            the GML feature collection document, must not be <code>null</code>
+     * @param gmlVersion
+     *            the GML version of the document, must not be <code>null</code>
+     * @return the number of inserted features (including nested features)
+     * @throws Exception
+     *             if reading or inserting fails
+     */
+    int importDataset( File file, GMLVersion gmlVersion )
+                            throws Exception {
+
+        System.out.print( "- Analyzing xlinks in dataset: '" + file + "'..." );
+        long begin = System.currentTimeMillis();
+        MemberLinks links = MemberLinks.analyze( file );
+        System.out.println( "done (" + links.size() + " members, " + ( System.currentTimeMillis() - begin )
+                            + " [ms])." );
+
+        GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, file.toURI().toURL() );
+        gmlReader.setApplicationSchema( fs.getSchema() );
+
+        Thread reader = new Thread( new ChunkReader( gmlReader, links ), "FeatureStoreLoader reader" );
+        reader.setDaemon( true );
+        reader.start();
+
+        int members = 0;
+        int inserted = 0;
+        int chunks = 0;
+        begin = System.currentTimeMillis();
+        try {
+            while ( true ) {
+                List<Feature> chunk = queue.take();
+                if ( chunk == END ) {
+                    break;
+                }
+                inserted += insert( chunk );
+                members += chunk.size();
+                ++chunks;
+                long elapsed = Math.max( 1, System.currentTimeMillis() - begin );
+                System.out.println( "- Committed chunk " + chunks + ": " + members + " members / " + inserted
+                                    + " features inserted (" + ( inserted * 1000l / elapsed ) + " features/s)" );
+            }
+        } finally {
+            // stops the reader (also if inserting fails) and waits for it to release the document
+            cancelled = true;
+            queue.clear();
+            reader.join();
+        }
+        if ( readError != null ) {
+            throw new FeatureStoreException( "Error reading dataset: " + readError.getMessage(), readError );
+        }
+        return inserted;
+    }
+
+    private int insert( List<Feature> chunk )
+                            throws FeatureStoreException {
+        FeatureStoreTransaction ta = fs.acquireTransaction();
+        try {
+            List<String> fids = ta.performInsert( new GenericFeatureCollection( null, chunk ), mode );
+            ta.commit();
+            return fids.size();
+        } catch ( FeatureStoreException e ) {
+            ta.rollback();
+            throw e;
+        } catch ( RuntimeException e ) {
+            ta.rollback();
+            throw e;
+        }
+    }
+
+    private void put( List<Feature> chunk )
+                            throws InterruptedException {
+        while ( !cancelled ) {
+            if ( queue.offer( chunk, 1, TimeUnit.SECONDS ) ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses the features and puts complete chunks into the queue.
+     */
+    private class ChunkReader implements Runnable {
+
+        private final GMLStreamReader gmlReader;
+
+        private final MemberLinks links;
+
+        // incomplete components, by component
+        private final Map<Integer, List<Feature>> pending = new HashMap<Integer, List<Feature>>();
+
+        private List<Feature> chunk = new ArrayList<Feature>();
+
+        ChunkReader( GMLStreamReader gmlReader, MemberLinks links ) {
+            this.gmlReader = gmlReader;
+            this.links = links;
+        }
+
+        @Override
+        public void run() {
+            try {
+                StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+                try {
+                    int member = 0;
+                    for ( Feature feature : fc ) {
+                        if ( cancelled ) {
+                            return;
+                        }
+                        // use the id to stay in sync with the xlink analysis, if possible (the id of a reference
+                        // is the id of the referenced feature)
+                        if ( !( feature instanceof FeatureReference ) && feature.getId() != null
+                             && links.getMember( feature.getId() ) != -1 ) {
+                            member = links.getMember( feature.getId() );
+                        }
+                        add( feature, member++ );
+                    }
+                } finally {
+                    fc.close();
+                }
+                for ( List<Feature> component : pending.values() ) {
+                    addToChunk( component );
+                }
+                pending.clear();
+                if ( !chunk.isEmpty() ) {
+                    put( chunk );
+                }
+            } catch ( Throwable t ) {
+                readError = t;
+            } finally {
+                try {
+                    gmlReader.close();
+                } catch ( Exception e ) {
+                    // ignore
+                }
+                try {
+                    put( END );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void add( Feature feature, int member )
+                                throws InterruptedException {
+            if ( member >= links.size() ) {
+                // not seen by the analysis, treat as unconnected
+                addToChunk( Collections.singletonList( feature ) );
+                return;
+            }
+            Integer component = links.getComponent( member );
+            List<Feature> features = pending.remove( component );
+            if ( features == null ) {
+                features = new ArrayList<Feature>( 1 );
+            }
+            features.add( feature );
+            if ( links.isLastOfComponent( member ) ) {
+                addToChunk( features );
+            } else {
+                pending.put( component, features );
+            }
+        }
+
+        private void addToChunk( List<Feature> features )
+                                throws InterruptedException {
+            // resolves the references (in this thread) and releases the objects from the id context
+            Set<Geometry> geometries = new LinkedHashSet<Geometry>();
+            Set<Feature> found = new LinkedHashSet<Feature>();
+            Set<String> fids = new HashSet<String>();
+            Set<String> gids = new HashSet<String>();
+            for ( Feature feature : features ) {
+                findFeaturesAndGeometries( feature, geometries, found, fids, gids );
+            }
+            GmlDocumentIdContext idContext = gmlReader.getIdContext();
+            idContext.releaseObjects( fids );
+            idContext.releaseObjects( gids );
+
+            chunk.addAll( features );
+            if ( chunk.size() >= chunkSize ) {
+                put( chunk );
+                chunk = new ArrayList<Feature>( chunkSize );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the grouping of feature collection members by {@link MemberLinks}.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class MemberLinksTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MemberLinks analyze( String members )
+                            throws Exception {
+        String doc = "<app:Collection xmlns:app=\"http://www.deegree.org/app\" "
+                     + "xmlns:gml=\"http://www.opengis.net/gml\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+                     + members + "</app:Collection>";
+        File file = folder.newFile( "collection.gml" );
+        OutputStream out = new FileOutputStream( file );
+        try {
+            out.write( doc.getBytes( "UTF-8" ) );
+        } finally {
+            out.close();
+        }
+        return MemberLinks.analyze( file );
+    }
+
+    private static String feature( String id, String content ) {
+        return "<app:Feature gml:id=\"" + id + "\">" + content + "</app:Feature>";
+    }
+
+    private static String member( String feature ) {
+        return "<gml:featureMember>" + feature + "</gml:featureMember>";
+    }
+
+    private static String xlinkMember( String id ) {
+        return "<gml:featureMember xlink:href=\"#" + id + "\"/>";
+    }
+
+    private static String link( String id ) {
+        return "<app:ref xlink:href=\"#" + id + "\"/>";
+    }
+
+    private static void assertComponent( MemberLinks links, int... members ) {
+        int component = links.getComponent( members[0] );
+        for ( int i = 0; i < members.length; i++ ) {
+            assertEquals( component, links.getComponent( members[i] ) );
+            assertEquals( i == members.length - 1, links.isLastOfComponent( members[i] ) );
+        }
+    }
+
+    @Test
+    public void testInlineMembers()
+                            throws Exception {
+        MemberLinks links = analyze( member( feature( "f1", "" ) )
+                                     + member( feature( "f2", feature( "f2_1", "" ) + link( "f4" ) ) )
+                                     + member( feature( "f3", "" ) ) + member( feature( "f4", link( "f1" ) ) ) );
+        assertEquals( 4, links.size() );
+        assertEquals( 1, links.getMember( "f2_1" ) );
+        assertEquals( 3, links.getMember( "f4" ) );
+        assertEquals( -1, links.getMember( "unknown" ) );
+        assertComponent( links, 0, 1, 3 );
+        assertComponent( links, 2 );
+    }
+
+    @Test
+    public void testXlinkMembers()
+                            throws Exception {
+        MemberLinks links = analyze( member( feature( "f1", "" ) ) + xlinkMember( "f3" ) + member( feature( "f2", "" ) )
+                                     + member( feature( "f3", "" ) ) + xlinkMember( "f1" ) );
+        assertEquals( 5, links.size() );
+        assertEquals( 0, links.getMember( "f1" ) );
+        assertEquals( 2, links.getMember( "f2" ) );
+        assertEquals( 3, links.getMember( "f3" ) );
+        assertComponent( links, 0, 4 );
+        assertComponent( links, 1, 3 );
+        assertComponent( links, 2 );
+    }
+
+    @Test
+    public void testMixedMembers()
+                            throws Exception {
+        MemberLinks links = analyze( "<gml:featureMembers>" + feature( "f1", "" ) + feature( "f2", link( "f5" ) )
+                                     + "</gml:featureMembers>" + xlinkMember( "f1" )
+                                     + member( feature( "f3", link( "missing" ) ) ) + xlinkMember( "missing" )
+                                     + member( feature( "f5", "" ) ) );
+        assertEquals( 6, links.size() );
+        assertEquals( 0, links.getMember( "f1" ) );
+        assertEquals( 1, links.getMember( "f2" ) );
+        assertEquals( 3, links.getMember( "f3" ) );
+        assertEquals( 5, links.getMember( "f5" ) );
+        assertComponent( links, 0, 2 );
+        assertComponent( links, 1, 5 );
+        // references to ids outside the document don't link members
+        assertComponent( links, 3 );
+        assertComponent( links, 4 );
+    }
+
+}
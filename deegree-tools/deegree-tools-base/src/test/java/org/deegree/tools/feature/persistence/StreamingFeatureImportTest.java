@@ -0,0 +1,326 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static org.deegree.feature.Features.findFeaturesAndGeometries;
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.types.DynamicAppSchema;
+import org.deegree.geometry.Geometry;
+import org.deegree.gml.reference.FeatureReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link StreamingFeatureImport} against a feature store that records the committed chunks.
+ * 
+ * @author last edited by: $Author: stranger $
+ * 
+ * @version $Revision: $, $Date: $
+ */
+public class StreamingFeatureImportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write( String members )
+                            throws Exception {
+        String doc = "<gml:FeatureCollection xmlns:app=\"http://www.deegree.org/app\" "
+                     + "xmlns:gml=\"http://www.opengis.net/gml\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+                     + members + "</gml:FeatureCollection>";
+        File file = folder.newFile( "collection.gml" );
+        OutputStream out = new FileOutputStream( file );
+        try {
+            out.write( doc.getBytes( "UTF-8" ) );
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static String member( String id, String content ) {
+        return "<gml:featureMember><app:Feature gml:id=\"" + id + "\"><app:name>" + id + "</app:name>" + content
+               + "</app:Feature></gml:featureMember>";
+    }
+
+    private static String link( String id ) {
+        return "<app:ref xlink:href=\"#" + id + "\"/>";
+    }
+
+    private static String nested( String id ) {
+        return "<app:part><app:Part gml:id=\"" + id + "\"><app:name>" + id + "</app:name></app:Part></app:part>";
+    }
+
+    private static String unconnected( int count ) {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < count; i++ ) {
+            sb.append( member( "f" + i, "" ) );
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testLinkedMembersAreCommittedTogether()
+                            throws Exception {
+        File file = write( member( "f1", link( "f3" ) ) + member( "f2", "" ) + member( "f3", "" )
+                           + member( "f4", nested( "f4_1" ) ) + member( "f5", link( "f2" ) ) );
+        FakeStore store = new FakeStore( -1 );
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int inserted;
+        System.setOut( new PrintStream( bos, true, "UTF-8" ) );
+        try {
+            inserted = new StreamingFeatureImport( store.getStore(), USE_EXISTING, 1 ).importDataset( file, GML_31 );
+        } finally {
+            System.setOut( stdout );
+        }
+
+        assertEquals( 6, inserted );
+        assertEquals( 3, store.committed.size() );
+        assertEquals( Arrays.asList( "f1", "f3" ), getIds( store.committed.get( 0 ) ) );
+        assertEquals( Arrays.asList( "f4" ), getIds( store.committed.get( 1 ) ) );
+        assertEquals( Arrays.asList( "f2", "f5" ), getIds( store.committed.get( 2 ) ) );
+        for ( List<Feature> chunk : store.committed ) {
+            assertReferencesResolvedWithin( chunk );
+        }
+        assertEquals( 0, store.rollbacks );
+
+        String log = bos.toString( "UTF-8" );
+        assertTrue( log, log.contains( "- Committed chunk 1: 2 members / 2 features inserted" ) );
+        assertTrue( log, log.contains( "- Committed chunk 2: 3 members / 4 features inserted" ) );
+        assertTrue( log, log.contains( "- Committed chunk 3: 5 members / 6 features inserted" ) );
+    }
+
+    @Test
+    public void testChunkSize()
+                            throws Exception {
+        File file = write( unconnected( 5 ) );
+        FakeStore store = new FakeStore( -1 );
+        int inserted = new StreamingFeatureImport( store.getStore(), USE_EXISTING, 2 ).importDataset( file, GML_31 );
+        assertEquals( 5, inserted );
+        assertEquals( 3, store.committed.size() );
+        assertEquals( Arrays.asList( "f0", "f1" ), getIds( store.committed.get( 0 ) ) );
+        assertEquals( Arrays.asList( "f2", "f3" ), getIds( store.committed.get( 1 ) ) );
+        assertEquals( Arrays.asList( "f4" ), getIds( store.committed.get( 2 ) ) );
+    }
+
+    @Test(timeout = 30000)
+    public void testInsertFailureStopsReader()
+                            throws Exception {
+        // the reader is blocked on the full queue when the second insert fails
+        File file = write( unconnected( 500 ) );
+        FakeStore store = new FakeStore( 2 );
+        try {
+            new StreamingFeatureImport( store.getStore(), USE_EXISTING, 1 ).importDataset( file, GML_31 );
+            fail( "Expected a FeatureStoreException." );
+        } catch ( FeatureStoreException e ) {
+            assertEquals( "Insert failed.", e.getMessage() );
+        }
+        assertEquals( 2, store.inserts );
+        assertEquals( 1, store.committed.size() );
+        assertEquals( 1, store.rollbacks );
+        assertFalse( isReaderAlive() );
+    }
+
+    @Test(timeout = 30000)
+    public void testParseFailureStopsImport()
+                            throws Exception {
+        // '9x' is not a valid feature id
+        File file = write( member( "f1", link( "f3" ) ) + member( "f2", "" ) + member( "f3", "" )
+                           + member( "9x", "" ) + member( "f5", "" ) );
+        FakeStore store = new FakeStore( -1 );
+        try {
+            new StreamingFeatureImport( store.getStore(), USE_EXISTING, 1 ).importDataset( file, GML_31 );
+            fail( "Expected a FeatureStoreException." );
+        } catch ( FeatureStoreException e ) {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Error reading dataset" ) );
+        }
+        // chunks committed before the error stay in the store
+        assertEquals( 1, store.committed.size() );
+        assertEquals( Arrays.asList( "f1", "f3" ), getIds( store.committed.get( 0 ) ) );
+        assertEquals( 1, store.inserts );
+        assertEquals( 0, store.rollbacks );
+        assertFalse( isReaderAlive() );
+    }
+
+    private static List<String> getIds( List<Feature> features ) {
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : features ) {
+            ids.add( f.getId() );
+        }
+        return ids;
+    }
+
+    private static void assertReferencesResolvedWithin( List<Feature> chunk ) {
+        Set<String> ids = new HashSet<String>( getIds( chunk ) );
+        for ( Feature f : chunk ) {
+            for ( Property prop : f.getProperties() ) {
+                if ( prop.getValue() instanceof FeatureReference ) {
+                    FeatureReference ref = (FeatureReference) prop.getValue();
+                    assertTrue( ref.getURI(), ref.isResolved() );
+                    assertTrue( ref.getURI(), ids.contains( ref.getReferencedObject().getId() ) );
+                }
+            }
+        }
+    }
+
+    private static boolean isReaderAlive() {
+        for ( Thread t : Thread.getAllStackTraces().keySet() ) {
+            if ( "FeatureStoreLoader reader".equals( t.getName() ) && t.isAlive() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Feature store that records the members of committed transactions and optionally fails an insert.
+     */
+    private static class FakeStore implements InvocationHandler {
+
+        private final DynamicAppSchema schema = new DynamicAppSchema();
+
+        private final int failingInsert;
+
+        final List<List<Feature>> committed = new ArrayList<List<Feature>>();
+
+        int inserts;
+
+        int rollbacks;
+
+        /**
+         * @param failingInsert
+         *            number of the insert (starting with 1) that fails, -1 if no insert fails
+         */
+        FakeStore( int failingInsert ) {
+            this.failingInsert = failingInsert;
+        }
+
+        FeatureStore getStore() {
+            return (FeatureStore) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                          new Class<?>[] { FeatureStore.class }, this );
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args )
+                                throws Throwable {
+            if ( method.getDeclaringClass() == Object.class ) {
+                return method.invoke( this, args );
+            }
+            if ( method.getName().equals( "getSchema" ) ) {
+                return schema;
+            }
+            if ( method.getName().equals( "acquireTransaction" ) ) {
+                return Proxy.newProxyInstance( getClass().getClassLoader(),
+                                               new Class<?>[] { FeatureStoreTransaction.class }, new Transaction() );
+            }
+            throw new UnsupportedOperationException( method.getName() );
+        }
+
+        private class Transaction implements InvocationHandler {
+
+            private final List<Feature> members = new ArrayList<Feature>();
+
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args )
+                                    throws Throwable {
+                if ( method.getDeclaringClass() == Object.class ) {
+                    return method.invoke( this, args );
+                }
+                if ( method.getName().equals( "performInsert" ) ) {
+                    if ( ++inserts == failingInsert ) {
+                        throw new FeatureStoreException( "Insert failed." );
+                    }
+                    Set<Feature> features = new LinkedHashSet<Feature>();
+                    List<String> fids = new ArrayList<String>();
+                    for ( Feature member : (FeatureCollection) args[0] ) {
+                        members.add( member );
+                        findFeaturesAndGeometries( member, new HashSet<Geometry>(), features, new HashSet<String>(),
+                                                   new HashSet<String>() );
+                    }
+                    for ( Feature feature : features ) {
+                        fids.add( feature.getId() );
+                    }
+                    return fids;
+                }
+                if ( method.getName().equals( "commit" ) ) {
+                    committed.add( members );
+                    return null;
+                }
+                if ( method.getName().equals( "rollback" ) ) {
+                    rollbacks++;
+                    return null;
+                }
+                throw new UnsupportedOperationException( method.getName() );
+            }
+        }
+    }
+
+}